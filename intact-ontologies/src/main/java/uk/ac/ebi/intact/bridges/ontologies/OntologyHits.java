@@ -17,14 +17,21 @@ package uk.ac.ebi.intact.bridges.ontologies;
 
 import org.apache.lucene.document.Document;
 import org.apache.lucene.document.Field;
+import org.apache.lucene.document.FieldSelector;
+import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.search.Hits;
 
 import java.io.IOException;
 import java.util.Iterator;
+import java.util.NoSuchElementException;
 
 /**
  * Contains the hits of an ontology search. From the hits it is possible to get the <code>OntologyDocument</code>s hit.
  *
+ * The hits found by an <code>OntologyIndexSearcher</code> are kept as compact arrays of document numbers and scores.
+ * The stored fields of a document are only read when the document is asked for, and only the ones chosen by the
+ * field selector.
+ *
  * @author Bruno Aranda (baranda@ebi.ac.uk)
  * @version $Id$
  */
@@ -32,17 +39,65 @@ public class OntologyHits {
 
     private Hits hits;
 
+    private IndexReader reader;
+    private FieldSelector fieldSelector;
+    private int[] docs;
+    private float[] scores;
+    private int totalHits;
+
+    /**
+     * @deprecated the <code>Hits</code> run the search again as they are read, use the <code>OntologyIndexSearcher</code>
+     * methods instead.
+     */
+    @Deprecated
     public OntologyHits(Hits hits) {
         this.hits = hits;
+        this.totalHits = hits.length();
+    }
+
+    /**
+     * @param reader the reader of the index searched
+     * @param fieldSelector the stored fields read from the documents, all of them if null
+     * @param docs the numbers of the documents hit
+     * @param scores the score of each document hit
+     * @param totalHits the number of documents matching the search, which may be more than the documents given
+     */
+    public OntologyHits(IndexReader reader, FieldSelector fieldSelector, int[] docs, float[] scores, int totalHits) {
+        if (docs.length != scores.length) {
+            throw new IllegalArgumentException("There must be one score per document: "+docs.length+" documents and "+scores.length+" scores");
+        }
+        this.reader = reader;
+        this.fieldSelector = fieldSelector;
+        this.docs = docs;
+        this.scores = scores;
+        this.totalHits = totalHits;
     }
 
     public int length() {
-        return hits.length();
+        return hits != null ? hits.length() : docs.length;
+    }
+
+    /**
+     * @return the number of documents matching the search, more than <code>length()</code> if only the top ones were
+     * kept
+     */
+    public int getTotalHits() {
+        return totalHits;
     }
 
     public OntologyDocument doc(int i) throws IOException {
-        Document doc = hits.doc(i);
+        if (hits != null) {
+            return toOntologyDocument(hits.doc(i));
+        }
+        return toOntologyDocument(reader.document(docs[i], fieldSelector));
+    }
 
+    /**
+     * Reads an <code>OntologyDocument</code> from a document of the index.
+     * @param doc the document, as written by the <code>OntologyIndexWriter</code>
+     * @return the ontology document
+     */
+    public static OntologyDocument toOntologyDocument(Document doc) {
         String ontology = doc.getField(FieldName.ONTOLOGY).stringValue();
 
         String parentId = null;
@@ -88,14 +143,51 @@ public class OntologyHits {
     }
 
     public float score(int i) throws IOException {
-        return hits.score(i);
+        return hits != null ? hits.score(i) : scores[i];
     }
 
     public int id(int i) throws IOException {
-        return hits.id(i);
+        return hits != null ? hits.id(i) : docs[i];
     }
 
+    /**
+     * @return the Lucene <code>Hit</code>s of hits built from <code>Hits</code>, the <code>OntologyDocument</code>s
+     * hit otherwise
+     * @deprecated the type of the elements depends on how the hits were built, use <code>documents()</code> instead.
+     */
+    @Deprecated
     public Iterator iterator() {
-        return hits.iterator();
+        if (hits != null) {
+            return hits.iterator();
+        }
+        return documents();
+    }
+
+    /**
+     * @return the documents hit, read one at a time
+     */
+    public Iterator<OntologyDocument> documents() {
+        return new Iterator<OntologyDocument>() {
+            private int next;
+
+            public boolean hasNext() {
+                return next < length();
+            }
+
+            public OntologyDocument next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                try {
+                    return doc(next++);
+                } catch (IOException e) {
+                    throw new IllegalStateException("Problem reading hit: "+(next - 1), e);
+                }
+            }
+
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
     }
 }
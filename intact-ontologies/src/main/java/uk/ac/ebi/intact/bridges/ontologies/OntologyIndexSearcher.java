@@ -15,24 +15,44 @@
  */
 package uk.ac.ebi.intact.bridges.ontologies;
 
+import org.apache.lucene.document.FieldSelector;
+import org.apache.lucene.document.MapFieldSelector;
 import org.apache.lucene.index.CorruptIndexException;
 import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.index.Term;
-import org.apache.lucene.search.IndexSearcher;
-import org.apache.lucene.search.Sort;
-import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.*;
 import org.apache.lucene.store.Directory;
 
 import java.io.IOException;
+import java.util.Arrays;
+import java.util.Comparator;
 
 /**
  * Searches an ontology index.
  *
+ * The <code>searchBy...</code> methods find all the matching documents with a <code>HitCollector</code>, keeping
+ * their numbers in a compact array sorted in memory, by the values of the <code>FieldCache</code> when a
+ * <code>Sort</code> is given, and the <code>searchBy...Name</code> ones taking a maximum number of results keep
+ * the best ones only. Either way the documents are read when asked for, loading the fields an
+ * <code>OntologyDocument</code> needs only.
+ *
  * @author Bruno Aranda (baranda@ebi.ac.uk)
  * @version $Id$
  */
 public class OntologyIndexSearcher extends IndexSearcher {
 
+    /**
+     * The stored fields read to build an <code>OntologyDocument</code>, leaving out the sortable copies of the names.
+     */
+    public static final FieldSelector ONTOLOGY_DOCUMENT_FIELDS = new MapFieldSelector(new String[]{
+            FieldName.ONTOLOGY,
+            FieldName.PARENT_ID, FieldName.PARENT_NAME, FieldName.PARENT_SYNONYMS,
+            FieldName.CHILDREN_ID, FieldName.CHILDREN_NAME, FieldName.CHILDREN_SYNONYMS,
+            FieldName.RELATIONSHIP_TYPE, FieldName.RELATIONSHIP_CYCLIC});
+
+    private static final int[] NO_DOCS = new int[0];
+    private static final float[] NO_SCORES = new float[0];
+
     public OntologyIndexSearcher(String s) throws CorruptIndexException, IOException {
         super(s);
     }
@@ -50,7 +70,7 @@ public class OntologyIndexSearcher extends IndexSearcher {
     }
 
     public OntologyHits searchByChildId(String childId, Sort sort) throws IOException {
-        return new OntologyHits(search(new TermQuery(new Term(FieldName.CHILDREN_ID, childId)), sort));
+        return searchAll(new TermQuery(new Term(FieldName.CHILDREN_ID, childId)), sort);
     }
 
     public OntologyHits searchByChildName(String childName) throws IOException {
@@ -58,7 +78,18 @@ public class OntologyIndexSearcher extends IndexSearcher {
     }
 
     public OntologyHits searchByChildName(String childName, Sort sort) throws IOException {
-        return new OntologyHits(search(new TermQuery(new Term(FieldName.CHILDREN_NAME, childName)), sort));
+        return searchAll(new TermQuery(new Term(FieldName.CHILDREN_NAME, childName)), sort);
+    }
+
+    /**
+     * Searches the best matches of a child name.
+     * @param childName the name searched
+     * @param maxResults the maximum number of hits kept
+     * @return the best hits, by decreasing relevance
+     * @throws IOException if the index cannot be searched
+     */
+    public OntologyHits searchByChildName(String childName, int maxResults) throws IOException {
+        return searchTop(new TermQuery(new Term(FieldName.CHILDREN_NAME, childName)), maxResults, null);
     }
 
     public OntologyHits searchByParentId(String parentId) throws IOException {
@@ -66,7 +97,7 @@ public class OntologyIndexSearcher extends IndexSearcher {
     }
 
     public OntologyHits searchByParentId(String parentId, Sort sort) throws IOException {
-        return new OntologyHits(search(new TermQuery(new Term(FieldName.PARENT_ID, parentId)), sort));
+        return searchAll(new TermQuery(new Term(FieldName.PARENT_ID, parentId)), sort);
     }
 
     public OntologyHits searchByParentName(String parentName) throws IOException {
@@ -74,6 +105,240 @@ public class OntologyIndexSearcher extends IndexSearcher {
     }
 
     public OntologyHits searchByParentName(String parentName, Sort sort) throws IOException {
-        return new OntologyHits(search(new TermQuery(new Term(FieldName.PARENT_NAME, parentName)), sort));
+        return searchAll(new TermQuery(new Term(FieldName.PARENT_NAME, parentName)), sort);
+    }
+
+    /**
+     * Searches the best matches of a parent name.
+     * @param parentName the name searched
+     * @param maxResults the maximum number of hits kept
+     * @return the best hits, by decreasing relevance
+     * @throws IOException if the index cannot be searched
+     */
+    public OntologyHits searchByParentName(String parentName, int maxResults) throws IOException {
+        return searchTop(new TermQuery(new Term(FieldName.PARENT_NAME, parentName)), maxResults, null);
+    }
+
+    /**
+     * Finds all the documents matching a query. The hits are collected by a single search and sorted in memory, the
+     * sorts on the score, the document number or the <code>FieldCache</code> values of an automatic, string, int or
+     * float field (eg. the sortable children names) included; any other sort is left to a single sorted search sized
+     * by the index.
+     * @param query the query
+     * @param sort the order of the hits, by decreasing relevance if null
+     * @return the hits
+     * @throws IOException if the index cannot be searched
+     */
+    public OntologyHits searchAll(Query query, Sort sort) throws IOException {
+        if (sort != null && !isSortedInMemory(sort)) {
+            return searchTop(query, Math.max(1, getIndexReader().maxDoc()), sort);
+        }
+
+        final AllHitsCollector collector = new AllHitsCollector();
+        search(query, collector);
+
+        if (collector.size == 0) {
+            return new OntologyHits(getIndexReader(), ONTOLOGY_DOCUMENT_FIELDS, NO_DOCS, NO_SCORES, 0);
+        }
+
+        int[] docs = Arrays.copyOf(collector.docs, collector.size);
+        float[] scores = Arrays.copyOf(collector.scores, collector.size);
+        if (sort == null) {
+            sortByRelevance(docs, scores);
+        } else {
+            sortByFields(docs, scores, sort.getSort());
+        }
+
+        return new OntologyHits(getIndexReader(), ONTOLOGY_DOCUMENT_FIELDS, docs, scores, docs.length);
+    }
+
+    /**
+     * Finds the best documents matching a query.
+     * @param query the query
+     * @param maxResults the maximum number of hits kept
+     * @param sort the order of the hits, by decreasing relevance if null
+     * @return the first hits in that order
+     * @throws IOException if the index cannot be searched
+     */
+    public OntologyHits searchTop(Query query, int maxResults, Sort sort) throws IOException {
+        if (maxResults < 1) {
+            throw new IllegalArgumentException("The maximum number of results must be 1 or greater");
+        }
+
+        final TopDocs topDocs = (sort == null) ? search(query, null, maxResults) : search(query, null, maxResults, sort);
+
+        int[] docs = new int[topDocs.scoreDocs.length];
+        float[] scores = new float[topDocs.scoreDocs.length];
+        for (int i = 0; i < docs.length; i++) {
+            docs[i] = topDocs.scoreDocs[i].doc;
+            scores[i] = topDocs.scoreDocs[i].score;
+        }
+
+        return new OntologyHits(getIndexReader(), ONTOLOGY_DOCUMENT_FIELDS, docs, scores, topDocs.totalHits);
+    }
+
+    /**
+     * Orders the hits as <code>Hits</code> do: by decreasing score, then by document number.
+     */
+    private static void sortByRelevance(final int[] docs, final float[] scores) {
+        boolean sorted = true;
+        for (int i = 1; i < docs.length && sorted; i++) {
+            sorted = scores[i - 1] > scores[i] || (scores[i - 1] == scores[i] && docs[i - 1] < docs[i]);
+        }
+        if (sorted) {
+            return;
+        }
+
+        sortHits(docs, scores, new Comparator<Integer>() {
+            public int compare(Integer hit1, Integer hit2) {
+                int byScore = Float.compare(scores[hit2], scores[hit1]);
+                return byScore != 0 ? byScore : compareDocs(docs[hit1], docs[hit2]);
+            }
+        });
+    }
+
+    /**
+     * @return true if the hits can be sorted in memory as the sorted searches would
+     */
+    private static boolean isSortedInMemory(Sort sort) {
+        for (SortField field : sort.getSort()) {
+            if (field.getLocale() != null) {
+                return false;
+            }
+            switch (field.getType()) {
+                case SortField.SCORE:
+                case SortField.DOC:
+                case SortField.AUTO:
+                case SortField.STRING:
+                case SortField.INT:
+                case SortField.FLOAT:
+                    break;
+                default:
+                    return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Orders the hits as the sorted searches do: by the sort fields, the score decreasing and the other ones
+     * increasing unless reversed, then by document number.
+     */
+    private void sortByFields(final int[] docs, float[] scores, SortField[] fields) throws IOException {
+        final double[][] keys = new double[fields.length][];
+        final int[] directions = new int[fields.length];
+        for (int i = 0; i < fields.length; i++) {
+            keys[i] = sortKeys(fields[i], docs, scores);
+            directions[i] = ((fields[i].getType() == SortField.SCORE) != fields[i].getReverse()) ? -1 : 1;
+        }
+
+        sortHits(docs, scores, new Comparator<Integer>() {
+            public int compare(Integer hit1, Integer hit2) {
+                for (int i = 0; i < keys.length; i++) {
+                    int byField = Double.compare(keys[i][hit1], keys[i][hit2]);
+                    if (byField != 0) {
+                        return directions[i] * byField;
+                    }
+                }
+                return compareDocs(docs[hit1], docs[hit2]);
+            }
+        });
+    }
+
+    /**
+     * Reads the value of a sort field for each hit, the strings being replaced by their rank in the field.
+     */
+    private double[] sortKeys(SortField field, int[] docs, float[] scores) throws IOException {
+        final double[] keys = new double[docs.length];
+        switch (field.getType()) {
+            case SortField.SCORE:
+                for (int i = 0; i < docs.length; i++) {
+                    keys[i] = scores[i];
+                }
+                break;
+            case SortField.DOC:
+                for (int i = 0; i < docs.length; i++) {
+                    keys[i] = docs[i];
+                }
+                break;
+            case SortField.AUTO:
+                // as the sorted searches, sorts by int, float or string according to the terms of the field
+                final Object values = FieldCache.DEFAULT.getAuto(getIndexReader(), field.getField());
+                if (values instanceof FieldCache.StringIndex) {
+                    return sortKeys(new SortField(field.getField(), SortField.STRING), docs, scores);
+                } else if (values instanceof int[]) {
+                    return sortKeys(new SortField(field.getField(), SortField.INT), docs, scores);
+                } else if (values instanceof float[]) {
+                    return sortKeys(new SortField(field.getField(), SortField.FLOAT), docs, scores);
+                }
+                throw new IllegalArgumentException("Unsupported sort field values: " + field);
+            case SortField.STRING:
+                final int[] order = FieldCache.DEFAULT.getStringIndex(getIndexReader(), field.getField()).order;
+                for (int i = 0; i < docs.length; i++) {
+                    keys[i] = order[docs[i]];
+                }
+                break;
+            case SortField.INT:
+                final int[] ints = FieldCache.DEFAULT.getInts(getIndexReader(), field.getField());
+                for (int i = 0; i < docs.length; i++) {
+                    keys[i] = ints[docs[i]];
+                }
+                break;
+            case SortField.FLOAT:
+                final float[] floats = FieldCache.DEFAULT.getFloats(getIndexReader(), field.getField());
+                for (int i = 0; i < docs.length; i++) {
+                    keys[i] = floats[docs[i]];
+                }
+                break;
+            default:
+                throw new IllegalArgumentException("Unsupported sort field type: " + field);
+        }
+        return keys;
+    }
+
+    /**
+     * Reorders the hits, the comparator comparing their positions in the given arrays.
+     */
+    private static void sortHits(int[] docs, float[] scores, Comparator<Integer> comparator) {
+        Integer[] order = new Integer[docs.length];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, comparator);
+
+        final int[] unsortedDocs = docs.clone();
+        final float[] unsortedScores = scores.clone();
+        for (int i = 0; i < order.length; i++) {
+            docs[i] = unsortedDocs[order[i]];
+            scores[i] = unsortedScores[order[i]];
+        }
+    }
+
+    private static int compareDocs(int doc1, int doc2) {
+        return doc1 < doc2 ? -1 : (doc1 == doc2 ? 0 : 1);
+    }
+
+    /**
+     * Collects the numbers and scores of all the documents hit, the way the <code>TopDocs</code> searches count them.
+     */
+    private static class AllHitsCollector extends HitCollector {
+
+        private int[] docs = new int[16];
+        private float[] scores = new float[16];
+        private int size;
+
+        public void collect(int doc, float score) {
+            if (score <= 0.0f) {
+                // not a hit for the top docs searches either
+                return;
+            }
+            if (size == docs.length) {
+                docs = Arrays.copyOf(docs, size * 2);
+                scores = Arrays.copyOf(scores, size * 2);
+            }
+            docs[size] = doc;
+            scores[size] = score;
+            size++;
+        }
     }
 }
@@ -0,0 +1,120 @@
+/**
+ * Copyright 2008 The European Bioinformatics Institute, and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.ebi.intact.bridges.ontologies.term;
+
+import uk.ac.ebi.intact.bridges.ontologies.OntologyIndexSearcher;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * A <code>LazyLoadedOntologyTerm</code> given by an <code>OntologyTermCache</code>. The parents and children it loads
+ * are taken from the cache, so that the same term met again while walking the ontology is not searched again.
+ *
+ * Only the ids of the parents and children are kept, resolved through the cache on each call: the cached terms do
+ * not hold each other, so that evicting a term frees it, and a walk always gets the term currently cached for an id.
+ *
+ * @version $Id$
+ * @since 2.1.35
+ */
+public class CachedOntologyTerm extends LazyLoadedOntologyTerm {
+
+    private final OntologyTermCache cache;
+
+    private volatile List<String> parentIds;
+    private volatile List<String> cyclicParentIds;
+    private volatile List<String> childIds;
+    private volatile List<String> cyclicChildIds;
+
+    CachedOntologyTerm(OntologyTermCache cache, String id) {
+        super(cache.getSearcher(), id);
+        this.cache = cache;
+    }
+
+    CachedOntologyTerm(OntologyTermCache cache, String id, String name, Collection<String> synonyms) {
+        super(cache.getSearcher(), id, name, synonyms);
+        this.cache = cache;
+    }
+
+    @Override
+    public List<OntologyTerm> getParents(boolean includeCyclic) {
+        List<String> ids = includeCyclic ? cyclicParentIds : parentIds;
+        if (ids == null) {
+            ids = getIds(loadParents(includeCyclic));
+
+            // only published once loaded, as the term may be shared between threads
+            if (includeCyclic) {
+                this.cyclicParentIds = ids;
+            } else {
+                this.parentIds = ids;
+            }
+        }
+        return getTerms(ids);
+    }
+
+    @Override
+    public List<OntologyTerm> getChildren(boolean includeCyclic) {
+        List<String> ids = includeCyclic ? cyclicChildIds : childIds;
+        if (ids == null) {
+            ids = getIds(loadChildren(includeCyclic));
+
+            if (includeCyclic) {
+                this.cyclicChildIds = ids;
+            } else {
+                this.childIds = ids;
+            }
+        }
+        return getTerms(ids);
+    }
+
+    @Override
+    protected OntologyTerm newInternalOntologyTerm(OntologyIndexSearcher searcher, String id, String name, Collection<String> synonyms) {
+        return cache.getTerm(id, name, synonyms);
+    }
+
+    /**
+     * Gives the id and name only, the parents and children being resolved through the cache.
+     */
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder();
+        sb.append("CachedOntologyTerm");
+        sb.append("{id='").append(getId()).append('\'');
+        sb.append(", name='").append(getName()).append('\'');
+        sb.append('}');
+        return sb.toString();
+    }
+
+    private static List<String> getIds(List<OntologyTerm> terms) {
+        List<String> ids = new ArrayList<String>(terms.size());
+        for (OntologyTerm term : terms) {
+            ids.add(term.getId());
+        }
+        return ids;
+    }
+
+    /**
+     * Gets the cached terms of the ids, an evicted one being searched again.
+     */
+    private List<OntologyTerm> getTerms(List<String> ids) {
+        List<OntologyTerm> terms = new ArrayList<OntologyTerm>(ids.size());
+        for (String id : ids) {
+            terms.add(cache.getTerm(id));
+        }
+        return terms;
+    }
+}
@@ -0,0 +1,182 @@
+/**
+ * Copyright 2008 The European Bioinformatics Institute, and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.ebi.intact.bridges.ontologies.term;
+
+import java.util.*;
+
+/**
+ * A term of an <code>OntologyGraph</code>. Its parents, children and ancestors are read from the graph in memory,
+ * without querying the index.
+ *
+ * @version $Id$
+ * @since 2.1.35
+ */
+public class InMemoryOntologyTerm implements OntologyTerm {
+
+    private final OntologyGraph graph;
+    private final int index;
+    private final String name;
+
+    InMemoryOntologyTerm(OntologyGraph graph, int index, String name) {
+        this.graph = graph;
+        this.index = index;
+        this.name = name;
+    }
+
+    public String getId() {
+        return graph.getId(index);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public List<OntologyTerm> getParents() {
+        return getParents(false);
+    }
+
+    public List<OntologyTerm> getParents(boolean includeCyclic) {
+        int count = graph.getParentCount(index, includeCyclic);
+        List<OntologyTerm> parents = new ArrayList<OntologyTerm>(count);
+        for (int i = 0; i < count; i++) {
+            parents.add(graph.getTerm(graph.getParent(index, i, includeCyclic)));
+        }
+        return parents;
+    }
+
+    public List<OntologyTerm> getChildren() {
+        return getChildren(false);
+    }
+
+    public List<OntologyTerm> getChildren(boolean includeCyclic) {
+        int count = graph.getChildCount(index, includeCyclic);
+        List<OntologyTerm> children = new ArrayList<OntologyTerm>(count);
+        for (int i = 0; i < count; i++) {
+            children.add(graph.getTerm(graph.getChild(index, i, includeCyclic)));
+        }
+        return children;
+    }
+
+    public Set<OntologyTerm> getSynonyms() {
+        Set<OntologyTerm> synonyms = new HashSet<OntologyTerm>();
+        for (String synonym : graph.getSynonyms(index)) {
+            synonyms.add(new InMemoryOntologyTerm(graph, index, synonym));
+        }
+        return synonyms;
+    }
+
+    public Set<OntologyTerm> getAllParentsToRoot() {
+        return getAllParentsToRoot(false);
+    }
+
+    /**
+     * Walks the non cyclic parents breadth first, visiting each ancestor once. The memory used is proportional to
+     * the number of ancestors, not to the size of the graph.
+     * @param includeSynonyms if true, the synonyms of the ancestors are added too
+     * @return the ancestors, the closest first
+     */
+    public Set<OntologyTerm> getAllParentsToRoot(boolean includeSynonyms) {
+        Set<OntologyTerm> parents = new LinkedHashSet<OntologyTerm>();
+
+        // the ancestors found are the visited ones, the synonyms being different terms
+        int[] queue = new int[Math.max(8, graph.getParentCount(index, false))];
+        int head = 0;
+        int tail = 0;
+        queue[tail++] = index;
+
+        while (head < tail) {
+            int term = queue[head++];
+            int count = graph.getParentCount(term, false);
+            for (int i = 0; i < count; i++) {
+                int parent = graph.getParent(term, i, false);
+                InMemoryOntologyTerm parentTerm = graph.getTerm(parent);
+                if (parent == index || !parents.add(parentTerm)) {
+                    continue;
+                }
+                if (tail == queue.length) {
+                    queue = Arrays.copyOf(queue, queue.length * 2);
+                }
+                queue[tail++] = parent;
+
+                if (includeSynonyms) {
+                    parents.addAll(parentTerm.getSynonyms());
+                }
+            }
+        }
+
+        return parents;
+    }
+
+    /**
+     * Walks the non cyclic children level by level, each level holding the distinct terms reached at that depth.
+     * Depth 0 returns the term itself and negative depths nothing, as <code>OntologyTermWalker</code>.
+     */
+    public Collection<OntologyTerm> getChildrenAtDepth(int depth) {
+        if (depth < 0) {
+            return new ArrayList<OntologyTerm>();
+        }
+
+        BitSet level = new BitSet(graph.size());
+        level.set(index);
+
+        for (int currentDepth = 0; currentDepth < depth && !level.isEmpty(); currentDepth++) {
+            BitSet nextLevel = new BitSet(graph.size());
+            for (int term = level.nextSetBit(0); term >= 0; term = level.nextSetBit(term + 1)) {
+                int count = graph.getChildCount(term, false);
+                for (int i = 0; i < count; i++) {
+                    nextLevel.set(graph.getChild(term, i, false));
+                }
+            }
+            level = nextLevel;
+        }
+
+        List<OntologyTerm> children = new ArrayList<OntologyTerm>(level.cardinality());
+        for (int term = level.nextSetBit(0); term >= 0; term = level.nextSetBit(term + 1)) {
+            children.add(graph.getTerm(term));
+        }
+        return children;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        InMemoryOntologyTerm that = (InMemoryOntologyTerm) o;
+
+        if (graph != that.graph || index != that.index) return false;
+        if (name != null ? !name.equals(that.name) : that.name != null) return false;
+
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = getId().hashCode();
+        result = 31 * result + (name != null ? name.hashCode() : 0);
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder();
+        sb.append("InMemoryOntologyTerm");
+        sb.append("{id='").append(getId()).append('\'');
+        sb.append(", name='").append(name).append('\'');
+        sb.append('}');
+        return sb.toString();
+    }
+}
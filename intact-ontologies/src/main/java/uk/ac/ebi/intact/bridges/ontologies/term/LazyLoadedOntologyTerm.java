@@ -36,15 +36,19 @@ import java.util.*;
  */
 public class LazyLoadedOntologyTerm implements OntologyTerm{
 
+    private static final Sort CHILDREN_NAME_SORT = new Sort(new SortField(FieldName.CHILDREN_NAME_SORTABLE, SortField.STRING));
+
     private OntologyIndexSearcher searcher;
 
     private String id;
     private String name;
     private Collection<String> parentSynonyms;
 
-    private List<OntologyTerm> parents;
-    private List<OntologyTerm> children;
-    private Set<OntologyTerm> synonyms;
+    private volatile List<OntologyTerm> parents;
+    private volatile List<OntologyTerm> cyclicParents;
+    private volatile List<OntologyTerm> children;
+    private volatile List<OntologyTerm> cyclicChildren;
+    private volatile Set<OntologyTerm> synonyms;
 
     public LazyLoadedOntologyTerm(OntologyIndexSearcher searcher, String id) {
         this.searcher = searcher;
@@ -88,20 +92,21 @@ public class LazyLoadedOntologyTerm implements OntologyTerm{
     }
 
     public List<OntologyTerm> getParents(boolean includeCyclic) {
-        if (parents != null) {
-            return parents;
-       }
+        List<OntologyTerm> loaded = includeCyclic ? cyclicParents : parents;
+        if (loaded != null) {
+            return loaded;
+        }
 
-        this.parents = new ArrayList<OntologyTerm>();
+        loaded = loadParents(includeCyclic);
 
-        try {
-            final OntologyHits ontologyHits = searchQuery(FieldName.CHILDREN_ID, includeCyclic);
-            parents.addAll(processParentsHits(ontologyHits, id));
-        } catch (IOException e) {
-            throw new IllegalStateException("Problem getting parents for document: "+id, e);
+        // only published once loaded, as the term may be shared between threads
+        if (includeCyclic) {
+            this.cyclicParents = loaded;
+        } else {
+            this.parents = loaded;
         }
 
-        return parents;
+        return loaded;
     }
 
     public List<OntologyTerm> getChildren() {
@@ -109,20 +114,48 @@ public class LazyLoadedOntologyTerm implements OntologyTerm{
     }
 
     public List<OntologyTerm> getChildren(boolean includeCyclic) {
-        if (children != null) {
-            return children;
+        List<OntologyTerm> loaded = includeCyclic ? cyclicChildren : children;
+        if (loaded != null) {
+            return loaded;
         }
 
-        this.children = new ArrayList<OntologyTerm>();
+        loaded = loadChildren(includeCyclic);
+
+        if (includeCyclic) {
+            this.cyclicChildren = loaded;
+        } else {
+            this.children = loaded;
+        }
+
+        return loaded;
+    }
+
+    /**
+     * Searches the parents in the index, without keeping them.
+     * @param includeCyclic whether the cyclic relationships are followed
+     * @return the parents found
+     */
+    protected List<OntologyTerm> loadParents(boolean includeCyclic) {
+        try {
+            final OntologyHits ontologyHits = searchQuery(FieldName.CHILDREN_ID, includeCyclic);
+            return processParentsHits(ontologyHits, id);
+        } catch (IOException e) {
+            throw new IllegalStateException("Problem getting parents for document: "+id, e);
+        }
+    }
 
+    /**
+     * Searches the children in the index, without keeping them.
+     * @param includeCyclic whether the cyclic relationships are followed
+     * @return the children found
+     */
+    protected List<OntologyTerm> loadChildren(boolean includeCyclic) {
         try {
             final OntologyHits ontologyHits = searchQuery(FieldName.PARENT_ID, includeCyclic);
-            children.addAll(processChildrenHits(ontologyHits, id));
+            return processChildrenHits(ontologyHits, id);
         } catch (IOException e) {
             throw new IllegalStateException("Problem getting children for document: "+id, e);
         }
-
-        return children;
     }
 
     @Override
@@ -131,18 +164,19 @@ public class LazyLoadedOntologyTerm implements OntologyTerm{
             return synonyms;
         }
 
-        synonyms = new HashSet<OntologyTerm>();
+        Set<OntologyTerm> loaded = new HashSet<OntologyTerm>();
 
-        if (parentSynonyms == null || parentSynonyms.isEmpty()) {
-            return synonyms;
-        }
-        
-        for (String synonym : parentSynonyms) {
-            OntologyTerm ontologyTerm = new LazyLoadedOntologyTerm(searcher, id, synonym);
-            synonyms.add(ontologyTerm);
+        if (parentSynonyms != null) {
+            for (String synonym : parentSynonyms) {
+                // the synonyms of the term are already known, no need to search them again
+                OntologyTerm ontologyTerm = new LazyLoadedOntologyTerm(searcher, id, synonym, parentSynonyms);
+                loaded.add(ontologyTerm);
+            }
         }
-        
-        return synonyms;
+
+        this.synonyms = loaded;
+
+        return loaded;
     }
 
     private OntologyHits searchQuery(String idFieldName, boolean includeCyclic) throws IOException {
@@ -155,9 +189,7 @@ public class LazyLoadedOntologyTerm implements OntologyTerm{
             query.add(new TermQuery(new Term(FieldName.RELATIONSHIP_TYPE, "disjoint_from")), BooleanClause.Occur.MUST_NOT);
         }
 
-        final Hits hits = searcher.search(query, new Sort(FieldName.CHILDREN_NAME_SORTABLE));
-        final OntologyHits ontologyHits = new OntologyHits(hits);
-        return ontologyHits;
+        return searcher.searchAll(query, CHILDREN_NAME_SORT);
     }
 
     public Set<OntologyTerm> getAllParentsToRoot() {
@@ -187,19 +219,22 @@ public class LazyLoadedOntologyTerm implements OntologyTerm{
     }
 
     public Collection<OntologyTerm> getChildrenAtDepth(int depth) {
-        return getChildren(this, 0, depth).get(depth);
+        return OntologyTermWalker.getChildrenAtDepth(this, depth);
     }
 
+    /**
+     * Gets the terms at each level of depth, from the current depth down to the max depth.
+     * @param term the term at the current depth
+     * @param currentDepth the depth of the term
+     * @param maxDepth the deepest level
+     * @return the distinct terms of each level
+     */
     protected Multimap<Integer, OntologyTerm> getChildren(OntologyTerm term, int currentDepth, int maxDepth) {
-        if (currentDepth > maxDepth) {
-            return HashMultimap.create();
-        }
-
         Multimap<Integer,OntologyTerm> terms = HashMultimap.create();
-        terms.put(currentDepth, term);
 
-        for (OntologyTerm child : term.getChildren()) {
-            terms.putAll(getChildren(child, currentDepth+1, maxDepth));
+        final List<Collection<OntologyTerm>> levels = OntologyTermWalker.getLevels(term, maxDepth - currentDepth);
+        for (int i = 0; i < levels.size(); i++) {
+            terms.putAll(currentDepth + i, levels.get(i));
         }
 
         return terms;
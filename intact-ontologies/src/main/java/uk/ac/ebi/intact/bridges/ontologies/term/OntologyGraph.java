@@ -0,0 +1,355 @@
+/**
+ * Copyright 2008 The European Bioinformatics Institute, and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.ebi.intact.bridges.ontologies.term;
+
+import org.apache.lucene.index.IndexReader;
+import uk.ac.ebi.intact.bridges.ontologies.OntologyDocument;
+import uk.ac.ebi.intact.bridges.ontologies.OntologyHits;
+import uk.ac.ebi.intact.bridges.ontologies.OntologyIndexSearcher;
+
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * The is_a hierarchy of an ontology held in memory, built once from an ontology index so that walking it does not
+ * query the index.
+ *
+ * Terms are numbered from 0 and their parents and children are kept as primitive adjacency arrays (compressed sparse
+ * rows), the cyclic relationships apart from the others. Names and synonyms are kept in side tables. The terms are
+ * given as <code>InMemoryOntologyTerm</code>s, which answer as <code>LazyLoadedOntologyTerm</code>s do: the children
+ * of a term are sorted by name and duplicate relationships are ignored.
+ *
+ * A graph is immutable and can be shared by several threads.
+ *
+ * @version $Id$
+ * @since 2.1.35
+ */
+public class OntologyGraph {
+
+    /**
+     * The relationship type making the hierarchy.
+     */
+    public static final String IS_A = "OBO_REL:is_a";
+
+    private static final int[] NO_TERMS = new int[0];
+
+    private final String[] ids;
+    private final String[] names;
+    private final String[][] synonyms;
+
+    private final Map<String, Integer> indexes;
+
+    /**
+     * Relationships by cyclic flag (0 non cyclic, 1 cyclic): parents[c][parentOffsets[c][t] .. parentOffsets[c][t+1]]
+     * are the parents of term t.
+     */
+    private final int[][] parentOffsets;
+    private final int[][] parents;
+    private final int[][] childOffsets;
+    private final int[][] children;
+
+    private final InMemoryOntologyTerm[] terms;
+
+    private OntologyGraph(Builder builder) {
+        int size = builder.ids.size();
+        this.ids = builder.ids.toArray(new String[size]);
+        this.names = builder.names.toArray(new String[size]);
+        this.synonyms = new String[size][];
+        for (int i = 0; i < size; i++) {
+            Collection<String> termSynonyms = builder.synonyms.get(i);
+            this.synonyms[i] = termSynonyms == null ? new String[0] : termSynonyms.toArray(new String[termSynonyms.size()]);
+        }
+        this.indexes = builder.indexes;
+
+        this.parentOffsets = new int[2][];
+        this.parents = new int[2][];
+        this.childOffsets = new int[2][];
+        this.children = new int[2][];
+        for (int cyclic = 0; cyclic < 2; cyclic++) {
+            IntArray edgeChildren = builder.edgeChildren[cyclic];
+            IntArray edgeParents = builder.edgeParents[cyclic];
+
+            parentOffsets[cyclic] = new int[size + 1];
+            parents[cyclic] = toAdjacency(edgeChildren, edgeParents, size, parentOffsets[cyclic]);
+
+            childOffsets[cyclic] = new int[size + 1];
+            children[cyclic] = toAdjacency(edgeParents, edgeChildren, size, childOffsets[cyclic]);
+            sortByName(children[cyclic], childOffsets[cyclic]);
+        }
+
+        this.terms = new InMemoryOntologyTerm[size];
+        for (int i = 0; i < size; i++) {
+            terms[i] = new InMemoryOntologyTerm(this, i, names[i]);
+        }
+    }
+
+    /**
+     * Builds the graph of all the documents of an ontology index.
+     * @param searcher the searcher of the index
+     * @return the graph
+     * @throws IOException if the index cannot be read
+     */
+    public static OntologyGraph build(OntologyIndexSearcher searcher) throws IOException {
+        return build(searcher.getIndexReader());
+    }
+
+    /**
+     * Builds the graph of all the documents of an ontology index.
+     * @param reader the reader of the index
+     * @return the graph
+     * @throws IOException if the index cannot be read
+     */
+    public static OntologyGraph build(IndexReader reader) throws IOException {
+        Builder builder = new Builder();
+        for (int i = 0; i < reader.maxDoc(); i++) {
+            if (!reader.isDeleted(i)) {
+                builder.add(OntologyHits.toOntologyDocument(reader.document(i, OntologyIndexSearcher.ONTOLOGY_DOCUMENT_FIELDS)));
+            }
+        }
+        return new OntologyGraph(builder);
+    }
+
+    /**
+     * Builds the graph of ontology documents, eg. given by an <code>OntologyIterator</code>.
+     * @param documents the documents, in the order they would be indexed
+     * @return the graph
+     */
+    public static OntologyGraph build(Iterator<OntologyDocument> documents) {
+        Builder builder = new Builder();
+        while (documents.hasNext()) {
+            builder.add(documents.next());
+        }
+        return new OntologyGraph(builder);
+    }
+
+    /**
+     * Gets a term of the graph.
+     * @param id the id of the term
+     * @return the term, null if the graph does not contain it
+     */
+    public OntologyTerm getTerm(String id) {
+        Integer index = indexes.get(id);
+        return index == null ? null : terms[index];
+    }
+
+    /**
+     * @return the number of terms
+     */
+    public int size() {
+        return ids.length;
+    }
+
+    /**
+     * @return the ids of all the terms
+     */
+    public Set<String> getIds() {
+        return Collections.unmodifiableSet(indexes.keySet());
+    }
+
+    ///////////////////////////////
+    // access by term number
+
+    int indexOf(String id) {
+        Integer index = indexes.get(id);
+        return index == null ? -1 : index;
+    }
+
+    String getId(int term) {
+        return ids[term];
+    }
+
+    String[] getSynonyms(int term) {
+        return synonyms[term];
+    }
+
+    InMemoryOntologyTerm getTerm(int term) {
+        return terms[term];
+    }
+
+    int getParentCount(int term, boolean includeCyclic) {
+        int[] offsets = parentOffsets[includeCyclic ? 1 : 0];
+        return offsets[term + 1] - offsets[term];
+    }
+
+    int getParent(int term, int i, boolean includeCyclic) {
+        int cyclic = includeCyclic ? 1 : 0;
+        return parents[cyclic][parentOffsets[cyclic][term] + i];
+    }
+
+    int getChildCount(int term, boolean includeCyclic) {
+        int[] offsets = childOffsets[includeCyclic ? 1 : 0];
+        return offsets[term + 1] - offsets[term];
+    }
+
+    int getChild(int term, int i, boolean includeCyclic) {
+        int cyclic = includeCyclic ? 1 : 0;
+        return children[cyclic][childOffsets[cyclic][term] + i];
+    }
+
+    ///////////////////////////////
+    // private methods
+
+    /**
+     * Groups the edges by source, keeping their order and dropping the duplicates.
+     * @param offsets filled with the offset of the targets of each source
+     * @return the targets
+     */
+    private static int[] toAdjacency(IntArray sources, IntArray targets, int size, int[] offsets) {
+        int[] counts = new int[size + 1];
+        for (int i = 0; i < sources.size(); i++) {
+            counts[sources.get(i) + 1]++;
+        }
+        for (int i = 0; i < size; i++) {
+            counts[i + 1] += counts[i];
+        }
+
+        int[] adjacency = new int[sources.size()];
+        int[] next = Arrays.copyOf(counts, size);
+        for (int i = 0; i < sources.size(); i++) {
+            adjacency[next[sources.get(i)]++] = targets.get(i);
+        }
+
+        // drop the duplicates, compacting the rows
+        int length = 0;
+        for (int source = 0; source < size; source++) {
+            int from = counts[source];
+            offsets[source] = length;
+            for (int i = from; i < counts[source + 1]; i++) {
+                boolean duplicate = false;
+                for (int j = offsets[source]; j < length && !duplicate; j++) {
+                    duplicate = adjacency[j] == adjacency[i];
+                }
+                if (!duplicate) {
+                    adjacency[length++] = adjacency[i];
+                }
+            }
+        }
+        offsets[size] = length;
+
+        return length == adjacency.length ? adjacency : Arrays.copyOf(adjacency, length);
+    }
+
+    /**
+     * Sorts each row by term name, keeping the order of the terms having the same name.
+     */
+    private void sortByName(int[] adjacency, int[] offsets) {
+        for (int source = 0; source < offsets.length - 1; source++) {
+            int from = offsets[source];
+            int to = offsets[source + 1];
+            if (to - from < 2) {
+                continue;
+            }
+            Integer[] row = new Integer[to - from];
+            for (int i = from; i < to; i++) {
+                row[i - from] = adjacency[i];
+            }
+            Arrays.sort(row, new Comparator<Integer>() {
+                public int compare(Integer term1, Integer term2) {
+                    String name1 = names[term1];
+                    String name2 = names[term2];
+                    if (name1 == null) {
+                        return name2 == null ? 0 : -1;
+                    }
+                    return name2 == null ? 1 : name1.compareTo(name2);
+                }
+            });
+            for (int i = from; i < to; i++) {
+                adjacency[i] = row[i - from];
+            }
+        }
+    }
+
+    /**
+     * Collects the terms and relationships of the documents.
+     */
+    private static class Builder {
+
+        private final Map<String, Integer> indexes = new HashMap<String, Integer>();
+        private final List<String> ids = new ArrayList<String>();
+        private final List<String> names = new ArrayList<String>();
+        private final List<Collection<String>> synonyms = new ArrayList<Collection<String>>();
+
+        /**
+         * Whether the name of the term comes from a document where it is the parent, which is preferred as it is the
+         * one a <code>LazyLoadedOntologyTerm</code> would load.
+         */
+        private final BitSet namedAsParent = new BitSet();
+
+        private final IntArray[] edgeParents = new IntArray[]{new IntArray(), new IntArray()};
+        private final IntArray[] edgeChildren = new IntArray[]{new IntArray(), new IntArray()};
+
+        private void add(OntologyDocument document) {
+            int parent = -1;
+            int child = -1;
+
+            if (document.getParentId() != null) {
+                parent = addTerm(document.getParentId(), document.getParentName(), document.getParentSynonyms(), true);
+            }
+            if (document.getChildId() != null) {
+                child = addTerm(document.getChildId(), document.getChildName(), document.getChildSynonyms(), false);
+            }
+
+            if (parent != -1 && child != -1 && parent != child && IS_A.equals(document.getRelationshipType())) {
+                int cyclic = document.isCyclicRelationship() ? 1 : 0;
+                edgeParents[cyclic].add(parent);
+                edgeChildren[cyclic].add(child);
+            }
+        }
+
+        private int addTerm(String id, String name, Collection<String> termSynonyms, boolean asParent) {
+            Integer index = indexes.get(id);
+            if (index == null) {
+                index = ids.size();
+                indexes.put(id, index);
+                ids.add(id);
+                names.add(name);
+                synonyms.add(termSynonyms);
+                if (asParent) {
+                    namedAsParent.set(index);
+                }
+            } else if (asParent && !namedAsParent.get(index)) {
+                names.set(index, name);
+                synonyms.set(index, termSynonyms);
+                namedAsParent.set(index);
+            }
+            return index;
+        }
+    }
+
+    /**
+     * A growable array of ints.
+     */
+    private static class IntArray {
+
+        private int[] values = new int[16];
+        private int size;
+
+        private void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        private int get(int i) {
+            return values[i];
+        }
+
+        private int size() {
+            return size;
+        }
+    }
+}
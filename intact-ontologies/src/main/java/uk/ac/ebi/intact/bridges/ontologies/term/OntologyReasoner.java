@@ -0,0 +1,234 @@
+/**
+ * Copyright 2008 The European Bioinformatics Institute, and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.ebi.intact.bridges.ontologies.term;
+
+import java.util.*;
+
+/**
+ * Answers subsumption questions, such as "is this interaction type a kind of MI:0190", from the ancestor closure of
+ * an <code>OntologyGraph</code>.
+ *
+ * The ancestors of every term, following the non cyclic is_a relationships up to the roots, are computed once when
+ * the reasoner is built and kept as sorted arrays of term numbers. Checking whether a term descends from another is
+ * then a binary search in the ancestors of the first one, and getting all the ancestors of a term does not walk the
+ * graph.
+ *
+ * A reasoner is immutable and can be shared by several threads.
+ *
+ * @version $Id$
+ * @since 2.1.35
+ */
+public class OntologyReasoner {
+
+    private final OntologyGraph graph;
+
+    /**
+     * ancestors[ancestorOffsets[t] .. ancestorOffsets[t+1]] are the ancestors of term t, sorted.
+     */
+    private final int[] ancestorOffsets;
+    private final int[] ancestors;
+
+    public OntologyReasoner(OntologyGraph graph) {
+        if (graph == null) {
+            throw new IllegalArgumentException("You must give a non null ontology graph");
+        }
+        this.graph = graph;
+
+        int[][] closure = computeClosure(graph);
+
+        this.ancestorOffsets = new int[graph.size() + 1];
+        for (int term = 0; term < graph.size(); term++) {
+            ancestorOffsets[term + 1] = ancestorOffsets[term] + closure[term].length;
+        }
+        this.ancestors = new int[ancestorOffsets[graph.size()]];
+        for (int term = 0; term < graph.size(); term++) {
+            System.arraycopy(closure[term], 0, ancestors, ancestorOffsets[term], closure[term].length);
+        }
+    }
+
+    public OntologyGraph getGraph() {
+        return graph;
+    }
+
+    /**
+     * Checks whether a term is the given one or one of its descendants.
+     * @param id the id of the term
+     * @param ancestorId the id of the term it may be a kind of
+     * @return true if both ids are the same or if the term descends from the other, false otherwise or if one of the
+     * terms is unknown
+     */
+    public boolean isA(String id, String ancestorId) {
+        int term = graph.indexOf(id);
+        int ancestor = graph.indexOf(ancestorId);
+        if (term == -1 || ancestor == -1) {
+            return false;
+        }
+        return term == ancestor || isAncestor(term, ancestor);
+    }
+
+    /**
+     * Checks whether a term descends from another one.
+     * @param id the id of the term
+     * @param ancestorId the id of its possible ancestor
+     * @return true if the term descends from the other, false otherwise, if both are the same or if one of the terms
+     * is unknown
+     */
+    public boolean isDescendantOf(String id, String ancestorId) {
+        int term = graph.indexOf(id);
+        int ancestor = graph.indexOf(ancestorId);
+        return term != -1 && ancestor != -1 && isAncestor(term, ancestor);
+    }
+
+    /**
+     * Gets all the ancestors of a term until the roots are reached, the same ones as
+     * <code>OntologyTerm.getAllParentsToRoot()</code> gives.
+     * @param id the id of the term
+     * @return the ancestors, empty if the term is unknown
+     */
+    public Set<OntologyTerm> getAncestors(String id) {
+        int term = graph.indexOf(id);
+        if (term == -1) {
+            return Collections.emptySet();
+        }
+
+        Set<OntologyTerm> terms = new HashSet<OntologyTerm>();
+        for (int i = ancestorOffsets[term]; i < ancestorOffsets[term + 1]; i++) {
+            terms.add(graph.getTerm(ancestors[i]));
+        }
+        return terms;
+    }
+
+    /**
+     * @param id the id of the term
+     * @return the number of ancestors of the term, 0 if the term is unknown
+     */
+    public int getAncestorCount(String id) {
+        int term = graph.indexOf(id);
+        return term == -1 ? 0 : ancestorOffsets[term + 1] - ancestorOffsets[term];
+    }
+
+    ///////////////////////////////
+    // private methods
+
+    private boolean isAncestor(int term, int ancestor) {
+        return Arrays.binarySearch(ancestors, ancestorOffsets[term], ancestorOffsets[term + 1], ancestor) >= 0;
+    }
+
+    /**
+     * Computes the ancestors of the terms parents first, the ancestors of a term being the union of its parents and of
+     * their ancestors. The terms left in a cycle of non cyclic relationships, which should not happen, are walked one
+     * by one.
+     */
+    private static int[][] computeClosure(OntologyGraph graph) {
+        int size = graph.size();
+        int[][] closure = new int[size][];
+
+        int[] pendingParents = new int[size];
+        int[] queue = new int[size];
+        int head = 0;
+        int tail = 0;
+        for (int term = 0; term < size; term++) {
+            pendingParents[term] = graph.getParentCount(term, false);
+            if (pendingParents[term] == 0) {
+                queue[tail++] = term;
+            }
+        }
+
+        while (head < tail) {
+            int term = queue[head++];
+            closure[term] = union(graph, term, closure);
+
+            int count = graph.getChildCount(term, false);
+            for (int i = 0; i < count; i++) {
+                int child = graph.getChild(term, i, false);
+                if (--pendingParents[child] == 0) {
+                    queue[tail++] = child;
+                }
+            }
+        }
+
+        if (tail < size) {
+            for (int term = 0; term < size; term++) {
+                if (closure[term] == null) {
+                    closure[term] = walk(graph, term);
+                }
+            }
+        }
+
+        return closure;
+    }
+
+    private static int[] union(OntologyGraph graph, int term, int[][] closure) {
+        int count = graph.getParentCount(term, false);
+        if (count == 0) {
+            return new int[0];
+        }
+
+        int length = 0;
+        for (int i = 0; i < count; i++) {
+            length += closure[graph.getParent(term, i, false)].length + 1;
+        }
+
+        int[] union = new int[length];
+        length = 0;
+        for (int i = 0; i < count; i++) {
+            int parent = graph.getParent(term, i, false);
+            union[length++] = parent;
+            System.arraycopy(closure[parent], 0, union, length, closure[parent].length);
+            length += closure[parent].length;
+        }
+
+        return sortDistinct(union, length);
+    }
+
+    private static int[] walk(OntologyGraph graph, int term) {
+        BitSet visited = new BitSet(graph.size());
+        int[] queue = new int[graph.size()];
+        int head = 0;
+        int tail = 0;
+        queue[tail++] = term;
+
+        while (head < tail) {
+            int current = queue[head++];
+            int count = graph.getParentCount(current, false);
+            for (int i = 0; i < count; i++) {
+                int parent = graph.getParent(current, i, false);
+                if (parent != term && !visited.get(parent)) {
+                    visited.set(parent);
+                    queue[tail++] = parent;
+                }
+            }
+        }
+
+        int[] walked = new int[visited.cardinality()];
+        int length = 0;
+        for (int ancestor = visited.nextSetBit(0); ancestor >= 0; ancestor = visited.nextSetBit(ancestor + 1)) {
+            walked[length++] = ancestor;
+        }
+        return walked;
+    }
+
+    private static int[] sortDistinct(int[] values, int length) {
+        Arrays.sort(values, 0, length);
+        int distinct = 0;
+        for (int i = 0; i < length; i++) {
+            if (distinct == 0 || values[i] != values[distinct - 1]) {
+                values[distinct++] = values[i];
+            }
+        }
+        return distinct == values.length ? values : Arrays.copyOf(values, distinct);
+    }
+}
@@ -0,0 +1,178 @@
+/**
+ * Copyright 2008 The European Bioinformatics Institute, and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.ebi.intact.bridges.ontologies.term;
+
+import uk.ac.ebi.intact.bridges.ontologies.OntologyIndexSearcher;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Shared cache of the terms of an ontology index, giving one canonical term per id.
+ *
+ * The terms are <code>CachedOntologyTerm</code>s: their parents, children and synonyms are loaded from the index once
+ * and the terms they lead to come from the cache too, so walking a branch again does not query the index. The cache
+ * holds at most a given number of terms, spread over independently locked segments each evicting its least recently
+ * used term, and can be shared by several threads. The terms keep the ids of their parents and children only, so
+ * that the bound applies to the memory used: an evicted term is freed, and is searched again the next time it is met.
+ * A term kept by a caller after its eviction is not the canonical one anymore.
+ *
+ * @version $Id$
+ * @since 2.1.35
+ */
+public class OntologyTermCache {
+
+    /**
+     * Default number of terms kept.
+     */
+    public static final int DEFAULT_MAX_SIZE = 10000;
+
+    private static final int SEGMENT_COUNT = 16;
+
+    private final OntologyIndexSearcher searcher;
+    private final int maxSize;
+    private final List<Map<String, CachedOntologyTerm>> segments;
+
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+
+    public OntologyTermCache(OntologyIndexSearcher searcher) {
+        this(searcher, DEFAULT_MAX_SIZE);
+    }
+
+    /**
+     * @param searcher the searcher of the index the terms are loaded from
+     * @param maxSize maximum number of terms kept
+     */
+    public OntologyTermCache(OntologyIndexSearcher searcher, int maxSize) {
+        if (searcher == null) {
+            throw new IllegalArgumentException("You must give a non null searcher");
+        }
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("The maximum size must be 1 or greater");
+        }
+        this.searcher = searcher;
+        this.maxSize = maxSize;
+
+        int segmentCount = Math.min(SEGMENT_COUNT, maxSize);
+        this.segments = new ArrayList<Map<String, CachedOntologyTerm>>(segmentCount);
+        for (int i = 0; i < segmentCount; i++) {
+            final int capacity = maxSize / segmentCount + (i < maxSize % segmentCount ? 1 : 0);
+            segments.add(new LinkedHashMap<String, CachedOntologyTerm>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, CachedOntologyTerm> eldest) {
+                    return size() > capacity;
+                }
+            });
+        }
+    }
+
+    /**
+     * Gets the term with an id, searching its name in the index the first time only.
+     * @param id the id of the term
+     * @return the canonical term
+     */
+    public OntologyTerm getTerm(String id) {
+        return getTerm(id, null, null, false);
+    }
+
+    /**
+     * Gets the term with an id, creating it with the given name and synonyms if it is not cached.
+     */
+    OntologyTerm getTerm(String id, String name, Collection<String> synonyms) {
+        return getTerm(id, name, synonyms, true);
+    }
+
+    public OntologyIndexSearcher getSearcher() {
+        return searcher;
+    }
+
+    /**
+     * Number of terms cached.
+     */
+    public int size() {
+        int size = 0;
+        for (Map<String, CachedOntologyTerm> segment : segments) {
+            synchronized (segment) {
+                size += segment.size();
+            }
+        }
+        return size;
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    public void clear() {
+        for (Map<String, CachedOntologyTerm> segment : segments) {
+            synchronized (segment) {
+                segment.clear();
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "OntologyTermCache{size=" + size() + ", maxSize=" + maxSize + ", hits=" + hitCount + ", misses=" + missCount + "}";
+    }
+
+    ///////////////////////////////
+    // private methods
+
+    private OntologyTerm getTerm(String id, String name, Collection<String> synonyms, boolean named) {
+        if (id == null) {
+            throw new IllegalArgumentException("You must give a non null id");
+        }
+
+        Map<String, CachedOntologyTerm> segment = segmentFor(id);
+
+        CachedOntologyTerm term;
+        synchronized (segment) {
+            term = segment.get(id);
+        }
+        if (term != null) {
+            hitCount.incrementAndGet();
+            return term;
+        }
+        missCount.incrementAndGet();
+
+        // the index is searched outside of the lock, another thread may have created the term meanwhile
+        CachedOntologyTerm newTerm = named ? new CachedOntologyTerm(this, id, name, synonyms) : new CachedOntologyTerm(this, id);
+        synchronized (segment) {
+            term = segment.get(id);
+            if (term == null) {
+                segment.put(id, newTerm);
+                term = newTerm;
+            }
+        }
+        return term;
+    }
+
+    private Map<String, CachedOntologyTerm> segmentFor(String id) {
+        int hash = id.hashCode();
+        hash ^= (hash >>> 16);
+        return segments.get((hash & 0x7FFFFFFF) % segments.size());
+    }
+}
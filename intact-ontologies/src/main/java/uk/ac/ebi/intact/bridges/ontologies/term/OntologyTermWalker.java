@@ -0,0 +1,205 @@
+/**
+ * Copyright 2008 The European Bioinformatics Institute, and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.ebi.intact.bridges.ontologies.term;
+
+import java.util.*;
+
+/**
+ * Walks the descendants of an ontology term breadth first, one level of depth at a time.
+ *
+ * Each level is expanded from the distinct terms of the previous one, so a term reached through several paths is
+ * expanded once per level instead of once per path, and the walk stops at the given depth, when the visitor asks
+ * for it or when the wanted number of terms is reached.
+ *
+ * @version $Id$
+ * @since 2.1.35
+ */
+public final class OntologyTermWalker {
+
+    /**
+     * No limit on the number of terms returned.
+     */
+    public static final int NO_LIMIT = Integer.MAX_VALUE;
+
+    /**
+     * Receives the terms of a walk level by level.
+     */
+    public interface LevelVisitor {
+
+        /**
+         * Visits the terms found at a level of depth.
+         * @param depth the depth, 1 for the children
+         * @param terms the terms found at that depth
+         * @return true to go on with the next level, false to stop the walk
+         */
+        boolean visitLevel(int depth, Collection<OntologyTerm> terms);
+    }
+
+    private OntologyTermWalker() {
+    }
+
+    /**
+     * Gets the terms at a certain level of depth, as <code>OntologyTerm.getChildrenAtDepth(int)</code>. A term
+     * reached through paths of different lengths is at each of those depths.
+     * @param term the term to start from
+     * @param depth 1 children, 2 grandchildren ... Depth 0 returns the term itself and negative depths nothing.
+     * @return the distinct terms at that depth
+     */
+    public static Collection<OntologyTerm> getChildrenAtDepth(OntologyTerm term, int depth) {
+        return getChildrenAtDepth(term, depth, NO_LIMIT);
+    }
+
+    /**
+     * Gets the terms at a certain level of depth, returning as soon as enough of them are found.
+     * @param term the term to start from
+     * @param depth 1 children, 2 grandchildren ... Depth 0 returns the term itself and negative depths nothing.
+     * @param limit the maximum number of terms returned
+     * @return the distinct terms at that depth, the first ones found if there are more than the limit
+     */
+    public static Collection<OntologyTerm> getChildrenAtDepth(OntologyTerm term, int depth, int limit) {
+        checkArguments(term, limit);
+
+        if (depth < 0) {
+            return new ArrayList<OntologyTerm>();
+        }
+
+        Collection<OntologyTerm> level = new LinkedHashSet<OntologyTerm>();
+        level.add(term);
+
+        for (int currentDepth = 1; currentDepth <= depth && !level.isEmpty(); currentDepth++) {
+            level = expand(level, new HashSet<OntologyTerm>(), currentDepth == depth ? limit : NO_LIMIT);
+        }
+
+        return level;
+    }
+
+    /**
+     * Gets the terms at each level of depth, as <code>getChildrenAtDepth</code> would give them, in one walk.
+     * @param term the term to start from
+     * @param maxDepth the deepest level walked
+     * @return the distinct terms of each level, the term itself first, down to the max depth or to the last level
+     * having terms
+     */
+    public static List<Collection<OntologyTerm>> getLevels(OntologyTerm term, int maxDepth) {
+        checkArguments(term, NO_LIMIT);
+
+        List<Collection<OntologyTerm>> levels = new ArrayList<Collection<OntologyTerm>>();
+        if (maxDepth < 0) {
+            return levels;
+        }
+
+        Collection<OntologyTerm> level = new LinkedHashSet<OntologyTerm>();
+        level.add(term);
+
+        for (int depth = 0; depth <= maxDepth && !level.isEmpty(); depth++) {
+            levels.add(level);
+            level = expand(level, new HashSet<OntologyTerm>(), NO_LIMIT);
+        }
+
+        return levels;
+    }
+
+    /**
+     * Walks the levels of the descendants of a term, each term being given once at the first depth it is found.
+     * @param term the term to start from
+     * @param maxDepth the deepest level walked
+     * @param visitor the visitor receiving the terms of each level
+     */
+    public static void walkDescendants(OntologyTerm term, int maxDepth, LevelVisitor visitor) {
+        walkDescendants(term, maxDepth, NO_LIMIT, visitor);
+    }
+
+    /**
+     * Walks the levels of the descendants of a term, each term being given once at the first depth it is found.
+     * @param term the term to start from
+     * @param maxDepth the deepest level walked
+     * @param limit the maximum number of terms given to the visitor over all the levels
+     * @param visitor the visitor receiving the terms of each level
+     */
+    public static void walkDescendants(OntologyTerm term, int maxDepth, int limit, LevelVisitor visitor) {
+        checkArguments(term, limit);
+        if (visitor == null) {
+            throw new IllegalArgumentException("You must give a non null visitor");
+        }
+
+        Set<OntologyTerm> visited = new HashSet<OntologyTerm>();
+        visited.add(term);
+
+        Collection<OntologyTerm> level = Collections.singletonList(term);
+        int remaining = limit;
+
+        for (int depth = 1; depth <= maxDepth && remaining > 0; depth++) {
+            level = expand(level, visited, remaining);
+            if (level.isEmpty()) {
+                return;
+            }
+            remaining -= level.size();
+            if (!visitor.visitLevel(depth, level)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Gets the distinct descendants of a term down to a depth, the closest ones first.
+     * @param term the term to start from
+     * @param maxDepth the deepest level walked
+     * @param limit the maximum number of terms returned
+     * @return the descendants
+     */
+    public static Set<OntologyTerm> getDescendants(OntologyTerm term, int maxDepth, int limit) {
+        final Set<OntologyTerm> descendants = new LinkedHashSet<OntologyTerm>();
+        walkDescendants(term, maxDepth, limit, new LevelVisitor() {
+            public boolean visitLevel(int depth, Collection<OntologyTerm> terms) {
+                descendants.addAll(terms);
+                return true;
+            }
+        });
+        return descendants;
+    }
+
+    ///////////////////////////////
+    // private methods
+
+    private static void checkArguments(OntologyTerm term, int limit) {
+        if (term == null) {
+            throw new IllegalArgumentException("You must give a non null term");
+        }
+        if (limit < 1) {
+            throw new IllegalArgumentException("The limit must be 1 or greater");
+        }
+    }
+
+    /**
+     * Gets the children of the terms of a level which were not visited yet, marking them as visited.
+     */
+    private static Collection<OntologyTerm> expand(Collection<OntologyTerm> level, Set<OntologyTerm> visited, int limit) {
+        Collection<OntologyTerm> nextLevel = new LinkedHashSet<OntologyTerm>();
+
+        for (OntologyTerm term : level) {
+            for (OntologyTerm child : term.getChildren()) {
+                if (visited.add(child)) {
+                    nextLevel.add(child);
+                    if (nextLevel.size() >= limit) {
+                        return nextLevel;
+                    }
+                }
+            }
+        }
+
+        return nextLevel;
+    }
+}
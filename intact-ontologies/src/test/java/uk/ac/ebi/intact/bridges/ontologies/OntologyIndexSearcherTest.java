@@ -15,7 +15,11 @@
  */
 package uk.ac.ebi.intact.bridges.ontologies;
 
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.Query;
 import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.SortField;
+import org.apache.lucene.search.TermQuery;
 import org.apache.lucene.store.Directory;
 import org.apache.lucene.store.RAMDirectory;
 import org.junit.*;
@@ -25,6 +29,7 @@ import uk.ac.ebi.intact.bridges.ontologies.iterator.OntologyIterator;
 
 import java.io.IOException;
 import java.net.URL;
+import java.util.Iterator;
 
 /**
  * TODO comment that class header
@@ -90,6 +95,23 @@ public class OntologyIndexSearcherTest {
         Assert.assertEquals("GO:0016032", ontologyHits.doc(23).getChildId());
     }
 
+    @Test
+    public void searchAll_sortedAsSortedSearch() throws Exception {
+        final Query query = new TermQuery(new Term(FieldName.PARENT_ID, "GO:0008150"));
+
+        for (Sort sort : new Sort[]{new Sort(FieldName.CHILDREN_NAME_SORTABLE),
+                                    new Sort(new SortField(FieldName.CHILDREN_NAME_SORTABLE, SortField.STRING, true)),
+                                    new Sort(new SortField[]{SortField.FIELD_SCORE, SortField.FIELD_DOC})}) {
+            final OntologyHits allHits = searcher.searchAll(query, sort);
+            final OntologyHits topHits = searcher.searchTop(query, 24, sort);
+            Assert.assertEquals(24, allHits.length());
+
+            for (int i = 0; i < allHits.length(); i++) {
+                Assert.assertEquals(topHits.id(i), allHits.id(i));
+            }
+        }
+    }
+
     @Test
     public void searchByChild_default() throws Exception {
         final OntologyHits ontologyHits = searcher.searchByChildId("GO:0030154", new Sort(FieldName.CHILDREN_NAME_SORTABLE));
@@ -109,4 +131,46 @@ public class OntologyIndexSearcherTest {
 
         Assert.assertEquals(3, doc.getChildSynonyms().size());
     }
-}
\ No newline at end of file
+
+    @Test
+    public void searchByParent_relevance() throws Exception {
+        final OntologyHits ontologyHits = searcher.searchByParentId("GO:0008150");
+        Assert.assertEquals(24, ontologyHits.length());
+        Assert.assertEquals(24, ontologyHits.getTotalHits());
+
+        for (int i = 1; i < ontologyHits.length(); i++) {
+            Assert.assertTrue(ontologyHits.score(i - 1) >= ontologyHits.score(i));
+        }
+    }
+
+    @Test
+    public void searchByChildName_top() throws Exception {
+        final OntologyHits allHits = searcher.searchByChildName("cell");
+        Assert.assertTrue(allHits.length() > 2);
+
+        final OntologyHits topHits = searcher.searchByChildName("cell", 2);
+        Assert.assertEquals(2, topHits.length());
+        Assert.assertEquals(allHits.length(), topHits.getTotalHits());
+        Assert.assertEquals(allHits.id(0), topHits.id(0));
+        Assert.assertEquals(allHits.id(1), topHits.id(1));
+    }
+
+    @Test
+    public void searchByChild_none() throws Exception {
+        final OntologyHits ontologyHits = searcher.searchByChildId("GO:XXXXXXX", new Sort(FieldName.CHILDREN_NAME_SORTABLE));
+        Assert.assertEquals(0, ontologyHits.length());
+        Assert.assertFalse(ontologyHits.documents().hasNext());
+    }
+
+    @Test
+    public void documents() throws Exception {
+        final OntologyHits ontologyHits = searcher.searchByParentId("GO:0008150", new Sort(FieldName.CHILDREN_NAME_SORTABLE));
+
+        int count = 0;
+        for (Iterator<OntologyDocument> iterator = ontologyHits.documents(); iterator.hasNext(); count++) {
+            Assert.assertEquals(ontologyHits.doc(count).getChildId(), iterator.next().getChildId());
+        }
+
+        Assert.assertEquals(24, count);
+    }
+}
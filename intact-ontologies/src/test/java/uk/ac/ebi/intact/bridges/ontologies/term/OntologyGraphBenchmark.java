@@ -0,0 +1,85 @@
+package uk.ac.ebi.intact.bridges.ontologies.term;
+
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.RAMDirectory;
+import uk.ac.ebi.intact.bridges.ontologies.OntologyIndexSearcher;
+import uk.ac.ebi.intact.bridges.ontologies.OntologyIndexWriter;
+import uk.ac.ebi.intact.bridges.ontologies.iterator.OboOntologyIterator;
+import uk.ac.ebi.intact.bridges.ontologies.iterator.OntologyIterator;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Measures the ancestor (getAllParentsToRoot) and descendant (getChildrenAtDepth) queries per second answered by the
+ * LazyLoadedOntologyTerm, querying the index, and by the InMemoryOntologyTerm of an OntologyGraph, on all the terms of
+ * the GO slim.
+ *
+ * Not a unit test: run its main method by hand, eg. with <code>mvn exec:java -Dexec.classpathScope=test</code>.
+ *
+ * @version $Id$
+ * @since 2.1.35
+ */
+public class OntologyGraphBenchmark {
+
+    private static final int WARMUP_ITERATIONS = 5;
+
+    private static final int ITERATIONS = 20;
+
+    private static final int DEPTH = 2;
+
+    public static void main(String[] args) throws Exception {
+        Directory directory = new RAMDirectory();
+        OntologyIterator ontologyIterator = new OboOntologyIterator("go", OntologyGraphBenchmark.class.getResource("/META-INF/goslim_generic.obo"));
+        OntologyIndexWriter indexer = new OntologyIndexWriter(directory, true);
+        while (ontologyIterator.hasNext()) {
+            indexer.addDocument(ontologyIterator.next());
+        }
+        indexer.optimize();
+        indexer.close();
+
+        OntologyIndexSearcher searcher = new OntologyIndexSearcher(directory);
+
+        long start = System.nanoTime();
+        OntologyGraph graph = OntologyGraph.build(searcher);
+        System.out.println("graph of " + graph.size() + " terms built in " + (System.nanoTime() - start) / 1000000 + " ms");
+
+        List<String> ids = new ArrayList<String>(graph.getIds());
+
+        run("lazy ancestors", ids, searcher, null, true);
+        run("graph ancestors", ids, null, graph, true);
+        run("lazy descendants", ids, searcher, null, false);
+        run("graph descendants", ids, null, graph, false);
+
+        searcher.close();
+        directory.close();
+    }
+
+    /**
+     * Queries each term, from the graph if given or from a new LazyLoadedOntologyTerm otherwise so that the terms
+     * loaded by the previous iterations are not reused.
+     */
+    private static void run(String name, List<String> ids, OntologyIndexSearcher searcher, OntologyGraph graph, boolean ancestors) {
+        long sink = 0;
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            sink += query(ids, searcher, graph, ancestors);
+        }
+
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            sink += query(ids, searcher, graph, ancestors);
+        }
+        long time = System.nanoTime() - start;
+
+        System.out.println(name + ": " + ((long) ITERATIONS * ids.size() * 1000000000L / time) + " queries/s (" + sink + ")");
+    }
+
+    private static int query(List<String> ids, OntologyIndexSearcher searcher, OntologyGraph graph, boolean ancestors) {
+        int count = 0;
+        for (String id : ids) {
+            OntologyTerm term = graph != null ? graph.getTerm(id) : new LazyLoadedOntologyTerm(searcher, id);
+            count += ancestors ? term.getAllParentsToRoot().size() : term.getChildrenAtDepth(DEPTH).size();
+        }
+        return count;
+    }
+}
@@ -0,0 +1,136 @@
+package uk.ac.ebi.intact.bridges.ontologies.term;
+
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.RAMDirectory;
+import org.junit.*;
+import uk.ac.ebi.intact.bridges.ontologies.OntologyDocument;
+import uk.ac.ebi.intact.bridges.ontologies.OntologyIndexSearcher;
+import uk.ac.ebi.intact.bridges.ontologies.OntologyIndexWriter;
+import uk.ac.ebi.intact.bridges.ontologies.iterator.OboOntologyIterator;
+import uk.ac.ebi.intact.bridges.ontologies.iterator.OntologyIterator;
+
+import java.net.URL;
+import java.util.Arrays;
+import java.util.HashSet;
+
+/**
+ * OntologyReasoner Tester.
+ *
+ * @version $Id$
+ * @since 2.1.35
+ */
+public class OntologyReasonerTest {
+
+    private static OntologyReasoner reasoner;
+
+    @BeforeClass
+    public static void beforeClass() throws Exception {
+        Directory directory = new RAMDirectory();
+
+        final URL goSlimUrl = OntologyReasonerTest.class.getResource("/META-INF/goslim_generic.obo");
+        OntologyIterator ontologyIterator = new OboOntologyIterator("go", goSlimUrl);
+
+        OntologyIndexWriter indexer = new OntologyIndexWriter(directory, true);
+        while (ontologyIterator.hasNext()) {
+            indexer.addDocument(ontologyIterator.next());
+        }
+        indexer.flush();
+        indexer.optimize();
+        indexer.close();
+
+        OntologyIndexSearcher searcher = new OntologyIndexSearcher(directory);
+        reasoner = new OntologyReasoner(OntologyGraph.build(searcher));
+        searcher.close();
+        directory.close();
+    }
+
+    @AfterClass
+    public static void afterClass() throws Exception {
+        reasoner = null;
+    }
+
+    @Test
+    public void isA() throws Exception {
+        Assert.assertTrue(reasoner.isA("GO:0044238", "GO:0008152"));
+        Assert.assertTrue(reasoner.isA("GO:0044238", "GO:0008150"));
+        Assert.assertTrue(reasoner.isA("GO:0044238", "GO:0044238"));
+
+        Assert.assertFalse(reasoner.isA("GO:0008150", "GO:0044238"));
+        Assert.assertFalse(reasoner.isA("GO:0044238", "GO:0030154"));
+        Assert.assertFalse(reasoner.isA("GO:0044238", "GO:XXXXXXX"));
+        Assert.assertFalse(reasoner.isA("GO:XXXXXXX", "GO:XXXXXXX"));
+    }
+
+    @Test
+    public void isDescendantOf() throws Exception {
+        Assert.assertTrue(reasoner.isDescendantOf("GO:0044238", "GO:0008150"));
+        Assert.assertFalse(reasoner.isDescendantOf("GO:0044238", "GO:0044238"));
+        Assert.assertFalse(reasoner.isDescendantOf("GO:0008150", "GO:0044238"));
+    }
+
+    @Test
+    public void getAncestors() throws Exception {
+        Assert.assertEquals(2, reasoner.getAncestorCount("GO:0044238"));
+        Assert.assertEquals(new HashSet<OntologyTerm>(Arrays.asList(reasoner.getGraph().getTerm("GO:0008152"),
+                                                                    reasoner.getGraph().getTerm("GO:0008150"))),
+                            reasoner.getAncestors("GO:0044238"));
+
+        Assert.assertEquals(0, reasoner.getAncestors("GO:0008150").size());
+        Assert.assertEquals(0, reasoner.getAncestors("GO:XXXXXXX").size());
+    }
+
+    @Test
+    public void getAncestors_sameAsParentsToRoot() throws Exception {
+        for (String id : reasoner.getGraph().getIds()) {
+            Assert.assertEquals(id, reasoner.getGraph().getTerm(id).getAllParentsToRoot(), reasoner.getAncestors(id));
+        }
+    }
+
+    @Test
+    public void complexParents() throws Exception {
+        //    root
+        //    / |\
+        // c11  | \
+        //  |  /   \
+        //  c21    c22          || -> disjoint_from "cyclic" dependency
+        //  ||   __/
+        //  ||  /
+        //  c31
+        //
+
+        OntologyGraph graph = OntologyGraph.build(Arrays.asList(
+                new OntologyDocument("test", null, null,  "ROOT", "root", null, false),
+                new OntologyDocument("test", "ROOT", "root", "C1-1", "children 1-1", "OBO_REL:is_a", false),
+                new OntologyDocument("test", "ROOT", "root", "C2-1", "children 2-1", "regulates", false),
+                new OntologyDocument("test", "ROOT", "root", "C2-2", "children 2-2", "OBO_REL:is_a", false),
+                new OntologyDocument("test", "C1-1", "children 1-1", "C2-1", "children 2-1", "OBO_REL:is_a", false),
+                new OntologyDocument("test", "C2-1", "children 2-1", "C3-1", "children 3-1", "regulates", false),
+                new OntologyDocument("test", "C2-2", "children 2-2", "C3-1", "children 3-1", "OBO_REL:is_a", false),
+                new OntologyDocument("test", "C3-1", "children 3-1", "C2-1", "children 2-1", "disjoint_from", false),
+                new OntologyDocument("test", "C3-1", "children 3-1", null, null, null, false)).iterator());
+
+        OntologyReasoner complexReasoner = new OntologyReasoner(graph);
+
+        Assert.assertEquals(2, complexReasoner.getAncestorCount("C3-1"));
+        Assert.assertTrue(complexReasoner.isA("C3-1", "ROOT"));
+        Assert.assertTrue(complexReasoner.isA("C2-1", "C1-1"));
+        Assert.assertFalse(complexReasoner.isA("C3-1", "C2-1"));
+        Assert.assertFalse(complexReasoner.isA("C2-1", "C3-1"));
+    }
+
+    @Test
+    public void cycle() throws Exception {
+        OntologyGraph graph = OntologyGraph.build(Arrays.asList(
+                new OntologyDocument("test", "A", "a", "B", "b", "OBO_REL:is_a", false),
+                new OntologyDocument("test", "B", "b", "C", "c", "OBO_REL:is_a", false),
+                new OntologyDocument("test", "C", "c", "A", "a", "OBO_REL:is_a", false),
+                new OntologyDocument("test", "C", "c", "D", "d", "OBO_REL:is_a", false)).iterator());
+
+        OntologyReasoner cyclicReasoner = new OntologyReasoner(graph);
+
+        Assert.assertEquals(2, cyclicReasoner.getAncestorCount("A"));
+        Assert.assertEquals(3, cyclicReasoner.getAncestorCount("D"));
+        Assert.assertTrue(cyclicReasoner.isDescendantOf("D", "B"));
+        Assert.assertFalse(cyclicReasoner.isDescendantOf("A", "A"));
+    }
+}
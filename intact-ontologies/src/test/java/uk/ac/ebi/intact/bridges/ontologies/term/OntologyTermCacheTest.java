@@ -0,0 +1,143 @@
+package uk.ac.ebi.intact.bridges.ontologies.term;
+
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.RAMDirectory;
+import org.junit.*;
+import uk.ac.ebi.intact.bridges.ontologies.OntologyIndexSearcher;
+import uk.ac.ebi.intact.bridges.ontologies.OntologyIndexWriter;
+import uk.ac.ebi.intact.bridges.ontologies.iterator.OboOntologyIterator;
+import uk.ac.ebi.intact.bridges.ontologies.iterator.OntologyIterator;
+
+import java.net.URL;
+import java.util.Set;
+
+/**
+ * OntologyTermCache Tester.
+ *
+ * @version $Id$
+ * @since 2.1.35
+ */
+public class OntologyTermCacheTest {
+
+    private static Directory directory;
+    private OntologyIndexSearcher searcher;
+
+    @BeforeClass
+    public static void beforeClass() throws Exception {
+        directory = new RAMDirectory();
+
+        final URL goSlimUrl = OntologyTermCacheTest.class.getResource("/META-INF/goslim_generic.obo");
+        OntologyIterator ontologyIterator = new OboOntologyIterator("go", goSlimUrl);
+
+        OntologyIndexWriter indexer = new OntologyIndexWriter(directory, true);
+        while (ontologyIterator.hasNext()) {
+            indexer.addDocument(ontologyIterator.next());
+        }
+        indexer.flush();
+        indexer.optimize();
+        indexer.close();
+    }
+
+    @AfterClass
+    public static void afterClass() throws Exception {
+        directory.close();
+        directory = null;
+    }
+
+    @Before
+    public void before() throws Exception {
+        searcher = new OntologyIndexSearcher(directory);
+    }
+
+    @After
+    public void after() throws Exception {
+        searcher.close();
+        searcher = null;
+    }
+
+    @Test
+    public void getTerm_canonical() throws Exception {
+        OntologyTermCache cache = new OntologyTermCache(searcher);
+
+        OntologyTerm root = cache.getTerm("GO:0008150");
+        Assert.assertEquals("biological_process", root.getName());
+        Assert.assertSame(root, cache.getTerm("GO:0008150"));
+        Assert.assertEquals(1, cache.getMissCount());
+        Assert.assertEquals(1, cache.getHitCount());
+
+        Assert.assertEquals(21, root.getChildren().size());
+        Assert.assertEquals(root.getChildren(), root.getChildren());
+
+        OntologyTerm child = root.getChildren().get(3);
+        Assert.assertEquals("GO:0030154", child.getId());
+        Assert.assertSame(child, cache.getTerm("GO:0030154"));
+        Assert.assertSame(root, child.getParents().get(0));
+    }
+
+    @Test
+    public void allParentsToRoot() throws Exception {
+        OntologyTermCache cache = new OntologyTermCache(searcher);
+
+        final Set<OntologyTerm> parents = cache.getTerm("GO:0044238").getAllParentsToRoot();
+        Assert.assertEquals(2, parents.size());
+        Assert.assertTrue(parents.contains(cache.getTerm("GO:0008152")));
+        Assert.assertTrue(parents.contains(cache.getTerm("GO:0008150")));
+
+        Assert.assertEquals(7, cache.getTerm("GO:0044238").getAllParentsToRoot(true).size());
+    }
+
+    @Test
+    public void childrenAtDepth() throws Exception {
+        OntologyTermCache cache = new OntologyTermCache(searcher);
+        OntologyTerm root = cache.getTerm("GO:0008150");
+
+        Assert.assertEquals(21, root.getChildrenAtDepth(1).size());
+        Assert.assertEquals(12, root.getChildrenAtDepth(2).size());
+
+        // the second walk finds every term in the cache
+        long misses = cache.getMissCount();
+        Assert.assertEquals(12, root.getChildrenAtDepth(2).size());
+        Assert.assertEquals(misses, cache.getMissCount());
+    }
+
+    @Test
+    public void bounded() throws Exception {
+        OntologyTermCache cache = new OntologyTermCache(searcher, 5);
+
+        cache.getTerm("GO:0008150").getChildren();
+
+        Assert.assertTrue(cache.size() <= 5);
+        Assert.assertEquals(5, cache.getMaxSize());
+
+        cache.clear();
+        Assert.assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void bounded_evictedTermSearchedAgain() throws Exception {
+        OntologyTermCache cache = new OntologyTermCache(searcher, 1);
+
+        OntologyTerm child = cache.getTerm("GO:0030154");
+        OntologyTerm root = child.getParents().get(0);
+        Assert.assertEquals("GO:0008150", root.getId());
+        Assert.assertSame(root, cache.getTerm("GO:0008150"));
+
+        // the child was evicted by its parent and is searched again
+        OntologyTerm searchedAgain = cache.getTerm("GO:0030154");
+        Assert.assertNotSame(child, searchedAgain);
+        Assert.assertEquals(child, searchedAgain);
+        Assert.assertEquals(1, cache.size());
+
+        // the ids kept are resolved to the terms currently cached
+        OntologyTerm rootAgain = searchedAgain.getParents().get(0);
+        Assert.assertNotSame(root, rootAgain);
+        Assert.assertSame(rootAgain, cache.getTerm("GO:0008150"));
+        Assert.assertEquals(21, rootAgain.getChildren().size());
+        Assert.assertTrue(cache.size() <= 1);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void getTerm_null() throws Exception {
+        new OntologyTermCache(searcher).getTerm(null);
+    }
+}
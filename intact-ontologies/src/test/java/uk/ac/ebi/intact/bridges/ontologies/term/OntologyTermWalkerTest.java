@@ -0,0 +1,110 @@
+package uk.ac.ebi.intact.bridges.ontologies.term;
+
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import uk.ac.ebi.intact.bridges.ontologies.OntologyDocument;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * OntologyTermWalker Tester.
+ *
+ * @version $Id$
+ * @since 2.1.35
+ */
+public class OntologyTermWalkerTest {
+
+    private static final int LEVELS = 40;
+
+    private static OntologyTerm root;
+
+    @BeforeClass
+    public static void beforeClass() throws Exception {
+        // ROOT with two children, each term of a level being the parent of the two terms of the next one: 2^40 paths
+        // lead to the deepest terms
+        List<OntologyDocument> documents = new ArrayList<OntologyDocument>();
+        for (int level = 0; level < LEVELS; level++) {
+            for (int i = 0; i < 2; i++) {
+                String parentId = level == 0 ? "ROOT" : "T" + level + "-" + i;
+                for (int j = 0; j < 2; j++) {
+                    String childId = "T" + (level + 1) + "-" + j;
+                    documents.add(new OntologyDocument("test", parentId, parentId, childId, childId, "OBO_REL:is_a", false));
+                }
+            }
+        }
+
+        root = OntologyGraph.build(documents.iterator()).getTerm("ROOT");
+    }
+
+    @Test
+    public void getChildrenAtDepth() throws Exception {
+        Assert.assertEquals(1, OntologyTermWalker.getChildrenAtDepth(root, 0).size());
+        Assert.assertEquals(root, OntologyTermWalker.getChildrenAtDepth(root, 0).iterator().next());
+        Assert.assertEquals(2, OntologyTermWalker.getChildrenAtDepth(root, 1).size());
+        Assert.assertEquals(2, OntologyTermWalker.getChildrenAtDepth(root, LEVELS).size());
+        Assert.assertEquals(0, OntologyTermWalker.getChildrenAtDepth(root, LEVELS + 1).size());
+        Assert.assertEquals(0, OntologyTermWalker.getChildrenAtDepth(root, -1).size());
+    }
+
+    @Test
+    public void getChildrenAtDepth_limit() throws Exception {
+        Collection<OntologyTerm> terms = OntologyTermWalker.getChildrenAtDepth(root, LEVELS, 1);
+
+        Assert.assertEquals(1, terms.size());
+        Assert.assertEquals("T" + LEVELS + "-0", terms.iterator().next().getId());
+    }
+
+    @Test
+    public void getLevels() throws Exception {
+        List<Collection<OntologyTerm>> levels = OntologyTermWalker.getLevels(root, 100);
+
+        Assert.assertEquals(LEVELS + 1, levels.size());
+        Assert.assertEquals(1, levels.get(0).size());
+        Assert.assertEquals(2, levels.get(LEVELS).size());
+
+        Assert.assertEquals(3, OntologyTermWalker.getLevels(root, 2).size());
+    }
+
+    @Test
+    public void getDescendants() throws Exception {
+        Assert.assertEquals(2 * LEVELS, OntologyTermWalker.getDescendants(root, 100, OntologyTermWalker.NO_LIMIT).size());
+        Assert.assertEquals(6, OntologyTermWalker.getDescendants(root, 3, OntologyTermWalker.NO_LIMIT).size());
+        Assert.assertEquals(5, OntologyTermWalker.getDescendants(root, 100, 5).size());
+    }
+
+    @Test
+    public void walkDescendants_stop() throws Exception {
+        final List<Integer> depths = new ArrayList<Integer>();
+
+        OntologyTermWalker.walkDescendants(root, 100, new OntologyTermWalker.LevelVisitor() {
+            public boolean visitLevel(int depth, Collection<OntologyTerm> terms) {
+                depths.add(depth);
+                Assert.assertEquals(2, terms.size());
+                return depth < 4;
+            }
+        });
+
+        Assert.assertEquals(4, depths.size());
+    }
+
+    @Test
+    public void walkDescendants_termAtSeveralDepths() throws Exception {
+        OntologyTerm term = OntologyGraph.build(Arrays.asList(
+                new OntologyDocument("test", "A", "a", "B", "b", "OBO_REL:is_a", false),
+                new OntologyDocument("test", "B", "b", "C", "c", "OBO_REL:is_a", false),
+                new OntologyDocument("test", "A", "a", "C", "c", "OBO_REL:is_a", false)).iterator()).getTerm("A");
+
+        // C is a child and a grandchild of A, but it is walked once
+        Assert.assertEquals(2, OntologyTermWalker.getDescendants(term, 2, OntologyTermWalker.NO_LIMIT).size());
+        Assert.assertEquals(1, OntologyTermWalker.getChildrenAtDepth(term, 2).size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void getChildrenAtDepth_wrongLimit() throws Exception {
+        OntologyTermWalker.getChildrenAtDepth(root, 1, 0);
+    }
+}
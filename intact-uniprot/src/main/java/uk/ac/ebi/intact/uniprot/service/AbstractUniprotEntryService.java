@@ -0,0 +1,1139 @@
+/*
+ * Copyright (c) 2002 The European Bioinformatics Institute, and others.
+ * All rights reserved. Please see the file LICENSE
+ * in the root directory of this distribution.
+ */
+package uk.ac.ebi.intact.uniprot.service;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import uk.ac.ebi.intact.uniprot.model.*;
+import uk.ac.ebi.intact.uniprot.model.Organism;
+import uk.ac.ebi.intact.uniprot.service.cache.BoundedConcurrentCache;
+import uk.ac.ebi.intact.uniprot.service.crossRefAdapter.ReflectionCrossReferenceBuilder;
+import uk.ac.ebi.intact.uniprot.service.crossRefAdapter.UniprotCrossReference;
+import uk.ac.ebi.intact.uniprot.service.metrics.UniprotServiceMetrics;
+import uk.ac.ebi.intact.uniprot.service.referenceFilter.CrossReferenceFilter;
+import uk.ac.ebi.intact.uniprot.service.remote.RemoteCallException;
+import uk.ac.ebi.kraken.interfaces.uniprot.*;
+import uk.ac.ebi.kraken.interfaces.uniprot.comments.*;
+import uk.ac.ebi.kraken.interfaces.uniprot.description.Field;
+import uk.ac.ebi.kraken.interfaces.uniprot.description.FieldType;
+import uk.ac.ebi.kraken.interfaces.uniprot.description.Name;
+import uk.ac.ebi.kraken.interfaces.uniprot.features.*;
+import uk.ac.ebi.kraken.interfaces.uniprot.genename.GeneNameSynonym;
+import uk.ac.ebi.kraken.interfaces.uniprot.genename.ORFName;
+import uk.ac.ebi.kraken.interfaces.uniprot.genename.OrderedLocusName;
+
+import java.util.*;
+
+/**
+ * UniprotService building its proteins from UniProt JAPI entries, whatever they are read from: the conversion of the
+ * entries (splice variants, feature chains, cross reference filtering, external isoforms) and the retrieval methods
+ * built on top of it are shared, the subclasses only find the entries of an identifier.
+ *
+ * @version $Id$
+ * @since 2.1.35
+ */
+public abstract class AbstractUniprotEntryService extends AbstractUniprotService {
+
+    /**
+     * Sets up a logger for that class.
+     */
+    public static final Log log = LogFactory.getLog( AbstractUniprotEntryService.class );
+
+    /**
+     * Default number of proteins read ahead of the caller when iterating over a query.
+     */
+    public static final int DEFAULT_PREFETCH_SIZE = 200;
+
+    /**
+     * Default number of external isoform parents and sequences remembered.
+     */
+    public static final int DEFAULT_EXTERNAL_ISOFORM_CACHE_SIZE = 1000;
+
+    /**
+     * Name of the conversion of UniProt entries in the metrics.
+     */
+    public static final String CONVERT_OPERATION = "convert";
+
+    /**
+     * Converts the cross references, shared by all the converting threads.
+     */
+    private final ReflectionCrossReferenceBuilder crossReferenceBuilder = new ReflectionCrossReferenceBuilder();
+
+    /**
+     * If true, only the cross references of the databases selected by the filter are read from the entries.
+     */
+    private boolean selectedDatabasesOnly;
+
+    private volatile SelectedDatabaseTypes selectedDatabaseTypes;
+
+    /**
+     * Pool of the organisms, database names, keywords and diseases shared by the proteins built.
+     */
+    private UniprotModelInterner interner = new UniprotModelInterner();
+
+    /**
+     * Entries found for the parent ACs of external isoforms. Softly referenced as entries are large.
+     */
+    private BoundedConcurrentCache<String, List<UniProtEntry>> externalParentEntries =
+            new BoundedConcurrentCache<String, List<UniProtEntry>>( DEFAULT_EXTERNAL_ISOFORM_CACHE_SIZE, true );
+
+    /**
+     * Sequences of the external isoforms already resolved, by isoform AC.
+     */
+    private BoundedConcurrentCache<String, String> externalIsoformSequences =
+            new BoundedConcurrentCache<String, String>( DEFAULT_EXTERNAL_ISOFORM_CACHE_SIZE );
+
+    public AbstractUniprotEntryService() {
+        super();
+    }
+
+    public AbstractUniprotEntryService( CrossReferenceFilter filter ) {
+        super( filter );
+    }
+
+    public Collection<UniprotProtein> retrieve( String ac ) {
+        return retrieve(ac, true);
+    }
+
+    /**
+     * Retrieves proteins and variants (protein transcripts) for the accession provided. It is the combination of calling
+     * the retrieve(ac) and the retriveProteinTranscripts(ac) methods.
+     * @param ac the accession to search
+     * @return proteins or variants, using an interface common to the UniprotProtein and UniprotProteinTranscript classes.
+     */
+    public Collection<UniprotProteinLike> retrieveAny( String ac ) {
+        Collection<UniprotProteinLike> protsAndVariants = new ArrayList<UniprotProteinLike>();
+        protsAndVariants.addAll(retrieve(ac));
+        protsAndVariants.addAll(retrieveProteinTranscripts(ac));
+
+        return protsAndVariants;
+    }
+
+    /**
+     * Retrieves proteins and variants (protein transcripts) for many accessions at once, as retrieveAny(ac) would for
+     * each of them.
+     *
+     * Splice variant and feature chain ids are resolved from the entry of their master protein, each master entry
+     * being fetched only once - in batch with the protein ACs given - however many of its variants are requested.
+     * The ids whose master cannot be read from the id itself (eg. PRO_xxxxxxxxxx) or whose variant is not found in
+     * that entry are retrieved one by one.
+     *
+     * @param acs the accessions to search
+     * @return an associative structure where each given ac is an entry and associated are the proteins or variants
+     * found.
+     */
+    public Map<String, Collection<UniprotProteinLike>> retrieveAny( Collection<String> acs ) {
+        if ( acs == null ) {
+            throw new IllegalArgumentException( "You must give a non null List of UniProt ACs." );
+        }
+
+        if ( acs.isEmpty() ) {
+            throw new IllegalArgumentException( "You must give a non empty List of UniProt ACs." );
+        }
+
+        Map<String, Collection<UniprotProteinLike>> results = new HashMap<String, Collection<UniprotProteinLike>>( acs.size() );
+
+        // master AC of each given accession
+        Map<String, String> masterAcs = new LinkedHashMap<String, String>( acs.size() );
+        List<String> singleAcs = new ArrayList<String>();
+        for ( String ac : new LinkedHashSet<String>( acs ) ) {
+            if ( ac == null ) {
+                throw new IllegalArgumentException( "You must give a List of non null UniProt ACs." );
+            }
+
+            String upperCaseAc = ac.toUpperCase();
+            switch ( IdentifierChecker.classify( upperCaseAc ) ) {
+                case SPLICE_VARIANT:
+                case FEATURE_CHAIN:
+                    int index = upperCaseAc.indexOf( '-' );
+                    if ( index == -1 ) {
+                        singleAcs.add( ac );
+                    } else {
+                        masterAcs.put( ac, upperCaseAc.substring( 0, index ) );
+                    }
+                    break;
+                default:
+                    masterAcs.put( ac, upperCaseAc );
+            }
+        }
+
+        Map<String, Collection<UniprotProtein>> masters = Collections.emptyMap();
+        if ( !masterAcs.isEmpty() ) {
+            masters = retrieve( new LinkedHashSet<String>( masterAcs.values() ), true );
+        }
+
+        for ( Map.Entry<String, String> masterAc : masterAcs.entrySet() ) {
+            String ac = masterAc.getKey();
+            boolean transcript = !ac.equalsIgnoreCase( masterAc.getValue() );
+
+            Collection<UniprotProteinLike> proteins = new ArrayList<UniprotProteinLike>();
+            Collection<UniprotProteinLike> transcripts = new ArrayList<UniprotProteinLike>();
+            Collection<String> transcriptAcsProcessed = new HashSet<String>();
+
+            for ( UniprotProtein protein : masters.get( masterAc.getValue() ) ) {
+                UniprotProteinTranscript variant = retrieveUniprotSpliceVariant( protein, ac );
+                if ( variant == null ) {
+                    variant = retrieveUniprotFeatureChain( protein, ac );
+                }
+
+                if ( variant != null && transcriptAcsProcessed.add( variant.getPrimaryAc() ) ) {
+                    variant.setMasterProtein( protein );
+                    transcripts.add( variant );
+                }
+                if ( !transcript || variant != null ) {
+                    proteins.add( protein );
+                }
+            }
+
+            if ( transcript && transcripts.isEmpty() ) {
+                // not part of the entry named after it
+                singleAcs.add( ac );
+            } else {
+                proteins.addAll( transcripts );
+                results.put( ac, proteins );
+            }
+        }
+
+        for ( String ac : singleAcs ) {
+            results.put( ac, retrieveAny( ac ) );
+        }
+
+        return results;
+    }
+
+    public Collection<UniprotProteinTranscript> retrieveProteinTranscripts( String ac ){
+        if (log.isDebugEnabled()) {
+            log.debug("Retrieving splice variants from UniProt: "+ac);
+        }
+        Collection<UniprotProteinTranscript> variants = new ArrayList<UniprotProteinTranscript>();
+
+        variants.addAll(retrieveSpliceVariant(ac));
+        variants.addAll(retrieveFeatureChain(ac));
+
+        return variants;
+    }
+
+    public Collection<UniprotSpliceVariant> retrieveSpliceVariant( String ac ) {
+        if (log.isDebugEnabled()) {
+            log.debug("Retrieving splice variants from UniProt: "+ac);
+        }
+        Collection<UniprotSpliceVariant> variants = new ArrayList<UniprotSpliceVariant>();
+        Collection<String> variantAcProcessed = new ArrayList<String>();
+
+        Collection<UniprotProtein> proteins = new ArrayList<UniprotProtein>();
+
+        Iterator<UniProtEntry> it = getUniProtEntry( ac );
+        if ( it == null ) {
+            // the entries could not be searched, already reported
+            return variants;
+        }
+
+        if ( !it.hasNext() ) {
+            // we didn't find anything
+            addError( ac, new UniprotServiceReport( "Could not find splice variants: " + ac ) );
+        }
+
+        while ( it.hasNext() ) {
+            UniProtEntry uniProtEntry = it.next();
+            UniprotProtein uniprotProtein = buildUniprotProtein( uniProtEntry, true );
+            proteins.add( uniprotProtein );
+            UniprotSpliceVariant variant = retrieveUniprotSpliceVariant(uniprotProtein, ac);
+
+            if (variant != null){
+                if (!variantAcProcessed.contains(variant.getPrimaryAc())){
+                    variants.add(variant);
+                    variantAcProcessed.add(variant.getPrimaryAc());
+                    variant.setMasterProtein(uniprotProtein);
+                }
+            }
+        }
+
+        return variants;
+    }
+
+    public Collection<UniprotFeatureChain> retrieveFeatureChain( String ac ) {
+        if (log.isDebugEnabled()) {
+            log.debug("Retrieving feature chains from UniProt: "+ac);
+        }
+        Collection<UniprotFeatureChain> variants = new ArrayList<UniprotFeatureChain>();
+
+        Collection<UniprotProtein> proteins = new ArrayList<UniprotProtein>();
+
+        Iterator<UniProtEntry> it = getUniProtEntry( ac );
+        if ( it == null ) {
+            // the entries could not be searched, already reported
+            return variants;
+        }
+
+        if ( !it.hasNext() ) {
+            // we didn't find anything
+            addError( ac, new UniprotServiceReport( "Could not find splice variants: " + ac ) );
+        }
+
+        while ( it.hasNext() ) {
+            UniProtEntry uniProtEntry = it.next();
+            UniprotProtein uniprotProtein = buildUniprotProtein( uniProtEntry, true );
+            proteins.add( uniprotProtein );
+            UniprotFeatureChain variant = retrieveUniprotFeatureChain(uniprotProtein, ac);
+
+            if (variant != null) {
+                variants.add(variant);
+                variant.setMasterProtein(uniprotProtein);
+            }
+        }
+
+        return variants;
+    }
+
+    public Collection<UniprotProtein> retrieve( String ac, boolean processSpliceVars ) {
+        if (log.isDebugEnabled()) {
+            log.debug("Retrieving from UniProt: "+ac);
+        }
+        Collection<UniprotProtein> proteins = new ArrayList<UniprotProtein>();
+
+        Iterator<UniProtEntry> it = getUniProtEntry( ac );
+        if ( it == null ) {
+            // the entries could not be searched, already reported
+            return proteins;
+        }
+
+        if ( !it.hasNext() ) {
+            // we didn't find anything
+            addError( ac, new UniprotServiceReport( "Could not find protein: " + ac ) );
+        }
+
+        while ( it.hasNext() ) {
+            UniProtEntry uniProtEntry = it.next();
+            proteins.add( buildUniprotProtein( uniProtEntry, processSpliceVars ) );
+        }
+
+        return proteins;
+    }
+
+    public Map<String, Collection<UniprotProtein>> retrieve( Collection<String> acs ) {
+        return retrieve(acs, true);
+    }
+
+    public Map<String, Collection<UniprotProtein>> retrieve( Collection<String> acs, boolean processSpliceVars ) {
+
+        if ( acs == null ) {
+            throw new IllegalArgumentException( "You must give a non null List of UniProt ACs." );
+        }
+
+        if ( acs.isEmpty() ) {
+            throw new IllegalArgumentException( "You must give a non empty List of UniProt ACs." );
+        }
+
+        Map<String, Collection<UniprotProtein>> results = new HashMap<String, Collection<UniprotProtein>>( acs.size() );
+
+        // splice variants and feature chains are looked up one by one, the remaining identifiers are retrieved in batch
+        List<String> batchableAcs = new ArrayList<String>( acs.size() );
+        for ( String ac : new LinkedHashSet<String>( acs ) ) {
+            if ( ac == null ) {
+                throw new IllegalArgumentException( "You must give a List of non null UniProt ACs." );
+            }
+
+            String upperCaseAc = ac.toUpperCase();
+            if ( IdentifierChecker.isSpliceVariantId( upperCaseAc ) || IdentifierChecker.isFeatureChainId( upperCaseAc ) ) {
+                results.put( ac, retrieve( ac, processSpliceVars ) );
+            } else {
+                batchableAcs.add( ac );
+            }
+        }
+
+        if ( !batchableAcs.isEmpty() ) {
+            results.putAll( retrieveBatch( batchableAcs, processSpliceVars ) );
+        }
+
+        return results;
+    }
+
+    public boolean isSelectedDatabasesOnly() {
+        return selectedDatabasesOnly;
+    }
+
+    /**
+     * @param selectedDatabasesOnly if true and a cross reference filter is set, only the cross references of the
+     * databases it selects are read from the UniProt entries, by database type, instead of going through all of them.
+     * Worth it for entries having thousands of cross references (eg. PDB) when few databases are selected.
+     */
+    public void setSelectedDatabasesOnly( boolean selectedDatabasesOnly ) {
+        this.selectedDatabasesOnly = selectedDatabasesOnly;
+    }
+
+    public UniprotModelInterner getInterner() {
+        return interner;
+    }
+
+    /**
+     * @param interner pool of the values shared by the proteins built, one of this service's own by default.
+     */
+    public void setInterner( UniprotModelInterner interner ) {
+        if ( interner == null ) {
+            throw new IllegalArgumentException( "You must give a non null interner." );
+        }
+        this.interner = interner;
+    }
+
+    /**
+     * Forgets the external isoform parents and sequences resolved so far, eg. between two update runs.
+     */
+    public void clearExternalIsoformCache() {
+        externalParentEntries.clear();
+        externalIsoformSequences.clear();
+    }
+
+    @Deprecated
+    public Collection<UniprotProtein> retreive( String ac ) {
+        return retrieve(ac);
+    }
+
+    @Deprecated
+    public Map<String, Collection<UniprotProtein>> retreive( Collection<String> acs ) {
+        return retrieve(acs);
+    }
+
+    /**
+     * Finds the entries of an identifier: the entries having it as primary AC, secondary AC or UniProt ID, the entry
+     * of the master protein of a splice variant or feature chain.
+     *
+     * @param ac the identifier, in any case.
+     * @return the entries found, or null if they could not be searched, the error of the identifier being reported.
+     */
+    protected abstract Iterator<UniProtEntry> getUniProtEntry( String ac );
+
+    /**
+     * Retrieves a batch of proteins, none of them being a splice variant or feature chain. Each entry found is mapped
+     * back to every given AC matching its primary AC, one of its secondary ACs or its UniProt ID.
+     *
+     * @param acs the ACs or IDs of the proteins to retrieve.
+     * @param processSpliceVars whether splice variants and feature chains should be processed.
+     * @return an associative structure where each given ac is an entry and associated is a collection of protein found.
+     */
+    protected abstract Map<String, Collection<UniprotProtein>> retrieveBatch( List<String> acs, boolean processSpliceVars );
+
+    /**
+     * Finds the entries of the given upper case ACs or IDs, eg. the parents of external isoforms.
+     *
+     * @param acs the identifiers to search for.
+     * @return the entries whose primary AC, secondary AC or UniProt ID is each of the given identifiers.
+     * @throws RemoteCallException if the entries could not be searched.
+     */
+    protected abstract Map<String, List<UniProtEntry>> findEntries( Collection<String> acs ) throws RemoteCallException;
+
+    /**
+     * Converts a UniProt entry, recording the time spent as the "convert" operation when metrics are set, so that it
+     * can be told apart from the time spent waiting for UniProt.
+     */
+    protected UniprotProtein buildUniprotProtein( UniProtEntry uniProtEntry, boolean fetchSpliceVariants ) {
+        UniprotServiceMetrics metrics = getMetrics();
+        if ( metrics == null ) {
+            return convertUniprotProtein( uniProtEntry, fetchSpliceVariants );
+        }
+
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            UniprotProtein protein = convertUniprotProtein( uniProtEntry, fetchSpliceVariants );
+            failed = false;
+            return protein;
+        } finally {
+            metrics.recordOperation( CONVERT_OPERATION, System.nanoTime() - start, failed ? 0 : 1, failed );
+        }
+    }
+
+    /**
+     * @return true if the pooled organism has the names of the organism of an entry, so that it can be shared with it.
+     */
+    private boolean hasNames( Organism pooled, uk.ac.ebi.kraken.interfaces.uniprot.Organism organism ) {
+        if ( !organism.getScientificName().getValue().equals( pooled.getName() )
+             || !organism.getCommonName().getValue().equals( pooled.getCommonName() ) ) {
+            return false;
+        }
+        int parentCount = ( organism.hasCommonName() ? 1 : 0 ) + ( organism.hasSynonym() ? 1 : 0 );
+        return pooled.getParents().size() == parentCount
+               && ( !organism.hasSynonym() || pooled.getParents().contains( organism.getSynonym().getValue() ) );
+    }
+
+    private UniprotProtein convertUniprotProtein( UniProtEntry uniProtEntry, boolean fetchSpliceVariants ) {
+
+        // Process OS, OC, OX
+        List<NcbiTaxonomyId> taxids = uniProtEntry.getNcbiTaxonomyIds();
+
+        int taxid = Integer.parseInt( taxids.get( 0 ).getValue() );
+        final uk.ac.ebi.kraken.interfaces.uniprot.Organism organism = uniProtEntry.getOrganism();
+        Organism o = interner.getOrganism( taxid );
+        if ( o == null || !hasNames( o, organism ) ) {
+            String commonName = intern( organism.getCommonName().getValue() );
+            o = new Organism( taxid, intern( organism.getScientificName().getValue() ) );
+            o.setCommonName( commonName );
+
+            // extract parent's names
+            if ( organism.hasCommonName() ) {
+                o.getParents().add( commonName );
+            }
+            if ( organism.hasSynonym() ) {
+                o.getParents().add( intern( organism.getSynonym().getValue() ) );
+            }
+            o = interner.intern( o );
+        }
+
+        String description = readDescription(uniProtEntry);
+
+        UniprotProtein uniprotProtein = new UniprotProtein( uniProtEntry.getUniProtId().getValue(),
+                uniProtEntry.getPrimaryUniProtAccession().getValue(),
+                o,
+                description);
+
+        List<SecondaryUniProtAccession> secondaryAcs = uniProtEntry.getSecondaryUniProtAccessions();
+        for ( SecondaryUniProtAccession secondaryAc : secondaryAcs ) {
+            uniprotProtein.getSecondaryAcs().add( secondaryAc.getValue() );
+        }
+
+        // version of the entry
+        uniprotProtein.setReleaseVersion( getSPTREntryReleaseVersion( uniProtEntry ) );
+        uniprotProtein.setLastAnnotationUpdate( uniProtEntry.getEntryAudit().getLastAnnotationUpdateDate() );
+        uniprotProtein.setLastSequenceUpdate( uniProtEntry.getEntryAudit().getLastSequenceUpdateDate() );
+
+        // type of the entry
+        if ( UniProtEntryType.SWISSPROT.equals( uniProtEntry.getType() ) ) {
+            uniprotProtein.setSource( UniprotProteinType.SWISSPROT );
+        } else if ( UniProtEntryType.TREMBL.equals( uniProtEntry.getType() ) ) {
+            uniprotProtein.setSource( UniprotProteinType.TREMBL );
+        } else if ( UniProtEntryType.UNKNOWN.equals( uniProtEntry.getType() ) ) {
+            uniprotProtein.setSource( UniprotProteinType.UNKNOWN );
+        } else {
+            throw new IllegalStateException( "Only SWISSPROT, TREMBL and UNKNOWN source are supported: " +
+                    uniProtEntry.getType().getValue() );
+        }
+
+        // Process gene names, orfs, synonyms, locus...
+        processGeneNames( uniProtEntry, uniprotProtein );
+
+        // add alternative full names
+        for (Name name : uniProtEntry.getProteinDescription().getAlternativeNames()) {
+            final List<Field> fullFields = name.getFieldsByType(FieldType.FULL);
+
+            for (Field fullField : fullFields) {
+                uniprotProtein.getSynomyms().add(fullField.getValue());
+            }
+        }
+
+        // comments: function
+        List<FunctionComment> functions = uniProtEntry.getComments( CommentType.FUNCTION );
+        for ( FunctionComment function : functions ) {
+
+            uniprotProtein.getFunctions().add( function.getValue() );
+        }
+
+        // Comments: disease
+        List<DiseaseCommentStructured> diseases = uniProtEntry.getComments( CommentType.DISEASE );
+        for ( DiseaseCommentStructured disease : diseases ) {
+            uniprotProtein.getFunctions().add( intern( disease.getDisease().getDescription().getValue() ) );
+        }
+
+        // keywords
+        List<Keyword> keywords = uniProtEntry.getKeywords();
+        for ( Keyword keyword : keywords ) {
+            uniprotProtein.getKeywords().add( intern( keyword.getValue() ) );
+        }
+
+        // Cross references
+        processCrossReference( uniProtEntry, uniprotProtein );
+
+        // sequence
+        uniprotProtein.setSequence( uniProtEntry.getSequence().getValue() );
+        uniprotProtein.setSequenceLength( uniProtEntry.getSequence().getLength() );
+        uniprotProtein.setCrc64( uniProtEntry.getSequence().getCRC64() );
+        // TODO molecular weight ?!
+
+        // splice variants
+        if (fetchSpliceVariants) {
+            processSpliceVariants( uniProtEntry, uniprotProtein );
+            //I commented this line because we not making any use of uniprot features in IntAct. But in case we use them later,
+            // I have let the processFeatureChain method.
+            // chains
+            processFeatureChain( uniProtEntry, uniprotProtein );
+            // feature peptides to be processed as feature chains
+            processFeaturePeptide(uniProtEntry, uniprotProtein);
+            // feature pro-peptides to be processed as feature chains
+            processFeatureProPeptide(uniProtEntry, uniprotProtein);
+        }
+
+        return uniprotProtein;
+    }
+
+    protected String readDescription(UniProtEntry uniProtEntry) {
+        String desc = null;
+
+        if (uniProtEntry.getProteinDescription().hasRecommendedName()) {
+            final List<Field> fullFields = uniProtEntry.getProteinDescription().getRecommendedName().getFieldsByType(FieldType.FULL);
+
+            if (!fullFields.isEmpty()) {
+                desc = fullFields.get(0).getValue();
+            }
+        }
+
+        return desc;
+    }
+
+    /**
+     * Extract from the SPTREntry the annotation release and the entry type, then combine them to get a version we will
+     * use in the Xref. uniprot, identity )
+     *
+     * @param sptrEntry the entry from which we extract the information.
+     *
+     * @return a version as a String.
+     */
+    protected String getSPTREntryReleaseVersion( UniProtEntry sptrEntry ) {
+        String version = null;
+        String uniprotRelease = String.valueOf( sptrEntry.getEntryAudit().getEntryVersion() );
+        //System.out.println( "uniprotRelease = " + uniprotRelease );
+        if ( sptrEntry.getType().equals( UniProtEntryType.SWISSPROT ) ) {
+            version = SWISS_PROT_PREFIX + uniprotRelease;
+        } else if ( sptrEntry.getType().equals( UniProtEntryType.TREMBL ) ) {
+            // will allow Version up to 999 ... then it will be truncated as Xref.dbRelease is VARCHAR2(10)
+            version = TREMBL_PREFIX + uniprotRelease;
+        } else {
+            // though should not happen.
+            log.warn( "Unexpected SPTREntry type: " + sptrEntry.getType().getValue() );
+            version = uniprotRelease;
+        }
+
+        return version;
+    }
+
+    protected void processFeatureChain( UniProtEntry uniProtEntry, UniprotProtein protein ) {
+        Collection<ChainFeature> features = uniProtEntry.getFeatures( FeatureType.CHAIN );
+
+        for ( ChainFeature featureChain : features ) {
+
+            String id = uniProtEntry.getPrimaryUniProtAccession().getValue() + "-" + featureChain.getFeatureId().getValue();
+            // when uniprot does not know where is the start or the end of the protein the value will be -1
+            // Getting a sequence from -1 to x throw an Exception take into account this exception.
+
+            String description = featureChain.getFeatureDescription().getValue();
+
+            FeatureLocation location = featureChain.getFeatureLocation();
+            int begin = location.getStart();
+            int end = location.getEnd();
+
+            if( end > 0 && begin > 0 && end < begin ) {
+                throw new IllegalArgumentException( "Unexpected feature location boundaries of chain "+
+                        featureChain.getFeatureId() +" for parent " +
+                        uniProtEntry.getPrimaryUniProtAccession() +
+                        ": ["+begin+", "+ end +"]" );
+            }
+
+            final String sequence = protein.getSequence();
+            if( sequence.length() < end ) {
+                throw new IllegalArgumentException( "The AA sequence (length:"+ sequence.length() +") of parent " +
+                        uniProtEntry.getPrimaryUniProtAccession() + " doesn't match the" +
+                        " boundaried of feature chain "+ featureChain.getFeatureId() +
+                        ": ["+begin+", "+ end +"]" );
+            }
+
+            String chainSequence = null;
+
+            if (begin != -1 && end != -1){
+                chainSequence = sequence.substring( begin - 1, end );
+            }
+
+            UniprotFeatureChain chain = new UniprotFeatureChain( id, protein.getOrganism(), chainSequence );
+            chain.setDescription( description );
+            chain.setStart( begin );
+            chain.setEnd( end );
+
+            // add the chain to the protein
+            protein.getFeatureChains().add( chain );
+        }
+    }
+
+    protected void processFeaturePeptide( UniProtEntry uniProtEntry, UniprotProtein protein ) {
+        Collection<PeptideFeature> features = uniProtEntry.getFeatures( FeatureType.PEPTIDE );
+
+        for ( PeptideFeature featurePeptide : features ) {
+
+            String id = uniProtEntry.getPrimaryUniProtAccession().getValue() + "-" + featurePeptide.getFeatureId().getValue();
+            // when uniprot does not know where is the start or the end of the protein the value will be -1
+            // Getting a sequence from -1 to x throw an Exception take into account this exception.
+
+            String description = featurePeptide.getFeatureDescription().getValue();
+
+            FeatureLocation location = featurePeptide.getFeatureLocation();
+            int begin = location.getStart();
+            int end = location.getEnd();
+
+            if( end > 0 && begin > 0 && end < begin ) {
+                throw new IllegalArgumentException( "Unexpected feature location boundaries of peptide "+
+                        featurePeptide.getFeatureId() +" for parent " +
+                        uniProtEntry.getPrimaryUniProtAccession() +
+                        ": ["+begin+", "+ end +"]" );
+            }
+
+            final String sequence = protein.getSequence();
+            if( sequence.length() < end ) {
+                throw new IllegalArgumentException( "The AA sequence (length:"+ sequence.length() +") of parent " +
+                        uniProtEntry.getPrimaryUniProtAccession() + " doesn't match the" +
+                        " boundaried of feature peptide "+ featurePeptide.getFeatureId() +
+                        ": ["+begin+", "+ end +"]" );
+            }
+
+            String chainSequence = null;
+
+            if (begin != -1 && end != -1){
+                chainSequence = sequence.substring( begin - 1, end );
+            }
+
+            UniprotFeatureChain chain = new UniprotFeatureChain( id, protein.getOrganism(), chainSequence );
+            chain.setDescription( description );
+            chain.setStart( begin );
+            chain.setEnd( end );
+
+            // add the chain to the protein
+            protein.getFeatureChains().add( chain );
+        }
+    }
+
+    protected void processFeatureProPeptide( UniProtEntry uniProtEntry, UniprotProtein protein ) {
+        Collection<ProPepFeature> features = uniProtEntry.getFeatures( FeatureType.PROPEP );
+
+        for ( ProPepFeature proPep : features ) {
+
+            String id = uniProtEntry.getPrimaryUniProtAccession().getValue() + "-" + proPep.getFeatureId().getValue();
+            // when uniprot does not know where is the start or the end of the protein the value will be -1
+            // Getting a sequence from -1 to x throw an Exception take into account this exception.
+
+            String description = proPep.getFeatureDescription().getValue();
+
+            FeatureLocation location = proPep.getFeatureLocation();
+            int begin = location.getStart();
+            int end = location.getEnd();
+
+            if( end > 0 && begin > 0 && end < begin ) {
+                throw new IllegalArgumentException( "Unexpected feature location boundaries of peptide "+
+                        proPep.getFeatureId() +" for parent " +
+                        uniProtEntry.getPrimaryUniProtAccession() +
+                        ": ["+begin+", "+ end +"]" );
+            }
+
+            final String sequence = protein.getSequence();
+            if( sequence.length() < end ) {
+                throw new IllegalArgumentException( "The AA sequence (length:"+ sequence.length() +") of parent " +
+                        uniProtEntry.getPrimaryUniProtAccession() + " doesn't match the" +
+                        " boundaried of feature peptide "+ proPep.getFeatureId() +
+                        ": ["+begin+", "+ end +"]" );
+            }
+
+            String chainSequence = null;
+
+            if (begin != -1 && end != -1){
+                chainSequence = sequence.substring( begin - 1, end );
+            }
+
+            UniprotFeatureChain chain = new UniprotFeatureChain( id, protein.getOrganism(), chainSequence );
+            chain.setDescription( description );
+            chain.setStart( begin );
+            chain.setEnd( end );
+
+            // add the chain to the protein
+            protein.getFeatureChains().add( chain );
+        }
+    }
+
+    protected void processGeneNames( UniProtEntry uniProtEntry, UniprotProtein protein ) {
+
+        List<Gene> genes = uniProtEntry.getGenes();
+
+        for ( Gene gene : genes ) {
+            if (gene.hasGeneName() ) {
+                protein.getGenes().add( gene.getGeneName().getValue() );
+            }
+
+            for ( GeneNameSynonym synonym : gene.getGeneNameSynonyms() ) {
+                protein.getSynomyms().add( synonym.getValue() );
+            }
+
+            for ( ORFName orf : gene.getORFNames() ) {
+                protein.getOrfs().add( orf.getValue() );
+            }
+
+            for ( OrderedLocusName locus : gene.getOrderedLocusNames() ) {
+                protein.getLocuses().add( locus.getValue() );
+            }
+        }
+    }
+
+    protected Collection<UniprotCrossReference> convert( Collection<DatabaseCrossReference> refs ) {
+        CrossReferenceFilter filter = getCrossReferenceSelector();
+        Collection<UniprotCrossReference> convertedRefs = new ArrayList<UniprotCrossReference>( filter == null ? refs.size() : 16 );
+        for ( DatabaseCrossReference ref : refs ) {
+            // filter before converting anything
+            String db = ref.getDatabase().getName();
+            if ( filter != null && !filter.isSelected( db ) ) {
+                if ( log.isTraceEnabled() ) {
+                    log.trace( filter.getClass().getSimpleName() + " filtered out database: '" + db + "'." );
+                }
+                continue;
+            }
+
+            for (UniprotCrossReference xref : crossReferenceBuilder.build(ref)) {
+
+                if (xref != null){
+                    convertedRefs.add( xref );
+                }
+            }
+
+        }
+        return convertedRefs;
+    }
+
+    protected void processCrossReference( UniProtEntry uniProtEntry, UniprotProtein protein ) {
+        Collection<DatabaseCrossReference> databaseCrossReferences;
+        if ( selectedDatabasesOnly && getCrossReferenceSelector() != null ) {
+            databaseCrossReferences = getSelectedCrossReferences( uniProtEntry );
+        } else {
+            databaseCrossReferences = uniProtEntry.getDatabaseCrossReferences();
+        }
+        Collection<UniprotCrossReference> xrefs = convert( databaseCrossReferences );
+
+        for ( UniprotCrossReference xref : xrefs ) {
+
+            String ac = xref.getAccessionNumber();
+
+            if (ac == null) {
+                log.error("No AC could be found for xref: "+xref);
+                continue;
+            }
+
+            String db = intern( xref.getDatabase() );
+
+            String desc = xref.getDescription(); // TODO There is so far no straight forward way to process all cross refrence and extract descriptions. We could at least provide specific handlers in case we know we need to process specific databases.
+
+            protein.getCrossReferences().add( new UniprotXref( ac, db, desc ) );
+        } // for Cross Ref
+
+        // handles HUGE cross references (stored as gene name or synonym and start with KIAA)
+        if ( !xrefs.isEmpty() && getCrossReferenceSelector() != null &&
+                ( getCrossReferenceSelector().isSelected( "HUGE" ) || getCrossReferenceSelector().isSelected( "KIAA" ) ) ) {
+
+            // we only do this if the filter requires it explicitely.
+            List<Gene> genes = uniProtEntry.getGenes();
+            for ( Gene gene : genes ) {
+
+                String geneName = gene.getGeneName().getValue();
+                if ( geneName.startsWith( "KIAA" ) ) {
+                    protein.getCrossReferences().add( new UniprotXref( geneName, "HUGE" ) );
+                }
+
+                List<GeneNameSynonym> synonyms = gene.getGeneNameSynonyms();
+                for ( GeneNameSynonym synonym : synonyms ) {
+                    String syn = synonym.getValue();
+                    if ( syn.startsWith( "KIAA" ) ) {
+                        protein.getCrossReferences().add( new UniprotXref( syn, "HUGE" ) );
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads from the entry only the cross references of the databases selected by the filter, instead of going
+     * through all of them.
+     */
+    private Collection<DatabaseCrossReference> getSelectedCrossReferences( UniProtEntry uniProtEntry ) {
+        List<DatabaseType> databaseTypes = getSelectedDatabaseTypes( getCrossReferenceSelector() );
+
+        List<DatabaseCrossReference> refs = new ArrayList<DatabaseCrossReference>();
+        for ( DatabaseType databaseType : databaseTypes ) {
+            refs.addAll( uniProtEntry.getDatabaseCrossReferences( databaseType ) );
+        }
+        return refs;
+    }
+
+    /**
+     * The UniProt database types matching the databases of the filter, resolved once per filter.
+     */
+    private List<DatabaseType> getSelectedDatabaseTypes( CrossReferenceFilter filter ) {
+        SelectedDatabaseTypes selected = selectedDatabaseTypes;
+        if ( selected == null || selected.filter != filter ) {
+            List<DatabaseType> databaseTypes = new ArrayList<DatabaseType>();
+            for ( DatabaseType databaseType : DatabaseType.values() ) {
+                if ( filter.isSelected( databaseType.getName() ) ) {
+                    databaseTypes.add( databaseType );
+                }
+            }
+            if ( log.isDebugEnabled() ) {
+                log.debug( "Databases selected by " + filter.getClass().getSimpleName() + ": " + databaseTypes );
+            }
+
+            selected = new SelectedDatabaseTypes( filter, databaseTypes );
+            selectedDatabaseTypes = selected;
+        }
+        return selected.databaseTypes;
+    }
+
+    /**
+     * Database types selected by a filter.
+     */
+    private static class SelectedDatabaseTypes {
+
+        private final CrossReferenceFilter filter;
+
+        private final List<DatabaseType> databaseTypes;
+
+        private SelectedDatabaseTypes( CrossReferenceFilter filter, List<DatabaseType> databaseTypes ) {
+            this.filter = filter;
+            this.databaseTypes = databaseTypes;
+        }
+    }
+
+    protected void processSpliceVariants( UniProtEntry uniProtEntry, UniprotProtein protein ) {
+
+        Map<String,String> seqMap = new HashMap<String,String>();
+
+        List<UniprotSpliceVariant> spliceVariants = findSpliceVariants(uniProtEntry, protein.getOrganism(), seqMap);
+
+        // add the splice variant to the original protein
+        protein.getSpliceVariants().addAll( spliceVariants );
+    }
+
+    protected List<UniprotSpliceVariant> findSpliceVariants(UniProtEntry uniProtEntry, Organism organism, Map<String, String> seqMap) {
+        return findSpliceVariants( uniProtEntry, organism, seqMap, new HashSet<String>() );
+    }
+
+    /**
+     * @param resolving primary ACs of the entries whose splice variants are being found, so that external isoforms
+     * referring back to one of them do not recurse forever.
+     */
+    private List<UniprotSpliceVariant> findSpliceVariants(UniProtEntry uniProtEntry, Organism organism, Map<String, String> seqMap, Set<String> resolving) {
+        if (log.isDebugEnabled()) {
+            log.debug("Finding splice variants for: " + uniProtEntry.getPrimaryUniProtAccession().getValue());
+        }
+        resolving.add( uniProtEntry.getPrimaryUniProtAccession().getValue() );
+
+        List<UniprotSpliceVariant> spliceVariants = new ArrayList<UniprotSpliceVariant>();
+
+        List<AlternativeProductsComment> comments = uniProtEntry.getComments( CommentType.ALTERNATIVE_PRODUCTS );
+        fetchExternalParents( comments, seqMap );
+
+        for ( AlternativeProductsComment comment : comments ) {
+            List<AlternativeProductsIsoform> isoforms = comment.getIsoforms();
+
+            for ( AlternativeProductsIsoform isoform : isoforms ) {
+
+                List<IsoformId> isoIDs = isoform.getIds();
+                List<String> ids = new ArrayList<String>( isoIDs.size() + 1 );
+                for ( IsoformId isoID : isoIDs ) {
+                    // TODO remove this once the API is fixed, currently when multiple ids are present they are returned as a comma separated value :(
+                    String[] values = isoID.getValue().split( "," );
+                    for ( int i = 0; i < values.length; i++ ) {
+                        String id = values[i].trim();
+                        if ( log.isTraceEnabled() ) {
+                            log.trace( "Found ID " + i + ":" + id );
+                        }
+                        ids.add( id );
+                    }
+                }
+
+                // process alternative sequence
+                String spliceVarId = ids.get(0);
+
+                String sequence = null;
+
+                if (seqMap.containsKey(spliceVarId)) {
+                    sequence = seqMap.get(spliceVarId);
+                } else {
+
+                    String parentProtein = getUniProtAccFromSpliceVariantId(spliceVarId);
+
+                    // check that the sequence is in the current entry
+
+                    String status = isoform.getIsoformSequenceStatus().getValue();
+
+                    if (log.isTraceEnabled()) log.trace("Sequence status: " + status);
+
+                    switch (isoform.getIsoformSequenceStatus()) {
+                        case NOT_DESCRIBED:
+                            //log.error("According to uniprot the splice variant " + spliceVarId + " has no sequence (status = NOT_DESCRIBED)");
+                        case DESCRIBED:
+                            sequence = uniProtEntry.getSplicedSequence(isoform.getName().getValue());
+                            break;
+                        case DISPLAYED:
+                            sequence = uniProtEntry.getSplicedSequence(isoform.getName().getValue());
+                            break;
+                        case EXTERNAL:
+                            // then we need to load an external protein entry
+                            sequence = externalIsoformSequences.get(spliceVarId);
+                            if (sequence == null) {
+                                log.warn("The alternative sequence '"+isoform.getName().getValue()+"' for '"+uniProtEntry.getPrimaryUniProtAccession().getValue()
+                                        +"' has to be calculated on the basis of an external entry: " + parentProtein);
+
+                                sequence = resolveExternalSequence(isoform, spliceVarId, parentProtein, organism, seqMap, resolving);
+                                if (sequence != null && sequence.length() > 0) {
+                                    externalIsoformSequences.put(spliceVarId, sequence);
+                                }
+                            }
+                            seqMap.put(spliceVarId, sequence);
+                    }
+                }
+
+                // build splice variant
+                UniprotSpliceVariant sv = new UniprotSpliceVariant(spliceVarId,
+                        organism,
+                        sequence );
+                // add secondary ids (if any)
+                for ( int i = 1; i < ids.size(); i++ ) {
+                    String id = ids.get( i );
+                    sv.getSecondaryAcs().add( id );
+                }
+
+                // process synonyms
+                List<IsoformSynonym> syns = isoform.getSynonyms();
+                for ( IsoformSynonym syn : syns ) {
+                    sv.getSynomyms().add( syn.getValue() );
+                }
+
+                // process note
+                List<EvidencedValue> evidencedValues = isoform.getNote().getTexts();
+                if ( evidencedValues.isEmpty() ) {
+                    sv.setNote( "" );
+                } else if ( evidencedValues.size() == 1 ) {
+                    sv.setNote( evidencedValues.get( 0 ).getValue() + " " );
+                } else {
+                    StringBuilder note = new StringBuilder( 128 );
+                    for ( EvidencedValue evidencedValue : evidencedValues ) {
+                        note.append( evidencedValue.getValue() ).append( ' ' );
+                    }
+                    sv.setNote( note.toString() );
+                }
+
+                spliceVariants.add(sv);
+            } // for isoform
+        } // for comments
+
+        if (log.isDebugEnabled()) {
+            log.debug("\tFound "+spliceVariants.size()+" splice variants");
+        }
+
+        return spliceVariants;
+    }
+
+    /**
+     * Computes the sequence of an external isoform from the entry of its parent protein.
+     */
+    private String resolveExternalSequence( AlternativeProductsIsoform isoform, String spliceVarId, String parentProtein,
+                                            Organism organism, Map<String, String> seqMap, Set<String> resolving ) {
+        List<UniProtEntry> parentEntries = externalParentEntries.get( parentProtein );
+        if ( parentEntries == null ) {
+            parentEntries = fetchExternalParents( Collections.singleton( parentProtein ) ).get( parentProtein );
+        }
+
+        if ( parentEntries.isEmpty() ) {
+            return null;
+        }
+
+        if ( parentEntries.size() > 1 ) {
+            // we were expecting to find only one protein - hopefully that should not happen !
+            log.error( "We were expecting to find only one protein while loading external sequence from: " + parentProtein );
+            for ( UniProtEntry parentEntry : parentEntries ) {
+                log.error( "Found " + parentEntry.getUniProtId() );
+            }
+        }
+
+        UniProtEntry parentEntry = parentEntries.get( 0 );
+        String sequence = parentEntry.getSplicedSequence( isoform.getName().getValue() );
+
+        if ( ( sequence == null || sequence.length() == 0 ) && !resolving.contains( parentEntry.getPrimaryUniProtAccession().getValue() ) ) {
+            for ( UniprotSpliceVariant uniprotSpliceVariant : findSpliceVariants( parentEntry, organism, seqMap, resolving ) ) {
+                if ( uniprotSpliceVariant.getPrimaryAc().equals( spliceVarId ) ) {
+                    sequence = uniprotSpliceVariant.getSequence();
+                    break;
+                }
+            }
+        }
+
+        return sequence;
+    }
+
+    /**
+     * Retrieves with a single query the parent entries of all the external isoforms of an entry which are not known
+     * yet.
+     */
+    private void fetchExternalParents( List<AlternativeProductsComment> comments, Map<String, String> seqMap ) {
+        Set<String> parentAcs = new HashSet<String>();
+
+        for ( AlternativeProductsComment comment : comments ) {
+            for ( AlternativeProductsIsoform isoform : comment.getIsoforms() ) {
+                if ( isoform.getIsoformSequenceStatus() != IsoformSequenceStatus.EXTERNAL || isoform.getIds().isEmpty() ) {
+                    continue;
+                }
+
+                String spliceVarId = isoform.getIds().get( 0 ).getValue().split( "," )[0].trim();
+                if ( seqMap.containsKey( spliceVarId ) || externalIsoformSequences.get( spliceVarId ) != null ) {
+                    continue;
+                }
+
+                String parentAc = getUniProtAccFromSpliceVariantId( spliceVarId );
+                if ( externalParentEntries.get( parentAc ) == null ) {
+                    parentAcs.add( parentAc );
+                }
+            }
+        }
+
+        if ( !parentAcs.isEmpty() ) {
+            fetchExternalParents( parentAcs );
+        }
+    }
+
+    /**
+     * Retrieves the entries of the given parent ACs with a single query and remembers them.
+     *
+     * @return the entries found for each AC.
+     */
+    private Map<String, List<UniProtEntry>> fetchExternalParents( Collection<String> parentAcs ) {
+        if ( log.isDebugEnabled() ) {
+            log.debug( "Retrieving the " + parentAcs.size() + " external isoform parents: " + parentAcs );
+        }
+
+        Map<String, List<UniProtEntry>> results;
+        try {
+            results = findEntries( parentAcs );
+        } catch ( RemoteCallException e ) {
+            // not remembered, so that the next entry needing them tries again
+            log.error( "Could not retrieve the external isoform parents: " + parentAcs, e );
+            results = new HashMap<String, List<UniProtEntry>>( parentAcs.size() );
+            for ( String parentAc : parentAcs ) {
+                results.put( parentAc, new ArrayList<UniProtEntry>( 0 ) );
+            }
+            return results;
+        }
+
+        for ( Map.Entry<String, List<UniProtEntry>> result : results.entrySet() ) {
+            externalParentEntries.put( result.getKey(), result.getValue() );
+        }
+
+        return results;
+    }
+
+    /**
+     * Gives the pooled instance of the given string, so that the many proteins built share it.
+     *
+     * @param value the string to pool, may be null.
+     */
+    protected String intern( String value ) {
+        return interner.intern( value );
+    }
+
+    protected String getUniProtAccFromSpliceVariantId( String svId ) {
+        int index = svId.indexOf( "-" );
+        if ( index == -1 ) {
+            throw new IllegalArgumentException( "The given accession number if not of a splice variant: " + svId );
+        }
+        return svId.substring( 0, index );
+    }
+
+}
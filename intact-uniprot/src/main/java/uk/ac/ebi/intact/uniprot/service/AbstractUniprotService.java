@@ -10,10 +10,11 @@ import org.apache.commons.logging.LogFactory;
 import uk.ac.ebi.intact.uniprot.model.UniprotFeatureChain;
 import uk.ac.ebi.intact.uniprot.model.UniprotProtein;
 import uk.ac.ebi.intact.uniprot.model.UniprotSpliceVariant;
+import uk.ac.ebi.intact.uniprot.service.metrics.UniprotServiceMetrics;
 import uk.ac.ebi.intact.uniprot.service.referenceFilter.CrossReferenceFilter;
 
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Abstract UniProt Adapter.
@@ -36,15 +37,21 @@ public abstract class AbstractUniprotService implements UniprotService {
     protected static final String CHAIN_SEPARATOR = "PRO_";
 
     /**
-     * Holds error messages accumulated during protein retreival.
+     * Holds error messages accumulated during protein retreival. Reports may be added concurrently when the service is
+     * shared by several threads.
      */
-    private Map<String, UniprotServiceReport> errors = new HashMap<String, UniprotServiceReport>();
+    private Map<String, UniprotServiceReport> errors = new ConcurrentHashMap<String, UniprotServiceReport>();
 
     /**
      * Defines how should the cross references be selected.
      */
     private CrossReferenceFilter crossReferenceFilter;
 
+    /**
+     * Where the errors reported and other metrics are recorded, if any.
+     */
+    private volatile UniprotServiceMetrics metrics;
+
     public AbstractUniprotService(){
         this.crossReferenceFilter = new DefaultCrossReferenceFilter();
     }
@@ -70,11 +77,25 @@ public abstract class AbstractUniprotService implements UniprotService {
             throw new IllegalArgumentException( "You must give a non null Report." );
         }
 
-        if( errors.containsKey( ac ) ) {
+        if( errors.put( ac, report ) != null ) {
             log.warn( "Overwriting existing report for UniProt AC: " + ac );
         }
 
-        errors.put( ac, report );
+        UniprotServiceMetrics metrics = this.metrics;
+        if( metrics != null ) {
+            metrics.recordError( report );
+        }
+    }
+
+    public UniprotServiceMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * @param metrics where the errors reported and other metrics of this service are recorded, null for none.
+     */
+    public void setMetrics( UniprotServiceMetrics metrics ) {
+        this.metrics = metrics;
     }
 
     ///////////////////////////
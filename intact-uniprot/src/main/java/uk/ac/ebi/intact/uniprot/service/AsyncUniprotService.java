@@ -0,0 +1,90 @@
+/*
+ * Copyright (c) 2002 The European Bioinformatics Institute, and others.
+ * All rights reserved. Please see the file LICENSE
+ * in the root directory of this distribution.
+ */
+package uk.ac.ebi.intact.uniprot.service;
+
+import uk.ac.ebi.intact.uniprot.model.UniprotFeatureChain;
+import uk.ac.ebi.intact.uniprot.model.UniprotProtein;
+import uk.ac.ebi.intact.uniprot.model.UniprotSpliceVariant;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Asynchronous access to the UniProt protein retrieval service.
+ *
+ * Every lookup returns immediately with a future that completes once the protein has been retrieved. Cancelling a
+ * future interrupts the lookup if it is still running. When a timeout is given, the future completes exceptionally
+ * with a <code>java.util.concurrent.TimeoutException</code> if the lookup has not finished in time, and the lookup is
+ * cancelled.
+ *
+ * Errors reported by the underlying service are still available through <code>getService().getErrors()</code>.
+ *
+ * @version $Id$
+ * @since 2.1.35
+ */
+public interface AsyncUniprotService {
+
+    /**
+     * Retrieve a Uniprot protein based on its ID, AC or splice variant ID.
+     *
+     * @param ac ID, AC or splice variant ID of the protein we are searching for.
+     *
+     * @return a future completed with the collection of protein found.
+     */
+    public CompletableFuture<Collection<UniprotProtein>> retrieveAsync( String ac );
+
+    /**
+     * Retrieve a Uniprot protein based on its ID, AC or splice variant ID.
+     *
+     * @param ac ID, AC or splice variant ID of the protein we are searching for.
+     * @param timeout how long to wait for the protein, 0 or less to wait forever.
+     * @param unit unit of the timeout.
+     *
+     * @return a future completed with the collection of protein found.
+     */
+    public CompletableFuture<Collection<UniprotProtein>> retrieveAsync( String ac, long timeout, TimeUnit unit );
+
+    /**
+     * Retrieve a set of Uniprot proteins based on their ID, AC or splice variant ID. Each future completes on its own,
+     * as soon as the protein it is waiting for has been retrieved.
+     *
+     * @param acs list of ID, AC or splice variant ID of the proteins we are searching for.
+     *
+     * @return an associative structure where each given ac is an entry and associated is a future completed with the
+     * collection of protein found.
+     */
+    public Map<String, CompletableFuture<Collection<UniprotProtein>>> retrieveAsync( Collection<String> acs );
+
+    /**
+     * Retrieve a set of Uniprot proteins based on their ID, AC or splice variant ID.
+     *
+     * @param acs list of ID, AC or splice variant ID of the proteins we are searching for.
+     * @param timeout how long to wait for each protein, 0 or less to wait forever.
+     * @param unit unit of the timeout.
+     *
+     * @return an associative structure where each given ac is an entry and associated is a future completed with the
+     * collection of protein found.
+     */
+    public Map<String, CompletableFuture<Collection<UniprotProtein>>> retrieveAsync( Collection<String> acs, long timeout, TimeUnit unit );
+
+    public CompletableFuture<Collection<UniprotSpliceVariant>> retrieveSpliceVariantAsync( String ac );
+
+    public CompletableFuture<Collection<UniprotFeatureChain>> retrieveFeatureChainAsync( String ac );
+
+    /**
+     * The synchronous service doing the actual retrieval.
+     *
+     * @return the underlying service.
+     */
+    public UniprotService getService();
+
+    /**
+     * Close the service, the lookups still running are cancelled.
+     */
+    public void close();
+}
@@ -15,22 +15,35 @@ import uk.ac.ebi.intact.uniprot.model.UniprotFeatureChain;
 import uk.ac.ebi.intact.uniprot.model.UniprotProtein;
 import uk.ac.ebi.intact.uniprot.model.UniprotProteinTranscript;
 import uk.ac.ebi.intact.uniprot.model.UniprotSpliceVariant;
+import uk.ac.ebi.intact.uniprot.service.codec.UniprotProteinCodec;
+import uk.ac.ebi.intact.uniprot.service.metrics.UniprotServiceMetrics;
 import uk.ac.ebi.intact.uniprot.service.referenceFilter.CrossReferenceFilter;
 
+import javax.management.ObjectName;
+import java.io.IOException;
 import java.net.URL;
-import java.util.ArrayList;
-import java.util.Collection;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Proxy implementation that caches the result of UniprotService queries.
  *
+ * Each protein is cached once, under its primary AC. Its UniProt ID and, when retrieved with them, the ACs of its
+ * feature chains identify that protein only, so they are indexed as aliases of its primary AC and looking the protein
+ * up by any of them is served from the cache. Secondary ACs and splice variant ACs are not indexed: a secondary AC may
+ * be shared by several demerged entries, and a splice variant AC by the entries listing it as an external isoform, of
+ * which only some were seen. Instead, the AC a lookup was made with is indexed with the primary ACs of all the
+ * proteins it returned, so that looking it up again is served from the cache.
+ *
+ * An AC is resolved by the lookup previously made with it, then as the primary AC of a cached protein, and only then
+ * through the aliases.
+ *
  * @author Samuel Kerrien (skerrien@ebi.ac.uk)
  * @version $Id$
  * @since 1.0
  */
-public class CachedUniprotService extends AbstractUniprotService implements UniprotService {
+public class CachedUniprotService extends AbstractUniprotService implements UniprotService, CachedUniprotServiceMXBean {
 
     /**
      * Sets up a logger for that class.
@@ -44,6 +57,21 @@ public class CachedUniprotService extends AbstractUniprotService implements Unip
 
     public static final String CACHE_NAME = "uniprot-service-cache";
 
+    /**
+     * Suffix of the cache keys of proteins retrieved without their splice variants and feature chains.
+     */
+    private static final String NO_SPLICE_VARIANTS_KEY_SUFFIX = "#noSpliceVars";
+
+    /**
+     * Prefix of the cache keys holding the primary AC an alias resolves to.
+     */
+    private static final String ALIAS_KEY_PREFIX = "#alias:";
+
+    /**
+     * Prefix of the cache keys holding the primary ACs of the proteins a lookup returned.
+     */
+    private static final String LOOKUP_KEY_PREFIX = "#lookup:";
+
     /**
      * Cache for queries to UniProt.
      */
@@ -55,6 +83,21 @@ public class CachedUniprotService extends AbstractUniprotService implements Unip
      */
     private UniprotService service;
 
+    /**
+     * Remote lookups currently running, so that concurrent cache misses on the same AC share a single lookup.
+     */
+    private ConcurrentMap<String, FutureTask<Collection<UniprotProtein>>> inFlightLookups =
+            new ConcurrentHashMap<String, FutureTask<Collection<UniprotProtein>>>();
+
+    /**
+     * Encodes the cached proteins, if null they are cached as they are.
+     */
+    private UniprotProteinCodec codec;
+
+    private AtomicLong hitCount = new AtomicLong();
+    private AtomicLong missCount = new AtomicLong();
+    private AtomicLong coalescedCount = new AtomicLong();
+
     public CachedUniprotService( UniprotService service ) {
         super();
         if ( service == null ) {
@@ -90,38 +133,58 @@ public class CachedUniprotService extends AbstractUniprotService implements Unip
     }
 
     public Collection<UniprotProtein> retrieve( String ac ) {
-
-        Collection<UniprotProtein> proteins = getFromCache( ac );
-        if ( proteins == null ) {
-            proteins = service.retrieve( ac );
-            storeInCache( proteins, ac );
-        }
-
-        return proteins;
+        return retrieve( ac, true );
     }
 
     public Collection<UniprotProtein> retrieve(String ac, boolean processSpliceVars) {
-        return retrieve(ac);
+        return getOrRetrieve( ac, processSpliceVars );
     }
 
     public Map<String, Collection<UniprotProtein>> retrieve( Collection<String> acs ) {
+        return retrieve( acs, true );
+    }
 
-        // TODO, here, we by-pass the underlying service method !!! Might not be what we want !!
+    /**
+     * Gets the cached proteins first, then retrieves all the missing ones with a single call to the bulk retrieval of
+     * the underlying service. The ACs it failed to retrieve are not cached, so that they are retrieved again.
+     */
+    public Map<String, Collection<UniprotProtein>> retrieve(Collection<String> acs, boolean processSpliceVars) {
 
         Map<String, Collection<UniprotProtein>> resultMap = new HashMap<String, Collection<UniprotProtein>>( acs.size() );
+        List<String> missingAcs = new ArrayList<String>();
+
+        for ( String ac : new LinkedHashSet<String>( acs ) ) {
+            Collection<UniprotProtein> proteins = getFromCache( ac, processSpliceVars );
+            if ( proteins != null ) {
+                hitCount.incrementAndGet();
+                resultMap.put( ac, proteins );
+            } else {
+                missingAcs.add( ac );
+            }
+        }
 
-        for ( String ac : acs ) {
-            Collection<UniprotProtein> proteins = retrieve( ac );
-            resultMap.put( ac, proteins );
+        if ( !missingAcs.isEmpty() ) {
+            if ( log.isDebugEnabled() ) {
+                log.debug( "Found " + resultMap.size() + " ACs in the cache, retrieving the " + missingAcs.size() + " missing ones" );
+            }
+            missCount.addAndGet( missingAcs.size() );
+
+            Map<String, Collection<UniprotProtein>> retrievedMap = service.retrieve( missingAcs, processSpliceVars );
+
+            for ( String ac : missingAcs ) {
+                Collection<UniprotProtein> proteins = retrievedMap.get( ac );
+                if ( proteins != null ) {
+                    if ( !isFailure( ac, proteins ) ) {
+                        storeInCache( proteins, ac, processSpliceVars );
+                    }
+                    resultMap.put( ac, proteins );
+                }
+            }
         }
 
         return resultMap;
     }
 
-    public Map<String, Collection<UniprotProtein>> retrieve(Collection<String> acs, boolean processSpliceVars) {
-        return retrieve(acs);
-    }
-
     public Map<String, UniprotServiceReport> getErrors() {
         return service.getErrors();
     }
@@ -138,6 +201,17 @@ public class CachedUniprotService extends AbstractUniprotService implements Unip
         return service.getCrossReferenceSelector();
     }
 
+    /**
+     * Also gives the metrics to the underlying service, which records the errors it reports.
+     */
+    @Override
+    public void setMetrics( UniprotServiceMetrics metrics ) {
+        super.setMetrics( metrics );
+        if ( service instanceof AbstractUniprotService ) {
+            ( ( AbstractUniprotService ) service ).setMetrics( metrics );
+        }
+    }
+
     public Collection<UniprotProteinTranscript> retrieveProteinTranscripts( String ac ){
         if (log.isDebugEnabled()) {
             log.debug("Retrieving splice variants from UniProt: "+ac);
@@ -157,11 +231,7 @@ public class CachedUniprotService extends AbstractUniprotService implements Unip
         Collection<UniprotSpliceVariant> variants = new ArrayList<UniprotSpliceVariant>();
         Collection<String> variantAcProcessed = new ArrayList<String>();
 
-        Collection<UniprotProtein> proteins = getFromCache( ac );
-        if ( proteins == null ) {
-            proteins = service.retrieve( ac );
-            storeInCache( proteins, ac );
-        }
+        Collection<UniprotProtein> proteins = getOrRetrieve( ac, true );
 
         for (UniprotProtein p : proteins){
             UniprotSpliceVariant variant = super.retrieveUniprotSpliceVariant(p, ac);
@@ -181,11 +251,7 @@ public class CachedUniprotService extends AbstractUniprotService implements Unip
         }
         Collection<UniprotFeatureChain> variants = new ArrayList<UniprotFeatureChain>();
 
-        Collection<UniprotProtein> proteins = getFromCache( ac );
-        if ( proteins == null ) {
-            proteins = service.retrieve( ac );
-            storeInCache( proteins, ac );
-        }
+        Collection<UniprotProtein> proteins = getOrRetrieve( ac, true );
 
         for (UniprotProtein p : proteins){
             UniprotFeatureChain variant = retrieveUniprotFeatureChain(p, ac);
@@ -216,24 +282,300 @@ public class CachedUniprotService extends AbstractUniprotService implements Unip
         service.start();
     }
 
+    /**
+     * Number of lookups served from the cache.
+     */
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    /**
+     * Number of lookups that had to query the underlying service.
+     */
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    /**
+     * Number of cache misses that waited for a lookup of the same AC already running instead of querying the
+     * underlying service.
+     */
+    public long getCoalescedCount() {
+        return coalescedCount.get();
+    }
+
+    /**
+     * Number of elements the cache evicted to make room for new ones, aliases included.
+     */
+    public long getEvictionCount() {
+        return cache.getStatistics().getEvictionCount();
+    }
+
+    /**
+     * Number of elements in the cache, aliases included.
+     */
+    public int getCacheSize() {
+        return cache.getSize();
+    }
+
+    /**
+     * Exposes the hits, misses and evictions of this cache through the platform MBean server.
+     *
+     * @param name name distinguishing this cache from the others registered.
+     * @return the JMX name the cache was registered under.
+     */
+    public ObjectName registerMBean( String name ) {
+        return UniprotServiceMetrics.registerMBean( this, "CachedUniprotService", name );
+    }
+
+    /**
+     * Sets the codec used to store the proteins in the cache. A compact codec such as the
+     * <code>BinaryUniprotProteinCodec</code> lets many more proteins fit in memory or on disk, at the cost of decoding
+     * them on each cache hit. Without codec, the cache holds the proteins themselves.
+     *
+     * @param codec the codec, or null to cache the proteins as they are.
+     */
+    public void setCodec( UniprotProteinCodec codec ) {
+        this.codec = codec;
+    }
+
+    public UniprotProteinCodec getCodec() {
+        return codec;
+    }
+
     /////////////////////////
     // EH CACHE utilities
 
-    private Collection<UniprotProtein> getFromCache( String ac ) {
+    /**
+     * Gets the proteins from the cache, or retrieve them using the underlying service. Only one lookup per AC is sent
+     * to the underlying service at a time, the other threads asking for that AC meanwhile wait for its result.
+     */
+    private Collection<UniprotProtein> getOrRetrieve( final String ac, final boolean processSpliceVars ) {
+        Collection<UniprotProtein> proteins = getFromCache( ac, processSpliceVars );
+        if ( proteins != null ) {
+            hitCount.incrementAndGet();
+            return proteins;
+        }
+
+        FutureTask<Collection<UniprotProtein>> lookup = new FutureTask<Collection<UniprotProtein>>( new Callable<Collection<UniprotProtein>>() {
+            public Collection<UniprotProtein> call() {
+                // another lookup may have completed since we checked the cache
+                Collection<UniprotProtein> proteins = getFromCache( ac, processSpliceVars );
+                if ( proteins == null ) {
+                    proteins = service.retrieve( ac, processSpliceVars );
+                    if ( !isFailure( ac, proteins ) ) {
+                        storeInCache( proteins, ac, processSpliceVars );
+                    }
+                }
+                return proteins;
+            }
+        } );
+
+        String key = cacheKey( ac, processSpliceVars );
+        FutureTask<Collection<UniprotProtein>> runningLookup = inFlightLookups.putIfAbsent( key, lookup );
+        if ( runningLookup == null ) {
+            missCount.incrementAndGet();
+            try {
+                lookup.run();
+            } finally {
+                inFlightLookups.remove( key, lookup );
+            }
+        } else {
+            if ( log.isDebugEnabled() ) {
+                log.debug( "Waiting for the lookup of " + ac + " already running" );
+            }
+            coalescedCount.incrementAndGet();
+            lookup = runningLookup;
+        }
+
+        try {
+            return lookup.get();
+        } catch ( InterruptedException e ) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeUniprotServiceException( "Interrupted while waiting for the lookup of " + ac, e );
+        } catch ( ExecutionException e ) {
+            if ( e.getCause() instanceof RuntimeException ) {
+                throw ( RuntimeException ) e.getCause();
+            }
+            throw new RuntimeUniprotServiceException( "Could not retrieve " + ac, e.getCause() );
+        }
+    }
+
+    /**
+     * Tells a lookup that failed, eg. as UniProt could not be queried, from one that found nothing: the underlying
+     * service returns no protein for both, but only reports the failure with an exception.
+     */
+    private boolean isFailure( String ac, Collection<UniprotProtein> proteins ) {
+        if ( !proteins.isEmpty() ) {
+            return false;
+        }
+        UniprotServiceReport report = service.getErrors().get( ac );
+        return report != null && report.getException() != null;
+    }
+
+    /**
+     * Proteins retrieved without their splice variants and feature chains are cached under their own key, so that they
+     * are never served to a caller expecting them.
+     */
+    private String cacheKey( String ac, boolean processSpliceVars ) {
+        return processSpliceVars ? ac : ac + NO_SPLICE_VARIANTS_KEY_SUFFIX;
+    }
+
+    private String aliasKey( String ac ) {
+        return ALIAS_KEY_PREFIX + ac;
+    }
+
+    private String lookupKey( String ac ) {
+        return LOOKUP_KEY_PREFIX + ac;
+    }
+
+    /**
+     * Gets the proteins of an AC, from the lookup made with it, as a primary AC or through the alias index. A lookup
+     * is only served from the cache if all the proteins it resolves to are still cached.
+     */
+    private Collection<UniprotProtein> getFromCache( String ac, boolean processSpliceVars ) {
+        List<String> primaryAcs = getPrimaryAcs( lookupKey( ac ) );
+
+        if ( primaryAcs == null ) {
+            Collection<UniprotProtein> proteins = getProtein( ac, processSpliceVars );
+            if ( proteins != null ) {
+                return proteins;
+            }
+
+            primaryAcs = getPrimaryAcs( aliasKey( ac ) );
+            if ( primaryAcs == null ) {
+                return null;
+            }
+        }
+
+        if ( primaryAcs.size() == 1 ) {
+            return getProtein( primaryAcs.get( 0 ), processSpliceVars );
+        }
+
+        Collection<UniprotProtein> proteins = new ArrayList<UniprotProtein>( primaryAcs.size() );
+        for ( String primaryAc : primaryAcs ) {
+            Collection<UniprotProtein> protein = getProtein( primaryAc, processSpliceVars );
+            if ( protein == null ) {
+                return null;
+            }
+            proteins.addAll( protein );
+        }
+
+        return proteins;
+    }
+
+    /**
+     * Gets the protein cached under the given primary AC.
+     */
+    private Collection<UniprotProtein> getProtein( String primaryAc, boolean processSpliceVars ) {
+
+        // a fully processed entry can serve any request
+        Collection<UniprotProtein> proteins = getFromCache( cacheKey( primaryAc, true ) );
+
+        if ( proteins == null && !processSpliceVars ) {
+            proteins = getFromCache( cacheKey( primaryAc, false ) );
+        }
+
+        return proteins;
+    }
+
+    private List<String> getPrimaryAcs( String key ) {
+        Element element = cache.get( key );
+        return element == null ? null : ( List<String> ) element.getValue();
+    }
+
+    private Collection<UniprotProtein> getFromCache( String key ) {
 
         Collection<UniprotProtein> proteins = null;
 
-        Element element = cache.get( ac );
+        Element element = cache.get( key );
 
         if ( element != null ) {
-            proteins = ( Collection<UniprotProtein> ) element.getValue();
+            if ( element.getValue() instanceof byte[] ) {
+                try {
+                    proteins = codec.decode( ( byte[] ) element.getValue() );
+                } catch ( IOException e ) {
+                    throw new RuntimeUniprotServiceException( "Could not decode the cached proteins of " + key, e );
+                }
+            } else {
+                proteins = ( Collection<UniprotProtein> ) element.getValue();
+            }
         }
 
         return proteins;
     }
 
-    private void storeInCache( Collection<UniprotProtein> proteins, String ac ) {
-        Element element = new Element( ac, proteins );
+    /**
+     * Caches each protein under its primary AC, records the primary ACs the given AC was found to resolve to and
+     * indexes the identifiers of the proteins as aliases.
+     */
+    private void storeInCache( Collection<UniprotProtein> proteins, String ac, boolean processSpliceVars ) {
+        List<String> primaryAcs = new ArrayList<String>( proteins.size() );
+
+        for ( UniprotProtein protein : proteins ) {
+            Collection<UniprotProtein> entry = proteins;
+            if ( proteins.size() > 1 ) {
+                entry = new ArrayList<UniprotProtein>( 1 );
+                entry.add( protein );
+            }
+            storeElement( cacheKey( protein.getPrimaryAc(), processSpliceVars ), entry );
+
+            primaryAcs.add( protein.getPrimaryAc() );
+            indexAliases( protein, processSpliceVars );
+        }
+
+        if ( primaryAcs.size() != 1 || !primaryAcs.get( 0 ).equals( ac ) ) {
+            // the outcome of the lookup itself, which replaces any previous one
+            cache.put( new Element( lookupKey( ac ), primaryAcs ) );
+        }
+    }
+
+    private void indexAliases( UniprotProtein protein, boolean processSpliceVars ) {
+        String primaryAc = protein.getPrimaryAc();
+
+        addAlias( protein.getId(), primaryAc );
+
+        if ( processSpliceVars ) {
+            for ( UniprotFeatureChain featureChain : protein.getFeatureChains() ) {
+                String chainAc = featureChain.getPrimaryAc();
+                addAlias( chainAc, primaryAc );
+
+                // feature chains are also looked up without the AC of their master protein (eg. PRO_xxxxx)
+                if ( chainAc != null && chainAc.startsWith( primaryAc + "-" ) ) {
+                    addAlias( chainAc.substring( primaryAc.length() + 1 ), primaryAc );
+                }
+            }
+        }
+    }
+
+    /**
+     * Indexes an identifier of a single protein. The alias is replaced as a whole rather than merged with what it
+     * resolved to, so that concurrent updates cannot lose one another.
+     */
+    private void addAlias( String alias, String primaryAc ) {
+        if ( alias == null || alias.equals( primaryAc ) ) {
+            return;
+        }
+
+        String key = aliasKey( alias );
+        if ( !Collections.singletonList( primaryAc ).equals( getPrimaryAcs( key ) ) ) {
+            cache.put( new Element( key, Collections.singletonList( primaryAc ) ) );
+        }
+    }
+
+    private void storeElement( String key, Collection<UniprotProtein> proteins ) {
+        Element element;
+
+        if ( codec != null ) {
+            try {
+                element = new Element( key, codec.encode( proteins ) );
+            } catch ( IOException e ) {
+                throw new RuntimeUniprotServiceException( "Could not encode the proteins of " + key, e );
+            }
+        } else {
+            element = new Element( key, proteins );
+        }
+
         cache.put( element );
     }
 }
\ No newline at end of file
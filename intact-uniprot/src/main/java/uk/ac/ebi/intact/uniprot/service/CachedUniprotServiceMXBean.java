@@ -0,0 +1,25 @@
+/*
+ * Copyright (c) 2002 The European Bioinformatics Institute, and others.
+ * All rights reserved. Please see the file LICENSE
+ * in the root directory of this distribution.
+ */
+package uk.ac.ebi.intact.uniprot.service;
+
+/**
+ * JMX view of the activity of a CachedUniprotService.
+ *
+ * @version $Id$
+ * @since 2.1.35
+ */
+public interface CachedUniprotServiceMXBean {
+
+    long getHitCount();
+
+    long getMissCount();
+
+    long getCoalescedCount();
+
+    long getEvictionCount();
+
+    int getCacheSize();
+}
@@ -0,0 +1,319 @@
+/*
+ * Copyright (c) 2002 The European Bioinformatics Institute, and others.
+ * All rights reserved. Please see the file LICENSE
+ * in the root directory of this distribution.
+ */
+package uk.ac.ebi.intact.uniprot.service;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import uk.ac.ebi.intact.uniprot.model.UniprotFeatureChain;
+import uk.ac.ebi.intact.uniprot.model.UniprotProtein;
+import uk.ac.ebi.intact.uniprot.model.UniprotSpliceVariant;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+
+/**
+ * Runs the lookups of a synchronous UniprotService (eg. a <code>SimpleUniprotRemoteService</code> or a
+ * <code>CachedUniprotService</code>) on an executor. Bulk lookups are sent to the underlying service in batches,
+ * each AC's future completing as soon as its batch has been retrieved.
+ *
+ * Closing the service cancels the lookups still awaited, queued or running, so that every future completes. An
+ * executor given by the caller is left running, only the one created by this service is shut down.
+ *
+ * @version $Id$
+ * @since 2.1.35
+ */
+public class DefaultAsyncUniprotService implements AsyncUniprotService {
+
+    /**
+     * Sets up a logger for that class.
+     */
+    public static final Log log = LogFactory.getLog( DefaultAsyncUniprotService.class );
+
+    /**
+     * Default number of threads running the lookups.
+     */
+    public static final int DEFAULT_THREAD_COUNT = 4;
+
+    /**
+     * The UniprotService doing the actual lookups.
+     */
+    private UniprotService service;
+
+    /**
+     * Runs the lookups.
+     */
+    private ExecutorService executor;
+
+    /**
+     * Whether the executor was created by this service, and must be shut down with it.
+     */
+    private boolean ownsExecutor;
+
+    /**
+     * Fails the lookups that timed out.
+     */
+    private ScheduledExecutorService timer;
+
+    /**
+     * Futures not completed yet, cancelled on close.
+     */
+    private final Set<CompletableFuture<?>> pendingFutures =
+            Collections.newSetFromMap( new ConcurrentHashMap<CompletableFuture<?>, Boolean>() );
+
+    private volatile boolean closed;
+
+    /**
+     * Number of ACs sent to the underlying service in one go by the bulk lookup.
+     */
+    private int batchSize = SimpleUniprotRemoteService.DEFAULT_BATCH_SIZE;
+
+    public DefaultAsyncUniprotService( UniprotService service ) {
+        this( service, Executors.newFixedThreadPool( DEFAULT_THREAD_COUNT ) );
+        this.ownsExecutor = true;
+    }
+
+    /**
+     * @param service the service doing the lookups.
+     * @param executor runs the lookups. It is not shut down by <code>close()</code>, which only cancels the lookups.
+     */
+    public DefaultAsyncUniprotService( UniprotService service, ExecutorService executor ) {
+        if ( service == null ) {
+            throw new NullPointerException( "UniprotService must not be null." );
+        }
+        if ( executor == null ) {
+            throw new NullPointerException( "ExecutorService must not be null." );
+        }
+        this.service = service;
+        this.executor = executor;
+        this.timer = Executors.newSingleThreadScheduledExecutor( new ThreadFactory() {
+            public Thread newThread( Runnable runnable ) {
+                Thread thread = new Thread( runnable, "uniprot-async-timer" );
+                thread.setDaemon( true );
+                return thread;
+            }
+        } );
+    }
+
+    public CompletableFuture<Collection<UniprotProtein>> retrieveAsync( String ac ) {
+        return retrieveAsync( ac, 0, TimeUnit.MILLISECONDS );
+    }
+
+    public CompletableFuture<Collection<UniprotProtein>> retrieveAsync( final String ac, long timeout, TimeUnit unit ) {
+        checkAc( ac );
+        return submit( new Callable<Collection<UniprotProtein>>() {
+            public Collection<UniprotProtein> call() {
+                return service.retrieve( ac );
+            }
+        }, timeout, unit );
+    }
+
+    public Map<String, CompletableFuture<Collection<UniprotProtein>>> retrieveAsync( Collection<String> acs ) {
+        return retrieveAsync( acs, 0, TimeUnit.MILLISECONDS );
+    }
+
+    public Map<String, CompletableFuture<Collection<UniprotProtein>>> retrieveAsync( Collection<String> acs, long timeout, TimeUnit unit ) {
+        if ( acs == null ) {
+            throw new IllegalArgumentException( "You must give a non null List of UniProt ACs." );
+        }
+
+        if ( acs.isEmpty() ) {
+            throw new IllegalArgumentException( "You must give a non empty List of UniProt ACs." );
+        }
+
+        List<String> uniqueAcs = new ArrayList<String>( new LinkedHashSet<String>( acs ) );
+        Map<String, CompletableFuture<Collection<UniprotProtein>>> futures =
+                new LinkedHashMap<String, CompletableFuture<Collection<UniprotProtein>>>( uniqueAcs.size() );
+
+        for ( int from = 0; from < uniqueAcs.size(); from += batchSize ) {
+            final Map<String, CompletableFuture<Collection<UniprotProtein>>> batch =
+                    new LinkedHashMap<String, CompletableFuture<Collection<UniprotProtein>>>();
+            for ( String ac : uniqueAcs.subList( from, Math.min( from + batchSize, uniqueAcs.size() ) ) ) {
+                checkAc( ac );
+                batch.put( ac, new CompletableFuture<Collection<UniprotProtein>>() );
+            }
+
+            Future<?> task = executor.submit( new Runnable() {
+                public void run() {
+                    retrieveBatch( batch );
+                }
+            } );
+
+            watch( batch.values(), task, timeout, unit );
+            futures.putAll( batch );
+        }
+
+        return futures;
+    }
+
+    public CompletableFuture<Collection<UniprotSpliceVariant>> retrieveSpliceVariantAsync( final String ac ) {
+        checkAc( ac );
+        return submit( new Callable<Collection<UniprotSpliceVariant>>() {
+            public Collection<UniprotSpliceVariant> call() {
+                return service.retrieveSpliceVariant( ac );
+            }
+        }, 0, TimeUnit.MILLISECONDS );
+    }
+
+    public CompletableFuture<Collection<UniprotFeatureChain>> retrieveFeatureChainAsync( final String ac ) {
+        checkAc( ac );
+        return submit( new Callable<Collection<UniprotFeatureChain>>() {
+            public Collection<UniprotFeatureChain> call() {
+                return service.retrieveFeatureChain( ac );
+            }
+        }, 0, TimeUnit.MILLISECONDS );
+    }
+
+    public UniprotService getService() {
+        return service;
+    }
+
+    public void setBatchSize( int batchSize ) {
+        if ( batchSize < 1 ) {
+            throw new IllegalArgumentException( "The batch size must be 1 or greater." );
+        }
+        this.batchSize = batchSize;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public void close() {
+        closed = true;
+
+        // cancelling the futures cancels their task, queued or running
+        for ( CompletableFuture<?> future : new ArrayList<CompletableFuture<?>>( pendingFutures ) ) {
+            future.cancel( true );
+        }
+
+        if ( ownsExecutor ) {
+            executor.shutdownNow();
+        }
+        timer.shutdownNow();
+        service.close();
+    }
+
+    //////////////////////////
+    // private methods
+
+    private void checkAc( String ac ) {
+        if ( ac == null ) {
+            throw new IllegalArgumentException( "You must give a non null UniProt AC." );
+        }
+    }
+
+    private <T> CompletableFuture<T> submit( final Callable<T> call, long timeout, TimeUnit unit ) {
+        final CompletableFuture<T> future = new CompletableFuture<T>();
+
+        Future<?> task = executor.submit( new Runnable() {
+            public void run() {
+                if ( future.isDone() ) {
+                    // cancelled or timed out before we even started
+                    return;
+                }
+                try {
+                    future.complete( call.call() );
+                } catch ( Throwable t ) {
+                    future.completeExceptionally( t );
+                }
+            }
+        } );
+
+        watch( Collections.singletonList( future ), task, timeout, unit );
+
+        return future;
+    }
+
+    /**
+     * Retrieves the ACs of a batch that are still awaited and completes their future.
+     */
+    private void retrieveBatch( Map<String, CompletableFuture<Collection<UniprotProtein>>> batch ) {
+        List<String> pendingAcs = new ArrayList<String>( batch.size() );
+        for ( Map.Entry<String, CompletableFuture<Collection<UniprotProtein>>> entry : batch.entrySet() ) {
+            if ( !entry.getValue().isDone() ) {
+                pendingAcs.add( entry.getKey() );
+            }
+        }
+
+        if ( pendingAcs.isEmpty() ) {
+            return;
+        }
+
+        try {
+            Map<String, Collection<UniprotProtein>> proteins = service.retrieve( pendingAcs );
+            for ( String ac : pendingAcs ) {
+                Collection<UniprotProtein> found = proteins.get( ac );
+                batch.get( ac ).complete( found != null ? found : new ArrayList<UniprotProtein>() );
+            }
+        } catch ( Throwable t ) {
+            for ( String ac : pendingAcs ) {
+                batch.get( ac ).completeExceptionally( t );
+            }
+        }
+    }
+
+    /**
+     * Keeps the futures until they complete, makes them time out if needed, and cancels the task serving them once
+     * none of them is awaited anymore.
+     */
+    private void watch( Collection<? extends CompletableFuture<?>> futures, final Future<?> task, long timeout, final TimeUnit unit ) {
+        final AtomicInteger awaitedFutures = new AtomicInteger( futures.size() );
+
+        for ( final CompletableFuture<?> future : futures ) {
+            pendingFutures.add( future );
+            future.whenComplete( new BiConsumer<Object, Throwable>() {
+                public void accept( Object result, Throwable throwable ) {
+                    pendingFutures.remove( future );
+                }
+            } );
+
+            if ( timeout > 0 ) {
+                final long delay = timeout;
+                final ScheduledFuture<?> timeoutTask = timer.schedule( new Runnable() {
+                    public void run() {
+                        future.completeExceptionally( new TimeoutException( "UniProt lookup did not complete within " + delay + " " + unit ) );
+                    }
+                }, timeout, unit );
+
+                future.whenComplete( new BiConsumer<Object, Throwable>() {
+                    public void accept( Object result, Throwable throwable ) {
+                        timeoutTask.cancel( false );
+                    }
+                } );
+            }
+
+            future.whenComplete( new BiConsumer<Object, Throwable>() {
+                public void accept( Object result, Throwable throwable ) {
+                    // the task fails the futures itself when the service fails, only a cancelled or timed out
+                    // future means that its caller gave up waiting
+                    if ( isAbandoned( throwable ) && awaitedFutures.decrementAndGet() == 0 ) {
+                        if ( log.isDebugEnabled() ) {
+                            log.debug( "Cancelling UniProt lookup as no one is waiting for it anymore" );
+                        }
+                        task.cancel( true );
+                    }
+                }
+            } );
+
+            if ( closed ) {
+                // closed while the lookup was being submitted
+                future.cancel( true );
+            }
+        }
+    }
+
+    /**
+     * @return true if a future completed with this throwable was cancelled or timed out.
+     */
+    private static boolean isAbandoned( Throwable throwable ) {
+        if ( throwable instanceof CompletionException && throwable.getCause() != null ) {
+            throwable = throwable.getCause();
+        }
+        return throwable instanceof CancellationException || throwable instanceof TimeoutException;
+    }
+}
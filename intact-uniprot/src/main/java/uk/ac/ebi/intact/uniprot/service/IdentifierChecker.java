@@ -5,11 +5,13 @@
  */
 package uk.ac.ebi.intact.uniprot.service;
 
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.*;
 
 /**
- * TODO comment this
+ * Checks the syntax of UniProt identifiers.
+ *
+ * The identifiers are classified by scanning their characters once, without any allocation, so that millions of them
+ * can be checked quickly.
  *
  * @author Samuel Kerrien (skerrien@ebi.ac.uk)
  * @version $Id$
@@ -17,24 +19,70 @@ import java.util.regex.Pattern;
  */
 public class IdentifierChecker {
 
-    // Protein : [OPQ][0-9][A-Z0-9]{3}[0-9]
-    // Splice V: [OPQ][0-9][A-Z0-9]{3}[0-9]-[0-9]+
+    // Protein : [A-Z][0-9][A-Z0-9]{3}[0-9]
+    // Splice V: [A-Z][0-9][A-Z0-9]{3}[0-9]-[0-9]+
     // EMBL    : [A-Z]{3}[0-9]{5}
-    // F. Chain: [OPQ][0-9][A-Z0-9]{3}[0-9]-PRO_[0-9]{10} | PRO_[0-9]{10}
+    // F. Chain: [A-Z][0-9][A-Z0-9]{3}[0-9]-PRO_[0-9]{10} | PRO_[0-9]{10}
 
-    private static final String PROTEIN_AC_PATTERN_STR = "[A-Z][0-9][A-Z0-9]{3}[0-9]";
+    private static final int PROTEIN_AC_LENGTH = 6;
 
+    private static final String FEATURE_CHAIN_PREFIX = "PRO_";
 
-    private static final Pattern PROTEIN_AC_PATTERN = Pattern.compile( PROTEIN_AC_PATTERN_STR );
-    private static final Pattern SPLICE_VARIANT_ID_PATTERN = Pattern.compile( PROTEIN_AC_PATTERN_STR + "-[0-9]+" );
-    private static final Pattern FEATURE_CHAIN_ID_PATTERN = Pattern.compile( PROTEIN_AC_PATTERN_STR + "-PRO_[0-9]{10}|PRO_[0-9]{10}" );
+    private static final int FEATURE_CHAIN_ID_LENGTH = FEATURE_CHAIN_PREFIX.length() + 10;
 
-    private static boolean check( Pattern pattern, String ac ) {
+    /**
+     * Gives the kind of a UniProt identifier.
+     *
+     * @param ac the identifier to classify.
+     *
+     * @return the kind of identifier, INVALID if its syntax is not one of UniProt's.
+     */
+    public static UniprotIdentifierType classify( String ac ) {
         if ( ac == null ) {
             throw new IllegalArgumentException( "You must give a non null Identifier to check upon." );
         }
-        Matcher matcher = pattern.matcher( ac );
-        return matcher.matches();
+
+        int length = ac.length();
+        if ( length >= PROTEIN_AC_LENGTH && isProteinAc( ac ) ) {
+            if ( length == PROTEIN_AC_LENGTH ) {
+                return UniprotIdentifierType.PROTEIN;
+            }
+            if ( ac.charAt( PROTEIN_AC_LENGTH ) != '-' || length == PROTEIN_AC_LENGTH + 1 ) {
+                return UniprotIdentifierType.INVALID;
+            }
+            if ( isDigits( ac, PROTEIN_AC_LENGTH + 1, length ) ) {
+                return UniprotIdentifierType.SPLICE_VARIANT;
+            }
+            return isFeatureChainSuffix( ac, PROTEIN_AC_LENGTH + 1 ) ? UniprotIdentifierType.FEATURE_CHAIN : UniprotIdentifierType.INVALID;
+        }
+
+        return isFeatureChainSuffix( ac, 0 ) ? UniprotIdentifierType.FEATURE_CHAIN : UniprotIdentifierType.INVALID;
+    }
+
+    /**
+     * Sorts identifiers by kind, eg. to retrieve each kind in batch.
+     *
+     * @param acs the identifiers to classify.
+     *
+     * @return the identifiers of each kind, in their original order. All the kinds are present, possibly with no
+     * identifier.
+     */
+    public static Map<UniprotIdentifierType, List<String>> partition( Collection<String> acs ) {
+        if ( acs == null ) {
+            throw new IllegalArgumentException( "You must give a non null collection of identifiers." );
+        }
+
+        Map<UniprotIdentifierType, List<String>> partitions =
+                new EnumMap<UniprotIdentifierType, List<String>>( UniprotIdentifierType.class );
+        for ( UniprotIdentifierType type : UniprotIdentifierType.values() ) {
+            partitions.put( type, new ArrayList<String>() );
+        }
+
+        for ( String ac : acs ) {
+            partitions.get( classify( ac ) ).add( ac );
+        }
+
+        return partitions;
     }
 
     /**
@@ -45,7 +93,7 @@ public class IdentifierChecker {
      * @return true is the syntax is correct, false otherwise.
      */
     public static boolean isProteinId( String ac ) {
-        return check( PROTEIN_AC_PATTERN, ac );
+        return classify( ac ) == UniprotIdentifierType.PROTEIN;
     }
 
     /**
@@ -56,7 +104,7 @@ public class IdentifierChecker {
      * @return true is the syntax is correct, false otherwise.
      */
     public static boolean isSpliceVariantId( String ac ) {
-        return check( SPLICE_VARIANT_ID_PATTERN, ac );
+        return classify( ac ) == UniprotIdentifierType.SPLICE_VARIANT;
     }
 
     /**
@@ -67,6 +115,51 @@ public class IdentifierChecker {
      * @return true is the syntax is correct, false otherwise.
      */
     public static boolean isFeatureChainId( String ac ) {
-        return check( FEATURE_CHAIN_ID_PATTERN, ac );
+        return classify( ac ) == UniprotIdentifierType.FEATURE_CHAIN;
+    }
+
+    //////////////////////////
+    // private methods
+
+    /**
+     * [A-Z][0-9][A-Z0-9]{3}[0-9] at the start of the identifier.
+     */
+    private static boolean isProteinAc( String ac ) {
+        if ( !isUpperCase( ac.charAt( 0 ) ) || !isDigit( ac.charAt( 1 ) ) ) {
+            return false;
+        }
+        for ( int i = 2; i < 5; i++ ) {
+            char c = ac.charAt( i );
+            if ( !isUpperCase( c ) && !isDigit( c ) ) {
+                return false;
+            }
+        }
+        return isDigit( ac.charAt( 5 ) );
+    }
+
+    /**
+     * PRO_[0-9]{10} from the given index to the end of the identifier.
+     */
+    private static boolean isFeatureChainSuffix( String ac, int from ) {
+        return ac.length() - from == FEATURE_CHAIN_ID_LENGTH
+               && ac.startsWith( FEATURE_CHAIN_PREFIX, from )
+               && isDigits( ac, from + FEATURE_CHAIN_PREFIX.length(), ac.length() );
+    }
+
+    private static boolean isDigits( String ac, int from, int to ) {
+        for ( int i = from; i < to; i++ ) {
+            if ( !isDigit( ac.charAt( i ) ) ) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isDigit( char c ) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static boolean isUpperCase( char c ) {
+        return c >= 'A' && c <= 'Z';
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,191 @@
+/*
+ * Copyright (c) 2002 The European Bioinformatics Institute, and others.
+ * All rights reserved. Please see the file LICENSE
+ * in the root directory of this distribution.
+ */
+package uk.ac.ebi.intact.uniprot.service;
+
+import uk.ac.ebi.intact.uniprot.model.UniprotFeatureChain;
+import uk.ac.ebi.intact.uniprot.model.UniprotProtein;
+import uk.ac.ebi.intact.uniprot.model.UniprotProteinTranscript;
+import uk.ac.ebi.intact.uniprot.model.UniprotSpliceVariant;
+import uk.ac.ebi.intact.uniprot.service.metrics.UniprotServiceMetrics;
+import uk.ac.ebi.intact.uniprot.service.referenceFilter.CrossReferenceFilter;
+
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * Proxy implementation recording the count, latency and number of entries returned of each call to the underlying
+ * service in a UniprotServiceMetrics.
+ *
+ * It can be put in front of any service or decorator, the operations being recorded under a prefix naming the layer:
+ * eg. "cache.retrieve" in front of a CachedUniprotService and "remote.retrieve" in front of the remote service it
+ * wraps tell apart the time spent waiting for UniProt from the time saved by the cache. The metrics are also given to
+ * the underlying service, which records the errors it reports.
+ *
+ * @version $Id$
+ * @since 2.1.35
+ */
+public class InstrumentedUniprotService extends AbstractUniprotService implements UniprotService {
+
+    /**
+     * The UniprotService we are going to record the calls of.
+     */
+    private UniprotService service;
+
+    /**
+     * Prefix of the operation names, ending with a dot.
+     */
+    private String prefix;
+
+    /**
+     * @param service the service to instrument.
+     * @param metrics where the calls are recorded.
+     * @param name name of the layer instrumented, prefixing the operation names.
+     */
+    public InstrumentedUniprotService( UniprotService service, UniprotServiceMetrics metrics, String name ) {
+        super();
+        if ( service == null ) {
+            throw new IllegalArgumentException( "You must give a non null UniprotService." );
+        }
+        if ( metrics == null ) {
+            throw new IllegalArgumentException( "You must give non null metrics." );
+        }
+        if ( name == null ) {
+            throw new IllegalArgumentException( "You must give a non null name." );
+        }
+        this.service = service;
+        this.prefix = name + ".";
+        setMetrics( metrics );
+    }
+
+    @Override
+    public void setMetrics( UniprotServiceMetrics metrics ) {
+        if ( metrics == null ) {
+            throw new IllegalArgumentException( "You must give non null metrics." );
+        }
+        super.setMetrics( metrics );
+        if ( service instanceof AbstractUniprotService && ( ( AbstractUniprotService ) service ).getMetrics() == null ) {
+            ( ( AbstractUniprotService ) service ).setMetrics( metrics );
+        }
+    }
+
+    @Deprecated
+    public Collection<UniprotProtein> retreive( String ac ) {
+        return retrieve( ac );
+    }
+
+    @Deprecated
+    public Map<String, Collection<UniprotProtein>> retreive( Collection<String> acs ) {
+        return retrieve( acs );
+    }
+
+    public Collection<UniprotProtein> retrieve( String ac ) {
+        return retrieve( ac, true );
+    }
+
+    public Collection<UniprotProtein> retrieve( String ac, boolean processSpliceVars ) {
+        long start = System.nanoTime();
+        Collection<UniprotProtein> proteins = null;
+        try {
+            proteins = service.retrieve( ac, processSpliceVars );
+            return proteins;
+        } finally {
+            record( "retrieve", start, proteins == null ? -1 : proteins.size() );
+        }
+    }
+
+    public Map<String, Collection<UniprotProtein>> retrieve( Collection<String> acs ) {
+        return retrieve( acs, true );
+    }
+
+    public Map<String, Collection<UniprotProtein>> retrieve( Collection<String> acs, boolean processSpliceVars ) {
+        long start = System.nanoTime();
+        Map<String, Collection<UniprotProtein>> proteins = null;
+        try {
+            proteins = service.retrieve( acs, processSpliceVars );
+            return proteins;
+        } finally {
+            int entries = -1;
+            if ( proteins != null ) {
+                entries = 0;
+                for ( Collection<UniprotProtein> acProteins : proteins.values() ) {
+                    entries += acProteins.size();
+                }
+            }
+            record( "retrieveBatch", start, entries );
+        }
+    }
+
+    public Collection<UniprotProteinTranscript> retrieveProteinTranscripts( String ac ) {
+        long start = System.nanoTime();
+        Collection<UniprotProteinTranscript> transcripts = null;
+        try {
+            transcripts = service.retrieveProteinTranscripts( ac );
+            return transcripts;
+        } finally {
+            record( "retrieveProteinTranscripts", start, transcripts == null ? -1 : transcripts.size() );
+        }
+    }
+
+    public Collection<UniprotSpliceVariant> retrieveSpliceVariant( String ac ) {
+        long start = System.nanoTime();
+        Collection<UniprotSpliceVariant> spliceVariants = null;
+        try {
+            spliceVariants = service.retrieveSpliceVariant( ac );
+            return spliceVariants;
+        } finally {
+            record( "retrieveSpliceVariant", start, spliceVariants == null ? -1 : spliceVariants.size() );
+        }
+    }
+
+    public Collection<UniprotFeatureChain> retrieveFeatureChain( String ac ) {
+        long start = System.nanoTime();
+        Collection<UniprotFeatureChain> featureChains = null;
+        try {
+            featureChains = service.retrieveFeatureChain( ac );
+            return featureChains;
+        } finally {
+            record( "retrieveFeatureChain", start, featureChains == null ? -1 : featureChains.size() );
+        }
+    }
+
+    @Override
+    public Map<String, UniprotServiceReport> getErrors() {
+        return service.getErrors();
+    }
+
+    @Override
+    public void clearErrors() {
+        service.clearErrors();
+    }
+
+    @Override
+    public void setCrossReferenceSelector( CrossReferenceFilter crossReferenceFilter ) {
+        service.setCrossReferenceSelector( crossReferenceFilter );
+    }
+
+    @Override
+    public CrossReferenceFilter getCrossReferenceSelector() {
+        return service.getCrossReferenceSelector();
+    }
+
+    public void close() {
+        service.close();
+    }
+
+    public void start() {
+        service.start();
+    }
+
+    //////////////////////////
+    // private methods
+
+    /**
+     * @param entries the number of entries returned, -1 if the call failed.
+     */
+    private void record( String operation, long start, int entries ) {
+        getMetrics().recordOperation( prefix + operation, System.nanoTime() - start, Math.max( entries, 0 ), entries < 0 );
+    }
+}
@@ -0,0 +1,330 @@
+/*
+ * Copyright (c) 2002 The European Bioinformatics Institute, and others.
+ * All rights reserved. Please see the file LICENSE
+ * in the root directory of this distribution.
+ */
+package uk.ac.ebi.intact.uniprot.service;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import uk.ac.ebi.intact.uniprot.model.UniprotFeatureChain;
+import uk.ac.ebi.intact.uniprot.model.UniprotProtein;
+import uk.ac.ebi.intact.uniprot.model.UniprotProteinTranscript;
+import uk.ac.ebi.intact.uniprot.model.UniprotSpliceVariant;
+import uk.ac.ebi.intact.uniprot.service.metrics.UniprotServiceMetrics;
+import uk.ac.ebi.intact.uniprot.service.referenceFilter.CrossReferenceFilter;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Proxy implementation that spreads the retrieval of many proteins over a pool of worker threads. The number of
+ * requests running concurrently against the underlying service is bounded, whatever the number of callers.
+ *
+ * The underlying service is shared by all the workers and must therefore be thread-safe. The remote services keep their
+ * UniProt query service started as long as any call is running, so one of them can be shared safely.
+ *
+ * @version $Id$
+ * @since 2.1.35
+ */
+public class ParallelUniprotService extends AbstractUniprotService implements UniprotService {
+
+    /**
+     * Sets up a logger for that class.
+     */
+    public static final Log log = LogFactory.getLog( ParallelUniprotService.class );
+
+    /**
+     * Default number of worker threads.
+     */
+    public static final int DEFAULT_THREAD_COUNT = 4;
+
+    /**
+     * The UniprotService we are going to spread queries for.
+     */
+    private UniprotService service;
+
+    /**
+     * Workers running the queries.
+     */
+    private ExecutorService executor;
+
+    /**
+     * Bounds the number of requests sent concurrently to the underlying service.
+     */
+    private Semaphore inFlightRequests;
+
+    /**
+     * Number of ACs given to a worker in one go.
+     */
+    private int batchSize = SimpleUniprotRemoteService.DEFAULT_BATCH_SIZE;
+
+    public ParallelUniprotService( UniprotService service ) {
+        this( service, DEFAULT_THREAD_COUNT, DEFAULT_THREAD_COUNT );
+    }
+
+    public ParallelUniprotService( UniprotService service, int threadCount, int maxInFlightRequests ) {
+        super();
+        if ( service == null ) {
+            throw new NullPointerException( "UniprotService must not be null." );
+        }
+        if ( threadCount < 1 ) {
+            throw new IllegalArgumentException( "The number of threads must be 1 or greater." );
+        }
+        if ( maxInFlightRequests < 1 ) {
+            throw new IllegalArgumentException( "The maximum number of in-flight requests must be 1 or greater." );
+        }
+        this.service = service;
+        this.executor = Executors.newFixedThreadPool( threadCount );
+        this.inFlightRequests = new Semaphore( maxInFlightRequests, true );
+    }
+
+    @Deprecated
+    public Collection<UniprotProtein> retreive( String ac ) {
+        return retrieve( ac );
+    }
+
+    @Deprecated
+    public Map<String, Collection<UniprotProtein>> retreive( Collection<String> acs ) {
+        return retrieve( acs );
+    }
+
+    public Collection<UniprotProtein> retrieve( String ac ) {
+        return retrieve( ac, true );
+    }
+
+    public Collection<UniprotProtein> retrieve( final String ac, final boolean processSpliceVars ) {
+        return callBounded( new Callable<Collection<UniprotProtein>>() {
+            public Collection<UniprotProtein> call() {
+                return service.retrieve( ac, processSpliceVars );
+            }
+        } );
+    }
+
+    public Map<String, Collection<UniprotProtein>> retrieve( Collection<String> acs ) {
+        return retrieve( acs, true );
+    }
+
+    public Map<String, Collection<UniprotProtein>> retrieve( Collection<String> acs, final boolean processSpliceVars ) {
+        checkAcs( acs );
+
+        List<String> uniqueAcs = new ArrayList<String>( new LinkedHashSet<String>( acs ) );
+        Map<List<String>, Future<Map<String, Collection<UniprotProtein>>>> futures =
+                new LinkedHashMap<List<String>, Future<Map<String, Collection<UniprotProtein>>>>();
+
+        for ( int from = 0; from < uniqueAcs.size(); from += batchSize ) {
+            final List<String> batch = new ArrayList<String>( uniqueAcs.subList( from, Math.min( from + batchSize, uniqueAcs.size() ) ) );
+            futures.put( batch, executor.submit( new Callable<Map<String, Collection<UniprotProtein>>>() {
+                public Map<String, Collection<UniprotProtein>> call() {
+                    return callBounded( new Callable<Map<String, Collection<UniprotProtein>>>() {
+                        public Map<String, Collection<UniprotProtein>> call() {
+                            return service.retrieve( batch, processSpliceVars );
+                        }
+                    } );
+                }
+            } ) );
+        }
+
+        Map<String, Collection<UniprotProtein>> results = new HashMap<String, Collection<UniprotProtein>>( uniqueAcs.size() );
+        for ( Map.Entry<List<String>, Future<Map<String, Collection<UniprotProtein>>>> entry : futures.entrySet() ) {
+            Map<String, Collection<UniprotProtein>> batchResults = waitFor( entry.getKey(), entry.getValue() );
+            if ( batchResults != null ) {
+                results.putAll( batchResults );
+            }
+        }
+
+        return results;
+    }
+
+    /**
+     * Retrieves the splice variants of many ACs concurrently.
+     *
+     * @param acs splice variant ACs.
+     * @return an associative structure where each given ac is an entry and associated is a collection of splice variants found.
+     */
+    public Map<String, Collection<UniprotSpliceVariant>> retrieveSpliceVariants( Collection<String> acs ) {
+        checkAcs( acs );
+
+        Map<String, Future<Collection<UniprotSpliceVariant>>> futures = new LinkedHashMap<String, Future<Collection<UniprotSpliceVariant>>>();
+        for ( final String ac : acs ) {
+            if ( !futures.containsKey( ac ) ) {
+                futures.put( ac, executor.submit( new Callable<Collection<UniprotSpliceVariant>>() {
+                    public Collection<UniprotSpliceVariant> call() {
+                        return retrieveSpliceVariant( ac );
+                    }
+                } ) );
+            }
+        }
+
+        return collect( futures );
+    }
+
+    /**
+     * Retrieves the feature chains of many ACs concurrently.
+     *
+     * @param acs feature chain ACs.
+     * @return an associative structure where each given ac is an entry and associated is a collection of feature chains found.
+     */
+    public Map<String, Collection<UniprotFeatureChain>> retrieveFeatureChains( Collection<String> acs ) {
+        checkAcs( acs );
+
+        Map<String, Future<Collection<UniprotFeatureChain>>> futures = new LinkedHashMap<String, Future<Collection<UniprotFeatureChain>>>();
+        for ( final String ac : acs ) {
+            if ( !futures.containsKey( ac ) ) {
+                futures.put( ac, executor.submit( new Callable<Collection<UniprotFeatureChain>>() {
+                    public Collection<UniprotFeatureChain> call() {
+                        return retrieveFeatureChain( ac );
+                    }
+                } ) );
+            }
+        }
+
+        return collect( futures );
+    }
+
+    public Collection<UniprotProteinTranscript> retrieveProteinTranscripts( String ac ) {
+        Collection<UniprotProteinTranscript> variants = new ArrayList<UniprotProteinTranscript>();
+
+        variants.addAll( retrieveSpliceVariant( ac ) );
+        variants.addAll( retrieveFeatureChain( ac ) );
+
+        return variants;
+    }
+
+    public Collection<UniprotSpliceVariant> retrieveSpliceVariant( final String ac ) {
+        return callBounded( new Callable<Collection<UniprotSpliceVariant>>() {
+            public Collection<UniprotSpliceVariant> call() {
+                return service.retrieveSpliceVariant( ac );
+            }
+        } );
+    }
+
+    public Collection<UniprotFeatureChain> retrieveFeatureChain( final String ac ) {
+        return callBounded( new Callable<Collection<UniprotFeatureChain>>() {
+            public Collection<UniprotFeatureChain> call() {
+                return service.retrieveFeatureChain( ac );
+            }
+        } );
+    }
+
+    /**
+     * Errors reported by the underlying service as well as the failures of the workers.
+     */
+    @Override
+    public Map<String, UniprotServiceReport> getErrors() {
+        Map<String, UniprotServiceReport> errors = new HashMap<String, UniprotServiceReport>( service.getErrors() );
+        errors.putAll( super.getErrors() );
+        return errors;
+    }
+
+    @Override
+    public void clearErrors() {
+        super.clearErrors();
+        service.clearErrors();
+    }
+
+    @Override
+    public void setCrossReferenceSelector( CrossReferenceFilter crossReferenceFilter ) {
+        service.setCrossReferenceSelector( crossReferenceFilter );
+    }
+
+    @Override
+    public CrossReferenceFilter getCrossReferenceSelector() {
+        return service.getCrossReferenceSelector();
+    }
+
+    /**
+     * Also gives the metrics to the underlying service, which records the errors it reports.
+     */
+    @Override
+    public void setMetrics( UniprotServiceMetrics metrics ) {
+        super.setMetrics( metrics );
+        if ( service instanceof AbstractUniprotService ) {
+            ( ( AbstractUniprotService ) service ).setMetrics( metrics );
+        }
+    }
+
+    public void setBatchSize( int batchSize ) {
+        if ( batchSize < 1 ) {
+            throw new IllegalArgumentException( "The batch size must be 1 or greater." );
+        }
+        this.batchSize = batchSize;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public void close() {
+        executor.shutdown();
+        service.close();
+    }
+
+    public void start() {
+        service.start();
+    }
+
+    //////////////////////////
+    // private methods
+
+    private void checkAcs( Collection<String> acs ) {
+        if ( acs == null ) {
+            throw new IllegalArgumentException( "You must give a non null List of UniProt ACs." );
+        }
+
+        if ( acs.isEmpty() ) {
+            throw new IllegalArgumentException( "You must give a non empty List of UniProt ACs." );
+        }
+    }
+
+    /**
+     * Runs the given call once a slot for an in-flight request is available.
+     */
+    private <T> T callBounded( Callable<T> call ) {
+        try {
+            inFlightRequests.acquire();
+        } catch ( InterruptedException e ) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeUniprotServiceException( "Interrupted while waiting to query UniProt", e );
+        }
+
+        try {
+            return call.call();
+        } catch ( RuntimeException e ) {
+            throw e;
+        } catch ( Exception e ) {
+            throw new RuntimeUniprotServiceException( e );
+        } finally {
+            inFlightRequests.release();
+        }
+    }
+
+    private <T> Map<String, T> collect( Map<String, Future<T>> futures ) {
+        Map<String, T> results = new HashMap<String, T>( futures.size() );
+        for ( Map.Entry<String, Future<T>> entry : futures.entrySet() ) {
+            T result = waitFor( Collections.singletonList( entry.getKey() ), entry.getValue() );
+            if ( result != null ) {
+                results.put( entry.getKey(), result );
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Waits for a worker to finish. If it failed, an error is reported for each of the ACs it was processing.
+     */
+    private <T> T waitFor( List<String> acs, Future<T> future ) {
+        try {
+            return future.get();
+        } catch ( InterruptedException e ) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeUniprotServiceException( "Interrupted while waiting for UniProt results", e );
+        } catch ( ExecutionException e ) {
+            Exception cause = ( e.getCause() instanceof Exception ) ? ( Exception ) e.getCause() : e;
+            for ( String ac : acs ) {
+                addError( ac, new UniprotServiceReport( "Could not retrieve: " + ac, cause ) );
+            }
+            return null;
+        }
+    }
+}
@@ -0,0 +1,243 @@
+/*
+ * Copyright (c) 2002 The European Bioinformatics Institute, and others.
+ * All rights reserved. Please see the file LICENSE
+ * in the root directory of this distribution.
+ */
+package uk.ac.ebi.intact.uniprot.service;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import uk.ac.ebi.intact.uniprot.model.UniprotFeatureChain;
+import uk.ac.ebi.intact.uniprot.model.UniprotProtein;
+import uk.ac.ebi.intact.uniprot.model.UniprotProteinTranscript;
+import uk.ac.ebi.intact.uniprot.model.UniprotSpliceVariant;
+import uk.ac.ebi.intact.uniprot.service.codec.JavaSerializationCodec;
+import uk.ac.ebi.intact.uniprot.service.codec.UniprotProteinCodec;
+import uk.ac.ebi.intact.uniprot.service.entryStore.UniprotEntryStore;
+import uk.ac.ebi.intact.uniprot.service.referenceFilter.CrossReferenceFilter;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * Proxy implementation that keeps the result of UniprotService queries in a <code>UniprotEntryStore</code> on disk.
+ *
+ * Unlike <code>CachedUniprotService</code>, the proteins survive JVM restarts and do not expire with time: they are
+ * kept until the store is opened for another UniProt release. Repeated runs against the same release therefore only
+ * query the underlying service for proteins they have never seen.
+ *
+ * Only proteins retrieved with their splice variants and feature chains are stored.
+ *
+ * @version $Id$
+ * @since 2.1.35
+ */
+public class PersistentUniprotService extends AbstractUniprotService implements UniprotService {
+
+    /**
+     * Sets up a logger for that class.
+     */
+    public static final Log log = LogFactory.getLog( PersistentUniprotService.class );
+
+    /**
+     * Where the proteins are kept.
+     */
+    private UniprotEntryStore store;
+
+    /**
+     * The UniprotService we are going to store queries for.
+     */
+    private UniprotService service;
+
+    /**
+     * @param service the service retrieving the proteins missing from the store.
+     * @param directory where the store is kept.
+     * @param release current UniProt release (eg. 2016_09), the proteins stored for another release are discarded.
+     */
+    public PersistentUniprotService( UniprotService service, File directory, String release ) {
+        this( service, directory, release, new JavaSerializationCodec() );
+    }
+
+    /**
+     * @param service the service retrieving the proteins missing from the store.
+     * @param directory where the store is kept.
+     * @param release current UniProt release (eg. 2016_09), the proteins stored for another release are discarded.
+     * @param codec encodes the stored proteins (eg. <code>BinaryUniprotProteinCodec</code>).
+     */
+    public PersistentUniprotService( UniprotService service, File directory, String release, UniprotProteinCodec codec ) {
+        super();
+        if ( service == null ) {
+            throw new NullPointerException( "UniprotService must not be null." );
+        }
+        this.service = service;
+
+        try {
+            this.store = new UniprotEntryStore( directory, release, codec );
+        } catch ( IOException e ) {
+            throw new RuntimeUniprotServiceException( "Could not open the UniProt entry store in: " + directory, e );
+        }
+    }
+
+    @Deprecated
+    public Collection<UniprotProtein> retreive( String ac ) {
+        return retrieve( ac );
+    }
+
+    @Deprecated
+    public Map<String, Collection<UniprotProtein>> retreive( Collection<String> acs ) {
+        return retrieve( acs );
+    }
+
+    public Collection<UniprotProtein> retrieve( String ac ) {
+        return retrieve( ac, true );
+    }
+
+    public Collection<UniprotProtein> retrieve( String ac, boolean processSpliceVars ) {
+        Collection<UniprotProtein> proteins = getFromStore( ac );
+
+        if ( proteins == null ) {
+            proteins = service.retrieve( ac, processSpliceVars );
+            if ( processSpliceVars ) {
+                storeProteins( ac, proteins );
+            }
+        }
+
+        return proteins;
+    }
+
+    public Map<String, Collection<UniprotProtein>> retrieve( Collection<String> acs ) {
+        return retrieve( acs, true );
+    }
+
+    public Map<String, Collection<UniprotProtein>> retrieve( Collection<String> acs, boolean processSpliceVars ) {
+        Map<String, Collection<UniprotProtein>> resultMap = new HashMap<String, Collection<UniprotProtein>>( acs.size() );
+        List<String> missingAcs = new ArrayList<String>();
+
+        for ( String ac : new LinkedHashSet<String>( acs ) ) {
+            Collection<UniprotProtein> proteins = getFromStore( ac );
+            if ( proteins != null ) {
+                resultMap.put( ac, proteins );
+            } else {
+                missingAcs.add( ac );
+            }
+        }
+
+        if ( !missingAcs.isEmpty() ) {
+            Map<String, Collection<UniprotProtein>> retrievedMap = service.retrieve( missingAcs, processSpliceVars );
+
+            for ( String ac : missingAcs ) {
+                Collection<UniprotProtein> proteins = retrievedMap.get( ac );
+                if ( proteins != null ) {
+                    if ( processSpliceVars ) {
+                        storeProteins( ac, proteins );
+                    }
+                    resultMap.put( ac, proteins );
+                }
+            }
+        }
+
+        return resultMap;
+    }
+
+    public Collection<UniprotProteinTranscript> retrieveProteinTranscripts( String ac ) {
+        Collection<UniprotProteinTranscript> variants = new ArrayList<UniprotProteinTranscript>();
+
+        variants.addAll( retrieveSpliceVariant( ac ) );
+        variants.addAll( retrieveFeatureChain( ac ) );
+
+        return variants;
+    }
+
+    public Collection<UniprotSpliceVariant> retrieveSpliceVariant( String ac ) {
+        Collection<UniprotSpliceVariant> variants = new ArrayList<UniprotSpliceVariant>();
+        Collection<String> variantAcProcessed = new ArrayList<String>();
+
+        for ( UniprotProtein p : retrieve( ac, true ) ) {
+            UniprotSpliceVariant variant = retrieveUniprotSpliceVariant( p, ac );
+
+            if ( variant != null && !variantAcProcessed.contains( variant.getPrimaryAc() ) ) {
+                variants.add( variant );
+                variantAcProcessed.add( variant.getPrimaryAc() );
+                variant.setMasterProtein( p );
+            }
+        }
+
+        return variants;
+    }
+
+    public Collection<UniprotFeatureChain> retrieveFeatureChain( String ac ) {
+        Collection<UniprotFeatureChain> variants = new ArrayList<UniprotFeatureChain>();
+
+        for ( UniprotProtein p : retrieve( ac, true ) ) {
+            UniprotFeatureChain variant = retrieveUniprotFeatureChain( p, ac );
+
+            if ( variant != null ) {
+                variants.add( variant );
+                variant.setMasterProtein( p );
+            }
+        }
+
+        return variants;
+    }
+
+    public Map<String, UniprotServiceReport> getErrors() {
+        return service.getErrors();
+    }
+
+    public void clearErrors() {
+        service.clearErrors();
+    }
+
+    public void setCrossReferenceSelector( CrossReferenceFilter crossReferenceFilter ) {
+        service.setCrossReferenceSelector( crossReferenceFilter );
+    }
+
+    public CrossReferenceFilter getCrossReferenceSelector() {
+        return service.getCrossReferenceSelector();
+    }
+
+    public UniprotEntryStore getStore() {
+        return store;
+    }
+
+    public void close() {
+        try {
+            store.close();
+        } catch ( IOException e ) {
+            log.error( "Could not close the UniProt entry store: " + store.getDataFile(), e );
+        }
+        service.close();
+    }
+
+    public void start() {
+        service.start();
+    }
+
+    //////////////////////////
+    // private methods
+
+    /**
+     * A store that cannot be read is not fatal, the proteins are retrieved from the underlying service instead.
+     */
+    private Collection<UniprotProtein> getFromStore( String ac ) {
+        try {
+            return store.get( ac );
+        } catch ( IOException e ) {
+            log.error( "Could not read " + ac + " from the UniProt entry store: " + store.getDataFile(), e );
+            return null;
+        }
+    }
+
+    private void storeProteins( String ac, Collection<UniprotProtein> proteins ) {
+        if ( proteins.isEmpty() ) {
+            // it may come back in a later lookup
+            return;
+        }
+
+        try {
+            store.put( ac, proteins );
+        } catch ( IOException e ) {
+            log.error( "Could not write " + ac + " to the UniProt entry store: " + store.getDataFile(), e );
+        }
+    }
+}
@@ -0,0 +1,164 @@
+/*
+ * Copyright (c) 2002 The European Bioinformatics Institute, and others.
+ * All rights reserved. Please see the file LICENSE
+ * in the root directory of this distribution.
+ */
+package uk.ac.ebi.intact.uniprot.service;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Iterator reading another iterator ahead of the caller in a background thread.
+ *
+ * At most <code>bufferSize</code> elements are read ahead: the background thread waits for the caller to consume them
+ * before reading more, so that memory stays flat however large the source. An exception thrown by the source is
+ * rethrown to the caller when it reaches that point. If the source is <code>Closeable</code>, it is closed once it
+ * has been read entirely, has failed or the iterator has been closed.
+ *
+ * @version $Id$
+ * @since 2.1.35
+ */
+public class PrefetchingIterator<T> implements Iterator<T>, Closeable {
+
+    /**
+     * Sets up a logger for that class.
+     */
+    public static final Log log = LogFactory.getLog( PrefetchingIterator.class );
+
+    /**
+     * Marks the end of the source.
+     */
+    private static final Object END = new Object();
+
+    /**
+     * Failure of the source, rethrown when reached.
+     */
+    private static class Failure {
+
+        private final Throwable cause;
+
+        private Failure( Throwable cause ) {
+            this.cause = cause;
+        }
+    }
+
+    private final BlockingQueue<Object> buffer;
+
+    private final Thread reader;
+
+    private volatile boolean closed;
+
+    /**
+     * The next element, taken from the buffer but not returned yet.
+     */
+    private Object next;
+
+    /**
+     * @param source the iterator to read ahead.
+     * @param bufferSize maximum number of elements read ahead.
+     * @param threadName name of the background thread.
+     */
+    public PrefetchingIterator( final Iterator<T> source, int bufferSize, String threadName ) {
+        if ( source == null ) {
+            throw new IllegalArgumentException( "You must give a non null source iterator." );
+        }
+        if ( bufferSize < 1 ) {
+            throw new IllegalArgumentException( "The buffer size must be 1 or greater." );
+        }
+
+        this.buffer = new ArrayBlockingQueue<Object>( bufferSize );
+        this.reader = new Thread( new Runnable() {
+            public void run() {
+                try {
+                    while ( !closed && source.hasNext() ) {
+                        buffer.put( source.next() );
+                    }
+                    buffer.put( END );
+                } catch ( InterruptedException e ) {
+                    // closed by the caller
+                } catch ( Throwable t ) {
+                    try {
+                        buffer.put( new Failure( t ) );
+                    } catch ( InterruptedException e ) {
+                        // closed by the caller
+                    }
+                } finally {
+                    closeSource( source );
+                }
+            }
+        }, threadName );
+        this.reader.setDaemon( true );
+        this.reader.start();
+    }
+
+    public boolean hasNext() {
+        if ( next == null ) {
+            if ( closed ) {
+                return false;
+            }
+            try {
+                next = buffer.take();
+            } catch ( InterruptedException e ) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeUniprotServiceException( "Interrupted while waiting for the next element", e );
+            }
+        }
+
+        if ( next instanceof Failure ) {
+            Throwable cause = ( ( Failure ) next ).cause;
+            next = END;
+            if ( cause instanceof RuntimeException ) {
+                throw ( RuntimeException ) cause;
+            }
+            throw new RuntimeUniprotServiceException( "Could not read the next element", cause );
+        }
+
+        return next != END;
+    }
+
+    public T next() {
+        if ( !hasNext() ) {
+            throw new NoSuchElementException();
+        }
+        T element = ( T ) next;
+        next = null;
+        return element;
+    }
+
+    public void remove() {
+        throw new UnsupportedOperationException( "Elements cannot be removed." );
+    }
+
+    /**
+     * Stops reading the source. Further calls to <code>hasNext()</code> return false.
+     */
+    public void close() {
+        if ( !closed ) {
+            closed = true;
+            reader.interrupt();
+            buffer.clear();
+            next = END;
+        }
+    }
+
+    //////////////////////////
+    // private methods
+
+    private void closeSource( Iterator<T> source ) {
+        if ( source instanceof Closeable ) {
+            try {
+                ( ( Closeable ) source ).close();
+            } catch ( IOException e ) {
+                log.warn( "Could not close " + source, e );
+            }
+        }
+    }
+}
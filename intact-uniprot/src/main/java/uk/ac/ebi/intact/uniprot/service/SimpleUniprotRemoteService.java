@@ -2,20 +2,14 @@ package uk.ac.ebi.intact.uniprot.service;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
-import uk.ac.ebi.intact.uniprot.model.*;
-import uk.ac.ebi.intact.uniprot.model.Organism;
-import uk.ac.ebi.intact.uniprot.service.crossRefAdapter.ReflectionCrossReferenceBuilder;
-import uk.ac.ebi.intact.uniprot.service.crossRefAdapter.UniprotCrossReference;
+import uk.ac.ebi.intact.uniprot.model.UniprotProtein;
 import uk.ac.ebi.intact.uniprot.service.referenceFilter.CrossReferenceFilter;
-import uk.ac.ebi.kraken.interfaces.uniprot.*;
-import uk.ac.ebi.kraken.interfaces.uniprot.comments.*;
-import uk.ac.ebi.kraken.interfaces.uniprot.description.Field;
-import uk.ac.ebi.kraken.interfaces.uniprot.description.FieldType;
-import uk.ac.ebi.kraken.interfaces.uniprot.description.Name;
-import uk.ac.ebi.kraken.interfaces.uniprot.features.*;
-import uk.ac.ebi.kraken.interfaces.uniprot.genename.GeneNameSynonym;
-import uk.ac.ebi.kraken.interfaces.uniprot.genename.ORFName;
-import uk.ac.ebi.kraken.interfaces.uniprot.genename.OrderedLocusName;
+import uk.ac.ebi.intact.uniprot.service.remote.RemoteCallException;
+import uk.ac.ebi.intact.uniprot.service.remote.RemoteCallExecutor;
+import uk.ac.ebi.kraken.interfaces.uniprot.SecondaryUniProtAccession;
+import uk.ac.ebi.kraken.interfaces.uniprot.UniProtEntry;
+import uk.ac.ebi.kraken.interfaces.uniprot.comments.CommentType;
+import uk.ac.ebi.kraken.interfaces.uniprot.features.FeatureType;
 import uk.ac.ebi.uniprot.dataservice.client.Client;
 import uk.ac.ebi.uniprot.dataservice.client.QueryResult;
 import uk.ac.ebi.uniprot.dataservice.client.ServiceFactory;
@@ -24,25 +18,54 @@ import uk.ac.ebi.uniprot.dataservice.client.uniprot.UniProtQueryBuilder;
 import uk.ac.ebi.uniprot.dataservice.client.uniprot.UniProtService;
 import uk.ac.ebi.uniprot.dataservice.query.Query;
 
+import java.io.Closeable;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * This service is a uniprot service which DOES not keep any uniprot protein in memory. It does not use any cache at all.
  *
+ * The entries are queried from UniProt through the UniProt JAPI and converted by <code>AbstractUniprotEntryService</code>.
+ *
  * @author Marine Dumousseau (marine@ebi.ac.uk)
  * @version $Id$
  * @since <pre>31/10/11</pre>
  */
 
-public class SimpleUniprotRemoteService extends AbstractUniprotService {
+public class SimpleUniprotRemoteService extends AbstractUniprotEntryService {
 
     /**
      * Sets up a logger for that class.
      */
     public static final Log log = LogFactory.getLog(UniprotRemoteService.class);
 
+    /**
+     * Default number of accessions sent to UniProt in a single query by the bulk retrieval.
+     */
+    public static final int DEFAULT_BATCH_SIZE = 50;
+
     protected UniProtService uniProtQueryService;
 
+    /**
+     * Number of calls using the query service, which is started by the first one and stopped by the last one, so that
+     * concurrent callers (eg. the workers of a <code>ParallelUniprotService</code>) never stop it under each other.
+     */
+    private int queryServiceUsers;
+
+    private final Object queryServiceLock = new Object();
+
+    /**
+     * Number of accessions sent to UniProt in a single query by the bulk retrieval.
+     */
+    private int batchSize = DEFAULT_BATCH_SIZE;
+
+    /**
+     * Retries, rate limits and times out the queries sent to UniProt.
+     */
+    private RemoteCallExecutor remoteCallExecutor = new RemoteCallExecutor();
+
 //    protected final static String FEATURE_CHAIN_FIELD = "chain:";
 //    protected final static String FEATURE_PEPTIDE_FIELD = "feature.peptide:";
 //    protected final static String FEATURE_PRO_PEPTIDE_FIELD = "feature.propep:";
@@ -61,163 +84,235 @@ public class SimpleUniprotRemoteService extends AbstractUniprotService {
 //        uniProtQueryService = UniProtJAPI.factory.getUniProtQueryService();
     }
 
-    public Collection<UniprotProtein> retrieve( String ac ) {
-        return retrieve(ac, true);
+    /**
+     * @param uniProtQueryService the UniProt query service to use, eg. a local stub.
+     * @param filter defines how should the cross references be selected, null for the default one.
+     */
+    public SimpleUniprotRemoteService( UniProtService uniProtQueryService, CrossReferenceFilter filter ) {
+        super( filter );
+        if ( uniProtQueryService == null ) {
+            throw new IllegalArgumentException( "You must give a non null UniProt query service." );
+        }
+        this.uniProtQueryService = uniProtQueryService;
     }
 
     /**
-     * Retrieves proteins and variants (protein transcripts) for the accession provided. It is the combination of calling
-     * the retrieve(ac) and the retriveProteinTranscripts(ac) methods.
-     * @param ac the accession to search
-     * @return proteins or variants, using an interface common to the UniprotProtein and UniprotProteinTranscript classes.
+     * Retrieves the proteins by queries of at most <code>getBatchSize()</code> accessions.
      */
-    public Collection<UniprotProteinLike> retrieveAny( String ac ) {
-        Collection<UniprotProteinLike> protsAndVariants = new ArrayList<UniprotProteinLike>();
-        protsAndVariants.addAll(retrieve(ac));
-        protsAndVariants.addAll(retrieveProteinTranscripts(ac));
-
-        return protsAndVariants;
+    @Override
+    protected Map<String, Collection<UniprotProtein>> retrieveBatch( List<String> acs, boolean processSpliceVars ) {
+        Map<String, Collection<UniprotProtein>> results = new HashMap<String, Collection<UniprotProtein>>( acs.size() );
+        for ( int from = 0; from < acs.size(); from += batchSize ) {
+            List<String> batch = acs.subList( from, Math.min( from + batchSize, acs.size() ) );
+            results.putAll( queryBatch( batch, processSpliceVars ) );
+        }
+        return results;
     }
 
-    public Collection<UniprotProteinTranscript> retrieveProteinTranscripts( String ac ){
+    /**
+     * Retrieves a batch of proteins using a single query. Each entry returned is mapped back to every given AC
+     * matching its primary AC, one of its secondary ACs or its UniProt ID.
+     *
+     * @param acs the ACs or IDs of the proteins to retrieve, none of them being a splice variant or feature chain.
+     * @param processSpliceVars whether splice variants and feature chains should be processed.
+     * @return an associative structure where each given ac is an entry and associated is a collection of protein found.
+     */
+    private Map<String, Collection<UniprotProtein>> queryBatch( List<String> acs, boolean processSpliceVars ) {
         if (log.isDebugEnabled()) {
-            log.debug("Retrieving splice variants from UniProt: "+ac);
+            log.debug("Retrieving a batch of " + acs.size() + " entries from UniProt");
         }
-        Collection<UniprotProteinTranscript> variants = new ArrayList<UniprotProteinTranscript>();
 
-        variants.addAll(retrieveSpliceVariant(ac));
-        variants.addAll(retrieveFeatureChain(ac));
+        Map<String, Collection<UniprotProtein>> results = new HashMap<String, Collection<UniprotProtein>>( acs.size() );
 
-        return variants;
-    }
+        // the same identifier may have been given using different cases
+        Map<String, Collection<String>> requestedAcs = new HashMap<String, Collection<String>>( acs.size() );
+        for ( String ac : acs ) {
+            results.put( ac, new ArrayList<UniprotProtein>() );
 
-    public Collection<UniprotSpliceVariant> retrieveSpliceVariant( String ac ) {
-        if (log.isDebugEnabled()) {
-            log.debug("Retrieving splice variants from UniProt: "+ac);
+            String upperCaseAc = ac.toUpperCase();
+            Collection<String> originalAcs = requestedAcs.get( upperCaseAc );
+            if ( originalAcs == null ) {
+                originalAcs = new ArrayList<String>( 1 );
+                requestedAcs.put( upperCaseAc, originalAcs );
+            }
+            originalAcs.add( ac );
         }
-        Collection<UniprotSpliceVariant> variants = new ArrayList<UniprotSpliceVariant>();
-        Collection<String> variantAcProcessed = new ArrayList<String>();
 
-        Collection<UniprotProtein> proteins = new ArrayList<UniprotProtein>();
+        acquireQueryService();
+        try {
+            QueryResult<UniProtEntry> entries = getEntries( uniProtQueryService, buildBatchQuery( requestedAcs.keySet() ) );
 
-        Iterator<UniProtEntry> it = getUniProtEntry( ac );
+            while ( entries.hasNext() ) {
+                UniprotProtein protein = buildUniprotProtein( entries.next(), processSpliceVars );
 
-        if ( !it.hasNext() ) {
-            // we didn't find anything
-            addError( ac, new UniprotServiceReport( "Could not find splice variants: " + ac ) );
-        }
+                Set<String> matchingAcs = new HashSet<String>();
+                matchingAcs.add( protein.getPrimaryAc().toUpperCase() );
+                matchingAcs.add( protein.getId().toUpperCase() );
+                for ( String secondaryAc : protein.getSecondaryAcs() ) {
+                    matchingAcs.add( secondaryAc.toUpperCase() );
+                }
+                matchingAcs.retainAll( requestedAcs.keySet() );
 
-        while ( it.hasNext() ) {
-            UniProtEntry uniProtEntry = it.next();
-            UniprotProtein uniprotProtein = buildUniprotProtein( uniProtEntry, true );
-            proteins.add( uniprotProtein );
-            UniprotSpliceVariant variant = retrieveUniprotSpliceVariant(uniprotProtein, ac);
-
-            if (variant != null){
-                if (!variantAcProcessed.contains(variant.getPrimaryAc())){
-                    variants.add(variant);
-                    variantAcProcessed.add(variant.getPrimaryAc());
-                    variant.setMasterProtein(uniprotProtein);
+                for ( String matchingAc : matchingAcs ) {
+                    for ( String ac : requestedAcs.get( matchingAc ) ) {
+                        results.get( ac ).add( protein );
+                    }
                 }
             }
+        } catch ( RemoteCallException e ) {
+            for ( String ac : acs ) {
+                addError( ac, new UniprotServiceReport( "Could not retrieve protein: " + ac, e ) );
+            }
+            return results;
+        } finally {
+            releaseQueryService();
         }
 
-        return variants;
-    }
-
-    public Collection<UniprotFeatureChain> retrieveFeatureChain( String ac ) {
-        if (log.isDebugEnabled()) {
-            log.debug("Retrieving feature chains from UniProt: "+ac);
+        for ( String ac : acs ) {
+            if ( results.get( ac ).isEmpty() ) {
+                addError( ac, new UniprotServiceReport( "Could not find protein: " + ac ) );
+            }
         }
-        Collection<UniprotFeatureChain> variants = new ArrayList<UniprotFeatureChain>();
 
-        Collection<UniprotProtein> proteins = new ArrayList<UniprotProtein>();
-
-        Iterator<UniProtEntry> it = getUniProtEntry( ac );
+        return results;
+    }
 
-        if ( !it.hasNext() ) {
-            // we didn't find anything
-            addError( ac, new UniprotServiceReport( "Could not find splice variants: " + ac ) );
+    /**
+     * Sets the number of accessions sent to UniProt in a single query by the bulk retrieval.
+     *
+     * @param batchSize number of accessions per query, must be 1 or greater.
+     */
+    public void setBatchSize( int batchSize ) {
+        if ( batchSize < 1 ) {
+            throw new IllegalArgumentException( "The batch size must be 1 or greater." );
         }
+        this.batchSize = batchSize;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
 
-        while ( it.hasNext() ) {
-            UniProtEntry uniProtEntry = it.next();
-            UniprotProtein uniprotProtein = buildUniprotProtein( uniProtEntry, true );
-            proteins.add( uniprotProtein );
-            UniprotFeatureChain variant = retrieveUniprotFeatureChain(uniprotProtein, ac);
+    public RemoteCallExecutor getRemoteCallExecutor() {
+        return remoteCallExecutor;
+    }
 
-            if (variant != null) {
-                variants.add(variant);
-                variant.setMasterProtein(uniprotProtein);
-            }
+    /**
+     * @param remoteCallExecutor retries, rate limits and times out the queries sent to UniProt.
+     */
+    public void setRemoteCallExecutor( RemoteCallExecutor remoteCallExecutor ) {
+        if ( remoteCallExecutor == null ) {
+            throw new IllegalArgumentException( "You must give a non null remote call executor." );
         }
+        this.remoteCallExecutor = remoteCallExecutor;
+    }
 
-        return variants;
+    /**
+     * Iterates over all the UniProt entries of an organism, with their splice variants and feature chains.
+     *
+     * @param taxId NCBI taxonomy identifier of the organism (eg. 9606).
+     * @return the proteins, read ahead in a background thread. Close it if it is not read entirely.
+     * @see #iterate(Query, boolean)
+     */
+    public PrefetchingIterator<UniprotProtein> iterate( int taxId ) {
+        return iterate( UniProtQueryBuilder.taxonID( taxId ), true );
     }
 
-    public Collection<UniprotProtein> retrieve( String ac, boolean processSpliceVars ) {
-        if (log.isDebugEnabled()) {
-            log.debug("Retrieving from UniProt: "+ac);
+    /**
+     * Iterates over the UniProt entries matching a query. Unlike the bulk retrieval, the proteins are not all held in
+     * memory: the result pages are fetched and the entries converted on demand by a background thread, which reads
+     * at most <code>DEFAULT_PREFETCH_SIZE</code> proteins ahead of the caller.
+     *
+     * The query runs on its own UniProt query service, so the other lookups of this service do not interfere with it.
+     *
+     * @param query the UniProt query.
+     * @param processSpliceVars whether splice variants and feature chains should be processed.
+     * @return the proteins, read ahead in a background thread. Close it if it is not read entirely.
+     */
+    public PrefetchingIterator<UniprotProtein> iterate( Query query, boolean processSpliceVars ) {
+        if ( query == null ) {
+            throw new IllegalArgumentException( "You must give a non null query." );
         }
-        Collection<UniprotProtein> proteins = new ArrayList<UniprotProtein>();
 
-        Iterator<UniProtEntry> it = getUniProtEntry( ac );
+        UniProtService queryService = newQueryService();
+        queryService.start();
 
-        if ( !it.hasNext() ) {
-            // we didn't find anything
-            addError( ac, new UniprotServiceReport( "Could not find protein: " + ac ) );
+        QueryResult<UniProtEntry> entries;
+        try {
+            entries = getEntries( queryService, query );
+        } catch ( RemoteCallException e ) {
+            queryService.stop();
+            throw new RuntimeUniprotServiceException( "Could not query UniProt: " + query, e );
         }
 
-        while ( it.hasNext() ) {
-            UniProtEntry uniProtEntry = it.next();
-            proteins.add( buildUniprotProtein( uniProtEntry, processSpliceVars ) );
-        }
+        return new PrefetchingIterator<UniprotProtein>( new ProteinIterator( entries, queryService, processSpliceVars ),
+                                                        DEFAULT_PREFETCH_SIZE, "uniprot-iterate" );
+    }
+
+    /**
+     * Streams the UniProt entries matching a query.
+     *
+     * @param query the UniProt query.
+     * @param processSpliceVars whether splice variants and feature chains should be processed.
+     * @return the proteins, read ahead in a background thread. Close it if it is not consumed entirely.
+     * @see #iterate(Query, boolean)
+     */
+    public Stream<UniprotProtein> stream( Query query, boolean processSpliceVars ) {
+        final PrefetchingIterator<UniprotProtein> proteins = iterate( query, processSpliceVars );
 
-        return proteins;
+        return StreamSupport.stream( Spliterators.spliteratorUnknownSize( proteins, Spliterator.ORDERED | Spliterator.NONNULL ), false )
+                .onClose( new Runnable() {
+                    public void run() {
+                        proteins.close();
+                    }
+                } );
     }
 
-    public Map<String, Collection<UniprotProtein>> retrieve( Collection<String> acs ) {
-        return retrieve(acs, true);
+    /**
+     * Creates the UniProt query service used by a single iteration.
+     */
+    protected UniProtService newQueryService() {
+        return Client.getServiceFactoryInstance().getUniProtQueryService();
     }
 
-    public Map<String, Collection<UniprotProtein>> retrieve( Collection<String> acs, boolean processSpliceVars ) {
+    /**
+     * Converts the entries of a query result as they are read, stopping the query service at the end.
+     */
+    private class ProteinIterator implements Iterator<UniprotProtein>, Closeable {
 
-        if ( acs == null ) {
-            throw new IllegalArgumentException( "You must give a non null List of UniProt ACs." );
-        }
+        private final QueryResult<UniProtEntry> entries;
 
-        if ( acs.isEmpty() ) {
-            throw new IllegalArgumentException( "You must give a non empty List of UniProt ACs." );
-        }
+        private final UniProtService queryService;
 
-        Map<String, Collection<UniprotProtein>> results = new HashMap<String, Collection<UniprotProtein>>( acs.size() );
+        private final boolean processSpliceVars;
 
-        // TODO use bulk loading and post sort the Map
-        for ( String ac : acs ) {
-            Collection<UniprotProtein> proteins = retrieve( ac, processSpliceVars );
-            if ( proteins != null ) {
-                results.put( ac, proteins );
-            } else {
-                addError( ac, new UniprotServiceReport( "Could not find protein for AC: " + ac ) );
-            }
+        private ProteinIterator( QueryResult<UniProtEntry> entries, UniProtService queryService, boolean processSpliceVars ) {
+            this.entries = entries;
+            this.queryService = queryService;
+            this.processSpliceVars = processSpliceVars;
         }
 
-        return results;
-    }
+        public boolean hasNext() {
+            return entries.hasNext();
+        }
 
-    @Deprecated
-    public Collection<UniprotProtein> retreive( String ac ) {
-        return retrieve(ac);
-    }
+        public UniprotProtein next() {
+            return buildUniprotProtein( entries.next(), processSpliceVars );
+        }
+
+        public void remove() {
+            throw new UnsupportedOperationException( "Entries cannot be removed." );
+        }
 
-    @Deprecated
-    public Map<String, Collection<UniprotProtein>> retreive( Collection<String> acs ) {
-        return retrieve(acs);
+        public void close() {
+            queryService.stop();
+        }
     }
 
     //////////////////////////
     // private methods
 
+    @Override
     protected Iterator<UniProtEntry> getUniProtEntry( String ac ) {
         Iterator<UniProtEntry> iterator = null;
 
@@ -229,11 +324,7 @@ public class SimpleUniprotRemoteService extends AbstractUniprotService {
 //            Query query = UniProtQueryBuilder.id(upperCaseAc);
             CommentType ccType = CommentType.ALTERNATIVE_PRODUCTS;
             Query query = UniProtQueryBuilder.comments(ccType, upperCaseAc);
-            try {
-                iterator = uniProtQueryService.getEntries(query);
-            } catch (ServiceException e) {
-                e.printStackTrace();
-            }
+            iterator = queryEntries( ac, query );
 
         }
         else if (IdentifierChecker.isFeatureChainId( upperCaseAc )){
@@ -247,14 +338,10 @@ public class SimpleUniprotRemoteService extends AbstractUniprotService {
 
 //            Query query = UniProtQueryBuilder.buildFullTextSearch( FEATURE_CHAIN_FIELD + acFixed + " OR " + FEATURE_PEPTIDE_FIELD + acFixed + " OR " + FEATURE_PRO_PEPTIDE_FIELD + acFixed );
             Query query = UniProtQueryBuilder.features(FeatureType.CHAIN, acFixed).or(UniProtQueryBuilder.features(FeatureType.PEPTIDE, acFixed)).or(UniProtQueryBuilder.features(FeatureType.PROPEP, acFixed));
-            try {
-                iterator = uniProtQueryService.getEntries(query);
-            } catch (ServiceException e) {
-                e.printStackTrace();
-            }
+            iterator = queryEntries( ac, query );
         }
         else {
-            iterator = getUniProtEntryForProteinEntry( upperCaseAc );
+            iterator = queryEntries( ac, buildProteinEntryQuery( upperCaseAc ) );
         }
 
         return iterator;
@@ -270,557 +357,154 @@ public class SimpleUniprotRemoteService extends AbstractUniprotService {
         //IndexField.UNIPROT_EXPIRED_IDENTIFIER.getValue() + ":" + ac +
         //" OR " +
         //IndexField.UNIPROT_ID.getValue() + ":" + ac;
-        QueryResult<UniProtEntry> iterator = null;
-        uniProtQueryService.start();
-        try {
-            iterator = uniProtQueryService.getEntries(UniProtQueryBuilder.id(ac).or(UniProtQueryBuilder.accession(ac)).or(UniProtQueryBuilder.secondaryAccession(ac)));
-        } catch (ServiceException e) {
-            uniProtQueryService.stop();
-            e.printStackTrace();
-        }
-        uniProtQueryService.stop();
-        return iterator;
+        return queryEntries( ac, buildProteinEntryQuery( ac ) );
     }
 
-    public static void main(String[] args) throws ServiceException {
-        final UniProtService uniProtQueryService = Client.getServiceFactoryInstance().getUniProtQueryService();
-//        final EntryIterator<UniProtEntry> iterator = uniProtQueryService.getEntryIterator(UniProtQueryBuilder.buildQuery("P43063"));
-        final Query query = UniProtQueryBuilder.accession("P43063");
-        final QueryResult<UniProtEntry> iterator = uniProtQueryService.getEntries(query);
-
-
-        for (UniProtEntry protEntry : iterator.getCurrentPage().getResults()) {
-            System.out.println(protEntry.getPrimaryUniProtAccession().getValue());
+    /**
+     * Queries UniProt for the entries of an identifier. A failure, once all the attempts are exhausted, is reported
+     * as the error of the identifier.
+     *
+     * @param ac the identifier searched, to report the failure.
+     * @param query the query.
+     * @return the entries found, or null if UniProt could not be queried.
+     */
+    private Iterator<UniProtEntry> queryEntries( String ac, Query query ) {
+        acquireQueryService();
+        try {
+            return getEntries( uniProtQueryService, query );
+        } catch ( RemoteCallException e ) {
+            addError( ac, new UniprotServiceReport( "Could not retrieve from UniProt: " + ac, e ) );
+            return null;
+        } finally {
+            releaseQueryService();
         }
     }
 
-    protected UniprotProtein buildUniprotProtein( UniProtEntry uniProtEntry, boolean fetchSpliceVariants ) {
-
-        // Process OS, OC, OX
-        List<NcbiTaxonomyId> taxids = uniProtEntry.getNcbiTaxonomyIds();
-
-        final uk.ac.ebi.kraken.interfaces.uniprot.Organism organism = uniProtEntry.getOrganism();
-        String organismName = organism.getScientificName().getValue();
-        String entryTaxid = taxids.get( 0 ).getValue();
-        Organism o = new Organism( Integer.parseInt( entryTaxid ), organismName );
-        o.setCommonName(organism.getCommonName().getValue());
-
-        // extract parent's names
-        if ( organism.hasCommonName() ) {
-            o.getParents().add( organism.getCommonName().getValue() );
-        }
-        if ( organism.hasSynonym() ) {
-            o.getParents().add( organism.getSynonym().getValue() );
-        }
-
-        String description = readDescription(uniProtEntry);
-
-        UniprotProtein uniprotProtein = new UniprotProtein( uniProtEntry.getUniProtId().getValue(),
-                uniProtEntry.getPrimaryUniProtAccession().getValue(),
-                o,
-                description);
-
-        List<SecondaryUniProtAccession> secondaryAcs = uniProtEntry.getSecondaryUniProtAccessions();
-        for ( SecondaryUniProtAccession secondaryAc : secondaryAcs ) {
-            uniprotProtein.getSecondaryAcs().add( secondaryAc.getValue() );
-        }
-
-        // version of the entry
-        uniprotProtein.setReleaseVersion( getSPTREntryReleaseVersion( uniProtEntry ) );
-        uniprotProtein.setLastAnnotationUpdate( uniProtEntry.getEntryAudit().getLastAnnotationUpdateDate() );
-        uniprotProtein.setLastSequenceUpdate( uniProtEntry.getEntryAudit().getLastSequenceUpdateDate() );
-
-        // type of the entry
-        if ( UniProtEntryType.SWISSPROT.equals( uniProtEntry.getType() ) ) {
-            uniprotProtein.setSource( UniprotProteinType.SWISSPROT );
-        } else if ( UniProtEntryType.TREMBL.equals( uniProtEntry.getType() ) ) {
-            uniprotProtein.setSource( UniprotProteinType.TREMBL );
-        } else if ( UniProtEntryType.UNKNOWN.equals( uniProtEntry.getType() ) ) {
-            uniprotProtein.setSource( UniprotProteinType.UNKNOWN );
-        } else {
-            throw new IllegalStateException( "Only SWISSPROT, TREMBL and UNKNOWN source are supported: " +
-                    uniProtEntry.getType().getValue() );
-        }
-
-        // Process gene names, orfs, synonyms, locus...
-        processGeneNames( uniProtEntry, uniprotProtein );
-
-        // add alternative full names
-        for (Name name : uniProtEntry.getProteinDescription().getAlternativeNames()) {
-            final List<Field> fullFields = name.getFieldsByType(FieldType.FULL);
-
-            for (Field fullField : fullFields) {
-                uniprotProtein.getSynomyms().add(fullField.getValue());
+    /**
+     * Runs a query through the remote call executor, so that it is rate limited and retried on transient failures.
+     */
+    private QueryResult<UniProtEntry> getEntries( final UniProtService queryService, final Query query ) throws RemoteCallException {
+        return remoteCallExecutor.execute( "query UniProt: " + query, new Callable<QueryResult<UniProtEntry>>() {
+            public QueryResult<UniProtEntry> call() throws ServiceException {
+                return queryService.getEntries( query );
             }
-        }
-
-        // comments: function
-        List<FunctionComment> functions = uniProtEntry.getComments( CommentType.FUNCTION );
-        for ( FunctionComment function : functions ) {
-
-            uniprotProtein.getFunctions().add( function.getValue() );
-        }
-
-        // Comments: disease
-        List<DiseaseCommentStructured> diseases = uniProtEntry.getComments( CommentType.DISEASE );
-        for ( DiseaseCommentStructured disease : diseases ) {
-            uniprotProtein.getFunctions().add( disease.getDisease().getDescription().getValue() );
-        }
-
-        // keywords
-        List<Keyword> keywords = uniProtEntry.getKeywords();
-        for ( Keyword keyword : keywords ) {
-            uniprotProtein.getKeywords().add( keyword.getValue() );
-        }
-
-        // Cross references
-        processCrossReference( uniProtEntry, uniprotProtein );
-
-        // sequence
-        uniprotProtein.setSequence( uniProtEntry.getSequence().getValue() );
-        uniprotProtein.setSequenceLength( uniProtEntry.getSequence().getLength() );
-        uniprotProtein.setCrc64( uniProtEntry.getSequence().getCRC64() );
-        // TODO molecular weight ?!
-
-        // splice variants
-        if (fetchSpliceVariants) {
-            processSpliceVariants( uniProtEntry, uniprotProtein );
-            //I commented this line because we not making any use of uniprot features in IntAct. But in case we use them later,
-            // I have let the processFeatureChain method.
-            // chains
-            processFeatureChain( uniProtEntry, uniprotProtein );
-            // feature peptides to be processed as feature chains
-            processFeaturePeptide(uniProtEntry, uniprotProtein);
-            // feature pro-peptides to be processed as feature chains
-            processFeatureProPeptide(uniProtEntry, uniprotProtein);
-        }
-
-        return uniprotProtein;
+        } );
     }
 
-    protected String readDescription(UniProtEntry uniProtEntry) {
-        String desc = null;
-
-        if (uniProtEntry.getProteinDescription().hasRecommendedName()) {
-            final List<Field> fullFields = uniProtEntry.getProteinDescription().getRecommendedName().getFieldsByType(FieldType.FULL);
-
-            if (!fullFields.isEmpty()) {
-                desc = fullFields.get(0).getValue();
-            }
-        }
-
-        return desc;
+    /**
+     * Builds the query searching for an entry by UniProt ID, primary AC or secondary AC.
+     *
+     * @param ac the upper case identifier to search for.
+     * @return the query.
+     */
+    protected Query buildProteinEntryQuery( String ac ) {
+        return UniProtQueryBuilder.id(ac).or(UniProtQueryBuilder.accession(ac)).or(UniProtQueryBuilder.secondaryAccession(ac));
     }
 
     /**
-     * Extract from the SPTREntry the annotation release and the entry type, then combine them to get a version we will
-     * use in the Xref. uniprot, identity )
+     * Builds a single query searching for all the given identifiers.
      *
-     * @param sptrEntry the entry from which we extract the information.
-     *
-     * @return a version as a String.
+     * @param acs the upper case identifiers to search for.
+     * @return the query.
      */
-    protected String getSPTREntryReleaseVersion( UniProtEntry sptrEntry ) {
-        String version = null;
-        String uniprotRelease = String.valueOf( sptrEntry.getEntryAudit().getEntryVersion() );
-        //System.out.println( "uniprotRelease = " + uniprotRelease );
-        if ( sptrEntry.getType().equals( UniProtEntryType.SWISSPROT ) ) {
-            version = SWISS_PROT_PREFIX + uniprotRelease;
-        } else if ( sptrEntry.getType().equals( UniProtEntryType.TREMBL ) ) {
-            // will allow Version up to 999 ... then it will be truncated as Xref.dbRelease is VARCHAR2(10)
-            version = TREMBL_PREFIX + uniprotRelease;
-        } else {
-            // though should not happen.
-            log.warn( "Unexpected SPTREntry type: " + sptrEntry.getType().getValue() );
-            version = uniprotRelease;
+    protected Query buildBatchQuery( Collection<String> acs ) {
+        Query query = null;
+        for ( String ac : acs ) {
+            query = ( query == null ) ? buildProteinEntryQuery( ac ) : query.or( buildProteinEntryQuery( ac ) );
         }
-
-        return version;
+        return query;
     }
 
-    protected void processFeatureChain( UniProtEntry uniProtEntry, UniprotProtein protein ) {
-        Collection<ChainFeature> features = uniProtEntry.getFeatures( FeatureType.CHAIN );
-
-        for ( ChainFeature featureChain : features ) {
-
-            String id = uniProtEntry.getPrimaryUniProtAccession().getValue() + "-" + featureChain.getFeatureId().getValue();
-            // when uniprot does not know where is the start or the end of the protein the value will be -1
-            // Getting a sequence from -1 to x throw an Exception take into account this exception.
-
-            String description = featureChain.getFeatureDescription().getValue();
-
-            FeatureLocation location = featureChain.getFeatureLocation();
-            int begin = location.getStart();
-            int end = location.getEnd();
-
-            if( end > 0 && begin > 0 && end < begin ) {
-                throw new IllegalArgumentException( "Unexpected feature location boundaries of chain "+
-                        featureChain.getFeatureId() +" for parent " +
-                        uniProtEntry.getPrimaryUniProtAccession() +
-                        ": ["+begin+", "+ end +"]" );
-            }
-
-            final String sequence = protein.getSequence();
-            if( sequence.length() < end ) {
-                throw new IllegalArgumentException( "The AA sequence (length:"+ sequence.length() +") of parent " +
-                        uniProtEntry.getPrimaryUniProtAccession() + " doesn't match the" +
-                        " boundaried of feature chain "+ featureChain.getFeatureId() +
-                        ": ["+begin+", "+ end +"]" );
-            }
-
-            String chainSequence = null;
-
-            if (begin != -1 && end != -1){
-                chainSequence = sequence.substring( begin - 1, end );
-            }
+    public static void main(String[] args) throws ServiceException {
+        final UniProtService uniProtQueryService = Client.getServiceFactoryInstance().getUniProtQueryService();
+//        final EntryIterator<UniProtEntry> iterator = uniProtQueryService.getEntryIterator(UniProtQueryBuilder.buildQuery("P43063"));
+        final Query query = UniProtQueryBuilder.accession("P43063");
+        final QueryResult<UniProtEntry> iterator = uniProtQueryService.getEntries(query);
 
-            UniprotFeatureChain chain = new UniprotFeatureChain( id, protein.getOrganism(), chainSequence );
-            chain.setDescription( description );
-            chain.setStart( begin );
-            chain.setEnd( end );
 
-            // add the chain to the protein
-            protein.getFeatureChains().add( chain );
+        for (UniProtEntry protEntry : iterator.getCurrentPage().getResults()) {
+            System.out.println(protEntry.getPrimaryUniProtAccession().getValue());
         }
     }
 
-    protected void processFeaturePeptide( UniProtEntry uniProtEntry, UniprotProtein protein ) {
-        Collection<PeptideFeature> features = uniProtEntry.getFeatures( FeatureType.PEPTIDE );
-
-        for ( PeptideFeature featurePeptide : features ) {
-
-            String id = uniProtEntry.getPrimaryUniProtAccession().getValue() + "-" + featurePeptide.getFeatureId().getValue();
-            // when uniprot does not know where is the start or the end of the protein the value will be -1
-            // Getting a sequence from -1 to x throw an Exception take into account this exception.
-
-            String description = featurePeptide.getFeatureDescription().getValue();
-
-            FeatureLocation location = featurePeptide.getFeatureLocation();
-            int begin = location.getStart();
-            int end = location.getEnd();
-
-            if( end > 0 && begin > 0 && end < begin ) {
-                throw new IllegalArgumentException( "Unexpected feature location boundaries of peptide "+
-                        featurePeptide.getFeatureId() +" for parent " +
-                        uniProtEntry.getPrimaryUniProtAccession() +
-                        ": ["+begin+", "+ end +"]" );
-            }
-
-            final String sequence = protein.getSequence();
-            if( sequence.length() < end ) {
-                throw new IllegalArgumentException( "The AA sequence (length:"+ sequence.length() +") of parent " +
-                        uniProtEntry.getPrimaryUniProtAccession() + " doesn't match the" +
-                        " boundaried of feature peptide "+ featurePeptide.getFeatureId() +
-                        ": ["+begin+", "+ end +"]" );
-            }
-
-            String chainSequence = null;
-
-            if (begin != -1 && end != -1){
-                chainSequence = sequence.substring( begin - 1, end );
-            }
-
-            UniprotFeatureChain chain = new UniprotFeatureChain( id, protein.getOrganism(), chainSequence );
-            chain.setDescription( description );
-            chain.setStart( begin );
-            chain.setEnd( end );
-
-            // add the chain to the protein
-            protein.getFeatureChains().add( chain );
+    /**
+     * Retrieves the entries of the given upper case ACs or IDs with a single query.
+     *
+     * @param acs the identifiers to search for.
+     * @return the entries whose primary AC, secondary AC or UniProt ID is each of the given identifiers.
+     * @throws RemoteCallException if UniProt could not be queried.
+     */
+    @Override
+    protected Map<String, List<UniProtEntry>> findEntries( Collection<String> acs ) throws RemoteCallException {
+        Map<String, List<UniProtEntry>> results = new HashMap<String, List<UniProtEntry>>( acs.size() );
+        for ( String ac : acs ) {
+            results.put( ac, new ArrayList<UniProtEntry>( 1 ) );
         }
-    }
-
-    protected void processFeatureProPeptide( UniProtEntry uniProtEntry, UniprotProtein protein ) {
-        Collection<ProPepFeature> features = uniProtEntry.getFeatures( FeatureType.PROPEP );
-
-        for ( ProPepFeature proPep : features ) {
-
-            String id = uniProtEntry.getPrimaryUniProtAccession().getValue() + "-" + proPep.getFeatureId().getValue();
-            // when uniprot does not know where is the start or the end of the protein the value will be -1
-            // Getting a sequence from -1 to x throw an Exception take into account this exception.
 
-            String description = proPep.getFeatureDescription().getValue();
-
-            FeatureLocation location = proPep.getFeatureLocation();
-            int begin = location.getStart();
-            int end = location.getEnd();
+        acquireQueryService();
+        try {
+            QueryResult<UniProtEntry> entries = getEntries( uniProtQueryService, buildBatchQuery( acs ) );
 
-            if( end > 0 && begin > 0 && end < begin ) {
-                throw new IllegalArgumentException( "Unexpected feature location boundaries of peptide "+
-                        proPep.getFeatureId() +" for parent " +
-                        uniProtEntry.getPrimaryUniProtAccession() +
-                        ": ["+begin+", "+ end +"]" );
-            }
+            while ( entries.hasNext() ) {
+                UniProtEntry entry = entries.next();
 
-            final String sequence = protein.getSequence();
-            if( sequence.length() < end ) {
-                throw new IllegalArgumentException( "The AA sequence (length:"+ sequence.length() +") of parent " +
-                        uniProtEntry.getPrimaryUniProtAccession() + " doesn't match the" +
-                        " boundaried of feature peptide "+ proPep.getFeatureId() +
-                        ": ["+begin+", "+ end +"]" );
-            }
-
-            String chainSequence = null;
+                Set<String> matchingAcs = new HashSet<String>();
+                matchingAcs.add( entry.getPrimaryUniProtAccession().getValue() );
+                matchingAcs.add( entry.getUniProtId().getValue() );
+                for ( SecondaryUniProtAccession secondaryAc : entry.getSecondaryUniProtAccessions() ) {
+                    matchingAcs.add( secondaryAc.getValue() );
+                }
+                matchingAcs.retainAll( results.keySet() );
 
-            if (begin != -1 && end != -1){
-                chainSequence = sequence.substring( begin - 1, end );
+                for ( String matchingAc : matchingAcs ) {
+                    results.get( matchingAc ).add( entry );
+                }
             }
-
-            UniprotFeatureChain chain = new UniprotFeatureChain( id, protein.getOrganism(), chainSequence );
-            chain.setDescription( description );
-            chain.setStart( begin );
-            chain.setEnd( end );
-
-            // add the chain to the protein
-            protein.getFeatureChains().add( chain );
+        } finally {
+            releaseQueryService();
         }
-    }
-
-    protected void processGeneNames( UniProtEntry uniProtEntry, UniprotProtein protein ) {
-
-        List<Gene> genes = uniProtEntry.getGenes();
 
-        for ( Gene gene : genes ) {
-            if (gene.hasGeneName() ) {
-                protein.getGenes().add( gene.getGeneName().getValue() );
-            }
-
-            for ( GeneNameSynonym synonym : gene.getGeneNameSynonyms() ) {
-                protein.getSynomyms().add( synonym.getValue() );
-            }
-
-            for ( ORFName orf : gene.getORFNames() ) {
-                protein.getOrfs().add( orf.getValue() );
-            }
-
-            for ( OrderedLocusName locus : gene.getOrderedLocusNames() ) {
-                protein.getLocuses().add( locus.getValue() );
-            }
-        }
+        return results;
     }
 
-    protected Collection<UniprotCrossReference> convert( Collection<DatabaseCrossReference> refs ) {
-        Collection<UniprotCrossReference> convertedRefs = new ArrayList<UniprotCrossReference>();
-        ReflectionCrossReferenceBuilder builder = new ReflectionCrossReferenceBuilder();
-        for ( DatabaseCrossReference ref : refs ) {
-            String db = ref.getDatabase().getName();
-            if ( getCrossReferenceSelector() != null && !getCrossReferenceSelector().isSelected( db ) ) {
-                log.trace( getCrossReferenceSelector().getClass().getSimpleName() + " filtered out database: '" + db + "'." );
-                continue;
-            }
+    /**
+     * Starts the UniProt query service, which stays started until the matching <code>close()</code> and any call
+     * running meanwhile is over.
+     */
+    public void start() {
+        acquireQueryService();
+    }
 
-            for (UniprotCrossReference xref : builder.build(ref)) {
+    public void close() {
+        releaseQueryService();
+    }
 
-                if (xref != null){
-                    convertedRefs.add( xref );
-                }
+    /**
+     * Starts the query service if no other call is using it.
+     */
+    private void acquireQueryService() {
+        synchronized ( queryServiceLock ) {
+            if ( queryServiceUsers == 0 ) {
+                uniProtQueryService.start();
             }
-
+            queryServiceUsers++;
         }
-        return convertedRefs;
     }
 
-    protected void processCrossReference( UniProtEntry uniProtEntry, UniprotProtein protein ) {
-        Collection<DatabaseCrossReference> databaseCrossReferences = uniProtEntry.getDatabaseCrossReferences();
-        Collection<UniprotCrossReference> xrefs = convert( databaseCrossReferences );
-
-        for ( UniprotCrossReference xref : xrefs ) {
-
-            String ac = xref.getAccessionNumber();
-
-            if (ac == null) {
-                log.error("No AC could be found for xref: "+xref);
-                continue;
+    /**
+     * Stops the query service if no other call is using it any more.
+     */
+    private void releaseQueryService() {
+        synchronized ( queryServiceLock ) {
+            if ( queryServiceUsers == 0 ) {
+                // closed without being started, as it used to be allowed
+                uniProtQueryService.stop();
+                return;
             }
-
-            String db = xref.getDatabase();
-
-            String desc = xref.getDescription(); // TODO There is so far no straight forward way to process all cross refrence and extract descriptions. We could at least provide specific handlers in case we know we need to process specific databases.
-
-            protein.getCrossReferences().add( new UniprotXref( ac, db, desc ) );
-
-            // handles HUGE cross references (stored as gene name or synonym and start with KIAA)
-            if ( getCrossReferenceSelector() != null &&
-                    ( getCrossReferenceSelector().isSelected( "HUGE" ) || getCrossReferenceSelector().isSelected( "KIAA" ) ) ) {
-
-                // we only do this if the filter requires it explicitely.
-                List<Gene> genes = uniProtEntry.getGenes();
-                for ( Gene gene : genes ) {
-
-                    String geneName = gene.getGeneName().getValue();
-                    if ( geneName.startsWith( "KIAA" ) ) {
-                        protein.getCrossReferences().add( new UniprotXref( geneName, "HUGE" ) );
-                    }
-
-                    List<GeneNameSynonym> synonyms = gene.getGeneNameSynonyms();
-                    for ( GeneNameSynonym synonym : synonyms ) {
-                        String syn = synonym.getValue();
-                        if ( syn.startsWith( "KIAA" ) ) {
-                            protein.getCrossReferences().add( new UniprotXref( syn, "HUGE" ) );
-                        }
-                    }
-                }
+            queryServiceUsers--;
+            if ( queryServiceUsers == 0 ) {
+                uniProtQueryService.stop();
             }
-        } // for Cross Ref
-    }
-
-    protected void processSpliceVariants( UniProtEntry uniProtEntry, UniprotProtein protein ) {
-
-        Map<String,String> seqMap = new HashMap<String,String>();
-
-        List<UniprotSpliceVariant> spliceVariants = findSpliceVariants(uniProtEntry, protein.getOrganism(), seqMap);
-
-        // add the splice variant to the original protein
-        protein.getSpliceVariants().addAll( spliceVariants );
-    }
-
-    protected List<UniprotSpliceVariant> findSpliceVariants(UniProtEntry uniProtEntry, Organism organism, Map<String, String> seqMap) {
-        if (log.isDebugEnabled()) {
-            log.debug("Finding splice variants for: " + uniProtEntry.getPrimaryUniProtAccession().getValue());
         }
-
-        List<UniprotSpliceVariant> spliceVariants = new ArrayList<UniprotSpliceVariant>();
-
-        List<AlternativeProductsComment> comments = uniProtEntry.getComments( CommentType.ALTERNATIVE_PRODUCTS );
-        for ( AlternativeProductsComment comment : comments ) {
-            List<AlternativeProductsIsoform> isoforms = comment.getIsoforms();
-
-            for ( AlternativeProductsIsoform isoform : isoforms ) {
-
-                List<String> ids = new ArrayList<String>();
-
-                List<IsoformId> isoIDs = isoform.getIds();
-                for ( IsoformId isoID : isoIDs ) {
-                    //System.out.println("isoID  : " + isoID.getValue());
-
-
-                    // TODO remove this once the API is fixed, currently when multiple ids are present they are returned as a comma separated value :(
-                    for ( int i = 0; i < isoID.getValue().split( "," ).length; i++ ) {
-                        String id = isoID.getValue().split( "," )[i].trim();
-                        if ( log.isTraceEnabled() ) {
-                            log.trace( "Found ID " + i + ":" + id );
-                        }
-                        ids.add( id );
-                    }
-                }
-
-                // process alternative sequence
-                String spliceVarId = ids.get(0);
-
-                String sequence = null;
-
-                if (seqMap.containsKey(spliceVarId)) {
-                    sequence = seqMap.get(spliceVarId);
-                } else {
-
-                    String parentProtein = getUniProtAccFromSpliceVariantId(spliceVarId);
-
-                    // check that the sequence is in the current entry
-
-                    String status = isoform.getIsoformSequenceStatus().getValue();
-
-                    if (log.isTraceEnabled()) log.trace("Sequence status: " + status);
-
-                    switch (isoform.getIsoformSequenceStatus()) {
-                        case NOT_DESCRIBED:
-                            //log.error("According to uniprot the splice variant " + spliceVarId + " has no sequence (status = NOT_DESCRIBED)");
-                        case DESCRIBED:
-                            sequence = uniProtEntry.getSplicedSequence(isoform.getName().getValue());
-                            break;
-                        case DISPLAYED:
-                            sequence = uniProtEntry.getSplicedSequence(isoform.getName().getValue());
-                            break;
-                        case EXTERNAL:
-                            // then we need to load an external protein entry
-                            log.warn("The alternative sequence '"+isoform.getName().getValue()+"' for '"+uniProtEntry.getPrimaryUniProtAccession().getValue()
-                                    +"' has to be calculated on the basis of an external entry: " + parentProtein);
-
-                            //sequence = uniProtEntry.getSplicedSequence(isoform.getName().getValue());
-
-                            Iterator<UniProtEntry> iterator = getUniProtEntry(parentProtein);
-                            int numberOfEntryInIterator = 0;
-                            while (iterator.hasNext()) {
-
-                                UniProtEntry uniprotEntryParentProtein = iterator.next();
-                                //sequence = uniprotEntryParentProtein.getSplicedSequence(isoform.getName().getValue());
-
-                                if (numberOfEntryInIterator >= 1) {
-                                    // we were expecting to find only one protein - hopefully that should not happen !
-                                    log.error("We were expecting to find only one protein while loading external sequence from: " + parentProtein);
-                                    log.error("Found " + uniprotEntryParentProtein.getUniProtId());
-                                    while (iterator.hasNext()) {
-                                        UniProtEntry p = iterator.next();
-                                        log.error("Found " + p.getUniProtId());
-                                        sequence = null;
-                                    }
-
-                                } else {
-                                    numberOfEntryInIterator++;
-                                    sequence = uniprotEntryParentProtein.getSplicedSequence(isoform.getName().getValue());
-
-                                    if (sequence == null || sequence.length() == 0 ) {
-                                        for (UniprotSpliceVariant uniprotSpliceVariant : findSpliceVariants(uniprotEntryParentProtein, organism, seqMap)) {
-                                            if (uniprotSpliceVariant.getPrimaryAc().equals(spliceVarId)) {
-                                                sequence = uniprotSpliceVariant.getSequence();
-                                                break;
-                                            }
-                                        }
-                                    }
-
-                                }
-                                numberOfEntryInIterator++;
-                            }
-                    }
-                }
-
-                // build splice variant
-                UniprotSpliceVariant sv = new UniprotSpliceVariant(spliceVarId,
-                        organism,
-                        sequence );
-                // add secondary ids (if any)
-                for ( int i = 1; i < ids.size(); i++ ) {
-                    String id = ids.get( i );
-                    sv.getSecondaryAcs().add( id );
-                }
-
-                // process synonyms
-                List<IsoformSynonym> syns = isoform.getSynonyms();
-                for ( IsoformSynonym syn : syns ) {
-                    sv.getSynomyms().add( syn.getValue() );
-                }
-
-                // process note
-                List<EvidencedValue> evidencedValues = isoform.getNote().getTexts();
-                StringBuilder stringBuffer = new StringBuilder("");
-                for (EvidencedValue evidencedValue : evidencedValues) {
-                    stringBuffer.append(evidencedValue.getValue()).append(" ");
-                }
-                sv.setNote(stringBuffer.toString());
-
-                spliceVariants.add(sv);
-            } // for isoform
-        } // for comments
-
-        if (log.isDebugEnabled()) {
-            log.debug("\tFound "+spliceVariants.size()+" splice variants");
-        }
-
-        return spliceVariants;
-    }
-
-    protected String getUniProtAccFromSpliceVariantId( String svId ) {
-        int index = svId.indexOf( "-" );
-        if ( index == -1 ) {
-            throw new IllegalArgumentException( "The given accession number if not of a splice variant: " + svId );
-        }
-        return svId.substring( 0, index );
-    }
-
-    public void start() {
-        uniProtQueryService.start();
-    }
-
-    public void close() {
-        uniProtQueryService.stop();
     }
 }
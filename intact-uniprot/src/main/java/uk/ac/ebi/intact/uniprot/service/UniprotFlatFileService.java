@@ -0,0 +1,295 @@
+/*
+ * Copyright (c) 2002 The European Bioinformatics Institute, and others.
+ * All rights reserved. Please see the file LICENSE
+ * in the root directory of this distribution.
+ */
+package uk.ac.ebi.intact.uniprot.service;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import uk.ac.ebi.intact.uniprot.model.UniprotProtein;
+import uk.ac.ebi.intact.uniprot.service.flatFile.JapiUniprotEntryParser;
+import uk.ac.ebi.intact.uniprot.service.flatFile.UniprotEntryParser;
+import uk.ac.ebi.intact.uniprot.service.flatFile.UniprotFlatFileIndex;
+import uk.ac.ebi.intact.uniprot.service.flatFile.UniprotFlatFileReader;
+import uk.ac.ebi.intact.uniprot.service.referenceFilter.CrossReferenceFilter;
+import uk.ac.ebi.kraken.interfaces.uniprot.UniProtEntry;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * UniprotService reading a local UniProtKB release file (uniprot_sprot.dat, uniprot_trembl.dat) instead of querying
+ * UniProt, eg. for full reloads.
+ *
+ * The entries are converted by the same mapping as the remote services, inherited from
+ * <code>AbstractUniprotEntryService</code>: splice variants, feature chains and cross reference filtering included,
+ * external isoforms being resolved from the file as well. No UniProt client is created and no UniProt query can be
+ * run. The file is read by a <code>UniprotFlatFileReader</code>, in constant memory, and its entries parsed by the
+ * given <code>UniprotEntryParser</code>, the flat file parser of the UniProt JAPI by default.
+ *
+ * An uncompressed file is indexed on disk (next to it, with the <code>.idx</code> suffix) by primary AC, secondary
+ * AC, UniProt ID and feature chain id, the index being built on first use and rebuilt when the file changes, so that
+ * proteins can be retrieved by AC. It can also be split in ranges converted in parallel, each with its own iterator.
+ * A gzipped file can only be iterated over: retrieving from it reports an error for each AC.
+ *
+ * Splice variants and feature chains are looked up in the entry of the master protein their AC starts with, the
+ * feature chain ACs without master protein (PRO_xxxxxxxxxx) in the entry describing them.
+ *
+ * @version $Id$
+ * @since 2.1.35
+ */
+public class UniprotFlatFileService extends AbstractUniprotEntryService {
+
+    /**
+     * Sets up a logger for that class.
+     */
+    public static final Log log = LogFactory.getLog( UniprotFlatFileService.class );
+
+    /**
+     * Suffix of the index file, next to the flat file.
+     */
+    public static final String INDEX_SUFFIX = ".idx";
+
+    private final File flatFile;
+
+    private final UniprotEntryParser parser;
+
+    /**
+     * Index of the entries by AC, null for a gzipped file.
+     */
+    private final UniprotFlatFileIndex index;
+
+    /**
+     * @param flatFile the UniProtKB flat file, gzipped if its name ends with .gz, parsed by the UniProt JAPI.
+     */
+    public UniprotFlatFileService( File flatFile ) {
+        this( flatFile, new JapiUniprotEntryParser(), null );
+    }
+
+    /**
+     * @param flatFile the UniProtKB flat file, gzipped if its name ends with .gz.
+     * @param parser parses the entries of the file.
+     */
+    public UniprotFlatFileService( File flatFile, UniprotEntryParser parser ) {
+        this( flatFile, parser, null );
+    }
+
+    /**
+     * @param flatFile the UniProtKB flat file, gzipped if its name ends with .gz.
+     * @param parser parses the entries of the file.
+     * @param filter defines how should the cross references be selected, null for the default one.
+     */
+    public UniprotFlatFileService( File flatFile, UniprotEntryParser parser, CrossReferenceFilter filter ) {
+        super( filter );
+        if ( flatFile == null || !flatFile.isFile() ) {
+            throw new IllegalArgumentException( "You must give an existing UniProt flat file: " + flatFile );
+        }
+        if ( parser == null ) {
+            throw new IllegalArgumentException( "You must give a non null entry parser." );
+        }
+        this.flatFile = flatFile;
+        this.parser = parser;
+
+        if ( UniprotFlatFileReader.isGzipped( flatFile ) ) {
+            this.index = null;
+        } else {
+            this.index = openIndex( flatFile, new File( flatFile.getPath() + INDEX_SUFFIX ) );
+        }
+    }
+
+    /**
+     * Iterates over all the entries of the file.
+     *
+     * @param processSpliceVars whether splice variants and feature chains should be processed.
+     * @return the proteins, converted ahead in a background thread. Close it if it is not read entirely.
+     */
+    public PrefetchingIterator<UniprotProtein> iterate( boolean processSpliceVars ) {
+        try {
+            return iterate( new UniprotFlatFileReader( flatFile ), processSpliceVars );
+        } catch ( IOException e ) {
+            throw new RuntimeUniprotServiceException( "Could not read the UniProt flat file: " + flatFile, e );
+        }
+    }
+
+    /**
+     * Iterates over the entries starting in a range of the file, so that the ranges given by <code>split</code> can
+     * be converted in parallel.
+     *
+     * @param start offset of the range, in bytes.
+     * @param end offset of the end of the range (excluded), in bytes.
+     * @param processSpliceVars whether splice variants and feature chains should be processed.
+     * @return the proteins, converted ahead in a background thread. Close it if it is not read entirely.
+     */
+    public PrefetchingIterator<UniprotProtein> iterate( long start, long end, boolean processSpliceVars ) {
+        try {
+            return iterate( new UniprotFlatFileReader( flatFile, start, end ), processSpliceVars );
+        } catch ( IOException e ) {
+            throw new RuntimeUniprotServiceException( "Could not read the UniProt flat file: " + flatFile, e );
+        }
+    }
+
+    /**
+     * Splits the file in ranges of similar sizes.
+     *
+     * @param count the number of ranges.
+     * @return the start offset of each range followed by the end of the file.
+     * @see #iterate(long, long, boolean)
+     */
+    public long[] split( int count ) {
+        return UniprotFlatFileReader.split( flatFile, count );
+    }
+
+    @Override
+    protected Map<String, Collection<UniprotProtein>> retrieveBatch( List<String> acs, boolean processSpliceVars ) {
+        // the entries are read by offset, one at a time
+        Map<String, Collection<UniprotProtein>> results = new HashMap<String, Collection<UniprotProtein>>( acs.size() );
+        for ( String ac : acs ) {
+            results.put( ac, retrieve( ac, processSpliceVars ) );
+        }
+        return results;
+    }
+
+    @Override
+    protected Iterator<UniProtEntry> getUniProtEntry( String ac ) {
+        String upperCaseAc = ac.toUpperCase();
+
+        // splice variants and feature chains are described in the entry of their master protein, the bare feature
+        // chain ids (PRO_xxxxxxxxxx) are indexed as such
+        int index = upperCaseAc.indexOf( '-' );
+        if ( index != -1 ) {
+            upperCaseAc = upperCaseAc.substring( 0, index );
+        }
+
+        return searchEntries( ac, upperCaseAc );
+    }
+
+    @Override
+    protected Map<String, List<UniProtEntry>> findEntries( Collection<String> acs ) {
+        Map<String, List<UniProtEntry>> results = new HashMap<String, List<UniProtEntry>>( acs.size() );
+        if ( index == null ) {
+            // the external isoform parents met while iterating over a gzipped file
+            log.warn( "A gzipped flat file cannot be searched, the external isoform parents are ignored: " + acs );
+            for ( String ac : acs ) {
+                results.put( ac, new ArrayList<UniProtEntry>( 0 ) );
+            }
+            return results;
+        }
+
+        for ( String ac : acs ) {
+            results.put( ac, readEntries( ac ) );
+        }
+        return results;
+    }
+
+    public File getFlatFile() {
+        return flatFile;
+    }
+
+    @Override
+    public void start() {
+        // nothing to connect to
+    }
+
+    @Override
+    public void close() {
+        // the file is opened by each read
+    }
+
+    //////////////////////////
+    // private methods
+
+    private static UniprotFlatFileIndex openIndex( File flatFile, File indexFile ) {
+        try {
+            if ( indexFile.isFile() ) {
+                try {
+                    UniprotFlatFileIndex index = new UniprotFlatFileIndex( indexFile );
+                    if ( index.isUpToDate( flatFile ) ) {
+                        return index;
+                    }
+                    log.info( "The index " + indexFile + " is out of date, building it again" );
+                } catch ( IOException e ) {
+                    // eg. written by an older version
+                    log.warn( "The index " + indexFile + " cannot be read, building it again: " + e.getMessage() );
+                }
+            }
+            return UniprotFlatFileIndex.build( flatFile, indexFile );
+        } catch ( IOException e ) {
+            throw new RuntimeUniprotServiceException( "Could not index the UniProt flat file: " + flatFile, e );
+        }
+    }
+
+    /**
+     * Reads the entries of an identifier, reporting the error of the AC requested if the file cannot be searched.
+     *
+     * @param ac the AC requested, to report the error.
+     * @param key the identifier searched in the index.
+     * @return the entries found, or null if the file cannot be searched.
+     */
+    private Iterator<UniProtEntry> searchEntries( String ac, String key ) {
+        if ( index == null ) {
+            addError( ac, new UniprotServiceReport( "A gzipped flat file cannot be searched, use iterate(): " + flatFile ) );
+            return null;
+        }
+        return readEntries( key ).iterator();
+    }
+
+    /**
+     * Reads the entries having an identifier as primary AC, secondary AC, UniProt ID or feature chain id.
+     */
+    private List<UniProtEntry> readEntries( String ac ) {
+        long[] offsets = index.getOffsets( ac );
+        List<UniProtEntry> entries = new ArrayList<UniProtEntry>( offsets.length );
+        for ( long offset : offsets ) {
+            try {
+                UniprotFlatFileReader reader = new UniprotFlatFileReader( flatFile, offset, offset + 1 );
+                try {
+                    entries.add( parser.parse( reader.next() ) );
+                } finally {
+                    reader.close();
+                }
+            } catch ( IOException e ) {
+                throw new RuntimeUniprotServiceException( "Could not read the entry at offset " + offset + " of: " + flatFile, e );
+            }
+        }
+        return entries;
+    }
+
+    private PrefetchingIterator<UniprotProtein> iterate( UniprotFlatFileReader reader, boolean processSpliceVars ) {
+        return new PrefetchingIterator<UniprotProtein>( new ProteinConverter( reader, processSpliceVars ),
+                                                        DEFAULT_PREFETCH_SIZE, "uniprot-flat-file" );
+    }
+
+    /**
+     * Converts the entries of the flat file as they are read, closing it at the end.
+     */
+    private class ProteinConverter implements Iterator<UniprotProtein>, Closeable {
+
+        private final UniprotFlatFileReader reader;
+
+        private final boolean processSpliceVars;
+
+        private ProteinConverter( UniprotFlatFileReader reader, boolean processSpliceVars ) {
+            this.reader = reader;
+            this.processSpliceVars = processSpliceVars;
+        }
+
+        public boolean hasNext() {
+            return reader.hasNext();
+        }
+
+        public UniprotProtein next() {
+            return buildUniprotProtein( parser.parse( reader.next() ), processSpliceVars );
+        }
+
+        public void remove() {
+            throw new UnsupportedOperationException( "Entries cannot be removed." );
+        }
+
+        public void close() throws IOException {
+            reader.close();
+        }
+    }
+}
@@ -0,0 +1,35 @@
+/*
+ * Copyright (c) 2002 The European Bioinformatics Institute, and others.
+ * All rights reserved. Please see the file LICENSE
+ * in the root directory of this distribution.
+ */
+package uk.ac.ebi.intact.uniprot.service;
+
+/**
+ * Kind of UniProt identifier, as given by the IdentifierChecker.
+ *
+ * @version $Id$
+ * @since 2.1.35
+ */
+public enum UniprotIdentifierType {
+
+    /**
+     * Protein AC, eg. P12345.
+     */
+    PROTEIN,
+
+    /**
+     * Splice variant AC, eg. P12345-2.
+     */
+    SPLICE_VARIANT,
+
+    /**
+     * Feature chain AC, eg. P12345-PRO_0000012345 or PRO_0000012345.
+     */
+    FEATURE_CHAIN,
+
+    /**
+     * Not a UniProt identifier.
+     */
+    INVALID
+}
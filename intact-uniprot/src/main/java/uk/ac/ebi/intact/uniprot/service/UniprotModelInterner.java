@@ -0,0 +1,156 @@
+/*
+ * Copyright (c) 2002 The European Bioinformatics Institute, and others.
+ * All rights reserved. Please see the file LICENSE
+ * in the root directory of this distribution.
+ */
+package uk.ac.ebi.intact.uniprot.service;
+
+import uk.ac.ebi.intact.uniprot.model.Organism;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Pool of the values repeated across many UniProt proteins - organisms, database names, keywords, disease names - so
+ * that the proteins built or decoded share a single instance of each instead of keeping their own copy alive.
+ *
+ * The pool is safe to use from several threads. It is bounded: once full, values are returned as given instead of
+ * being pooled. Organisms are pooled by taxid and shared only with organisms having the same names, an organism met
+ * with other names replacing the pooled one. A pooled organism is shared by all the proteins of that organism and must
+ * therefore not be modified, which is why each service and codec has its own pool unless given one.
+ *
+ * @version $Id$
+ * @since 2.1.35
+ */
+public class UniprotModelInterner {
+
+    /**
+     * Default maximum number of strings pooled.
+     */
+    public static final int DEFAULT_MAX_STRINGS = 100000;
+
+    /**
+     * Default maximum number of organisms pooled.
+     */
+    public static final int DEFAULT_MAX_ORGANISMS = 10000;
+
+    private static final UniprotModelInterner INSTANCE = new UniprotModelInterner();
+
+    private final ConcurrentMap<String, String> strings = new ConcurrentHashMap<String, String>( 1024 );
+
+    private final ConcurrentMap<Integer, Organism> organisms = new ConcurrentHashMap<Integer, Organism>( 256 );
+
+    private final int maxStrings;
+
+    private final int maxOrganisms;
+
+    public UniprotModelInterner() {
+        this( DEFAULT_MAX_STRINGS, DEFAULT_MAX_ORGANISMS );
+    }
+
+    /**
+     * @param maxStrings maximum number of strings pooled.
+     * @param maxOrganisms maximum number of organisms pooled.
+     */
+    public UniprotModelInterner( int maxStrings, int maxOrganisms ) {
+        if ( maxStrings < 0 || maxOrganisms < 0 ) {
+            throw new IllegalArgumentException( "The maximum number of strings and organisms cannot be negative." );
+        }
+        this.maxStrings = maxStrings;
+        this.maxOrganisms = maxOrganisms;
+    }
+
+    /**
+     * A pool shared by the whole application, for the services and codecs given it explicitly.
+     */
+    public static UniprotModelInterner getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Gives the pooled instance equal to the given string.
+     *
+     * @param value the string to pool, may be null.
+     * @return the pooled string, or the given one if it is null or the pool is full.
+     */
+    public String intern( String value ) {
+        if ( value == null ) {
+            return null;
+        }
+
+        String pooled = strings.get( value );
+        if ( pooled != null ) {
+            return pooled;
+        }
+        if ( strings.size() >= maxStrings ) {
+            return value;
+        }
+
+        pooled = strings.putIfAbsent( value, value );
+        return pooled == null ? value : pooled;
+    }
+
+    /**
+     * Gives the pooled organism having the same taxid and names as the given one.
+     *
+     * @param organism the organism to pool, may be null.
+     * @return the pooled organism, or the given one if it is null, the pool is full or the pooled organism of that
+     * taxid has other names, in which case the given one replaces it.
+     */
+    public Organism intern( Organism organism ) {
+        if ( organism == null ) {
+            return null;
+        }
+
+        Organism pooled = organisms.get( organism.getTaxid() );
+        if ( pooled != null ) {
+            if ( sameNames( pooled, organism ) ) {
+                return pooled;
+            }
+            organisms.replace( organism.getTaxid(), pooled, organism );
+            return organism;
+        }
+        if ( organisms.size() >= maxOrganisms ) {
+            return organism;
+        }
+
+        pooled = organisms.putIfAbsent( organism.getTaxid(), organism );
+        return pooled == null ? organism : pooled;
+    }
+
+    /**
+     * @return the pooled organism of the given taxid, null if there is none.
+     */
+    public Organism getOrganism( int taxid ) {
+        return organisms.get( taxid );
+    }
+
+    public int getStringCount() {
+        return strings.size();
+    }
+
+    public int getOrganismCount() {
+        return organisms.size();
+    }
+
+    /**
+     * Empties the pool. The values already shared are not affected.
+     */
+    public void clear() {
+        strings.clear();
+        organisms.clear();
+    }
+
+    /**
+     * @return true if both organisms have the same scientific name, common name and parents.
+     */
+    private static boolean sameNames( Organism organism, Organism other ) {
+        return equal( organism.getName(), other.getName() )
+               && equal( organism.getCommonName(), other.getCommonName() )
+               && organism.getParents().equals( other.getParents() );
+    }
+
+    private static boolean equal( String value, String other ) {
+        return value == null ? other == null : value.equals( other );
+    }
+}
@@ -10,6 +10,7 @@ import org.apache.commons.logging.LogFactory;
 import uk.ac.ebi.intact.uniprot.model.UniprotFeatureChain;
 import uk.ac.ebi.intact.uniprot.model.UniprotProtein;
 import uk.ac.ebi.intact.uniprot.model.UniprotSpliceVariant;
+import uk.ac.ebi.intact.uniprot.service.cache.BoundedConcurrentCache;
 import uk.ac.ebi.intact.uniprot.service.referenceFilter.CrossReferenceFilter;
 import uk.ac.ebi.kraken.interfaces.uniprot.UniProtEntry;
 import uk.ac.ebi.uniprot.dataservice.client.Client;
@@ -24,13 +25,26 @@ import java.util.*;
 /**
  * Adapter to read UniProt entries using the remote services.
  *
+ * The proteins retrieved are kept in a bounded in-process cache, safe to use when the service is shared between
+ * threads.
+ *
  * @author Samuel Kerrien (skerrien@ebi.ac.uk)
  * @version $Id$
  * @since <pre>23-Oct-2006</pre>
  */
 public class UniprotRemoteService extends SimpleUniprotRemoteService {
 
-    private Map<String,Collection<UniprotProtein>> retrievalCache;
+    /**
+     * Default number of lookups kept in the retrieval cache.
+     */
+    public static final int DEFAULT_RETRIEVAL_CACHE_SIZE = 1000;
+
+    /**
+     * Suffix of the cache keys of proteins retrieved without their splice variants and feature chains.
+     */
+    private static final String NO_SPLICE_VARIANTS_KEY_SUFFIX = "#noSpliceVars";
+
+    private BoundedConcurrentCache<String,Collection<UniprotProtein>> retrievalCache;
 
     /**
      * Sets up a logger for that class.
@@ -39,12 +53,28 @@ public class UniprotRemoteService extends SimpleUniprotRemoteService {
 
     public UniprotRemoteService() {
         super();
-        retrievalCache = new WeakHashMap<String,Collection<UniprotProtein>>();
+        retrievalCache = new BoundedConcurrentCache<String,Collection<UniprotProtein>>( DEFAULT_RETRIEVAL_CACHE_SIZE );
     }
 
     public UniprotRemoteService(CrossReferenceFilter filter) {
+        this( filter, DEFAULT_RETRIEVAL_CACHE_SIZE, false );
+    }
+
+    /**
+     * @param filter filter of the cross references, may be null.
+     * @param retrievalCacheSize maximum number of lookups kept in the retrieval cache.
+     * @param softValues if true, the cached proteins may be reclaimed by the garbage collector when memory runs low.
+     */
+    public UniprotRemoteService(CrossReferenceFilter filter, int retrievalCacheSize, boolean softValues) {
         super(filter);
-        retrievalCache = new WeakHashMap<String,Collection<UniprotProtein>>();
+        retrievalCache = new BoundedConcurrentCache<String,Collection<UniprotProtein>>( retrievalCacheSize, softValues );
+    }
+
+    /**
+     * The cache of the proteins retrieved, giving access to its statistics.
+     */
+    public BoundedConcurrentCache<String, Collection<UniprotProtein>> getRetrievalCache() {
+        return retrievalCache;
     }
 
     @Override
@@ -54,10 +84,9 @@ public class UniprotRemoteService extends SimpleUniprotRemoteService {
         }
         Collection<UniprotSpliceVariant> variants = new ArrayList<UniprotSpliceVariant>();
         Collection<String> variantAcProcessed = new ArrayList<String>();
-        start();
-        if (retrievalCache.containsKey(ac)) {
+        Collection<UniprotProtein> uniprotProteins = retrievalCache.get(ac);
+        if (uniprotProteins != null) {
             if (log.isDebugEnabled()) log.debug("\tFound in cache");
-            Collection<UniprotProtein> uniprotProteins = retrievalCache.get(ac);
 
             for (UniprotProtein p : uniprotProteins){
                 UniprotSpliceVariant variant = retrieveUniprotSpliceVariant(p, ac);
@@ -71,9 +100,26 @@ public class UniprotRemoteService extends SimpleUniprotRemoteService {
             return variants;
         }
 
+        start();
+        try {
+            return retrieveSpliceVariant( ac, variants, variantAcProcessed );
+        } finally {
+            close();
+        }
+    }
+
+    /**
+     * Queries the splice variants of an AC, the query service being started.
+     */
+    private Collection<UniprotSpliceVariant> retrieveSpliceVariant( String ac, Collection<UniprotSpliceVariant> variants,
+                                                                  Collection<String> variantAcProcessed ) {
         Collection<UniprotProtein> proteins = new ArrayList<UniprotProtein>();
 
         Iterator<UniProtEntry> it = getUniProtEntry( ac );
+        if ( it == null ) {
+            // UniProt could not be queried, already reported and not cached so that it is tried again
+            return variants;
+        }
 
         if ( !it.hasNext() ) {
             // we didn't find anything
@@ -96,7 +142,6 @@ public class UniprotRemoteService extends SimpleUniprotRemoteService {
         }
 
         retrievalCache.put(ac, proteins);
-        close();
         return variants;
     }
 
@@ -106,10 +151,9 @@ public class UniprotRemoteService extends SimpleUniprotRemoteService {
             log.debug("Retrieving feature chains from UniProt: "+ac);
         }
         Collection<UniprotFeatureChain> variants = new ArrayList<UniprotFeatureChain>();
-        start();
-        if (retrievalCache.containsKey(ac)) {
+        Collection<UniprotProtein> uniprotProteins = retrievalCache.get(ac);
+        if (uniprotProteins != null) {
             if (log.isDebugEnabled()) log.debug("\tFound in cache");
-            Collection<UniprotProtein> uniprotProteins = retrievalCache.get(ac);
 
             for (UniprotProtein p : uniprotProteins){
                 UniprotFeatureChain variant = retrieveUniprotFeatureChain(p, ac);
@@ -123,9 +167,25 @@ public class UniprotRemoteService extends SimpleUniprotRemoteService {
             return variants;
         }
 
+        start();
+        try {
+            return retrieveFeatureChain( ac, variants );
+        } finally {
+            close();
+        }
+    }
+
+    /**
+     * Queries the feature chains of an AC, the query service being started.
+     */
+    private Collection<UniprotFeatureChain> retrieveFeatureChain( String ac, Collection<UniprotFeatureChain> variants ) {
         Collection<UniprotProtein> proteins = new ArrayList<UniprotProtein>();
 
         Iterator<UniProtEntry> it = getUniProtEntry( ac );
+        if ( it == null ) {
+            // UniProt could not be queried, already reported and not cached so that it is tried again
+            return variants;
+        }
 
         if ( !it.hasNext() ) {
             // we didn't find anything
@@ -145,7 +205,6 @@ public class UniprotRemoteService extends SimpleUniprotRemoteService {
         }
 
         retrievalCache.put(ac, proteins);
-        close();
         return variants;
     }
 
@@ -154,28 +213,41 @@ public class UniprotRemoteService extends SimpleUniprotRemoteService {
             log.debug("Retrieving from UniProt: "+ac);
         }
 
-        if (retrievalCache.containsKey(ac)) {
+        // a fully processed entry can serve any request
+        Collection<UniprotProtein> cachedProteins = retrievalCache.get(ac);
+        if (cachedProteins == null && !processSpliceVars) {
+            cachedProteins = retrievalCache.get(ac + NO_SPLICE_VARIANTS_KEY_SUFFIX);
+        }
+        if (cachedProteins != null) {
             if (log.isDebugEnabled()) log.debug("\tFound in cache");
-            return retrievalCache.get(ac);
+            return cachedProteins;
         }
         start();
-        Collection<UniprotProtein> proteins = new ArrayList<UniprotProtein>();
+        try {
+            Collection<UniprotProtein> proteins = new ArrayList<UniprotProtein>();
 
-        Iterator<UniProtEntry> it = getUniProtEntry( ac );
+            Iterator<UniProtEntry> it = getUniProtEntry( ac );
+            if ( it == null ) {
+                // UniProt could not be queried, already reported and not cached so that it is tried again
+                return proteins;
+            }
 
-        if ( !it.hasNext() ) {
-            // we didn't find anything
-            addError( ac, new UniprotServiceReport( "Could not find protein: " + ac ) );
-        }
+            if ( !it.hasNext() ) {
+                // we didn't find anything
+                addError( ac, new UniprotServiceReport( "Could not find protein: " + ac ) );
+            }
 
-        while ( it.hasNext() ) {
-            UniProtEntry uniProtEntry = it.next();
-            proteins.add( buildUniprotProtein( uniProtEntry, processSpliceVars ) );
-        }
+            while ( it.hasNext() ) {
+                UniProtEntry uniProtEntry = it.next();
+                proteins.add( buildUniprotProtein( uniProtEntry, processSpliceVars ) );
+            }
 
-        retrievalCache.put(ac, proteins);
+            retrievalCache.put(processSpliceVars ? ac : ac + NO_SPLICE_VARIANTS_KEY_SUFFIX, proteins);
 
-        return proteins;
+            return proteins;
+        } finally {
+            close();
+        }
     }
     
     public static void main(String[] args) throws ServiceException {
@@ -0,0 +1,289 @@
+/*
+ * Copyright (c) 2002 The European Bioinformatics Institute, and others.
+ * All rights reserved. Please see the file LICENSE
+ * in the root directory of this distribution.
+ */
+package uk.ac.ebi.intact.uniprot.service.cache;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.SoftReference;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-process cache holding at most a given number of entries, safe to share between threads.
+ *
+ * The entries are spread over independently locked segments, each evicting its least recently used entry when full,
+ * so that threads working on different keys seldom wait for each other. Values can optionally be held through soft
+ * references, letting the garbage collector reclaim them under memory pressure.
+ *
+ * @version $Id$
+ * @since 2.1.35
+ */
+public class BoundedConcurrentCache<K, V> {
+
+    /**
+     * Default number of segments the entries are spread over.
+     */
+    public static final int DEFAULT_CONCURRENCY_LEVEL = 16;
+
+    private final List<Segment> segments;
+
+    private final int maxSize;
+
+    private final boolean softValues;
+
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+    private final AtomicLong evictionCount = new AtomicLong();
+    private final AtomicLong collectedCount = new AtomicLong();
+
+    /**
+     * @param maxSize maximum number of entries kept.
+     */
+    public BoundedConcurrentCache( int maxSize ) {
+        this( maxSize, false );
+    }
+
+    /**
+     * @param maxSize maximum number of entries kept.
+     * @param softValues if true, the values are softly referenced and may be reclaimed by the garbage collector.
+     */
+    public BoundedConcurrentCache( int maxSize, boolean softValues ) {
+        this( maxSize, softValues, DEFAULT_CONCURRENCY_LEVEL );
+    }
+
+    /**
+     * @param maxSize maximum number of entries kept.
+     * @param softValues if true, the values are softly referenced and may be reclaimed by the garbage collector.
+     * @param concurrencyLevel number of segments the entries are spread over. The least recently used entry is evicted
+     * per segment, a concurrency level of 1 gives a strict LRU cache.
+     */
+    public BoundedConcurrentCache( int maxSize, boolean softValues, int concurrencyLevel ) {
+        if ( maxSize < 1 ) {
+            throw new IllegalArgumentException( "The maximum size must be 1 or greater." );
+        }
+        if ( concurrencyLevel < 1 ) {
+            throw new IllegalArgumentException( "The concurrency level must be 1 or greater." );
+        }
+        this.maxSize = maxSize;
+        this.softValues = softValues;
+
+        int segmentCount = Math.min( concurrencyLevel, maxSize );
+        this.segments = new ArrayList<Segment>( segmentCount );
+        for ( int i = 0; i < segmentCount; i++ ) {
+            int capacity = maxSize / segmentCount + ( i < maxSize % segmentCount ? 1 : 0 );
+            segments.add( new Segment( capacity ) );
+        }
+    }
+
+    /**
+     * Gets the value cached for a key.
+     *
+     * @param key the key.
+     * @return the value, or null if the key is not cached (or its value was reclaimed).
+     */
+    public V get( K key ) {
+        if ( key == null ) {
+            throw new IllegalArgumentException( "You must give a non null key." );
+        }
+
+        V value = segmentFor( key ).get( key );
+        if ( value == null ) {
+            missCount.incrementAndGet();
+        } else {
+            hitCount.incrementAndGet();
+        }
+        return value;
+    }
+
+    /**
+     * Caches a value, evicting the least recently used entry of its segment if needed.
+     *
+     * @param key the key.
+     * @param value the value.
+     */
+    public void put( K key, V value ) {
+        if ( key == null ) {
+            throw new IllegalArgumentException( "You must give a non null key." );
+        }
+        if ( value == null ) {
+            throw new IllegalArgumentException( "You must give a non null value." );
+        }
+
+        segmentFor( key ).put( key, value );
+    }
+
+    /**
+     * Removes a key from the cache.
+     *
+     * @param key the key.
+     * @return the value that was cached for it, if any.
+     */
+    public V remove( K key ) {
+        if ( key == null ) {
+            throw new IllegalArgumentException( "You must give a non null key." );
+        }
+
+        return segmentFor( key ).remove( key );
+    }
+
+    public void clear() {
+        for ( Segment segment : segments ) {
+            segment.clear();
+        }
+    }
+
+    /**
+     * Number of entries cached, including the ones whose value was reclaimed but not yet removed.
+     */
+    public int size() {
+        int size = 0;
+        for ( Segment segment : segments ) {
+            size += segment.size();
+        }
+        return size;
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public boolean isSoftValues() {
+        return softValues;
+    }
+
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    /**
+     * Number of entries removed to make room for new ones.
+     */
+    public long getEvictionCount() {
+        return evictionCount.get();
+    }
+
+    /**
+     * Number of entries removed because the garbage collector reclaimed their value.
+     */
+    public long getCollectedCount() {
+        return collectedCount.get();
+    }
+
+    @Override
+    public String toString() {
+        return "BoundedConcurrentCache{size=" + size() + ", maxSize=" + maxSize + ", softValues=" + softValues
+               + ", hits=" + hitCount + ", misses=" + missCount + ", evictions=" + evictionCount
+               + ", collected=" + collectedCount + "}";
+    }
+
+    //////////////////////////
+    // private methods
+
+    private Segment segmentFor( Object key ) {
+        int hash = key.hashCode();
+        hash ^= ( hash >>> 16 );
+        return segments.get( ( hash & 0x7FFFFFFF ) % segments.size() );
+    }
+
+    /**
+     * Soft reference to a value, remembering its key so that the entry can be removed once the value is reclaimed.
+     */
+    private static class ValueReference<K, V> extends SoftReference<V> {
+
+        private final K key;
+
+        private ValueReference( K key, V value, ReferenceQueue<V> queue ) {
+            super( value, queue );
+            this.key = key;
+        }
+    }
+
+    /**
+     * Part of the cache guarded by its own lock, ordered from the least to the most recently used entry.
+     */
+    private class Segment {
+
+        private final int capacity;
+
+        private final Map<K, Object> entries;
+
+        private final ReferenceQueue<V> collectedValues = new ReferenceQueue<V>();
+
+        private Segment( final int capacity ) {
+            this.capacity = capacity;
+            this.entries = new LinkedHashMap<K, Object>( Math.min( capacity, 1024 ), 0.75f, true ) {
+                @Override
+                protected boolean removeEldestEntry( Map.Entry<K, Object> eldest ) {
+                    if ( size() > Segment.this.capacity ) {
+                        evictionCount.incrementAndGet();
+                        return true;
+                    }
+                    return false;
+                }
+            };
+        }
+
+        private synchronized V get( K key ) {
+            purgeCollectedValues();
+
+            Object stored = entries.get( key );
+            if ( stored == null ) {
+                return null;
+            }
+
+            V value = unwrap( stored );
+            if ( value == null ) {
+                entries.remove( key );
+                collectedCount.incrementAndGet();
+            }
+            return value;
+        }
+
+        private synchronized void put( K key, V value ) {
+            purgeCollectedValues();
+            entries.put( key, softValues ? new ValueReference<K, V>( key, value, collectedValues ) : value );
+        }
+
+        private synchronized V remove( K key ) {
+            Object stored = entries.remove( key );
+            return stored == null ? null : unwrap( stored );
+        }
+
+        private synchronized void clear() {
+            entries.clear();
+        }
+
+        private synchronized int size() {
+            return entries.size();
+        }
+
+        private V unwrap( Object stored ) {
+            if ( softValues ) {
+                return ( ( ValueReference<K, V> ) stored ).get();
+            }
+            return ( V ) stored;
+        }
+
+        /**
+         * Removes the entries whose value has been reclaimed by the garbage collector.
+         */
+        private void purgeCollectedValues() {
+            ValueReference<K, V> reference;
+            while ( ( reference = ( ValueReference<K, V> ) collectedValues.poll() ) != null ) {
+                if ( entries.get( reference.key ) == reference ) {
+                    entries.remove( reference.key );
+                    collectedCount.incrementAndGet();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,462 @@
+/*
+ * Copyright (c) 2002 The European Bioinformatics Institute, and others.
+ * All rights reserved. Please see the file LICENSE
+ * in the root directory of this distribution.
+ */
+package uk.ac.ebi.intact.uniprot.service.codec;
+
+import uk.ac.ebi.intact.uniprot.model.*;
+import uk.ac.ebi.intact.uniprot.service.UniprotModelInterner;
+
+import java.io.*;
+import java.nio.charset.Charset;
+import java.util.*;
+
+/**
+ * Hand-written binary codec of the UniProt model, much more compact and faster than the Java serialization.
+ *
+ * The format starts with a version byte so that it can evolve. Within an encoded block, database names, organisms,
+ * keywords and other repeated values are written once and then referred to by index. Lengths and counts are written
+ * as variable length integers and amino acid sequences as one byte per residue.
+ *
+ * Splice variants and feature chains are expected to have either no master protein or the protein they belong to.
+ * The organisms and repeated values decoded are pooled by a UniprotModelInterner, so that the proteins decoded from
+ * different blocks share them too. Each codec has its own pool unless given one.
+ *
+ * @version $Id$
+ * @since 2.1.35
+ */
+public class BinaryUniprotProteinCodec implements UniprotProteinCodec {
+
+    public static final byte FORMAT_VERSION = 1;
+
+    private static final Charset UTF8 = Charset.forName( "UTF-8" );
+
+    private static final byte ASCII_SEQUENCE = 1;
+
+    private static final byte UTF8_SEQUENCE = 2;
+
+    private static final UniprotProteinType[] SOURCES = UniprotProteinType.values();
+
+    private final UniprotModelInterner interner;
+
+    public BinaryUniprotProteinCodec() {
+        this( new UniprotModelInterner() );
+    }
+
+    /**
+     * @param interner pool of the organisms and repeated values decoded, null to have each block decoded on its own.
+     */
+    public BinaryUniprotProteinCodec( UniprotModelInterner interner ) {
+        this.interner = interner;
+    }
+
+    public byte[] encode( Collection<UniprotProtein> proteins ) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream( 4096 );
+        Encoder encoder = new Encoder( new DataOutputStream( bytes ) );
+
+        encoder.out.writeByte( FORMAT_VERSION );
+        encoder.writeVarInt( proteins.size() );
+        for ( UniprotProtein protein : proteins ) {
+            encoder.writeProtein( protein );
+        }
+        encoder.out.flush();
+
+        return bytes.toByteArray();
+    }
+
+    public Collection<UniprotProtein> decode( byte[] bytes ) throws IOException {
+        Decoder decoder = new Decoder( new DataInputStream( new ByteArrayInputStream( bytes ) ), interner );
+
+        byte version = decoder.in.readByte();
+        if ( version != FORMAT_VERSION ) {
+            throw new IOException( "Unsupported format version: " + version );
+        }
+
+        int count = decoder.readVarInt();
+        List<UniprotProtein> proteins = new ArrayList<UniprotProtein>( count );
+        for ( int i = 0; i < count; i++ ) {
+            proteins.add( decoder.readProtein() );
+        }
+
+        return proteins;
+    }
+
+    /**
+     * Writes one block, keeping track of the values already written.
+     */
+    private static class Encoder {
+
+        private DataOutputStream out;
+
+        private Map<String, Integer> symbols = new HashMap<String, Integer>();
+
+        private Map<Organism, Integer> organisms = new IdentityHashMap<Organism, Integer>();
+
+        private Encoder( DataOutputStream out ) {
+            this.out = out;
+        }
+
+        private void writeProtein( UniprotProtein protein ) throws IOException {
+            writeString( protein.getId() );
+            writeString( protein.getPrimaryAc() );
+            writeStrings( protein.getSecondaryAcs() );
+            writeOrganism( protein.getOrganism() );
+            writeString( protein.getDescription() );
+
+            writeStrings( protein.getGenes() );
+            writeStrings( protein.getOrfs() );
+            writeStrings( protein.getSynomyms() );
+            writeStrings( protein.getLocuses() );
+            writeSymbols( protein.getDiseases() );
+            writeSymbols( protein.getKeywords() );
+            writeStrings( protein.getFunctions() );
+
+            writeVarInt( protein.getCrossReferences().size() );
+            for ( UniprotXref xref : protein.getCrossReferences() ) {
+                writeString( xref.getAccession() );
+                writeSymbol( xref.getDatabase() );
+                writeString( xref.getDescription() );
+            }
+
+            writeString( protein.getCrc64() );
+            writeSequence( protein.getSequence() );
+            writeVarInt( protein.getSequenceLength() );
+            writeSymbol( protein.getReleaseVersion() );
+            writeDate( protein.getLastAnnotationUpdate() );
+            writeDate( protein.getLastSequenceUpdate() );
+            out.writeByte( protein.getSource() == null ? -1 : protein.getSource().ordinal() );
+
+            writeVarInt( protein.getSpliceVariants().size() );
+            for ( UniprotSpliceVariant spliceVariant : protein.getSpliceVariants() ) {
+                writeString( spliceVariant.getPrimaryAc() );
+                writeOrganism( spliceVariant.getOrganism() );
+                writeSequence( getSequence( spliceVariant ) );
+                writeInteger( spliceVariant.getStart() );
+                writeInteger( spliceVariant.getEnd() );
+                writeStrings( spliceVariant.getSecondaryAcs() );
+                writeStrings( spliceVariant.getSynomyms() );
+                writeString( spliceVariant.getNote() );
+                out.writeBoolean( spliceVariant.getMasterProtein() == protein );
+            }
+
+            writeVarInt( protein.getFeatureChains().size() );
+            for ( UniprotFeatureChain featureChain : protein.getFeatureChains() ) {
+                writeString( featureChain.getPrimaryAc() );
+                writeOrganism( featureChain.getOrganism() );
+                writeSequence( featureChain.getSequence() );
+                writeString( featureChain.getDescription() );
+                writeInteger( featureChain.getStart() );
+                writeInteger( featureChain.getEnd() );
+                out.writeBoolean( featureChain.getMasterProtein() == protein );
+            }
+        }
+
+        /**
+         * The sequence of a splice variant can be missing (eg. external isoform not found) but its getter refuses to
+         * return it then.
+         */
+        private String getSequence( UniprotSpliceVariant spliceVariant ) {
+            try {
+                return spliceVariant.getSequence();
+            } catch ( IllegalArgumentException e ) {
+                return null;
+            }
+        }
+
+        private void writeOrganism( Organism organism ) throws IOException {
+            if ( organism == null ) {
+                writeVarInt( 0 );
+                return;
+            }
+
+            Integer index = organisms.get( organism );
+            if ( index != null ) {
+                writeVarInt( index + 2 );
+                return;
+            }
+
+            organisms.put( organism, organisms.size() );
+            writeVarInt( 1 );
+            writeVarInt( organism.getTaxid() );
+            writeSymbol( organism.getName() );
+            writeSymbol( organism.getCommonName() );
+            writeSymbols( organism.getParents() );
+        }
+
+        private void writeSequence( String sequence ) throws IOException {
+            if ( sequence == null ) {
+                writeVarInt( 0 );
+                return;
+            }
+
+            int length = sequence.length();
+            boolean ascii = true;
+            for ( int i = 0; i < length && ascii; i++ ) {
+                ascii = sequence.charAt( i ) < 128;
+            }
+
+            if ( ascii ) {
+                writeVarInt( ASCII_SEQUENCE );
+                writeVarInt( length );
+                byte[] residues = new byte[length];
+                for ( int i = 0; i < length; i++ ) {
+                    residues[i] = ( byte ) sequence.charAt( i );
+                }
+                out.write( residues );
+            } else {
+                writeVarInt( UTF8_SEQUENCE );
+                writeString( sequence );
+            }
+        }
+
+        private void writeSymbol( String symbol ) throws IOException {
+            if ( symbol == null ) {
+                writeVarInt( 0 );
+                return;
+            }
+
+            Integer index = symbols.get( symbol );
+            if ( index != null ) {
+                writeVarInt( index + 2 );
+            } else {
+                symbols.put( symbol, symbols.size() );
+                writeVarInt( 1 );
+                writeString( symbol );
+            }
+        }
+
+        private void writeSymbols( Collection<String> values ) throws IOException {
+            writeVarInt( values.size() );
+            for ( String value : values ) {
+                writeSymbol( value );
+            }
+        }
+
+        private void writeString( String value ) throws IOException {
+            if ( value == null ) {
+                writeVarInt( 0 );
+                return;
+            }
+
+            byte[] bytes = value.getBytes( UTF8 );
+            writeVarInt( bytes.length + 1 );
+            out.write( bytes );
+        }
+
+        private void writeStrings( Collection<String> values ) throws IOException {
+            writeVarInt( values.size() );
+            for ( String value : values ) {
+                writeString( value );
+            }
+        }
+
+        private void writeInteger( Integer value ) throws IOException {
+            out.writeBoolean( value != null );
+            if ( value != null ) {
+                out.writeInt( value );
+            }
+        }
+
+        private void writeDate( Date date ) throws IOException {
+            out.writeBoolean( date != null );
+            if ( date != null ) {
+                out.writeLong( date.getTime() );
+            }
+        }
+
+        private void writeVarInt( int value ) throws IOException {
+            while ( ( value & ~0x7F ) != 0 ) {
+                out.writeByte( ( value & 0x7F ) | 0x80 );
+                value >>>= 7;
+            }
+            out.writeByte( value );
+        }
+    }
+
+    /**
+     * Reads one block, keeping track of the values already read.
+     */
+    private static class Decoder {
+
+        private DataInputStream in;
+
+        private List<String> symbols = new ArrayList<String>();
+
+        private List<Organism> organisms = new ArrayList<Organism>();
+
+        private UniprotModelInterner interner;
+
+        private Decoder( DataInputStream in, UniprotModelInterner interner ) {
+            this.in = in;
+            this.interner = interner;
+        }
+
+        private UniprotProtein readProtein() throws IOException {
+            String id = readString();
+            String primaryAc = readString();
+            List<String> secondaryAcs = readStrings( new ArrayList<String>() );
+            Organism organism = readOrganism();
+            String description = readString();
+
+            UniprotProtein protein = new UniprotProtein( id, primaryAc, organism, description );
+            protein.getSecondaryAcs().addAll( secondaryAcs );
+
+            readStrings( protein.getGenes() );
+            readStrings( protein.getOrfs() );
+            readStrings( protein.getSynomyms() );
+            readStrings( protein.getLocuses() );
+            readSymbols( protein.getDiseases() );
+            readSymbols( protein.getKeywords() );
+            readStrings( protein.getFunctions() );
+
+            int xrefCount = readVarInt();
+            for ( int i = 0; i < xrefCount; i++ ) {
+                String accession = readString();
+                String database = readSymbol();
+                protein.getCrossReferences().add( new UniprotXref( accession, database, readString() ) );
+            }
+
+            protein.setCrc64( readString() );
+            protein.setSequence( readSequence() );
+            protein.setSequenceLength( readVarInt() );
+            protein.setReleaseVersion( readSymbol() );
+            protein.setLastAnnotationUpdate( readDate() );
+            protein.setLastSequenceUpdate( readDate() );
+            byte source = in.readByte();
+            protein.setSource( source < 0 ? null : SOURCES[source] );
+
+            int spliceVariantCount = readVarInt();
+            for ( int i = 0; i < spliceVariantCount; i++ ) {
+                UniprotSpliceVariant spliceVariant = new UniprotSpliceVariant( readString(), readOrganism(), readSequence() );
+                spliceVariant.setStart( readInteger() );
+                spliceVariant.setEnd( readInteger() );
+                readStrings( spliceVariant.getSecondaryAcs() );
+                readStrings( spliceVariant.getSynomyms() );
+                spliceVariant.setNote( readString() );
+                if ( in.readBoolean() ) {
+                    spliceVariant.setMasterProtein( protein );
+                }
+                protein.getSpliceVariants().add( spliceVariant );
+            }
+
+            int featureChainCount = readVarInt();
+            for ( int i = 0; i < featureChainCount; i++ ) {
+                UniprotFeatureChain featureChain = new UniprotFeatureChain( readString(), readOrganism(), readSequence() );
+                featureChain.setDescription( readString() );
+                featureChain.setStart( readInteger() );
+                featureChain.setEnd( readInteger() );
+                if ( in.readBoolean() ) {
+                    featureChain.setMasterProtein( protein );
+                }
+                protein.getFeatureChains().add( featureChain );
+            }
+
+            return protein;
+        }
+
+        private Organism readOrganism() throws IOException {
+            int index = readVarInt();
+            if ( index == 0 ) {
+                return null;
+            }
+            if ( index > 1 ) {
+                return organisms.get( index - 2 );
+            }
+
+            Organism organism = new Organism( readVarInt(), readSymbol() );
+            organism.setCommonName( readSymbol() );
+            readSymbols( organism.getParents() );
+            if ( interner != null ) {
+                organism = interner.intern( organism );
+            }
+            organisms.add( organism );
+
+            return organism;
+        }
+
+        private String readSequence() throws IOException {
+            int type = readVarInt();
+            if ( type == 0 ) {
+                return null;
+            }
+            if ( type == UTF8_SEQUENCE ) {
+                return readString();
+            }
+            if ( type != ASCII_SEQUENCE ) {
+                throw new IOException( "Unexpected sequence type: " + type );
+            }
+
+            byte[] residues = new byte[readVarInt()];
+            in.readFully( residues );
+            char[] chars = new char[residues.length];
+            for ( int i = 0; i < residues.length; i++ ) {
+                chars[i] = ( char ) residues[i];
+            }
+            return new String( chars );
+        }
+
+        private String readSymbol() throws IOException {
+            int index = readVarInt();
+            if ( index == 0 ) {
+                return null;
+            }
+            if ( index == 1 ) {
+                String symbol = readString();
+                if ( interner != null ) {
+                    symbol = interner.intern( symbol );
+                }
+                symbols.add( symbol );
+                return symbol;
+            }
+            return symbols.get( index - 2 );
+        }
+
+        private <T extends Collection<String>> T readSymbols( T target ) throws IOException {
+            int count = readVarInt();
+            for ( int i = 0; i < count; i++ ) {
+                target.add( readSymbol() );
+            }
+            return target;
+        }
+
+        private String readString() throws IOException {
+            int length = readVarInt();
+            if ( length == 0 ) {
+                return null;
+            }
+
+            byte[] bytes = new byte[length - 1];
+            in.readFully( bytes );
+            return new String( bytes, UTF8 );
+        }
+
+        private <T extends Collection<String>> T readStrings( T target ) throws IOException {
+            int count = readVarInt();
+            for ( int i = 0; i < count; i++ ) {
+                target.add( readString() );
+            }
+            return target;
+        }
+
+        private Integer readInteger() throws IOException {
+            return in.readBoolean() ? in.readInt() : null;
+        }
+
+        private Date readDate() throws IOException {
+            return in.readBoolean() ? new Date( in.readLong() ) : null;
+        }
+
+        private int readVarInt() throws IOException {
+            int value = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = in.readByte();
+                value |= ( b & 0x7F ) << shift;
+                shift += 7;
+            } while ( ( b & 0x80 ) != 0 );
+            return value;
+        }
+    }
+}
@@ -0,0 +1,40 @@
+/*
+ * Copyright (c) 2002 The European Bioinformatics Institute, and others.
+ * All rights reserved. Please see the file LICENSE
+ * in the root directory of this distribution.
+ */
+package uk.ac.ebi.intact.uniprot.service.codec;
+
+import uk.ac.ebi.intact.uniprot.model.UniprotProtein;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.Collection;
+
+/**
+ * Codec relying on the default Java serialization of the model.
+ *
+ * @version $Id$
+ * @since 2.1.35
+ */
+public class JavaSerializationCodec implements UniprotProteinCodec {
+
+    public byte[] encode( Collection<UniprotProtein> proteins ) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream( bytes );
+        out.writeObject( new ArrayList<UniprotProtein>( proteins ) );
+        out.close();
+        return bytes.toByteArray();
+    }
+
+    public Collection<UniprotProtein> decode( byte[] bytes ) throws IOException {
+        ObjectInputStream in = new ObjectInputStream( new ByteArrayInputStream( bytes ) );
+        try {
+            return ( Collection<UniprotProtein> ) in.readObject();
+        } catch ( ClassNotFoundException e ) {
+            throw new IOException( "Could not decode UniProt proteins", e );
+        } finally {
+            in.close();
+        }
+    }
+}
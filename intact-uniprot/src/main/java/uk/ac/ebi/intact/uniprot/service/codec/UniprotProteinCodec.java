@@ -0,0 +1,39 @@
+/*
+ * Copyright (c) 2002 The European Bioinformatics Institute, and others.
+ * All rights reserved. Please see the file LICENSE
+ * in the root directory of this distribution.
+ */
+package uk.ac.ebi.intact.uniprot.service.codec;
+
+import uk.ac.ebi.intact.uniprot.model.UniprotProtein;
+
+import java.io.IOException;
+import java.util.Collection;
+
+/**
+ * Converts UniProt proteins, with their splice variants, feature chains and cross references, to and from bytes so
+ * that they can be stored outside of the heap.
+ *
+ * @version $Id$
+ * @since 2.1.35
+ */
+public interface UniprotProteinCodec {
+
+    /**
+     * Encodes the given proteins.
+     *
+     * @param proteins the proteins to encode.
+     * @return the encoded proteins.
+     * @throws IOException if the proteins cannot be encoded.
+     */
+    public byte[] encode( Collection<UniprotProtein> proteins ) throws IOException;
+
+    /**
+     * Decodes proteins previously encoded by the same codec.
+     *
+     * @param bytes the encoded proteins.
+     * @return the decoded proteins.
+     * @throws IOException if the bytes cannot be decoded.
+     */
+    public Collection<UniprotProtein> decode( byte[] bytes ) throws IOException;
+}
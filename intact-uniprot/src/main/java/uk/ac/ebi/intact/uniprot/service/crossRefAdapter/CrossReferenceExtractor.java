@@ -0,0 +1,28 @@
+/*
+ * Copyright (c) 2002 The European Bioinformatics Institute, and others.
+ * All rights reserved. Please see the file LICENSE
+ * in the root directory of this distribution.
+ */
+package uk.ac.ebi.intact.uniprot.service.crossRefAdapter;
+
+import uk.ac.ebi.kraken.interfaces.uniprot.DatabaseCrossReference;
+
+import java.util.Collection;
+
+/**
+ * Extracts the generic UniprotCrossReferences from the cross references of one database.
+ *
+ * Implementations are shared by all the threads converting UniProt entries and must therefore hold no state.
+ *
+ * @version $Id$
+ * @since 2.1.35
+ */
+public interface CrossReferenceExtractor {
+
+    /**
+     * @param crossRef the cross reference to convert.
+     * @param db the name of its database.
+     * @return the cross references extracted, never null.
+     */
+    Collection<UniprotCrossReference> extract( DatabaseCrossReference crossRef, String db );
+}
@@ -9,218 +9,119 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import uk.ac.ebi.kraken.interfaces.uniprot.DatabaseCrossReference;
 
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
 import java.util.*;
 
 /**
  * Utility that allows to convert a specific implementation of a DatabaseCrossReference into the generic UniprotCrossReference.
  *
+ * The conversion is delegated to the CrossReferenceExtractor registered for the database of the cross reference, or
+ * to the default one that only keeps the primary id. The registered extractors are replaced as a whole on
+ * registration, so that a builder can be shared by several threads.
+ *
  * @author Samuel Kerrien (skerrien@ebi.ac.uk)
  * @version $Id$
  * @since <pre>24-Oct-2006</pre>
  */
 public class ReflectionCrossReferenceBuilder {
 
-    /**
-     * Cache methods relevant for data retreival.
-     */
-    private Map<String, String> methodCache = new WeakHashMap<String, String>();
-
     /**
      * Sets up a logger for that class.
      */
     public static final Log log = LogFactory.getLog( ReflectionCrossReferenceBuilder.class );
 
     /**
-     * No params argument for reflection invocations.
+     * Keeps the primary id of the cross reference.
      */
-    private static final Object[] NO_PARAM = new Object[]{};
+    public static final CrossReferenceExtractor PRIMARY_ID_EXTRACTOR = new CrossReferenceExtractor() {
+        public Collection<UniprotCrossReference> extract( DatabaseCrossReference crossRef, String db ) {
+            return Collections.singletonList( new UniprotCrossReference( getPrimaryId( crossRef ), db, null ) );
+        }
+    };
 
     /**
-     * Call the getValue() method on the given object and return the result of the call.
-     *
-     * @param o the object on which to call getValue().
-     *
-     * @return the value returned by getValue();
-     *
-     * @throws IllegalAccessException
-     * @throws InvocationTargetException
+     * Keeps the primary id and the transcript, protein and gene ids given as the other attributes of Ensembl cross
+     * references.
      */
-    private String getValue( Object o ) throws IllegalAccessException, InvocationTargetException {
-        try {
-            Method method = o.getClass().getMethod( "getValue" );
-            if ( method != null ) {
-                return ( String ) method.invoke( o, NO_PARAM );
-            }
-        } catch ( NoSuchMethodException e ) {
-            // nevermind
-            if( log.isDebugEnabled() ) {
-                log.debug( "Could not find method 'getValue' on Class(" + o.getClass().getName() + ")" );
-            }
+    public static final CrossReferenceExtractor ENSEMBL_EXTRACTOR = new CrossReferenceExtractor() {
+        public Collection<UniprotCrossReference> extract( DatabaseCrossReference crossRef, String db ) {
+            List<UniprotCrossReference> references = new ArrayList<UniprotCrossReference>( 4 );
+            references.add( new UniprotCrossReference( getPrimaryId( crossRef ), db, null ) );
+            addId( references, crossRef.getDescription(), db );
+            addId( references, crossRef.getThird(), db );
+            addId( references, crossRef.getFourth(), db );
+            return references;
         }
+    };
+
+    /**
+     * Extractors registered by database name, matched ignoring the case. Never modified once published.
+     */
+    private volatile SortedMap<String, CrossReferenceExtractor> registeredExtractors =
+            new TreeMap<String, CrossReferenceExtractor>( String.CASE_INSENSITIVE_ORDER );
 
-        return null;
+    public ReflectionCrossReferenceBuilder() {
+        register( "Ensembl", ENSEMBL_EXTRACTOR );
     }
 
     /**
-     * Find the method that gives access to the cross reference id or accession number.
-     *
-     * @param clazz the class we are introspecting.
-     * @param db    the database name.
+     * Registers the extractor to use for the cross references of a database.
      *
-     * @return the method or null if not found.
+     * @param db the database name, matched ignoring the case.
+     * @param extractor the extractor of its cross references.
      */
-    private Method findMethod( Class<? extends DatabaseCrossReference> clazz, String db ) {
-
-        String methodName = methodCache.get( clazz.getName() );
-
-        Method method = null;
-
-        if ( methodName == null ) {
-            // then search for it
-            if ( log.isDebugEnabled() ) {
-                log.debug( "Trying to find the method giving access to " + db + "'s ID via reflection." );
-            }
-
-            Method[] methods = clazz.getMethods();
-
-            boolean foundId = false;
-            for ( int i = 0; i < methods.length && !foundId; i++ ) {
-                Method candidateMethod = methods[i];
-                methodName = candidateMethod.getName();
-
-                if (!methodName.equals("getId") && !methodName.equals("getDbAccession") &&
-                        methodName.startsWith("get")) {
-
-                    if (methodName.endsWith("Id") ||
-                            methodName.endsWith("Number") ||
-                            methodName.endsWith("KOIdentifier") ||
-                            methodName.endsWith("DMDMIdentifier") ||
-                            methodName.endsWith("PATRICIdentifier") ||
-                            methodName.endsWith("GeneIdentifier") ||
-                            methodName.endsWith("Accession") ||
-                            methodName.endsWith("PortalIdentifier") ||
-                            methodName.endsWith("ProtIdentifier") ||
-                            methodName.endsWith("EvolutionaryTraceIdentifier") ||
-                            methodName.endsWith("DNASUIdentifier") ||
-                            methodName.endsWith("TreeIdentifier")) {
-
-                        method = candidateMethod;
-                        foundId = true;
-                    }
-                }
-            }
-
-            // check for a name if still not found
-            if (!foundId) {
-                for (int i = 0; i < methods.length && !foundId; i++) {
-                    Method candidateMethod = methods[i];
-                    methodName = candidateMethod.getName();
-
-                    if ((methodName.startsWith("get") && methodName.endsWith("Name"))) {
-                        method = candidateMethod;
-                        foundId = true;
-                    }
-                }
-            }
-
-            if (!foundId) {
-                log.warn("Cannot know the id from cross reference of type: "+clazz+" / db: "+db);
-            }
-            else {
-                // cache it
-                methodCache.put( clazz.getName(), methodName );
-            }
-        } else {
-            if ( log.isDebugEnabled() ) {
-                log.debug( "Method found in cache." );
-            }
-
-            try {
-                method = clazz.getMethod(methodName, new Class<?>[] {});
-            } catch (NoSuchMethodException e) {
-                throw new IllegalStateException("Method '"+methodName+"' was found in cache, but this class does not seem to have it: "+clazz.getName(), e);
-            }
+    public synchronized void register( String db, CrossReferenceExtractor extractor ) {
+        if ( db == null ) {
+            throw new IllegalArgumentException( "You must give a non null database." );
         }
-
-        return method;
+        if ( extractor == null ) {
+            throw new IllegalArgumentException( "You must give a non null extractor." );
+        }
+        SortedMap<String, CrossReferenceExtractor> extractors = new TreeMap<String, CrossReferenceExtractor>( registeredExtractors );
+        extractors.put( db, extractor );
+        registeredExtractors = extractors;
     }
 
     /**
-     * Convert an implementation of DatabaseCrossReference into a UniprotCrossReference using reflection to find the
-     * Id.
+     * Convert an implementation of DatabaseCrossReference into UniprotCrossReferences.
      *
      * @param crossRef the cross reference to convert.
      *
-     * @return a newly created UniprotCrossReference or null if it could not be created.
+     * @return the UniprotCrossReferences created.
      */
     public <T extends DatabaseCrossReference> Collection<UniprotCrossReference> build( T crossRef ) {
+        String db = crossRef.getDatabase().getName();
 
         if ( log.isDebugEnabled() ) {
-            log.debug( "Converting " + crossRef.getClass().getName() + " into a UniprotCrossReference." );
+            log.debug( "Converting " + crossRef.getClass().getName() + " of " + db + " into a UniprotCrossReference." );
         }
 
-        Class<? extends DatabaseCrossReference> clazz = crossRef.getClass();
+        // TODO 2006-10-24: how to retreive a description ?!?!
+        // TODO > so far we cannot, the UniProt Team is going to provide a tool to replace this Builder soon.
 
-        List<UniprotCrossReference> references = new ArrayList<UniprotCrossReference>();
-        String desc = null;
-        String db = crossRef.getDatabase().getName();
-        if ( ! db.equalsIgnoreCase("Ensembl")) {
-            String id = crossRef.getPrimaryId().toString();
-            if (id == null) {
-                throw new IllegalArgumentException("Cannot get id from cross reference: "+crossRef.getClass().getSimpleName()+" [ "+crossRef+" ]");
-            }
-            // Build the Generic Cross reference
-            references.add(new UniprotCrossReference( id, db, desc ));
-        }
-        else {
-            String id = crossRef.getPrimaryId().toString();
-            String second_id = crossRef.getDescription() != null ? crossRef.getDescription().toString() : null;
-            String third_id  = crossRef.getThird()       != null ? crossRef.getThird()      .toString() : null;
-            String fourth_id = crossRef.getFourth()      != null ? crossRef.getFourth()     .toString() : null;
-            if (id == null){
-                throw new IllegalArgumentException("Cannot get id from cross reference: "+crossRef.getClass().getSimpleName()+" [ "+crossRef+" ]");
-            }
-            references.add(new UniprotCrossReference(id, db, desc));
-            if (second_id != null && second_id.trim().length() > 0) references.add(new UniprotCrossReference(second_id, db, desc));
-            if (third_id  != null && third_id .trim().length() > 0) references.add(new UniprotCrossReference(third_id , db, desc));
-            if (fourth_id != null && fourth_id.trim().length() > 0) references.add(new UniprotCrossReference(fourth_id, db, desc));
-        }
+        return findExtractor( db ).extract( crossRef, db );
+    }
 
-        /*Method method = findMethod( clazz, db );
-
-        try {
-            if ( method != null ) {
-                Object o = method.invoke( crossRef, NO_PARAM );
-                if ( o != null ) {
-
-                    if ( log.isDebugEnabled() ) {
-                        log.debug( method.getName() + " returned a " + o.getClass() );
-                    }
-                    if ( o instanceof Long ) {
-                        id = o.toString();
-                    } else {
-                        id = getValue( o );
-                    }
-
-                } else {
-                    if ( log.isDebugEnabled() ) {
-                        log.debug( method.getName() + " returned null" );
-                    }
-                }
-            }
-            else {
-                return null;
-            }
-        } catch ( Exception e ) {
-            throw new RuntimeUniprotServiceException("Problem getting xref id using reflection: "+crossRef+" / method: "+clazz.getName()+" "+method, e);
-        } */
+    //////////////////////////
+    // private methods
 
-        // TODO 2006-10-24: how to retreive a description ?!?!
-        // TODO > so far we cannot, the UniProt Team is going to provide a tool to replace this Builder soon.
+    private CrossReferenceExtractor findExtractor( String db ) {
+        CrossReferenceExtractor extractor = registeredExtractors.get( db );
+        return extractor == null ? PRIMARY_ID_EXTRACTOR : extractor;
+    }
 
-        return references;
+    private static String getPrimaryId( DatabaseCrossReference crossRef ) {
+        if ( crossRef.getPrimaryId() == null ) {
+            throw new IllegalArgumentException( "Cannot get id from cross reference: " + crossRef.getClass().getSimpleName() + " [ " + crossRef + " ]" );
+        }
+        return crossRef.getPrimaryId().toString();
     }
 
-}
\ No newline at end of file
+    private static void addId( List<UniprotCrossReference> references, Object id, String db ) {
+        if ( id != null ) {
+            String value = id.toString();
+            if ( value.trim().length() > 0 ) {
+                references.add( new UniprotCrossReference( value, db, null ) );
+            }
+        }
+    }
+}
@@ -0,0 +1,592 @@
+/*
+ * Copyright (c) 2002 The European Bioinformatics Institute, and others.
+ * All rights reserved. Please see the file LICENSE
+ * in the root directory of this distribution.
+ */
+package uk.ac.ebi.intact.uniprot.service.entryStore;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import uk.ac.ebi.intact.uniprot.model.UniprotProtein;
+import uk.ac.ebi.intact.uniprot.service.codec.JavaSerializationCodec;
+import uk.ac.ebi.intact.uniprot.service.codec.UniprotProteinCodec;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.*;
+import java.util.zip.CRC32;
+
+/**
+ * On-disk store of UniProt proteins, surviving JVM restarts.
+ *
+ * Proteins are appended to a single data file, which is memory-mapped for reading in fixed size segments as they get
+ * filled, so that appending never maps the file again. Each protein is indexed by its primary AC and UniProt ID. The AC used to look proteins up (eg. a secondary AC) is indexed as an alias of the
+ * proteins found for it, as only the full result of a lookup tells which proteins share a secondary AC.
+ *
+ * The store is tied to a UniProt release: opening it for another release discards its content, so that entries are
+ * invalidated when UniProt publishes new data rather than after an arbitrary time. The index is rebuilt when the
+ * store is opened. Likewise, a store written with another <code>UniprotProteinCodec</code> is discarded.
+ *
+ * Every record carries a checksum, so that a damaged record is skipped when the index is rebuilt rather than losing
+ * the records following it. The data is followed by an end marker, written before the length of the record it
+ * follows, so that the store never ends on a partially written record.
+ *
+ * @version $Id$
+ * @since 2.1.35
+ */
+public class UniprotEntryStore {
+
+    /**
+     * Sets up a logger for that class.
+     */
+    public static final Log log = LogFactory.getLog( UniprotEntryStore.class );
+
+    public static final String DATA_FILE_NAME = "uniprot-entries.dat";
+
+    private static final int MAGIC_NUMBER = 0x554E4950;
+
+    private static final int FORMAT_VERSION = 3;
+
+    private static final byte ENTRY_RECORD = 1;
+
+    private static final byte ALIAS_RECORD = 2;
+
+    /**
+     * Length and checksum of a record.
+     */
+    private static final int RECORD_HEADER_SIZE = 8;
+
+    /**
+     * Length written after the last record.
+     */
+    private static final int END_MARKER = 0;
+
+    /**
+     * Size of the segments the data file is mapped in.
+     */
+    private static final int SEGMENT_SIZE = 1 << 26;
+
+    /**
+     * UniProt release the stored proteins come from.
+     */
+    private String release;
+
+    /**
+     * Encodes the stored proteins.
+     */
+    private UniprotProteinCodec codec;
+
+    private File dataFile;
+
+    private RandomAccessFile randomAccessFile;
+
+    private FileChannel channel;
+
+    /**
+     * Offset of the first record.
+     */
+    private long recordsStart;
+
+    /**
+     * Offset of the end marker, where the next record is appended.
+     */
+    private long dataEnd;
+
+    /**
+     * Read-only views of the segments entirely filled with records, mapped once and never written again. The records
+     * of the last segment are read from the channel.
+     */
+    private List<MappedByteBuffer> segments = new ArrayList<MappedByteBuffer>();
+
+    /**
+     * Offset of the entry records by primary AC and UniProt ID.
+     */
+    private Map<String, Long> entryOffsets = new HashMap<String, Long>();
+
+    /**
+     * Primary ACs of the proteins found when looking up an AC which is not a primary AC or UniProt ID.
+     */
+    private Map<String, List<String>> aliases = new HashMap<String, List<String>>();
+
+    /**
+     * Opens the store kept in the given directory, creating it if needed.
+     *
+     * @param directory where the store is kept.
+     * @param release UniProt release of the proteins to store (eg. 2016_09). The content of a store created for
+     * another release is discarded.
+     * @throws IOException if the store cannot be opened.
+     */
+    public UniprotEntryStore( File directory, String release ) throws IOException {
+        this( directory, release, new JavaSerializationCodec() );
+    }
+
+    /**
+     * Opens the store kept in the given directory, creating it if needed.
+     *
+     * @param directory where the store is kept.
+     * @param release UniProt release of the proteins to store (eg. 2016_09). The content of a store created for
+     * another release is discarded.
+     * @param codec encodes the stored proteins. The content of a store written with another codec is discarded.
+     * @throws IOException if the store cannot be opened.
+     */
+    public UniprotEntryStore( File directory, String release, UniprotProteinCodec codec ) throws IOException {
+        if ( directory == null ) {
+            throw new IllegalArgumentException( "You must give a non null directory." );
+        }
+        if ( release == null ) {
+            throw new IllegalArgumentException( "You must give a non null UniProt release." );
+        }
+        if ( codec == null ) {
+            throw new IllegalArgumentException( "You must give a non null codec." );
+        }
+        if ( !directory.exists() && !directory.mkdirs() ) {
+            throw new IOException( "Could not create directory: " + directory.getAbsolutePath() );
+        }
+
+        this.release = release;
+        this.codec = codec;
+        this.dataFile = new File( directory, DATA_FILE_NAME );
+        this.randomAccessFile = new RandomAccessFile( dataFile, "rw" );
+        this.channel = randomAccessFile.getChannel();
+
+        recordsStart = readHeader();
+        if ( recordsStart < 0 ) {
+            if ( channel.size() > 0 && log.isInfoEnabled() ) {
+                log.info( "Discarding UniProt entries of " + dataFile.getAbsolutePath() + " as they do not come from release " + release
+                          + " or were not written by " + codec.getClass().getName() );
+            }
+            // nothing is mapped yet, so the file can be truncated
+            channel.truncate( 0 );
+            recordsStart = writeHeader();
+            dataEnd = recordsStart;
+            writeEndMarker( dataEnd );
+        } else {
+            loadIndex();
+        }
+    }
+
+    /**
+     * Gets the proteins stored for the given AC.
+     *
+     * @param ac primary AC, secondary AC or UniProt ID previously stored.
+     * @return the proteins, or null if this AC was never stored or some of its proteins were lost.
+     * @throws IOException if the store cannot be read.
+     */
+    public synchronized Collection<UniprotProtein> get( String ac ) throws IOException {
+        List<String> primaryAcs = aliases.get( ac );
+
+        if ( primaryAcs == null ) {
+            Long offset = entryOffsets.get( ac );
+            if ( offset == null ) {
+                return null;
+            }
+            Collection<UniprotProtein> proteins = new ArrayList<UniprotProtein>( 1 );
+            proteins.add( readEntry( offset ) );
+            return proteins;
+        }
+
+        Collection<UniprotProtein> proteins = new ArrayList<UniprotProtein>( primaryAcs.size() );
+        for ( String primaryAc : primaryAcs ) {
+            Long offset = entryOffsets.get( primaryAc );
+            if ( offset == null ) {
+                // a partial result would pass for the full one
+                return null;
+            }
+            proteins.add( readEntry( offset ) );
+        }
+        return proteins;
+    }
+
+    /**
+     * Stores the proteins found for an AC.
+     *
+     * @param ac the AC that was looked up.
+     * @param proteins the proteins found for it.
+     * @throws IOException if the store cannot be written.
+     */
+    public synchronized void put( String ac, Collection<UniprotProtein> proteins ) throws IOException {
+        if ( ac == null ) {
+            throw new IllegalArgumentException( "You must give a non null AC." );
+        }
+        if ( proteins == null ) {
+            throw new IllegalArgumentException( "You must give a non null collection of proteins." );
+        }
+
+        List<String> primaryAcs = new ArrayList<String>( proteins.size() );
+        for ( UniprotProtein protein : proteins ) {
+            if ( !entryOffsets.containsKey( protein.getPrimaryAc() ) ) {
+                writeEntry( protein );
+            }
+            primaryAcs.add( protein.getPrimaryAc() );
+        }
+
+        boolean indexedByEntry = primaryAcs.size() == 1 && entryOffsets.get( ac ) != null
+                && entryOffsets.get( ac ).equals( entryOffsets.get( primaryAcs.get( 0 ) ) );
+
+        if ( !indexedByEntry && !primaryAcs.equals( aliases.get( ac ) ) ) {
+            writeAlias( ac, primaryAcs );
+        }
+    }
+
+    /**
+     * Number of proteins stored.
+     */
+    public synchronized int size() {
+        return new HashSet<Long>( entryOffsets.values() ).size();
+    }
+
+    public String getRelease() {
+        return release;
+    }
+
+    public UniprotProteinCodec getCodec() {
+        return codec;
+    }
+
+    public File getDataFile() {
+        return dataFile;
+    }
+
+    /**
+     * Removes all the proteins from the store.
+     *
+     * @throws IOException if the store cannot be written.
+     */
+    public synchronized void clear() throws IOException {
+        entryOffsets.clear();
+        aliases.clear();
+        segments.clear();
+
+        // the file is not truncated as some platforms (eg. Windows) do not allow it while mapped, the end marker
+        // hides the previous records instead
+        dataEnd = recordsStart;
+        writeEndMarker( dataEnd );
+    }
+
+    public synchronized void close() throws IOException {
+        segments.clear();
+        if ( channel.isOpen() ) {
+            channel.force( false );
+        }
+        randomAccessFile.close();
+    }
+
+    //////////////////////////
+    // Serialization of the proteins
+
+    protected byte[] encode( UniprotProtein protein ) throws IOException {
+        return codec.encode( Collections.singletonList( protein ) );
+    }
+
+    protected UniprotProtein decode( byte[] bytes ) throws IOException {
+        Collection<UniprotProtein> proteins = codec.decode( bytes );
+        if ( proteins.size() != 1 ) {
+            throw new IOException( "Expected one stored UniProt protein but found " + proteins.size() );
+        }
+        return proteins.iterator().next();
+    }
+
+    //////////////////////////
+    // private methods
+
+    /**
+     * Checks the header of the data file.
+     *
+     * @return the offset of the first record, or -1 if the data file is empty, holds another release or was written
+     * with another codec.
+     */
+    private long readHeader() throws IOException {
+        if ( channel.size() == 0 ) {
+            return -1;
+        }
+
+        try {
+            randomAccessFile.seek( 0 );
+            if ( randomAccessFile.readInt() != MAGIC_NUMBER || randomAccessFile.readInt() != FORMAT_VERSION ) {
+                return -1;
+            }
+            if ( !release.equals( randomAccessFile.readUTF() ) ) {
+                return -1;
+            }
+            if ( !codec.getClass().getName().equals( randomAccessFile.readUTF() ) ) {
+                return -1;
+            }
+            return randomAccessFile.getFilePointer();
+        } catch ( EOFException e ) {
+            return -1;
+        }
+    }
+
+    /**
+     * @return the offset of the first record.
+     */
+    private long writeHeader() throws IOException {
+        randomAccessFile.seek( 0 );
+        randomAccessFile.writeInt( MAGIC_NUMBER );
+        randomAccessFile.writeInt( FORMAT_VERSION );
+        randomAccessFile.writeUTF( release );
+        randomAccessFile.writeUTF( codec.getClass().getName() );
+        return randomAccessFile.getFilePointer();
+    }
+
+    /**
+     * Reads all the records to rebuild the index, up to the end marker. A damaged record is skipped, and the data is
+     * considered to end at a record partially written by a version not writing the end marker first.
+     */
+    private void loadIndex() throws IOException {
+        long size = channel.size();
+        long offset = recordsStart;
+
+        while ( offset + 4 <= size && readInt( offset ) != END_MARKER ) {
+            byte[] record = readRecord( offset, size );
+            if ( record == null ) {
+                long next = findNextRecord( offset + 1, size );
+                if ( next < 0 ) {
+                    log.warn( "Ignoring the damaged or incomplete record found at the end of " + dataFile.getAbsolutePath()
+                              + ", offset " + offset );
+                    break;
+                }
+                log.warn( "Skipping " + ( next - offset ) + " damaged bytes at offset " + offset + " of " + dataFile.getAbsolutePath() );
+                offset = next;
+                continue;
+            }
+
+            try {
+                indexRecord( offset, record );
+            } catch ( IOException e ) {
+                log.warn( "Skipping the unreadable record at offset " + offset + " of " + dataFile.getAbsolutePath(), e );
+            }
+
+            offset += RECORD_HEADER_SIZE + record.length;
+        }
+
+        dataEnd = offset;
+        writeEndMarker( dataEnd );
+
+        removeDanglingAliases();
+
+        // the segments covering what follows the end marker will be written again
+        while ( !segments.isEmpty() && ( long ) segments.size() * SEGMENT_SIZE > dataEnd ) {
+            segments.remove( segments.size() - 1 );
+        }
+
+        if ( log.isDebugEnabled() ) {
+            log.debug( "Loaded " + size() + " UniProt entries from " + dataFile.getAbsolutePath() );
+        }
+    }
+
+    /**
+     * Removes the aliases leading to proteins whose entry record was skipped, so that their AC is looked up again.
+     */
+    private void removeDanglingAliases() {
+        for ( Iterator<Map.Entry<String, List<String>>> it = aliases.entrySet().iterator(); it.hasNext(); ) {
+            Map.Entry<String, List<String>> alias = it.next();
+            if ( !entryOffsets.keySet().containsAll( alias.getValue() ) ) {
+                log.warn( "Discarding the alias " + alias.getKey() + " of " + dataFile.getAbsolutePath()
+                          + " as some of its proteins were lost: " + alias.getValue() );
+                it.remove();
+            }
+        }
+    }
+
+    private void indexRecord( long offset, byte[] bytes ) throws IOException {
+        DataInputStream record = new DataInputStream( new ByteArrayInputStream( bytes ) );
+        byte type = record.readByte();
+        if ( type == ENTRY_RECORD ) {
+            String primaryAc = record.readUTF();
+            String id = record.readUTF();
+            entryOffsets.put( primaryAc, offset );
+            entryOffsets.put( id, offset );
+        } else if ( type == ALIAS_RECORD ) {
+            String ac = record.readUTF();
+            int count = record.readInt();
+            List<String> primaryAcs = new ArrayList<String>( count );
+            for ( int i = 0; i < count; i++ ) {
+                primaryAcs.add( record.readUTF() );
+            }
+            aliases.put( ac, primaryAcs );
+        } else {
+            throw new IOException( "Unexpected record type " + type );
+        }
+    }
+
+    /**
+     * Looks for the first intact record following a damaged one.
+     *
+     * @return the offset of the record, or -1 if there is none before the end marker.
+     */
+    private long findNextRecord( long from, long size ) throws IOException {
+        for ( long offset = from; offset + RECORD_HEADER_SIZE <= size; offset++ ) {
+            if ( readRecord( offset, size ) != null ) {
+                return offset;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Reads the record starting at the given offset.
+     *
+     * @return the content of the record, or null if it is incomplete or damaged.
+     */
+    private byte[] readRecord( long offset, long end ) throws IOException {
+        if ( offset + RECORD_HEADER_SIZE > end ) {
+            return null;
+        }
+
+        ByteBuffer header = ByteBuffer.wrap( read( offset, RECORD_HEADER_SIZE ) );
+        int length = header.getInt();
+        int checksum = header.getInt();
+        if ( length <= 0 || offset + RECORD_HEADER_SIZE + length > end ) {
+            return null;
+        }
+
+        byte[] bytes = read( offset + RECORD_HEADER_SIZE, length );
+        if ( checksum( bytes ) != checksum ) {
+            return null;
+        }
+        return bytes;
+    }
+
+    private UniprotProtein readEntry( long offset ) throws IOException {
+        byte[] bytes = readRecord( offset, dataEnd );
+        if ( bytes == null || bytes[0] != ENTRY_RECORD ) {
+            throw new IOException( "No entry record at offset " + offset + " of " + dataFile.getAbsolutePath() );
+        }
+
+        DataInputStream record = new DataInputStream( new ByteArrayInputStream( bytes ) );
+        record.readByte();
+
+        // primary AC and ID
+        record.readUTF();
+        record.readUTF();
+
+        byte[] payload = new byte[record.available()];
+        record.readFully( payload );
+
+        return decode( payload );
+    }
+
+    private void writeEntry( UniprotProtein protein ) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream record = new DataOutputStream( bytes );
+        record.writeByte( ENTRY_RECORD );
+        record.writeUTF( protein.getPrimaryAc() );
+        record.writeUTF( protein.getId() );
+        record.write( encode( protein ) );
+        record.close();
+
+        long offset = append( bytes.toByteArray() );
+        entryOffsets.put( protein.getPrimaryAc(), offset );
+        entryOffsets.put( protein.getId(), offset );
+    }
+
+    private void writeAlias( String ac, List<String> primaryAcs ) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream record = new DataOutputStream( bytes );
+        record.writeByte( ALIAS_RECORD );
+        record.writeUTF( ac );
+        record.writeInt( primaryAcs.size() );
+        for ( String primaryAc : primaryAcs ) {
+            record.writeUTF( primaryAc );
+        }
+        record.close();
+
+        append( bytes.toByteArray() );
+        aliases.put( ac, primaryAcs );
+    }
+
+    /**
+     * Appends a record in place of the end marker. The record and the new end marker are written before the length
+     * of the record, which replaces the previous end marker last.
+     *
+     * @return the offset of the record.
+     */
+    private long append( byte[] record ) throws IOException {
+        long offset = dataEnd;
+
+        ByteBuffer content = ByteBuffer.allocate( 4 + record.length + 4 );
+        content.putInt( checksum( record ) );
+        content.put( record );
+        content.putInt( END_MARKER );
+        content.flip();
+        write( content, offset + 4 );
+
+        ByteBuffer length = ByteBuffer.allocate( 4 );
+        length.putInt( record.length );
+        length.flip();
+        write( length, offset );
+
+        dataEnd = offset + RECORD_HEADER_SIZE + record.length;
+        return offset;
+    }
+
+    private void writeEndMarker( long offset ) throws IOException {
+        ByteBuffer marker = ByteBuffer.allocate( 4 );
+        marker.putInt( END_MARKER );
+        marker.flip();
+        write( marker, offset );
+    }
+
+    private void write( ByteBuffer buffer, long position ) throws IOException {
+        while ( buffer.hasRemaining() ) {
+            position += channel.write( buffer, position );
+        }
+    }
+
+    private int readInt( long position ) throws IOException {
+        return ByteBuffer.wrap( read( position, 4 ) ).getInt();
+    }
+
+    /**
+     * Reads bytes of the data file, from its mapping if they lie in a filled segment.
+     */
+    private byte[] read( long position, int length ) throws IOException {
+        byte[] bytes = new byte[length];
+
+        int start = ( int ) ( position % SEGMENT_SIZE );
+        if ( start + length <= SEGMENT_SIZE ) {
+            MappedByteBuffer segment = segment( ( int ) ( position / SEGMENT_SIZE ) );
+            if ( segment != null ) {
+                ByteBuffer view = segment.duplicate();
+                view.position( start );
+                view.get( bytes );
+                return bytes;
+            }
+        }
+
+        ByteBuffer buffer = ByteBuffer.wrap( bytes );
+        while ( buffer.hasRemaining() ) {
+            if ( channel.read( buffer, position + buffer.position() ) < 0 ) {
+                throw new EOFException( "Unexpected end of " + dataFile.getAbsolutePath() + " at offset " + position );
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * Gives the mapping of a segment, mapping it the first time.
+     *
+     * @return the mapping, or null if the segment is not filled yet.
+     */
+    private MappedByteBuffer segment( int index ) throws IOException {
+        if ( index < segments.size() ) {
+            return segments.get( index );
+        }
+
+        // segments are filled in order, mapping them as soon as the records reach beyond them
+        long limit = dataEnd > 0 ? dataEnd : channel.size();
+        while ( segments.size() <= index && ( long ) ( segments.size() + 1 ) * SEGMENT_SIZE <= limit ) {
+            segments.add( channel.map( FileChannel.MapMode.READ_ONLY, ( long ) segments.size() * SEGMENT_SIZE, SEGMENT_SIZE ) );
+        }
+        return index < segments.size() ? segments.get( index ) : null;
+    }
+
+    private static int checksum( byte[] bytes ) {
+        CRC32 crc = new CRC32();
+        crc.update( bytes, 0, bytes.length );
+        return ( int ) crc.getValue();
+    }
+}
@@ -0,0 +1,33 @@
+/*
+ * Copyright (c) 2002 The European Bioinformatics Institute, and others.
+ * All rights reserved. Please see the file LICENSE
+ * in the root directory of this distribution.
+ */
+package uk.ac.ebi.intact.uniprot.service.flatFile;
+
+import uk.ac.ebi.intact.uniprot.service.RuntimeUniprotServiceException;
+import uk.ac.ebi.kraken.interfaces.uniprot.UniProtEntry;
+import uk.ac.ebi.kraken.model.factories.DefaultUniProtFactory;
+import uk.ac.ebi.kraken.parser.UniProtParser;
+
+/**
+ * UniprotEntryParser delegating to the flat file parser shipped with the UniProt JAPI.
+ *
+ * @version $Id$
+ * @since 2.1.35
+ */
+public class JapiUniprotEntryParser implements UniprotEntryParser {
+
+    public UniProtEntry parse( UniprotFlatFileEntry entry ) {
+        if ( entry == null ) {
+            throw new IllegalArgumentException( "You must give a non null entry." );
+        }
+
+        try {
+            return UniProtParser.parse( entry.getText(), DefaultUniProtFactory.getInstance() );
+        } catch ( Exception e ) {
+            throw new RuntimeUniprotServiceException( "Could not parse the UniProt entry " + entry.getId()
+                                                      + " at offset " + entry.getOffset(), e );
+        }
+    }
+}
@@ -0,0 +1,24 @@
+/*
+ * Copyright (c) 2002 The European Bioinformatics Institute, and others.
+ * All rights reserved. Please see the file LICENSE
+ * in the root directory of this distribution.
+ */
+package uk.ac.ebi.intact.uniprot.service.flatFile;
+
+import uk.ac.ebi.kraken.interfaces.uniprot.UniProtEntry;
+
+/**
+ * Parses the text of a UniProtKB flat file entry into the UniProt JAPI model, eg. by delegating to the flat file
+ * parser of the UniProt JAPI.
+ *
+ * @version $Id$
+ * @since 2.1.35
+ */
+public interface UniprotEntryParser {
+
+    /**
+     * @param entry the entry read from the flat file.
+     * @return the parsed entry.
+     */
+    UniProtEntry parse( UniprotFlatFileEntry entry );
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright (c) 2002 The European Bioinformatics Institute, and others.
+ * All rights reserved. Please see the file LICENSE
+ * in the root directory of this distribution.
+ */
+package uk.ac.ebi.intact.uniprot.service.flatFile;
+
+import java.util.List;
+
+/**
+ * Text of an entry read from a UniProtKB flat file, from its ID line to its terminating // line.
+ *
+ * @version $Id$
+ * @since 2.1.35
+ */
+public class UniprotFlatFileEntry {
+
+    private final long offset;
+
+    private final String id;
+
+    private final List<String> accessions;
+
+    private final String text;
+
+    public UniprotFlatFileEntry( long offset, String id, List<String> accessions, String text ) {
+        this.offset = offset;
+        this.id = id;
+        this.accessions = accessions;
+        this.text = text;
+    }
+
+    /**
+     * @return offset of the entry in the uncompressed file, in bytes.
+     */
+    public long getOffset() {
+        return offset;
+    }
+
+    /**
+     * @return the UniProt ID of the entry (eg. CDC42_HUMAN).
+     */
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * @return the ACs of the entry, the primary AC first.
+     */
+    public List<String> getAccessions() {
+        return accessions;
+    }
+
+    /**
+     * @return the text of the entry, lines separated by '\n', the // line included.
+     */
+    public String getText() {
+        return text;
+    }
+
+    @Override
+    public String toString() {
+        return "UniprotFlatFileEntry{offset=" + offset + ", id=" + id + ", accessions=" + accessions + "}";
+    }
+}
@@ -0,0 +1,416 @@
+/*
+ * Copyright (c) 2002 The European Bioinformatics Institute, and others.
+ * All rights reserved. Please see the file LICENSE
+ * in the root directory of this distribution.
+ */
+package uk.ac.ebi.intact.uniprot.service.flatFile;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.io.*;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.*;
+
+/**
+ * On-disk index of the entries of an uncompressed UniProtKB flat file, giving the offsets of the entries having a
+ * given primary AC, secondary AC or UniProt ID, or describing a given feature chain (PRO_xxxxxxxxxx).
+ *
+ * The index is a sorted array of fixed size records, memory-mapped and binary searched, so that looking an entry up
+ * neither loads the index in memory nor reads the flat file. It is built by an external merge sort, in memory
+ * bounded by <code>RECORDS_PER_RUN</code>. The index remembers the size and date of the flat file it was built
+ * from, to tell when it must be built again.
+ *
+ * @version $Id$
+ * @since 2.1.35
+ */
+public class UniprotFlatFileIndex {
+
+    /**
+     * Sets up a logger for that class.
+     */
+    public static final Log log = LogFactory.getLog( UniprotFlatFileIndex.class );
+
+    /**
+     * Maximum length of the identifiers indexed, the longest UniProt IDs having 16 characters.
+     */
+    public static final int MAX_KEY_LENGTH = 16;
+
+    /**
+     * Number of records sorted in memory at once while building an index.
+     */
+    public static final int RECORDS_PER_RUN = 1000000;
+
+    private static final Charset CHARSET = Charset.forName( "US-ASCII" );
+
+    private static final int MAGIC_NUMBER = 0x55464649;
+
+    private static final int FORMAT_VERSION = 2;
+
+    private static final int HEADER_SIZE = 32;
+
+    private static final int RECORD_SIZE = MAX_KEY_LENGTH + 8;
+
+    private static final String FEATURE_CHAIN_PREFIX = "PRO_";
+
+    private static final int FEATURE_CHAIN_DIGITS = 10;
+
+    private static final int RECORDS_PER_SEGMENT = ( 1 << 30 ) / RECORD_SIZE;
+
+    private final long sourceLength;
+
+    private final long sourceLastModified;
+
+    private final long recordCount;
+
+    /**
+     * The records, mapped in segments of at most 1GB.
+     */
+    private final MappedByteBuffer[] segments;
+
+    /**
+     * Opens an index.
+     *
+     * @param indexFile the index file, built by <code>build</code>.
+     * @throws IOException if the file cannot be read or is not an index.
+     */
+    public UniprotFlatFileIndex( File indexFile ) throws IOException {
+        RandomAccessFile file = new RandomAccessFile( indexFile, "r" );
+        try {
+            if ( file.length() < HEADER_SIZE || file.readInt() != MAGIC_NUMBER || file.readInt() != FORMAT_VERSION ) {
+                throw new IOException( "Not a UniProt flat file index: " + indexFile );
+            }
+            sourceLength = file.readLong();
+            sourceLastModified = file.readLong();
+            recordCount = file.readLong();
+            if ( file.length() != HEADER_SIZE + recordCount * RECORD_SIZE ) {
+                throw new IOException( "Truncated UniProt flat file index: " + indexFile );
+            }
+
+            FileChannel channel = file.getChannel();
+            segments = new MappedByteBuffer[( int ) ( ( recordCount + RECORDS_PER_SEGMENT - 1 ) / RECORDS_PER_SEGMENT )];
+            for ( int i = 0; i < segments.length; i++ ) {
+                long first = ( long ) i * RECORDS_PER_SEGMENT;
+                long count = Math.min( RECORDS_PER_SEGMENT, recordCount - first );
+                segments[i] = channel.map( FileChannel.MapMode.READ_ONLY, HEADER_SIZE + first * RECORD_SIZE, count * RECORD_SIZE );
+            }
+        } finally {
+            file.close();
+        }
+    }
+
+    /**
+     * Builds the index of a flat file, replacing any existing one.
+     *
+     * @param flatFile the uncompressed flat file.
+     * @param indexFile the index file to write.
+     * @return the index, opened.
+     */
+    public static UniprotFlatFileIndex build( File flatFile, File indexFile ) throws IOException {
+        return build( flatFile, indexFile, RECORDS_PER_RUN );
+    }
+
+    /**
+     * @param recordsPerRun number of records sorted in memory at once.
+     */
+    static UniprotFlatFileIndex build( File flatFile, File indexFile, int recordsPerRun ) throws IOException {
+        if ( UniprotFlatFileReader.isGzipped( flatFile ) ) {
+            throw new IllegalArgumentException( "A gzipped file cannot be indexed: " + flatFile );
+        }
+
+        long start = System.currentTimeMillis();
+        List<File> runs = new ArrayList<File>();
+        try {
+            List<Record> records = new ArrayList<Record>( 1024 );
+            UniprotFlatFileReader reader = new UniprotFlatFileReader( flatFile );
+            try {
+                while ( reader.hasNext() ) {
+                    UniprotFlatFileEntry entry = reader.next();
+                    addRecord( records, entry.getId(), entry.getOffset() );
+                    for ( String accession : entry.getAccessions() ) {
+                        addRecord( records, accession, entry.getOffset() );
+                    }
+                    addFeatureChainRecords( records, entry );
+                    if ( records.size() >= recordsPerRun ) {
+                        runs.add( writeRun( records, indexFile ) );
+                        records.clear();
+                    }
+                }
+            } finally {
+                reader.close();
+            }
+            if ( !records.isEmpty() || runs.isEmpty() ) {
+                runs.add( writeRun( records, indexFile ) );
+            }
+
+            long recordCount = merge( runs, flatFile, indexFile );
+
+            if ( log.isInfoEnabled() ) {
+                log.info( "Indexed " + recordCount + " identifiers of " + flatFile + " in "
+                          + ( System.currentTimeMillis() - start ) + "ms" );
+            }
+        } finally {
+            for ( File run : runs ) {
+                run.delete();
+            }
+        }
+
+        return new UniprotFlatFileIndex( indexFile );
+    }
+
+    /**
+     * Tells whether the index was built from the current version of a flat file.
+     */
+    public boolean isUpToDate( File flatFile ) {
+        return flatFile.length() == sourceLength && flatFile.lastModified() == sourceLastModified;
+    }
+
+    /**
+     * Gives the offsets of the entries having an identifier as primary AC, secondary AC, UniProt ID or feature chain
+     * id.
+     *
+     * @param ac the identifier, in any case.
+     * @return the offsets of the entries in the flat file, in increasing order, empty if there is none.
+     */
+    public long[] getOffsets( String ac ) {
+        if ( ac == null ) {
+            throw new IllegalArgumentException( "You must give a non null identifier." );
+        }
+
+        byte[] key = toKey( ac.toUpperCase() );
+        if ( key == null ) {
+            return new long[0];
+        }
+
+        // first record not lower than the key
+        long low = 0;
+        long high = recordCount;
+        while ( low < high ) {
+            long middle = ( low + high ) >>> 1;
+            if ( compare( middle, key ) < 0 ) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+
+        long last = low;
+        while ( last < recordCount && compare( last, key ) == 0 ) {
+            last++;
+        }
+
+        long[] offsets = new long[( int ) ( last - low )];
+        for ( long i = low; i < last; i++ ) {
+            offsets[( int ) ( i - low )] = getOffset( i );
+        }
+        Arrays.sort( offsets );
+        return offsets;
+    }
+
+    /**
+     * @return the number of identifiers indexed.
+     */
+    public long getRecordCount() {
+        return recordCount;
+    }
+
+    //////////////////////////
+    // private methods
+
+    private int compare( long record, byte[] key ) {
+        MappedByteBuffer segment = segments[( int ) ( record / RECORDS_PER_SEGMENT )];
+        int position = ( int ) ( record % RECORDS_PER_SEGMENT ) * RECORD_SIZE;
+        for ( int i = 0; i < MAX_KEY_LENGTH; i++ ) {
+            int difference = ( segment.get( position + i ) & 0xFF ) - ( key[i] & 0xFF );
+            if ( difference != 0 ) {
+                return difference;
+            }
+        }
+        return 0;
+    }
+
+    private long getOffset( long record ) {
+        MappedByteBuffer segment = segments[( int ) ( record / RECORDS_PER_SEGMENT )];
+        return segment.getLong( ( int ) ( record % RECORDS_PER_SEGMENT ) * RECORD_SIZE + MAX_KEY_LENGTH );
+    }
+
+    /**
+     * @return the identifier padded with zeros, null if it is too long to be indexed.
+     */
+    private static byte[] toKey( String ac ) {
+        byte[] bytes = ac.getBytes( CHARSET );
+        if ( bytes.length > MAX_KEY_LENGTH ) {
+            return null;
+        }
+        return Arrays.copyOf( bytes, MAX_KEY_LENGTH );
+    }
+
+    /**
+     * Indexes the ids of the feature chains described by the FT lines of an entry (eg. /id="PRO_0000085724", or
+     * /FTId=PRO_0000085724. in the older releases).
+     */
+    private static void addFeatureChainRecords( List<Record> records, UniprotFlatFileEntry entry ) {
+        String text = entry.getText();
+        int index = text.indexOf( FEATURE_CHAIN_PREFIX );
+        while ( index != -1 ) {
+            int end = index + FEATURE_CHAIN_PREFIX.length() + FEATURE_CHAIN_DIGITS;
+            int lineStart = text.lastIndexOf( '\n', index ) + 1;
+            if ( end <= text.length() && text.startsWith( "FT", lineStart ) && isDigits( text, end - FEATURE_CHAIN_DIGITS, end )
+                 && ( end == text.length() || !Character.isLetterOrDigit( text.charAt( end ) ) ) ) {
+                addRecord( records, text.substring( index, end ), entry.getOffset() );
+            }
+            index = text.indexOf( FEATURE_CHAIN_PREFIX, index + 1 );
+        }
+    }
+
+    private static boolean isDigits( String text, int start, int end ) {
+        for ( int i = start; i < end; i++ ) {
+            char c = text.charAt( i );
+            if ( c < '0' || c > '9' ) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void addRecord( List<Record> records, String ac, long offset ) {
+        byte[] key = toKey( ac.toUpperCase() );
+        if ( key == null ) {
+            log.warn( "Identifier too long to be indexed: " + ac );
+            return;
+        }
+        records.add( new Record( key, offset ) );
+    }
+
+    /**
+     * Writes sorted records to a temporary file.
+     */
+    private static File writeRun( List<Record> records, File indexFile ) throws IOException {
+        Collections.sort( records );
+
+        File run = File.createTempFile( indexFile.getName(), ".run", indexFile.getAbsoluteFile().getParentFile() );
+        DataOutputStream output = new DataOutputStream( new BufferedOutputStream( new FileOutputStream( run ), 64 * 1024 ) );
+        try {
+            for ( Record record : records ) {
+                record.write( output );
+            }
+        } finally {
+            output.close();
+        }
+        return run;
+    }
+
+    /**
+     * Merges the sorted runs into the index file.
+     *
+     * @return the number of records.
+     */
+    private static long merge( List<File> runs, File flatFile, File indexFile ) throws IOException {
+        PriorityQueue<RunReader> readers = new PriorityQueue<RunReader>( runs.size() );
+        DataOutputStream output = new DataOutputStream( new BufferedOutputStream( new FileOutputStream( indexFile ), 64 * 1024 ) );
+        try {
+            for ( File run : runs ) {
+                RunReader reader = new RunReader( run );
+                if ( reader.advance() ) {
+                    readers.add( reader );
+                } else {
+                    reader.close();
+                }
+            }
+
+            output.writeInt( MAGIC_NUMBER );
+            output.writeInt( FORMAT_VERSION );
+            output.writeLong( flatFile.length() );
+            output.writeLong( flatFile.lastModified() );
+            output.writeLong( 0 );
+
+            long recordCount = 0;
+            while ( !readers.isEmpty() ) {
+                RunReader reader = readers.poll();
+                reader.current.write( output );
+                recordCount++;
+                if ( reader.advance() ) {
+                    readers.add( reader );
+                } else {
+                    reader.close();
+                }
+            }
+            output.close();
+
+            // the record count is only known once the records are written
+            RandomAccessFile file = new RandomAccessFile( indexFile, "rw" );
+            try {
+                file.seek( HEADER_SIZE - 8 );
+                file.writeLong( recordCount );
+            } finally {
+                file.close();
+            }
+            return recordCount;
+        } finally {
+            output.close();
+            for ( RunReader reader : readers ) {
+                reader.close();
+            }
+        }
+    }
+
+    private static class Record implements Comparable<Record> {
+
+        private final byte[] key;
+
+        private final long offset;
+
+        private Record( byte[] key, long offset ) {
+            this.key = key;
+            this.offset = offset;
+        }
+
+        public int compareTo( Record other ) {
+            for ( int i = 0; i < MAX_KEY_LENGTH; i++ ) {
+                int difference = ( key[i] & 0xFF ) - ( other.key[i] & 0xFF );
+                if ( difference != 0 ) {
+                    return difference;
+                }
+            }
+            return offset < other.offset ? -1 : ( offset == other.offset ? 0 : 1 );
+        }
+
+        private void write( DataOutputStream output ) throws IOException {
+            output.write( key );
+            output.writeLong( offset );
+        }
+    }
+
+    private static class RunReader implements Comparable<RunReader> {
+
+        private final DataInputStream input;
+
+        private Record current;
+
+        private RunReader( File run ) throws IOException {
+            this.input = new DataInputStream( new BufferedInputStream( new FileInputStream( run ), 64 * 1024 ) );
+        }
+
+        private boolean advance() throws IOException {
+            byte[] key = new byte[MAX_KEY_LENGTH];
+            try {
+                input.readFully( key );
+            } catch ( EOFException e ) {
+                current = null;
+                return false;
+            }
+            current = new Record( key, input.readLong() );
+            return true;
+        }
+
+        public int compareTo( RunReader other ) {
+            return current.compareTo( other.current );
+        }
+
+        private void close() throws IOException {
+            input.close();
+        }
+    }
+}
@@ -0,0 +1,319 @@
+/*
+ * Copyright (c) 2002 The European Bioinformatics Institute, and others.
+ * All rights reserved. Please see the file LICENSE
+ * in the root directory of this distribution.
+ */
+package uk.ac.ebi.intact.uniprot.service.flatFile;
+
+import java.io.*;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.*;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Streams the entries of a UniProtKB flat file (uniprot_sprot.dat, uniprot_trembl.dat), optionally gzipped.
+ *
+ * Only the entry being read is held in memory, so that a whole release can be read in constant memory. An
+ * uncompressed file can be read from a given offset and split in byte ranges read in parallel, each entry being read
+ * by the range it starts in.
+ *
+ * @version $Id$
+ * @since 2.1.35
+ */
+public class UniprotFlatFileReader implements Iterator<UniprotFlatFileEntry>, Closeable {
+
+    private static final Charset CHARSET = Charset.forName( "UTF-8" );
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private static final byte[] ID_LINE = "ID   ".getBytes( CHARSET );
+
+    private static final byte[] AC_LINE = "AC   ".getBytes( CHARSET );
+
+    private static final byte[] END_LINE = "//".getBytes( CHARSET );
+
+    private final InputStream input;
+
+    private final long end;
+
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+
+    private int bufferLength;
+
+    private int bufferPosition;
+
+    /**
+     * Offset in the uncompressed file of the next byte to read.
+     */
+    private long position;
+
+    /**
+     * The current line, without its line terminator. Once an entry is read, it is the ID line of the next entry.
+     */
+    private byte[] line = new byte[256];
+
+    private int lineLength = -1;
+
+    private long lineOffset;
+
+    /**
+     * The text of the entry being read.
+     */
+    private ByteArrayOutputStream entryText = new ByteArrayOutputStream( 8 * 1024 );
+
+    private UniprotFlatFileEntry next;
+
+    /**
+     * Reads all the entries of a file, gzipped if its name ends with .gz.
+     */
+    public UniprotFlatFileReader( File file ) throws IOException {
+        this( openStream( file ), 0, Long.MAX_VALUE );
+    }
+
+    /**
+     * Reads the entries starting in a byte range of an uncompressed file.
+     *
+     * @param file the uncompressed flat file.
+     * @param start offset of the range, in bytes.
+     * @param end offset of the end of the range (excluded), in bytes.
+     */
+    public UniprotFlatFileReader( File file, long start, long end ) throws IOException {
+        // the byte before the range tells whether the range starts at the beginning of a line
+        this( openStream( file, Math.max( 0, start - 1 ) ), Math.max( 0, start - 1 ), end );
+    }
+
+    /**
+     * Reads the entries of a stream.
+     *
+     * @param input the flat file content.
+     * @param offset offset of the stream in the file, in bytes. If greater than 0, the stream is taken as starting in
+     * the middle of a line, and the content up to the first entry starting after it is skipped.
+     * @param end offset of the end of the range (excluded), in bytes. The entries starting at or after it are not
+     * read.
+     */
+    public UniprotFlatFileReader( InputStream input, long offset, long end ) throws IOException {
+        if ( input == null ) {
+            throw new IllegalArgumentException( "You must give a non null input stream." );
+        }
+        if ( offset < 0 || end < offset ) {
+            throw new IllegalArgumentException( "Invalid range: " + offset + " to " + end );
+        }
+        this.input = input;
+        this.position = offset;
+        this.end = end;
+
+        // an entry starts at a line starting with ID, the first line is the end of the line the stream starts in
+        readLine();
+        if ( offset > 0 ) {
+            readLine();
+        }
+        readUpToNextEntry();
+    }
+
+    /**
+     * Splits an uncompressed file in byte ranges of similar sizes.
+     *
+     * @param file the uncompressed flat file.
+     * @param count the number of ranges, 1 or greater.
+     * @return the start offset of each range followed by the end of the file: range i goes from offsets[i] to
+     * offsets[i + 1].
+     */
+    public static long[] split( File file, int count ) {
+        if ( count < 1 ) {
+            throw new IllegalArgumentException( "The number of ranges must be 1 or greater: " + count );
+        }
+        if ( isGzipped( file ) ) {
+            throw new IllegalArgumentException( "A gzipped file cannot be split: " + file );
+        }
+
+        long length = file.length();
+        long[] offsets = new long[count + 1];
+        for ( int i = 0; i <= count; i++ ) {
+            offsets[i] = length * i / count;
+        }
+        return offsets;
+    }
+
+    public static boolean isGzipped( File file ) {
+        return file.getName().endsWith( ".gz" );
+    }
+
+    public boolean hasNext() {
+        if ( next == null ) {
+            try {
+                next = readEntry();
+            } catch ( IOException e ) {
+                throw new UncheckedIOException( "Could not read the UniProt flat file", e );
+            }
+        }
+        return next != null;
+    }
+
+    public UniprotFlatFileEntry next() {
+        if ( !hasNext() ) {
+            throw new NoSuchElementException();
+        }
+        UniprotFlatFileEntry entry = next;
+        next = null;
+        return entry;
+    }
+
+    public void remove() {
+        throw new UnsupportedOperationException( "Entries cannot be removed." );
+    }
+
+    public void close() throws IOException {
+        input.close();
+    }
+
+    //////////////////////////
+    // private methods
+
+    private static InputStream openStream( File file ) throws IOException {
+        InputStream input = new FileInputStream( file );
+        return isGzipped( file ) ? new GZIPInputStream( input, BUFFER_SIZE ) : input;
+    }
+
+    private static InputStream openStream( File file, long offset ) throws IOException {
+        if ( isGzipped( file ) ) {
+            throw new IllegalArgumentException( "A gzipped file cannot be read from an offset: " + file );
+        }
+        FileChannel channel = new FileInputStream( file ).getChannel();
+        channel.position( offset );
+        return Channels.newInputStream( channel );
+    }
+
+    private UniprotFlatFileEntry readEntry() throws IOException {
+        if ( lineLength == -1 || lineOffset >= end ) {
+            return null;
+        }
+
+        long offset = lineOffset;
+        String id = readId();
+        List<String> accessions = new ArrayList<String>( 2 );
+        entryText.reset();
+
+        boolean ended = false;
+        while ( !ended && lineLength != -1 ) {
+            entryText.write( line, 0, lineLength );
+            entryText.write( '\n' );
+            if ( startsWith( AC_LINE ) ) {
+                readAccessions( accessions );
+            } else if ( lineLength == END_LINE.length && startsWith( END_LINE ) ) {
+                ended = true;
+            }
+            readLine();
+        }
+        if ( !ended ) {
+            throw new IOException( "Truncated entry at offset " + offset + ": " + id );
+        }
+
+        readUpToNextEntry();
+
+        return new UniprotFlatFileEntry( offset, id, accessions, new String( entryText.toByteArray(), CHARSET ) );
+    }
+
+    /**
+     * Reads lines until the ID line starting the next entry, if any.
+     */
+    private void readUpToNextEntry() throws IOException {
+        while ( lineLength != -1 && !startsWith( ID_LINE ) ) {
+            readLine();
+        }
+    }
+
+    private boolean startsWith( byte[] prefix ) {
+        if ( lineLength < prefix.length ) {
+            return false;
+        }
+        for ( int i = 0; i < prefix.length; i++ ) {
+            if ( line[i] != prefix[i] ) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * ID   CDC42_HUMAN             Reviewed;         191 AA.
+     */
+    private String readId() {
+        int from = ID_LINE.length;
+        int to = from;
+        while ( to < lineLength && line[to] != ' ' ) {
+            to++;
+        }
+        return new String( line, from, to - from, CHARSET );
+    }
+
+    /**
+     * AC   P60953; P21181; P25763; Q7L8R5; Q9HBN3;
+     */
+    private void readAccessions( List<String> accessions ) {
+        int from = AC_LINE.length;
+        while ( from < lineLength ) {
+            while ( from < lineLength && ( line[from] == ' ' || line[from] == ';' ) ) {
+                from++;
+            }
+            int to = from;
+            while ( to < lineLength && line[to] != ' ' && line[to] != ';' ) {
+                to++;
+            }
+            if ( to > from ) {
+                accessions.add( new String( line, from, to - from, CHARSET ) );
+            }
+            from = to;
+        }
+    }
+
+    /**
+     * Reads the next line into <code>line</code>, without its line terminator. <code>lineLength</code> is -1 at the
+     * end of the stream.
+     */
+    private void readLine() throws IOException {
+        lineOffset = position;
+        lineLength = 0;
+        boolean read = false;
+
+        while ( true ) {
+            if ( bufferPosition == bufferLength ) {
+                bufferLength = Math.max( 0, input.read( buffer ) );
+                bufferPosition = 0;
+                if ( bufferLength == 0 ) {
+                    if ( !read ) {
+                        lineLength = -1;
+                    }
+                    break;
+                }
+            }
+            read = true;
+
+            int newLine = bufferPosition;
+            while ( newLine < bufferLength && buffer[newLine] != '\n' ) {
+                newLine++;
+            }
+
+            append( bufferPosition, newLine - bufferPosition );
+            position += Math.min( newLine + 1, bufferLength ) - bufferPosition;
+            bufferPosition = Math.min( newLine + 1, bufferLength );
+
+            if ( newLine < bufferLength ) {
+                break;
+            }
+        }
+
+        if ( lineLength > 0 && line[lineLength - 1] == '\r' ) {
+            lineLength--;
+        }
+    }
+
+    private void append( int from, int length ) {
+        if ( lineLength + length > line.length ) {
+            line = Arrays.copyOf( line, Math.max( line.length * 2, lineLength + length ) );
+        }
+        System.arraycopy( buffer, from, line, lineLength, length );
+        lineLength += length;
+    }
+}
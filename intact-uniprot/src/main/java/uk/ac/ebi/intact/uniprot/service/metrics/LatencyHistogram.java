@@ -0,0 +1,132 @@
+/*
+ * Copyright (c) 2002 The European Bioinformatics Institute, and others.
+ * All rights reserved. Please see the file LICENSE
+ * in the root directory of this distribution.
+ */
+package uk.ac.ebi.intact.uniprot.service.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Histogram of latencies, in the manner of the HdrHistogram: values are counted in buckets whose width grows with
+ * the value, so that any percentile is known within about 3% whatever the range of the latencies, in a fixed amount
+ * of memory.
+ *
+ * Values can be recorded concurrently without locking.
+ *
+ * @version $Id$
+ * @since 2.1.35
+ */
+public class LatencyHistogram {
+
+    /**
+     * Values below 2^SUB_BUCKET_BITS are counted exactly, larger ones in 2^(SUB_BUCKET_BITS-1) buckets per power of 2.
+     */
+    private static final int SUB_BUCKET_BITS = 5;
+
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+
+    private static final int HALF_SUB_BUCKET_COUNT = SUB_BUCKET_COUNT / 2;
+
+    private static final int BUCKET_COUNT = SUB_BUCKET_COUNT + ( 63 - SUB_BUCKET_BITS ) * HALF_SUB_BUCKET_COUNT;
+
+    private final AtomicLongArray counts = new AtomicLongArray( BUCKET_COUNT );
+
+    private final AtomicLong count = new AtomicLong();
+
+    private final AtomicLong sum = new AtomicLong();
+
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * @param value the value to record, negative values being recorded as 0.
+     */
+    public void record( long value ) {
+        if ( value < 0 ) {
+            value = 0;
+        }
+
+        counts.incrementAndGet( bucketIndex( value ) );
+        count.incrementAndGet();
+        sum.addAndGet( value );
+
+        long currentMax = max.get();
+        while ( value > currentMax && !max.compareAndSet( currentMax, value ) ) {
+            currentMax = max.get();
+        }
+    }
+
+    public long getCount() {
+        return count.get();
+    }
+
+    public long getMax() {
+        return max.get();
+    }
+
+    public double getMean() {
+        long n = count.get();
+        return n == 0 ? 0 : ( double ) sum.get() / n;
+    }
+
+    /**
+     * @param percentile the percentile, between 0 and 100.
+     * @return the largest value that the given percentage of the recorded values do not exceed, 0 if nothing was
+     * recorded.
+     */
+    public long getValueAtPercentile( double percentile ) {
+        if ( percentile < 0 || percentile > 100 ) {
+            throw new IllegalArgumentException( "The percentile must be between 0 and 100: " + percentile );
+        }
+
+        long n = count.get();
+        if ( n == 0 ) {
+            return 0;
+        }
+
+        long rank = Math.max( 1, ( long ) Math.ceil( percentile / 100 * n ) );
+        long cumulated = 0;
+        for ( int i = 0; i < BUCKET_COUNT; i++ ) {
+            cumulated += counts.get( i );
+            if ( cumulated >= rank ) {
+                return Math.min( highestValue( i ), max.get() );
+            }
+        }
+
+        return max.get();
+    }
+
+    /**
+     * Forgets all the values recorded. Values recorded concurrently may be lost or partially kept.
+     */
+    public void reset() {
+        for ( int i = 0; i < BUCKET_COUNT; i++ ) {
+            counts.set( i, 0 );
+        }
+        count.set( 0 );
+        sum.set( 0 );
+        max.set( 0 );
+    }
+
+    //////////////////////////
+    // private methods
+
+    private static int bucketIndex( long value ) {
+        if ( value < SUB_BUCKET_COUNT ) {
+            return ( int ) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros( value ) - ( SUB_BUCKET_BITS - 1 );
+        int subBucket = ( int ) ( value >>> shift );
+        return SUB_BUCKET_COUNT + ( shift - 1 ) * HALF_SUB_BUCKET_COUNT + ( subBucket - HALF_SUB_BUCKET_COUNT );
+    }
+
+    private static long highestValue( int index ) {
+        if ( index < SUB_BUCKET_COUNT ) {
+            return index;
+        }
+        int shift = ( index - SUB_BUCKET_COUNT ) / HALF_SUB_BUCKET_COUNT + 1;
+        long subBucket = ( index - SUB_BUCKET_COUNT ) % HALF_SUB_BUCKET_COUNT + HALF_SUB_BUCKET_COUNT;
+        return ( ( subBucket + 1 ) << shift ) - 1;
+    }
+}
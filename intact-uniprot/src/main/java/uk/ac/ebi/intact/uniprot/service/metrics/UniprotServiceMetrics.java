@@ -0,0 +1,225 @@
+/*
+ * Copyright (c) 2002 The European Bioinformatics Institute, and others.
+ * All rights reserved. Please see the file LICENSE
+ * in the root directory of this distribution.
+ */
+package uk.ac.ebi.intact.uniprot.service.metrics;
+
+import uk.ac.ebi.intact.uniprot.service.RuntimeUniprotServiceException;
+import uk.ac.ebi.intact.uniprot.service.UniprotServiceReport;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Collects the metrics of UniProt services: per operation counts, failures, entries returned and latency histograms,
+ * and the errors reported by type.
+ *
+ * One instance can be shared by several services, eg. an InstrumentedUniprotService in front of each decorator,
+ * each recording its operations under its own prefix. It is safe to use from several threads and can be exposed
+ * through JMX.
+ *
+ * @version $Id$
+ * @since 2.1.35
+ */
+public class UniprotServiceMetrics implements UniprotServiceMetricsMXBean {
+
+    /**
+     * Domain of the JMX names of the metrics.
+     */
+    public static final String JMX_DOMAIN = "uk.ac.ebi.intact.uniprot";
+
+    /**
+     * Error type of the reports having no exception, ie. entries not found.
+     */
+    public static final String NOT_FOUND_ERROR = "NotFound";
+
+    private static final double NANOS_PER_MILLI = TimeUnit.MILLISECONDS.toNanos( 1 );
+
+    /**
+     * Metrics of one operation.
+     */
+    private static class OperationMetrics {
+
+        private final AtomicLong failures = new AtomicLong();
+
+        private final AtomicLong entries = new AtomicLong();
+
+        private final LatencyHistogram latencies = new LatencyHistogram();
+    }
+
+    private final ConcurrentMap<String, OperationMetrics> operations = new ConcurrentHashMap<String, OperationMetrics>();
+
+    private final ConcurrentMap<String, AtomicLong> errors = new ConcurrentHashMap<String, AtomicLong>();
+
+    /**
+     * Records a call to an operation.
+     *
+     * @param operation the operation name.
+     * @param elapsedNanos how long the call took.
+     * @param entries number of entries returned.
+     * @param failed true if the call threw an exception.
+     */
+    public void recordOperation( String operation, long elapsedNanos, int entries, boolean failed ) {
+        OperationMetrics metrics = getOperationMetrics( operation );
+        metrics.latencies.record( elapsedNanos );
+        metrics.entries.addAndGet( entries );
+        if ( failed ) {
+            metrics.failures.incrementAndGet();
+        }
+    }
+
+    /**
+     * Records an error reported by a service. Errors are counted by the class of their exception, or as NotFound when
+     * they have none.
+     */
+    public void recordError( UniprotServiceReport report ) {
+        String type = report.getException() == null ? NOT_FOUND_ERROR : report.getException().getClass().getSimpleName();
+
+        AtomicLong count = errors.get( type );
+        if ( count == null ) {
+            AtomicLong newCount = new AtomicLong();
+            count = errors.putIfAbsent( type, newCount );
+            if ( count == null ) {
+                count = newCount;
+            }
+        }
+        count.incrementAndGet();
+    }
+
+    /**
+     * @return the latencies of an operation, in nanoseconds, null if it was never called.
+     */
+    public LatencyHistogram getLatencies( String operation ) {
+        OperationMetrics metrics = operations.get( operation );
+        return metrics == null ? null : metrics.latencies;
+    }
+
+    public Map<String, Long> getOperationCounts() {
+        Map<String, Long> counts = new TreeMap<String, Long>();
+        for ( Map.Entry<String, OperationMetrics> operation : operations.entrySet() ) {
+            counts.put( operation.getKey(), operation.getValue().latencies.getCount() );
+        }
+        return counts;
+    }
+
+    public Map<String, Long> getFailureCounts() {
+        Map<String, Long> counts = new TreeMap<String, Long>();
+        for ( Map.Entry<String, OperationMetrics> operation : operations.entrySet() ) {
+            counts.put( operation.getKey(), operation.getValue().failures.get() );
+        }
+        return counts;
+    }
+
+    public Map<String, Long> getEntryCounts() {
+        Map<String, Long> counts = new TreeMap<String, Long>();
+        for ( Map.Entry<String, OperationMetrics> operation : operations.entrySet() ) {
+            counts.put( operation.getKey(), operation.getValue().entries.get() );
+        }
+        return counts;
+    }
+
+    public Map<String, Double> getMeanLatenciesMillis() {
+        Map<String, Double> latencies = new TreeMap<String, Double>();
+        for ( Map.Entry<String, OperationMetrics> operation : operations.entrySet() ) {
+            latencies.put( operation.getKey(), operation.getValue().latencies.getMean() / NANOS_PER_MILLI );
+        }
+        return latencies;
+    }
+
+    public Map<String, Double> getP50LatenciesMillis() {
+        return getLatenciesMillis( 50 );
+    }
+
+    public Map<String, Double> getP99LatenciesMillis() {
+        return getLatenciesMillis( 99 );
+    }
+
+    public Map<String, Double> getP999LatenciesMillis() {
+        return getLatenciesMillis( 99.9 );
+    }
+
+    public Map<String, Double> getMaxLatenciesMillis() {
+        return getLatenciesMillis( 100 );
+    }
+
+    public Map<String, Long> getErrorCounts() {
+        Map<String, Long> counts = new TreeMap<String, Long>();
+        for ( Map.Entry<String, AtomicLong> error : errors.entrySet() ) {
+            counts.put( error.getKey(), error.getValue().get() );
+        }
+        return counts;
+    }
+
+    public void reset() {
+        operations.clear();
+        errors.clear();
+    }
+
+    /**
+     * Exposes these metrics through the platform MBean server.
+     *
+     * @param name name distinguishing these metrics from the others registered, eg. the name of the application.
+     * @return the JMX name the metrics were registered under.
+     */
+    public ObjectName registerMBean( String name ) {
+        return registerMBean( this, "UniprotServiceMetrics", name );
+    }
+
+    /**
+     * Registers an MBean through the platform MBean server under the domain of the UniProt metrics.
+     *
+     * @param mbean the MBean to register.
+     * @param type the type part of its JMX name.
+     * @param name the name part of its JMX name.
+     * @return the JMX name the MBean was registered under.
+     */
+    public static ObjectName registerMBean( Object mbean, String type, String name ) {
+        if ( name == null ) {
+            throw new IllegalArgumentException( "You must give a non null name." );
+        }
+
+        try {
+            ObjectName objectName = new ObjectName( JMX_DOMAIN + ":type=" + type + ",name=" + ObjectName.quote( name ) );
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            if ( server.isRegistered( objectName ) ) {
+                server.unregisterMBean( objectName );
+            }
+            server.registerMBean( mbean, objectName );
+            return objectName;
+        } catch ( JMException e ) {
+            throw new RuntimeUniprotServiceException( "Could not register " + type + " " + name + " in JMX", e );
+        }
+    }
+
+    //////////////////////////
+    // private methods
+
+    private OperationMetrics getOperationMetrics( String operation ) {
+        OperationMetrics metrics = operations.get( operation );
+        if ( metrics == null ) {
+            OperationMetrics newMetrics = new OperationMetrics();
+            metrics = operations.putIfAbsent( operation, newMetrics );
+            if ( metrics == null ) {
+                metrics = newMetrics;
+            }
+        }
+        return metrics;
+    }
+
+    private Map<String, Double> getLatenciesMillis( double percentile ) {
+        Map<String, Double> latencies = new TreeMap<String, Double>();
+        for ( Map.Entry<String, OperationMetrics> operation : operations.entrySet() ) {
+            latencies.put( operation.getKey(), operation.getValue().latencies.getValueAtPercentile( percentile ) / NANOS_PER_MILLI );
+        }
+        return latencies;
+    }
+}
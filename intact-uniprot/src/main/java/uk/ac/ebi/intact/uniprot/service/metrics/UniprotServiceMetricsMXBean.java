@@ -0,0 +1,37 @@
+/*
+ * Copyright (c) 2002 The European Bioinformatics Institute, and others.
+ * All rights reserved. Please see the file LICENSE
+ * in the root directory of this distribution.
+ */
+package uk.ac.ebi.intact.uniprot.service.metrics;
+
+import java.util.Map;
+
+/**
+ * JMX view of the UniprotServiceMetrics. Every map is keyed by operation name, except the errors keyed by type.
+ *
+ * @version $Id$
+ * @since 2.1.35
+ */
+public interface UniprotServiceMetricsMXBean {
+
+    Map<String, Long> getOperationCounts();
+
+    Map<String, Long> getFailureCounts();
+
+    Map<String, Long> getEntryCounts();
+
+    Map<String, Double> getMeanLatenciesMillis();
+
+    Map<String, Double> getP50LatenciesMillis();
+
+    Map<String, Double> getP99LatenciesMillis();
+
+    Map<String, Double> getP999LatenciesMillis();
+
+    Map<String, Double> getMaxLatenciesMillis();
+
+    Map<String, Long> getErrorCounts();
+
+    void reset();
+}
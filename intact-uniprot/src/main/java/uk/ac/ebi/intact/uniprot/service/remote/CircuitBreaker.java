@@ -0,0 +1,115 @@
+/*
+ * Copyright (c) 2002 The European Bioinformatics Institute, and others.
+ * All rights reserved. Please see the file LICENSE
+ * in the root directory of this distribution.
+ */
+package uk.ac.ebi.intact.uniprot.service.remote;
+
+/**
+ * Stops calling a remote service that keeps failing, so that a long run does not spend its time waiting on it.
+ *
+ * After <code>failureThreshold</code> consecutive failures the circuit opens and the calls are refused for
+ * <code>openMillis</code>. A single trial call is then let through: the circuit closes if it succeeds, and opens
+ * again if it fails. A trial call that was not made or whose outcome is unknown must be given back with
+ * <code>release()</code>, so that the circuit does not stay half open.
+ *
+ * @version $Id$
+ * @since 2.1.35
+ */
+public class CircuitBreaker {
+
+    /**
+     * Default number of consecutive failures opening the circuit.
+     */
+    public static final int DEFAULT_FAILURE_THRESHOLD = 5;
+
+    /**
+     * Default time the circuit stays open before a trial call, in milliseconds.
+     */
+    public static final long DEFAULT_OPEN_MILLIS = 30000;
+
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private final int failureThreshold;
+
+    private final long openNanos;
+
+    private State state = State.CLOSED;
+
+    private int consecutiveFailures;
+
+    private long openedAt;
+
+    public CircuitBreaker() {
+        this( DEFAULT_FAILURE_THRESHOLD, DEFAULT_OPEN_MILLIS );
+    }
+
+    /**
+     * @param failureThreshold number of consecutive failures opening the circuit, 1 or greater.
+     * @param openMillis time the circuit stays open before a trial call, in milliseconds.
+     */
+    public CircuitBreaker( int failureThreshold, long openMillis ) {
+        if ( failureThreshold < 1 ) {
+            throw new IllegalArgumentException( "The failure threshold must be 1 or greater: " + failureThreshold );
+        }
+        if ( openMillis < 0 ) {
+            throw new IllegalArgumentException( "The open time cannot be negative: " + openMillis );
+        }
+        this.failureThreshold = failureThreshold;
+        this.openNanos = openMillis * 1000000L;
+    }
+
+    /**
+     * Tells whether a call may be made now. When the circuit has been open long enough, the first caller is let
+     * through as the trial call and the others are refused until its outcome is recorded.
+     *
+     * @return true if the call may be made.
+     */
+    public synchronized boolean allowRequest() {
+        switch ( state ) {
+            case CLOSED:
+                return true;
+            case OPEN:
+                if ( System.nanoTime() - openedAt >= openNanos ) {
+                    state = State.HALF_OPEN;
+                    return true;
+                }
+                return false;
+            default:
+                return false;
+        }
+    }
+
+    public synchronized void recordSuccess() {
+        consecutiveFailures = 0;
+        state = State.CLOSED;
+    }
+
+    public synchronized void recordFailure() {
+        consecutiveFailures++;
+        if ( state == State.HALF_OPEN || consecutiveFailures >= failureThreshold ) {
+            state = State.OPEN;
+            openedAt = System.nanoTime();
+        }
+    }
+
+    /**
+     * Gives back the permission to call when the call was not made or its outcome is unknown (eg. it was interrupted).
+     * A trial call given back lets the next caller make the trial.
+     */
+    public synchronized void release() {
+        if ( state == State.HALF_OPEN ) {
+            state = State.OPEN;
+        }
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    public synchronized int getConsecutiveFailures() {
+        return consecutiveFailures;
+    }
+}
@@ -0,0 +1,24 @@
+/*
+ * Copyright (c) 2002 The European Bioinformatics Institute, and others.
+ * All rights reserved. Please see the file LICENSE
+ * in the root directory of this distribution.
+ */
+package uk.ac.ebi.intact.uniprot.service.remote;
+
+/**
+ * Thrown when a remote call did not succeed: all its attempts failed, its deadline passed or the circuit breaker
+ * refused it.
+ *
+ * @version $Id$
+ * @since 2.1.35
+ */
+public class RemoteCallException extends Exception {
+
+    public RemoteCallException( String message ) {
+        super( message );
+    }
+
+    public RemoteCallException( String message, Throwable cause ) {
+        super( message, cause );
+    }
+}
@@ -0,0 +1,254 @@
+/*
+ * Copyright (c) 2002 The European Bioinformatics Institute, and others.
+ * All rights reserved. Please see the file LICENSE
+ * in the root directory of this distribution.
+ */
+package uk.ac.ebi.intact.uniprot.service.remote;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.util.concurrent.*;
+
+/**
+ * Makes the calls to a remote service resilient to its transient failures.
+ *
+ * Each call is rate limited, then retried with exponential backoff and full jitter until it succeeds, its attempts
+ * are exhausted or its deadline passes. The deadline covers all the attempts and the waits between them; an attempt
+ * still running when it passes is abandoned. The calls go through a circuit breaker shared by all of them, so that
+ * a service which is down is not waited on call after call.
+ *
+ * The executor is safe to use from several threads.
+ *
+ * @version $Id$
+ * @since 2.1.35
+ */
+public class RemoteCallExecutor {
+
+    /**
+     * Sets up a logger for that class.
+     */
+    public static final Log log = LogFactory.getLog( RemoteCallExecutor.class );
+
+    /**
+     * Default maximum number of attempts of a call.
+     */
+    public static final int DEFAULT_MAX_ATTEMPTS = 4;
+
+    /**
+     * Default upper bound of the wait before the first retry, in milliseconds. It doubles at each retry.
+     */
+    public static final long DEFAULT_INITIAL_BACKOFF_MILLIS = 500;
+
+    /**
+     * Default upper bound of the wait between two attempts, in milliseconds.
+     */
+    public static final long DEFAULT_MAX_BACKOFF_MILLIS = 10000;
+
+    /**
+     * Default time given to a call, all attempts included, in milliseconds.
+     */
+    public static final long DEFAULT_DEADLINE_MILLIS = 120000;
+
+    /**
+     * Runs the attempts, so that they can be abandoned when their deadline passes.
+     */
+    private static final ExecutorService CALLERS = Executors.newCachedThreadPool( new ThreadFactory() {
+        public Thread newThread( Runnable runnable ) {
+            Thread thread = new Thread( runnable, "uniprot-remote-call" );
+            thread.setDaemon( true );
+            return thread;
+        }
+    } );
+
+    private final CircuitBreaker circuitBreaker;
+
+    private final TokenBucketRateLimiter rateLimiter;
+
+    private volatile int maxAttempts = DEFAULT_MAX_ATTEMPTS;
+
+    private volatile long initialBackoffMillis = DEFAULT_INITIAL_BACKOFF_MILLIS;
+
+    private volatile long maxBackoffMillis = DEFAULT_MAX_BACKOFF_MILLIS;
+
+    private volatile long deadlineMillis = DEFAULT_DEADLINE_MILLIS;
+
+    public RemoteCallExecutor() {
+        this( new CircuitBreaker(), new TokenBucketRateLimiter() );
+    }
+
+    /**
+     * @param circuitBreaker the circuit breaker of the remote service.
+     * @param rateLimiter the rate limiter of the remote service, null for none.
+     */
+    public RemoteCallExecutor( CircuitBreaker circuitBreaker, TokenBucketRateLimiter rateLimiter ) {
+        if ( circuitBreaker == null ) {
+            throw new IllegalArgumentException( "You must give a non null circuit breaker." );
+        }
+        this.circuitBreaker = circuitBreaker;
+        this.rateLimiter = rateLimiter;
+    }
+
+    /**
+     * Makes a remote call.
+     *
+     * @param description what the call does, for the logs and error messages.
+     * @param call the remote call.
+     * @return the result of the call.
+     * @throws RemoteCallException if the call did not succeed, the last failure being its cause.
+     */
+    public <T> T execute( String description, Callable<T> call ) throws RemoteCallException {
+        if ( call == null ) {
+            throw new IllegalArgumentException( "You must give a non null call." );
+        }
+
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos( deadlineMillis );
+        Throwable failure = null;
+        int attempts = maxAttempts;
+
+        for ( int attempt = 1; attempt <= attempts; attempt++ ) {
+            if ( !circuitBreaker.allowRequest() ) {
+                throw new RemoteCallException( "The circuit breaker is open, not calling: " + description, failure );
+            }
+
+            Future<T> future = null;
+            boolean recorded = false;
+            try {
+                if ( rateLimiter != null && !rateLimiter.tryAcquire( deadline - System.nanoTime(), TimeUnit.NANOSECONDS ) ) {
+                    break;
+                }
+
+                future = CALLERS.submit( call );
+                T result = future.get( Math.max( 0, deadline - System.nanoTime() ), TimeUnit.NANOSECONDS );
+                circuitBreaker.recordSuccess();
+                recorded = true;
+                return result;
+
+            } catch ( ExecutionException e ) {
+                failure = e.getCause();
+                circuitBreaker.recordFailure();
+                recorded = true;
+                if ( failure instanceof Error ) {
+                    throw ( Error ) failure;
+                }
+                if ( !isRetryable( failure ) ) {
+                    throw new RemoteCallException( "Failed to " + description, failure );
+                }
+            } catch ( TimeoutException e ) {
+                future.cancel( true );
+                failure = e;
+                circuitBreaker.recordFailure();
+                recorded = true;
+                break;
+            } catch ( InterruptedException e ) {
+                if ( future != null ) {
+                    future.cancel( true );
+                }
+                Thread.currentThread().interrupt();
+                throw new RemoteCallException( "Interrupted while trying to " + description, e );
+            } finally {
+                if ( !recorded ) {
+                    // not called (no rate limiter permit) or interrupted: a trial call must not stay taken
+                    circuitBreaker.release();
+                }
+            }
+
+            if ( attempt < attempts ) {
+                long backoffNanos = backoffNanos( attempt );
+                if ( System.nanoTime() + backoffNanos >= deadline ) {
+                    break;
+                }
+                if ( log.isWarnEnabled() ) {
+                    log.warn( "Attempt " + attempt + " to " + description + " failed, retrying in "
+                              + TimeUnit.NANOSECONDS.toMillis( backoffNanos ) + "ms: " + failure );
+                }
+                try {
+                    TimeUnit.NANOSECONDS.sleep( backoffNanos );
+                } catch ( InterruptedException e ) {
+                    Thread.currentThread().interrupt();
+                    throw new RemoteCallException( "Interrupted while trying to " + description, e );
+                }
+            } else {
+                throw new RemoteCallException( "Failed to " + description + " after " + attempts + " attempts", failure );
+            }
+        }
+
+        throw new RemoteCallException( "Failed to " + description + " within " + deadlineMillis + "ms", failure );
+    }
+
+    /**
+     * Tells whether a failed call may succeed if tried again. All failures are considered transient but the invalid
+     * arguments.
+     *
+     * @param failure the failure of the call.
+     * @return true if the call should be tried again.
+     */
+    protected boolean isRetryable( Throwable failure ) {
+        return !( failure instanceof IllegalArgumentException );
+    }
+
+    /**
+     * Gives the time to wait before the next attempt: a random time up to the initial backoff doubled at each
+     * attempt (full jitter), so that the clients failing together do not retry together.
+     */
+    private long backoffNanos( int attempt ) {
+        long bound = Math.min( maxBackoffMillis, initialBackoffMillis << Math.min( attempt - 1, 30 ) );
+        return TimeUnit.MILLISECONDS.toNanos( ThreadLocalRandom.current().nextLong( bound + 1 ) );
+    }
+
+    public CircuitBreaker getCircuitBreaker() {
+        return circuitBreaker;
+    }
+
+    public TokenBucketRateLimiter getRateLimiter() {
+        return rateLimiter;
+    }
+
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    /**
+     * @param maxAttempts maximum number of attempts of a call, 1 or greater.
+     */
+    public void setMaxAttempts( int maxAttempts ) {
+        if ( maxAttempts < 1 ) {
+            throw new IllegalArgumentException( "The maximum number of attempts must be 1 or greater: " + maxAttempts );
+        }
+        this.maxAttempts = maxAttempts;
+    }
+
+    public long getInitialBackoffMillis() {
+        return initialBackoffMillis;
+    }
+
+    public long getMaxBackoffMillis() {
+        return maxBackoffMillis;
+    }
+
+    /**
+     * @param initialBackoffMillis upper bound of the wait before the first retry, in milliseconds.
+     * @param maxBackoffMillis upper bound of the wait between two attempts, in milliseconds.
+     */
+    public void setBackoffMillis( long initialBackoffMillis, long maxBackoffMillis ) {
+        if ( initialBackoffMillis < 0 || maxBackoffMillis < initialBackoffMillis ) {
+            throw new IllegalArgumentException( "Invalid backoff: " + initialBackoffMillis + "ms to " + maxBackoffMillis + "ms" );
+        }
+        this.initialBackoffMillis = initialBackoffMillis;
+        this.maxBackoffMillis = maxBackoffMillis;
+    }
+
+    public long getDeadlineMillis() {
+        return deadlineMillis;
+    }
+
+    /**
+     * @param deadlineMillis time given to a call, all attempts included, in milliseconds.
+     */
+    public void setDeadlineMillis( long deadlineMillis ) {
+        if ( deadlineMillis < 1 ) {
+            throw new IllegalArgumentException( "The deadline must be 1ms or greater: " + deadlineMillis );
+        }
+        this.deadlineMillis = deadlineMillis;
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright (c) 2002 The European Bioinformatics Institute, and others.
+ * All rights reserved. Please see the file LICENSE
+ * in the root directory of this distribution.
+ */
+package uk.ac.ebi.intact.uniprot.service.remote;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Limits the rate of the calls to a remote service: a bucket of <code>burst</code> tokens is refilled at
+ * <code>permitsPerSecond</code> and each call takes a token, waiting for one when the bucket is empty.
+ *
+ * @version $Id$
+ * @since 2.1.35
+ */
+public class TokenBucketRateLimiter {
+
+    /**
+     * Default number of calls per second, well within the UniProt usage guidelines.
+     */
+    public static final double DEFAULT_PERMITS_PER_SECOND = 10;
+
+    /**
+     * Default number of calls that can be made at once after a quiet period.
+     */
+    public static final int DEFAULT_BURST = 10;
+
+    private final double nanosPerPermit;
+
+    private final double burst;
+
+    private double tokens;
+
+    private long refilledAt;
+
+    public TokenBucketRateLimiter() {
+        this( DEFAULT_PERMITS_PER_SECOND, DEFAULT_BURST );
+    }
+
+    /**
+     * @param permitsPerSecond number of calls per second, greater than 0.
+     * @param burst number of calls that can be made at once after a quiet period, 1 or greater.
+     */
+    public TokenBucketRateLimiter( double permitsPerSecond, int burst ) {
+        if ( permitsPerSecond <= 0 ) {
+            throw new IllegalArgumentException( "The number of permits per second must be greater than 0: " + permitsPerSecond );
+        }
+        if ( burst < 1 ) {
+            throw new IllegalArgumentException( "The burst must be 1 or greater: " + burst );
+        }
+        this.nanosPerPermit = TimeUnit.SECONDS.toNanos( 1 ) / permitsPerSecond;
+        this.burst = burst;
+        this.tokens = burst;
+        this.refilledAt = System.nanoTime();
+    }
+
+    /**
+     * Takes a token, waiting for one if needed.
+     *
+     * @param timeout maximum time to wait.
+     * @param unit unit of the timeout.
+     * @return true if a token was taken, false if none would be available within the timeout, in which case the
+     * method returns at once.
+     * @throws InterruptedException if interrupted while waiting.
+     */
+    public boolean tryAcquire( long timeout, TimeUnit unit ) throws InterruptedException {
+        long waitNanos = reserve( unit.toNanos( timeout ) );
+        if ( waitNanos < 0 ) {
+            return false;
+        }
+        if ( waitNanos > 0 ) {
+            TimeUnit.NANOSECONDS.sleep( waitNanos );
+        }
+        return true;
+    }
+
+    /**
+     * Reserves a token if one is available within the given time.
+     *
+     * @return the time to wait before using the token, or -1 if none was reserved.
+     */
+    private synchronized long reserve( long timeoutNanos ) {
+        long now = System.nanoTime();
+        tokens = Math.min( burst, tokens + ( now - refilledAt ) / nanosPerPermit );
+        refilledAt = now;
+
+        long waitNanos = tokens >= 1 ? 0 : ( long ) Math.ceil( ( 1 - tokens ) * nanosPerPermit );
+        if ( waitNanos > timeoutNanos ) {
+            return -1;
+        }
+
+        // the token may be taken ahead of its refill, the callers coming next wait for the following ones
+        tokens--;
+        return waitNanos;
+    }
+}
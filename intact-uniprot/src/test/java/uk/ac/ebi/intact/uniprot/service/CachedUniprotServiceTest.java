@@ -1,9 +1,13 @@
 package uk.ac.ebi.intact.uniprot.service;
 
 import org.junit.Test;
-import uk.ac.ebi.intact.uniprot.model.UniprotProtein;
+import uk.ac.ebi.intact.uniprot.model.*;
 
-import java.util.Collection;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
 
 /**
  * CachedUniprotService Tester.
@@ -32,4 +36,308 @@ public class CachedUniprotServiceTest {
 //        assertEquals( p1, p2);
 //        assertSame( p1, p2 );
     }
+
+    @Test
+    public void retrieve_concurrentMissesShareOneLookup() throws Exception {
+        final AtomicInteger remoteCalls = new AtomicInteger();
+        final CountDownLatch release = new CountDownLatch( 1 );
+        UniprotService slowService = new DummyUniprotService() {
+            @Override
+            public Collection<UniprotProtein> retrieve( String ac ) {
+                remoteCalls.incrementAndGet();
+                try {
+                    release.await( 10, TimeUnit.SECONDS );
+                } catch ( InterruptedException e ) {
+                    Thread.currentThread().interrupt();
+                }
+                return super.retrieve( ac );
+            }
+        };
+        final CachedUniprotService service = new CachedUniprotService( slowService );
+
+        ExecutorService executor = Executors.newFixedThreadPool( 5 );
+        List<Future<Collection<UniprotProtein>>> futures = new ArrayList<Future<Collection<UniprotProtein>>>();
+        for ( int i = 0; i < 5; i++ ) {
+            futures.add( executor.submit( new Callable<Collection<UniprotProtein>>() {
+                public Collection<UniprotProtein> call() {
+                    return service.retrieve( "P12345" );
+                }
+            } ) );
+        }
+
+        // let all the threads reach the cache before the lookup completes
+        while ( service.getMissCount() + service.getCoalescedCount() < 5 ) {
+            Thread.sleep( 10 );
+        }
+        release.countDown();
+
+        Collection<UniprotProtein> first = futures.get( 0 ).get( 10, TimeUnit.SECONDS );
+        for ( Future<Collection<UniprotProtein>> future : futures ) {
+            assertSame( first, future.get( 10, TimeUnit.SECONDS ) );
+        }
+        executor.shutdown();
+
+        assertEquals( 1, remoteCalls.get() );
+        assertEquals( 1, service.getMissCount() );
+        assertEquals( 4, service.getCoalescedCount() );
+
+        service.retrieve( "P12345" );
+        assertEquals( 1, service.getHitCount() );
+        assertEquals( 1, remoteCalls.get() );
+
+        service.close();
+    }
+
+    @Test
+    public void retrieve_collectionSendsOnlyMissesInBulk() throws Exception {
+        final List<Collection<String>> bulkCalls = new ArrayList<Collection<String>>();
+        UniprotService recordingService = new DummyUniprotService() {
+            @Override
+            public Map<String, Collection<UniprotProtein>> retrieve( Collection<String> acs, boolean processSpliceVars ) {
+                bulkCalls.add( new ArrayList<String>( acs ) );
+                return super.retrieve( acs, processSpliceVars );
+            }
+        };
+        CachedUniprotService service = new CachedUniprotService( recordingService );
+
+        Collection<UniprotProtein> cached = service.retrieve( "P12345" );
+
+        Map<String, Collection<UniprotProtein>> proteins = service.retrieve( Arrays.asList( "P12345", "Q98765", "P11111" ) );
+
+        assertEquals( 3, proteins.size() );
+        assertSame( cached, proteins.get( "P12345" ) );
+        assertEquals( 1, bulkCalls.size() );
+        assertEquals( Arrays.asList( "Q98765", "P11111" ), bulkCalls.get( 0 ) );
+
+        // everything is now in the cache
+        service.retrieve( Arrays.asList( "Q98765", "P11111" ) );
+        assertEquals( 1, bulkCalls.size() );
+
+        service.close();
+    }
+
+    @Test
+    public void retrieve_withoutSpliceVariantsIsCachedSeparately() throws Exception {
+        final List<Boolean> calls = new ArrayList<Boolean>();
+        UniprotService recordingService = new DummyUniprotService() {
+            @Override
+            public Collection<UniprotProtein> retrieve( String ac, boolean processSpliceVars ) {
+                calls.add( processSpliceVars );
+                return super.retrieve( ac, processSpliceVars );
+            }
+        };
+        CachedUniprotService service = new CachedUniprotService( recordingService );
+
+        service.retrieve( "P12345", false );
+        service.retrieve( "P12345", false );
+        assertEquals( Arrays.asList( false ), calls );
+
+        // the cached protein lacks its splice variants, it cannot be used here
+        service.retrieve( "P12345", true );
+        assertEquals( Arrays.asList( false, true ), calls );
+
+        // whereas a fully processed protein can be used in any case
+        service.retrieve( "Q98765", true );
+        service.retrieve( "Q98765", false );
+        assertEquals( Arrays.asList( false, true, true ), calls );
+
+        service.close();
+    }
+
+    @Test
+    public void retrieve_aliasesShareOneCachedProtein() throws Exception {
+        final List<String> remoteCalls = new ArrayList<String>();
+        UniprotService recordingService = new DummyUniprotService() {
+            @Override
+            public Collection<UniprotProtein> retrieve( String ac ) {
+                remoteCalls.add( ac );
+                Organism human = new Organism( 9606, "human" );
+                UniprotProtein protein = new UniprotProtein( "CDC2_HUMAN", "P06493", human, "cdc2" );
+                protein.getSecondaryAcs().add( "P04551" );
+
+                UniprotSpliceVariant spliceVariant = new UniprotSpliceVariant( "P06493-2", human, "MEDYTK" );
+                spliceVariant.getSecondaryAcs().add( "P06493-3" );
+                protein.getSpliceVariants().add( spliceVariant );
+                protein.getFeatureChains().add( new UniprotFeatureChain( "P06493-PRO_0000085724", human, "MEDY" ) );
+
+                Collection<UniprotProtein> proteins = new ArrayList<UniprotProtein>();
+                proteins.add( protein );
+                return proteins;
+            }
+        };
+        CachedUniprotService service = new CachedUniprotService( recordingService );
+
+        UniprotProtein protein = service.retrieve( "P04551" ).iterator().next();
+        assertSame( protein, service.retrieve( "P06493" ).iterator().next() );
+        assertSame( protein, service.retrieve( "CDC2_HUMAN" ).iterator().next() );
+        assertSame( protein, service.retrieve( "P04551" ).iterator().next() );
+
+        Collection<UniprotFeatureChain> featureChains = service.retrieveFeatureChain( "PRO_0000085724" );
+        assertEquals( 1, featureChains.size() );
+        assertEquals( "P06493-PRO_0000085724", featureChains.iterator().next().getPrimaryAc() );
+
+        assertEquals( Arrays.asList( "P04551" ), remoteCalls );
+        assertEquals( 1, service.getMissCount() );
+
+        // a splice variant may be listed by other entries as an external isoform, it is looked up once
+        Collection<UniprotSpliceVariant> spliceVariants = service.retrieveSpliceVariant( "P06493-2" );
+        assertEquals( 1, spliceVariants.size() );
+        assertEquals( "P06493-2", spliceVariants.iterator().next().getPrimaryAc() );
+        assertEquals( "P06493", service.retrieve( "P06493-2" ).iterator().next().getPrimaryAc() );
+
+        assertEquals( Arrays.asList( "P04551", "P06493-2" ), remoteCalls );
+
+        service.close();
+    }
+
+    @Test
+    public void retrieve_aliasOfSeveralProteins() throws Exception {
+        final List<String> remoteCalls = new ArrayList<String>();
+        UniprotService recordingService = new DummyUniprotService() {
+            @Override
+            public Collection<UniprotProtein> retrieve( String ac ) {
+                remoteCalls.add( ac );
+                Collection<UniprotProtein> proteins = new ArrayList<UniprotProtein>();
+                proteins.add( new UniprotProtein( "ABC1_HUMAN", "P11111", new Organism( 9606 ), "demerged 1" ) );
+                proteins.add( new UniprotProtein( "ABC2_HUMAN", "P22222", new Organism( 9606 ), "demerged 2" ) );
+                return proteins;
+            }
+        };
+        CachedUniprotService service = new CachedUniprotService( recordingService );
+
+        assertEquals( 2, service.retrieve( "Q99999" ).size() );
+        assertEquals( 2, service.retrieve( "Q99999" ).size() );
+        assertEquals( "P22222", service.retrieve( "P22222" ).iterator().next().getPrimaryAc() );
+        assertEquals( "P11111", service.retrieve( "ABC1_HUMAN" ).iterator().next().getPrimaryAc() );
+
+        assertEquals( Arrays.asList( "Q99999" ), remoteCalls );
+
+        service.close();
+    }
+
+    @Test
+    public void retrieve_secondaryAcSeenIncidentallyIsLookedUp() throws Exception {
+        final List<String> remoteCalls = new ArrayList<String>();
+        UniprotService recordingService = new DummyUniprotService() {
+            @Override
+            public Collection<UniprotProtein> retrieve( String ac ) {
+                remoteCalls.add( ac );
+                UniprotProtein p1 = new UniprotProtein( "ABC1_HUMAN", "P11111", new Organism( 9606 ), "demerged 1" );
+                p1.getSecondaryAcs().add( "Q99999" );
+                UniprotProtein p2 = new UniprotProtein( "ABC2_HUMAN", "P22222", new Organism( 9606 ), "demerged 2" );
+                p2.getSecondaryAcs().add( "Q99999" );
+
+                Collection<UniprotProtein> proteins = new ArrayList<UniprotProtein>();
+                if ( "P11111".equals( ac ) ) {
+                    proteins.add( p1 );
+                } else {
+                    proteins.add( p1 );
+                    proteins.add( p2 );
+                }
+                return proteins;
+            }
+        };
+        CachedUniprotService service = new CachedUniprotService( recordingService );
+
+        service.retrieve( "P11111" );
+
+        // Q99999 was only seen as a secondary AC of P11111, which does not tell it is shared with P22222
+        assertEquals( 2, service.retrieve( "Q99999" ).size() );
+        assertEquals( 2, service.retrieve( "Q99999" ).size() );
+
+        // the looked up primary AC still resolves to its own protein
+        assertEquals( 1, service.retrieve( "P11111" ).size() );
+        assertEquals( Arrays.asList( "P11111", "Q99999" ), remoteCalls );
+
+        service.close();
+    }
+
+    @Test
+    public void retrieve_failedBatchIsNotCached() throws Exception {
+        final List<Collection<String>> bulkCalls = new ArrayList<Collection<String>>();
+        UniprotService flakyService = new DummyUniprotService() {
+            @Override
+            public Map<String, Collection<UniprotProtein>> retrieve( Collection<String> acs, boolean processSpliceVars ) {
+                bulkCalls.add( new ArrayList<String>( acs ) );
+                if ( bulkCalls.size() > 1 ) {
+                    return super.retrieve( acs, processSpliceVars );
+                }
+
+                // the whole batch failed, as reported by SimpleUniprotRemoteService
+                Map<String, Collection<UniprotProtein>> results = new HashMap<String, Collection<UniprotProtein>>();
+                for ( String ac : acs ) {
+                    results.put( ac, new ArrayList<UniprotProtein>() );
+                    addError( ac, new UniprotServiceReport( "Could not retrieve protein: " + ac,
+                                                            new RuntimeUniprotServiceException( "UniProt is down" ) ) );
+                }
+                return results;
+            }
+        };
+        CachedUniprotService service = new CachedUniprotService( flakyService );
+
+        Map<String, Collection<UniprotProtein>> proteins = service.retrieve( Arrays.asList( "P12345", "Q98765" ) );
+        assertTrue( proteins.get( "P12345" ).isEmpty() );
+        assertTrue( proteins.get( "Q98765" ).isEmpty() );
+
+        // retrieved again rather than served as not found
+        proteins = service.retrieve( Arrays.asList( "P12345", "Q98765" ) );
+        assertEquals( "P12345", proteins.get( "P12345" ).iterator().next().getPrimaryAc() );
+        assertEquals( "Q98765", proteins.get( "Q98765" ).iterator().next().getPrimaryAc() );
+        assertEquals( 2, bulkCalls.size() );
+
+        service.close();
+    }
+
+    @Test
+    public void retrieve_notFoundIsCached() throws Exception {
+        final List<String> remoteCalls = new ArrayList<String>();
+        UniprotService emptyService = new DummyUniprotService() {
+            @Override
+            public Collection<UniprotProtein> retrieve( String ac ) {
+                remoteCalls.add( ac );
+                addError( ac, new UniprotServiceReport( "Could not find protein: " + ac ) );
+                return new ArrayList<UniprotProtein>();
+            }
+        };
+        CachedUniprotService service = new CachedUniprotService( emptyService );
+
+        assertTrue( service.retrieve( "P12345" ).isEmpty() );
+        assertTrue( service.retrieve( "P12345" ).isEmpty() );
+        assertEquals( Arrays.asList( "P12345" ), remoteCalls );
+
+        service.close();
+    }
+
+    @Test
+    public void retrieve_externalIsoformListedBySeveralEntries() throws Exception {
+        final List<String> remoteCalls = new ArrayList<String>();
+        UniprotService recordingService = new DummyUniprotService() {
+            @Override
+            public Collection<UniprotProtein> retrieve( String ac ) {
+                remoteCalls.add( ac );
+                Organism human = new Organism( 9606, "human" );
+                UniprotProtein master = new UniprotProtein( "ABC1_HUMAN", "P11111", human, "master" );
+                master.getSpliceVariants().add( new UniprotSpliceVariant( "P11111-2", human, "MEDYTK" ) );
+                UniprotProtein other = new UniprotProtein( "ABC2_HUMAN", "P22222", human, "external isoform" );
+                other.getSpliceVariants().add( new UniprotSpliceVariant( "P11111-2", human, "MEDYTK" ) );
+
+                Collection<UniprotProtein> proteins = new ArrayList<UniprotProtein>();
+                proteins.add( master );
+                if ( !"P11111".equals( ac ) ) {
+                    proteins.add( other );
+                }
+                return proteins;
+            }
+        };
+        CachedUniprotService service = new CachedUniprotService( recordingService );
+
+        service.retrieve( "P11111" );
+
+        // both entries describe the splice variant, as UniProt would tell
+        assertEquals( 2, service.retrieve( "P11111-2" ).size() );
+        assertEquals( 2, service.retrieve( "P11111-2" ).size() );
+        assertEquals( Arrays.asList( "P11111", "P11111-2" ), remoteCalls );
+
+        service.close();
+    }
 }
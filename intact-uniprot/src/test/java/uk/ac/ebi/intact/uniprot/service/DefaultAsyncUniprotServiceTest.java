@@ -0,0 +1,180 @@
+package uk.ac.ebi.intact.uniprot.service;
+
+import org.junit.Test;
+import uk.ac.ebi.intact.uniprot.model.UniprotProtein;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.*;
+
+/**
+ * DefaultAsyncUniprotService Tester.
+ *
+ * @version $Id$
+ * @since 2.1.35
+ */
+public class DefaultAsyncUniprotServiceTest {
+
+    @Test
+    public void retrieveAsync() throws Exception {
+        AsyncUniprotService service = new DefaultAsyncUniprotService( new DummyUniprotService() );
+
+        Collection<UniprotProtein> proteins = service.retrieveAsync( "P12345" ).get( 10, TimeUnit.SECONDS );
+        service.close();
+
+        assertEquals( 1, proteins.size() );
+        assertEquals( "P12345", proteins.iterator().next().getPrimaryAc() );
+    }
+
+    @Test
+    public void retrieveAsync_collection() throws Exception {
+        DefaultAsyncUniprotService service = new DefaultAsyncUniprotService( new DummyUniprotService() );
+        service.setBatchSize( 2 );
+
+        Map<String, CompletableFuture<Collection<UniprotProtein>>> futures =
+                service.retrieveAsync( Arrays.asList( "P12345", "Q98765", "P11111", "P12345" ) );
+
+        assertEquals( 3, futures.size() );
+        for ( Map.Entry<String, CompletableFuture<Collection<UniprotProtein>>> entry : futures.entrySet() ) {
+            Collection<UniprotProtein> proteins = entry.getValue().get( 10, TimeUnit.SECONDS );
+            assertEquals( entry.getKey(), proteins.iterator().next().getPrimaryAc() );
+        }
+        service.close();
+    }
+
+    @Test
+    public void retrieveAsync_timeout() throws Exception {
+        final CountDownLatch interrupted = new CountDownLatch( 1 );
+        UniprotService slowService = new DummyUniprotService() {
+            @Override
+            public Collection<UniprotProtein> retrieve( String ac ) {
+                try {
+                    Thread.sleep( 10000 );
+                } catch ( InterruptedException e ) {
+                    interrupted.countDown();
+                }
+                return super.retrieve( ac );
+            }
+        };
+        AsyncUniprotService service = new DefaultAsyncUniprotService( slowService );
+
+        CompletableFuture<Collection<UniprotProtein>> future = service.retrieveAsync( "P12345", 100, TimeUnit.MILLISECONDS );
+        try {
+            future.get( 10, TimeUnit.SECONDS );
+            fail( "The lookup should have timed out" );
+        } catch ( ExecutionException e ) {
+            assertTrue( e.getCause() instanceof TimeoutException );
+        }
+
+        // the lookup running in the background has been cancelled
+        assertTrue( interrupted.await( 10, TimeUnit.SECONDS ) );
+        service.close();
+    }
+
+    @Test
+    public void retrieveAsync_cancel() throws Exception {
+        final CountDownLatch started = new CountDownLatch( 1 );
+        final CountDownLatch interrupted = new CountDownLatch( 1 );
+        UniprotService slowService = new DummyUniprotService() {
+            @Override
+            public Collection<UniprotProtein> retrieve( String ac ) {
+                started.countDown();
+                try {
+                    Thread.sleep( 10000 );
+                } catch ( InterruptedException e ) {
+                    interrupted.countDown();
+                }
+                return super.retrieve( ac );
+            }
+        };
+        AsyncUniprotService service = new DefaultAsyncUniprotService( slowService );
+
+        CompletableFuture<Collection<UniprotProtein>> future = service.retrieveAsync( "P12345" );
+        assertTrue( started.await( 10, TimeUnit.SECONDS ) );
+        future.cancel( true );
+
+        assertTrue( future.isCancelled() );
+        assertTrue( interrupted.await( 10, TimeUnit.SECONDS ) );
+        service.close();
+    }
+
+    @Test
+    public void retrieveAsync_failureDoesNotInterruptWorker() throws Exception {
+        UniprotService failingService = new DummyUniprotService() {
+            @Override
+            public Map<String, Collection<UniprotProtein>> retrieve( Collection<String> acs ) {
+                throw new RuntimeUniprotServiceException( "UniProt is down" );
+            }
+        };
+        final CountDownLatch executed = new CountDownLatch( 1 );
+        final AtomicBoolean interrupted = new AtomicBoolean();
+        ExecutorService executor = new ThreadPoolExecutor( 1, 1, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>() ) {
+            @Override
+            protected void afterExecute( Runnable runnable, Throwable throwable ) {
+                interrupted.set( Thread.currentThread().isInterrupted() );
+                executed.countDown();
+            }
+        };
+        DefaultAsyncUniprotService service = new DefaultAsyncUniprotService( failingService, executor );
+
+        CompletableFuture<Collection<UniprotProtein>> future = service.retrieveAsync( Arrays.asList( "P12345" ) ).get( "P12345" );
+        try {
+            future.get( 10, TimeUnit.SECONDS );
+            fail( "The lookup should have failed" );
+        } catch ( ExecutionException e ) {
+            assertTrue( e.getCause() instanceof RuntimeUniprotServiceException );
+        }
+
+        // a failure of the service is not a cancellation, the worker must not interrupt itself
+        assertTrue( executed.await( 10, TimeUnit.SECONDS ) );
+        assertFalse( interrupted.get() );
+        service.close();
+    }
+
+    @Test
+    public void close_completesQueuedLookups() throws Exception {
+        final CountDownLatch started = new CountDownLatch( 1 );
+        UniprotService blockingService = new DummyUniprotService() {
+            @Override
+            public Collection<UniprotProtein> retrieve( String ac ) {
+                started.countDown();
+                try {
+                    Thread.sleep( 10000 );
+                } catch ( InterruptedException e ) {
+                    // cancelled
+                }
+                return super.retrieve( ac );
+            }
+        };
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        DefaultAsyncUniprotService service = new DefaultAsyncUniprotService( blockingService, executor );
+        service.setBatchSize( 1 );
+
+        CompletableFuture<Collection<UniprotProtein>> running = service.retrieveAsync( "P12345" );
+        assertTrue( started.await( 10, TimeUnit.SECONDS ) );
+        CompletableFuture<Collection<UniprotProtein>> queued = service.retrieveAsync( "Q98765", 1, TimeUnit.HOURS );
+        Map<String, CompletableFuture<Collection<UniprotProtein>>> queuedBatches =
+                service.retrieveAsync( Arrays.asList( "P11111", "P22222" ) );
+
+        service.close();
+
+        assertTrue( running.isCancelled() );
+        assertTrue( queued.isCancelled() );
+        for ( CompletableFuture<Collection<UniprotProtein>> future : queuedBatches.values() ) {
+            assertTrue( future.isCancelled() );
+        }
+
+        // the executor belongs to the caller
+        assertFalse( executor.isShutdown() );
+        assertEquals( "P11111", executor.submit( new Callable<String>() {
+            public String call() {
+                return "P11111";
+            }
+        } ).get( 10, TimeUnit.SECONDS ) );
+        executor.shutdownNow();
+    }
+}
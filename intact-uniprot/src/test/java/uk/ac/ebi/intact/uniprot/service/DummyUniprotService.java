@@ -40,6 +40,10 @@ public class DummyUniprotService extends UniprotRemoteService {
         return proteins;
     }
 
+    public Collection<UniprotProtein> retrieve( String ac, boolean processSpliceVars ) {
+        return retrieve( ac );
+    }
+
     public Map<String, Collection<UniprotProtein>> retrieve( Collection<String> acs ) {
         Map<String, Collection<UniprotProtein>> map = new HashMap<String, Collection<UniprotProtein>>( acs.size() );
 
@@ -49,4 +53,8 @@ public class DummyUniprotService extends UniprotRemoteService {
 
         return map;
     }
+
+    public Map<String, Collection<UniprotProtein>> retrieve( Collection<String> acs, boolean processSpliceVars ) {
+        return retrieve( acs );
+    }
 }
\ No newline at end of file
@@ -0,0 +1,101 @@
+package uk.ac.ebi.intact.uniprot.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Pattern;
+
+/**
+ * Compares the classification of identifiers by the IdentifierChecker with the regular expressions it used to match.
+ *
+ * Not a unit test: run its main method by hand, eg. with <code>mvn exec:java -Dexec.classpathScope=test</code>.
+ *
+ * @version $Id$
+ * @since 2.1.35
+ */
+public class IdentifierCheckerBenchmark {
+
+    private static final String PROTEIN_AC_PATTERN_STR = "[A-Z][0-9][A-Z0-9]{3}[0-9]";
+
+    private static final Pattern PROTEIN_AC_PATTERN = Pattern.compile( PROTEIN_AC_PATTERN_STR );
+    private static final Pattern SPLICE_VARIANT_ID_PATTERN = Pattern.compile( PROTEIN_AC_PATTERN_STR + "-[0-9]+" );
+    private static final Pattern FEATURE_CHAIN_ID_PATTERN = Pattern.compile( PROTEIN_AC_PATTERN_STR + "-PRO_[0-9]{10}|PRO_[0-9]{10}" );
+
+    private static final int IDENTIFIERS = 1000000;
+
+    private static final int ITERATIONS = 10;
+
+    public static void main( String[] args ) throws Exception {
+        List<String> acs = buildIdentifiers();
+
+        for ( int i = 0; i < ITERATIONS; i++ ) {
+            long start = System.nanoTime();
+            long regex = classifyWithRegex( acs );
+            long regexTime = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            long scan = classifyWithChecker( acs );
+            long scanTime = System.nanoTime() - start;
+
+            System.out.println( "regex: " + ( IDENTIFIERS * 1000L / ( regexTime / 1000000 + 1 ) ) + " ids/s, "
+                                + "scan: " + ( IDENTIFIERS * 1000L / ( scanTime / 1000000 + 1 ) ) + " ids/s ("
+                                + regex + " / " + scan + ")" );
+        }
+    }
+
+    private static List<String> buildIdentifiers() {
+        Random random = new Random( 42 );
+        List<String> acs = new ArrayList<String>( IDENTIFIERS );
+        for ( int i = 0; i < IDENTIFIERS; i++ ) {
+            String protein = "P" + ( 10000 + random.nextInt( 90000 ) );
+            switch ( i % 5 ) {
+                case 0:
+                case 1:
+                    acs.add( protein );
+                    break;
+                case 2:
+                    acs.add( protein + "-" + ( 1 + random.nextInt( 20 ) ) );
+                    break;
+                case 3:
+                    acs.add( protein + "-PRO_" + ( 1000000000L + random.nextInt( 1000000000 ) ) );
+                    break;
+                default:
+                    acs.add( "EBI-" + random.nextInt( 1000000 ) );
+            }
+        }
+        return acs;
+    }
+
+    private static long classifyWithRegex( List<String> acs ) {
+        long matches = 0;
+        for ( String ac : acs ) {
+            if ( PROTEIN_AC_PATTERN.matcher( ac ).matches() ) {
+                matches += 1;
+            } else if ( SPLICE_VARIANT_ID_PATTERN.matcher( ac ).matches() ) {
+                matches += 2;
+            } else if ( FEATURE_CHAIN_ID_PATTERN.matcher( ac ).matches() ) {
+                matches += 3;
+            }
+        }
+        return matches;
+    }
+
+    private static long classifyWithChecker( List<String> acs ) {
+        long matches = 0;
+        for ( String ac : acs ) {
+            switch ( IdentifierChecker.classify( ac ) ) {
+                case PROTEIN:
+                    matches += 1;
+                    break;
+                case SPLICE_VARIANT:
+                    matches += 2;
+                    break;
+                case FEATURE_CHAIN:
+                    matches += 3;
+                    break;
+                default:
+            }
+        }
+        return matches;
+    }
+}
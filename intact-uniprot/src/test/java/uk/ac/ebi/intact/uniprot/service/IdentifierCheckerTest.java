@@ -3,6 +3,10 @@ package uk.ac.ebi.intact.uniprot.service;
 import static org.junit.Assert.*;
 import org.junit.Test;
 
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
 /**
  * IdentifierChecker Tester.
  *
@@ -83,4 +87,33 @@ public class IdentifierCheckerTest {
             // ok
         }
     }
+
+    @Test
+    public void classify() {
+        assertEquals( UniprotIdentifierType.PROTEIN, IdentifierChecker.classify( "P12345" ) );
+        assertEquals( UniprotIdentifierType.SPLICE_VARIANT, IdentifierChecker.classify( "P12345-12" ) );
+        assertEquals( UniprotIdentifierType.FEATURE_CHAIN, IdentifierChecker.classify( "P12345-PRO_1234567890" ) );
+        assertEquals( UniprotIdentifierType.FEATURE_CHAIN, IdentifierChecker.classify( "PRO_1234567890" ) );
+
+        assertEquals( UniprotIdentifierType.INVALID, IdentifierChecker.classify( "" ) );
+        assertEquals( UniprotIdentifierType.INVALID, IdentifierChecker.classify( "p12345" ) );
+        assertEquals( UniprotIdentifierType.INVALID, IdentifierChecker.classify( "P12345-" ) );
+        assertEquals( UniprotIdentifierType.INVALID, IdentifierChecker.classify( "P12345-1a" ) );
+        assertEquals( UniprotIdentifierType.INVALID, IdentifierChecker.classify( "P12345_1" ) );
+        assertEquals( UniprotIdentifierType.INVALID, IdentifierChecker.classify( "P12345-PRO_123456789" ) );
+        assertEquals( UniprotIdentifierType.INVALID, IdentifierChecker.classify( "PRO_123456789X" ) );
+    }
+
+    @Test
+    public void partition() {
+        List<String> acs = Arrays.asList( "P12345", "P12345-1", "PRO_1234567890", "foo", "Q98765", "P12345-PRO_1234567890" );
+
+        Map<UniprotIdentifierType, List<String>> partitions = IdentifierChecker.partition( acs );
+
+        assertEquals( 4, partitions.size() );
+        assertEquals( Arrays.asList( "P12345", "Q98765" ), partitions.get( UniprotIdentifierType.PROTEIN ) );
+        assertEquals( Arrays.asList( "P12345-1" ), partitions.get( UniprotIdentifierType.SPLICE_VARIANT ) );
+        assertEquals( Arrays.asList( "PRO_1234567890", "P12345-PRO_1234567890" ), partitions.get( UniprotIdentifierType.FEATURE_CHAIN ) );
+        assertEquals( Arrays.asList( "foo" ), partitions.get( UniprotIdentifierType.INVALID ) );
+    }
 }
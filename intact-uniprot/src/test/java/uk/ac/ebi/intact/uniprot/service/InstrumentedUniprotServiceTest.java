@@ -0,0 +1,77 @@
+package uk.ac.ebi.intact.uniprot.service;
+
+import org.junit.Test;
+import uk.ac.ebi.intact.uniprot.model.UniprotProtein;
+import uk.ac.ebi.intact.uniprot.service.metrics.UniprotServiceMetrics;
+
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.Collection;
+
+import static org.junit.Assert.*;
+
+/**
+ * InstrumentedUniprotService Tester.
+ *
+ * @version $Id$
+ * @since 2.1.35
+ */
+public class InstrumentedUniprotServiceTest {
+
+    @Test
+    public void retrieve_recordsEachLayer() throws Exception {
+        UniprotServiceMetrics metrics = new UniprotServiceMetrics();
+        UniprotService remote = new InstrumentedUniprotService( new DummyUniprotService(), metrics, "remote" );
+        UniprotService service = new InstrumentedUniprotService( new CachedUniprotService( remote ), metrics, "cache" );
+
+        service.retrieve( "P12345" );
+        service.retrieve( "P12345" );
+        service.retrieve( Arrays.asList( "P12345", "Q98765" ) );
+
+        assertEquals( Long.valueOf( 2 ), metrics.getOperationCounts().get( "cache.retrieve" ) );
+        assertEquals( Long.valueOf( 1 ), metrics.getOperationCounts().get( "cache.retrieveBatch" ) );
+        assertEquals( Long.valueOf( 2 ), metrics.getEntryCounts().get( "cache.retrieveBatch" ) );
+        assertEquals( Long.valueOf( 0 ), metrics.getFailureCounts().get( "cache.retrieve" ) );
+        assertTrue( metrics.getOperationCounts().get( "remote.retrieve" ) < 3 );
+        assertTrue( metrics.getP99LatenciesMillis().get( "cache.retrieve" ) >= 0 );
+    }
+
+    @Test
+    public void retrieve_recordsFailuresAndErrors() throws Exception {
+        UniprotServiceMetrics metrics = new UniprotServiceMetrics();
+        UniprotService service = new InstrumentedUniprotService( new DummyUniprotService() {
+            @Override
+            public Collection<UniprotProtein> retrieve( String ac ) {
+                addError( ac, new UniprotServiceReport( "Could not find protein: " + ac ) );
+                addError( ac + "-1", new UniprotServiceReport( new IllegalStateException( "UniProt is down" ) ) );
+                throw new IllegalStateException( "UniProt is down" );
+            }
+        }, metrics, "remote" );
+
+        try {
+            service.retrieve( "P12345" );
+            fail();
+        } catch ( IllegalStateException e ) {
+            // ok
+        }
+
+        assertEquals( Long.valueOf( 1 ), metrics.getFailureCounts().get( "remote.retrieve" ) );
+        assertEquals( Long.valueOf( 1 ), metrics.getErrorCounts().get( UniprotServiceMetrics.NOT_FOUND_ERROR ) );
+        assertEquals( Long.valueOf( 1 ), metrics.getErrorCounts().get( "IllegalStateException" ) );
+    }
+
+    @Test
+    public void registerMBean() throws Exception {
+        UniprotServiceMetrics metrics = new UniprotServiceMetrics();
+        metrics.recordOperation( "remote.retrieve", 2000000, 1, false );
+
+        ObjectName name = metrics.registerMBean( "test" );
+        try {
+            assertTrue( ManagementFactory.getPlatformMBeanServer().isRegistered( name ) );
+            assertNotNull( ManagementFactory.getPlatformMBeanServer().getAttribute( name, "OperationCounts" ) );
+        } finally {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean( name );
+        }
+    }
+}
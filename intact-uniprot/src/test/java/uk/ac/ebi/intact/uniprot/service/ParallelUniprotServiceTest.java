@@ -0,0 +1,71 @@
+package uk.ac.ebi.intact.uniprot.service;
+
+import org.junit.Test;
+import uk.ac.ebi.intact.uniprot.model.UniprotProtein;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * ParallelUniprotService Tester.
+ *
+ * @version $Id$
+ * @since 2.1.35
+ */
+public class ParallelUniprotServiceTest {
+
+    @Test
+    public void retrieve_collection() {
+        ParallelUniprotService service = new ParallelUniprotService( new DummyUniprotService(), 3, 2 );
+        service.setBatchSize( 7 );
+
+        List<String> acs = new ArrayList<String>();
+        for ( int i = 0; i < 100; i++ ) {
+            acs.add( "P" + ( 10000 + i ) );
+        }
+        acs.add( "P10000" );
+
+        Map<String, Collection<UniprotProtein>> proteins = service.retrieve( acs );
+        service.close();
+
+        assertEquals( 100, proteins.size() );
+        for ( int i = 0; i < 100; i++ ) {
+            String ac = "P" + ( 10000 + i );
+            assertEquals( 1, proteins.get( ac ).size() );
+            assertEquals( ac, proteins.get( ac ).iterator().next().getPrimaryAc() );
+        }
+        assertTrue( service.getErrors().isEmpty() );
+    }
+
+    @Test
+    public void retrieve_failingWorker() {
+        UniprotService failingService = new DummyUniprotService() {
+            @Override
+            public Map<String, Collection<UniprotProtein>> retrieve( Collection<String> acs ) {
+                throw new RuntimeUniprotServiceException( "UniProt is down" );
+            }
+        };
+        ParallelUniprotService service = new ParallelUniprotService( failingService, 2, 2 );
+
+        List<String> acs = new ArrayList<String>();
+        acs.add( "P12345" );
+        acs.add( "P67890" );
+
+        Map<String, Collection<UniprotProtein>> proteins = service.retrieve( acs );
+        service.close();
+
+        assertTrue( proteins.isEmpty() );
+        assertEquals( 2, service.getErrors().size() );
+        assertTrue( service.getErrors().containsKey( "P12345" ) );
+        assertTrue( service.getErrors().containsKey( "P67890" ) );
+    }
+
+    @Test( expected = IllegalArgumentException.class )
+    public void constructor_noThreads() {
+        new ParallelUniprotService( new DummyUniprotService(), 0, 1 );
+    }
+}
@@ -0,0 +1,93 @@
+package uk.ac.ebi.intact.uniprot.service;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import uk.ac.ebi.intact.uniprot.model.Organism;
+import uk.ac.ebi.intact.uniprot.model.UniprotProtein;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * PersistentUniprotService Tester.
+ *
+ * @version $Id$
+ * @since 2.1.35
+ */
+public class PersistentUniprotServiceTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private List<String> remoteCalls = new ArrayList<String>();
+
+    /**
+     * Serves P12345 under its primary AC, its ID and its secondary AC Q11111.
+     */
+    private UniprotService newRecordingService() {
+        return new DummyUniprotService() {
+            @Override
+            public Collection<UniprotProtein> retrieve( String ac ) {
+                remoteCalls.add( ac );
+                UniprotProtein protein = new UniprotProtein( "ABC_HUMAN", "P12345", new Organism( 9606, "human" ), "abc" );
+                protein.getSecondaryAcs().add( "Q11111" );
+                protein.setSequence( "MAAAK" );
+
+                Collection<UniprotProtein> proteins = new ArrayList<UniprotProtein>();
+                proteins.add( protein );
+                return proteins;
+            }
+        };
+    }
+
+    @Test
+    public void retrieve_survivesRestart() throws Exception {
+        File directory = folder.newFolder( "store" );
+
+        PersistentUniprotService service = new PersistentUniprotService( newRecordingService(), directory, "2016_09" );
+        service.retrieve( "Q11111" );
+        service.retrieve( "Q11111" );
+        assertEquals( 1, remoteCalls.size() );
+        service.close();
+
+        service = new PersistentUniprotService( newRecordingService(), directory, "2016_09" );
+        Collection<UniprotProtein> proteins = service.retrieve( "Q11111" );
+        assertEquals( "P12345", proteins.iterator().next().getPrimaryAc() );
+        assertEquals( "MAAAK", proteins.iterator().next().getSequence() );
+
+        // the primary AC and ID are known from the first lookup
+        service.retrieve( "P12345" );
+        service.retrieve( "ABC_HUMAN" );
+        assertEquals( 1, remoteCalls.size() );
+        assertEquals( 1, service.getStore().size() );
+        service.close();
+    }
+
+    @Test
+    public void retrieve_newReleaseInvalidatesEntries() throws Exception {
+        File directory = folder.newFolder( "store" );
+
+        PersistentUniprotService service = new PersistentUniprotService( newRecordingService(), directory, "2016_09" );
+        service.retrieve( "P12345" );
+        service.close();
+
+        service = new PersistentUniprotService( newRecordingService(), directory, "2016_10" );
+        assertEquals( 0, service.getStore().size() );
+        service.retrieve( "P12345" );
+        assertEquals( 2, remoteCalls.size() );
+        service.close();
+    }
+
+    @Test
+    public void retrieve_withoutSpliceVariantsIsNotStored() throws Exception {
+        PersistentUniprotService service = new PersistentUniprotService( newRecordingService(), folder.newFolder( "store" ), "2016_09" );
+        service.retrieve( "P12345", false );
+        assertEquals( 0, service.getStore().size() );
+        service.close();
+    }
+}
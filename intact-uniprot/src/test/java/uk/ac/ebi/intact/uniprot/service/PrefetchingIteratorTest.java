@@ -0,0 +1,110 @@
+package uk.ac.ebi.intact.uniprot.service;
+
+import org.junit.Test;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * PrefetchingIterator Tester.
+ *
+ * @version $Id$
+ * @since 2.1.35
+ */
+public class PrefetchingIteratorTest {
+
+    /**
+     * Counts the elements read and whether it has been closed.
+     */
+    private static class CountingIterator implements Iterator<Integer>, Closeable {
+
+        private final int size;
+        private final AtomicInteger read = new AtomicInteger();
+        private final CountDownLatch closed = new CountDownLatch( 1 );
+
+        private CountingIterator( int size ) {
+            this.size = size;
+        }
+
+        public boolean hasNext() {
+            return read.get() < size;
+        }
+
+        public Integer next() {
+            return read.incrementAndGet();
+        }
+
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+
+        public void close() {
+            closed.countDown();
+        }
+    }
+
+    @Test
+    public void iterate_all() throws Exception {
+        CountingIterator source = new CountingIterator( 1000 );
+        PrefetchingIterator<Integer> iterator = new PrefetchingIterator<Integer>( source, 10, "test" );
+
+        List<Integer> elements = new ArrayList<Integer>();
+        while ( iterator.hasNext() ) {
+            elements.add( iterator.next() );
+        }
+
+        assertEquals( 1000, elements.size() );
+        assertEquals( Integer.valueOf( 1 ), elements.get( 0 ) );
+        assertEquals( Integer.valueOf( 1000 ), elements.get( 999 ) );
+        assertFalse( iterator.hasNext() );
+        assertTrue( source.closed.await( 10, TimeUnit.SECONDS ) );
+    }
+
+    @Test
+    public void iterate_readsAtMostBufferSizeAhead() throws Exception {
+        CountingIterator source = new CountingIterator( 1000 );
+        PrefetchingIterator<Integer> iterator = new PrefetchingIterator<Integer>( source, 10, "test" );
+
+        assertEquals( Integer.valueOf( 1 ), iterator.next() );
+        Thread.sleep( 200 );
+
+        // the buffer is full and one more element waits to be added to it
+        assertTrue( source.read.get() <= 12 );
+
+        iterator.close();
+        assertFalse( iterator.hasNext() );
+        assertTrue( source.closed.await( 10, TimeUnit.SECONDS ) );
+    }
+
+    @Test
+    public void iterate_failingSource() throws Exception {
+        Iterator<Integer> source = new CountingIterator( 1000 ) {
+            @Override
+            public Integer next() {
+                Integer next = super.next();
+                if ( next == 3 ) {
+                    throw new IllegalStateException( "UniProt is down" );
+                }
+                return next;
+            }
+        };
+        PrefetchingIterator<Integer> iterator = new PrefetchingIterator<Integer>( source, 10, "test" );
+
+        assertEquals( Integer.valueOf( 1 ), iterator.next() );
+        assertEquals( Integer.valueOf( 2 ), iterator.next() );
+        try {
+            iterator.hasNext();
+            fail( "The failure of the source should have been rethrown" );
+        } catch ( IllegalStateException e ) {
+            assertEquals( "UniProt is down", e.getMessage() );
+        }
+        assertFalse( iterator.hasNext() );
+    }
+}
@@ -0,0 +1,134 @@
+package uk.ac.ebi.intact.uniprot.service;
+
+import org.junit.Test;
+import uk.ac.ebi.uniprot.dataservice.client.QueryResult;
+import uk.ac.ebi.uniprot.dataservice.client.uniprot.UniProtService;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * SimpleUniprotRemoteService Tester.
+ *
+ * @version $Id$
+ * @since 2.1.35
+ */
+public class SimpleUniprotRemoteServiceTest {
+
+    /**
+     * UniProt query service stub that counts the queries sent while it is stopped.
+     */
+    private static class StartStopSensitiveHandler implements InvocationHandler {
+
+        private boolean started;
+        private final AtomicInteger queries = new AtomicInteger();
+        private final AtomicInteger queriesWhileStopped = new AtomicInteger();
+
+        public Object invoke( Object proxy, Method method, Object[] args ) throws Throwable {
+            String name = method.getName();
+            if ( "start".equals( name ) ) {
+                synchronized ( this ) {
+                    started = true;
+                }
+                return null;
+            }
+            if ( "stop".equals( name ) ) {
+                synchronized ( this ) {
+                    started = false;
+                }
+                return null;
+            }
+            if ( "isServiceStarted".equals( name ) ) {
+                synchronized ( this ) {
+                    return started;
+                }
+            }
+            if ( "getEntries".equals( name ) ) {
+                queries.incrementAndGet();
+                // leaves some time to the other workers to stop the service under this query
+                Thread.sleep( 5 );
+                synchronized ( this ) {
+                    if ( !started ) {
+                        queriesWhileStopped.incrementAndGet();
+                    }
+                }
+                return emptyResult();
+            }
+            if ( "hashCode".equals( name ) ) {
+                return System.identityHashCode( proxy );
+            }
+            if ( "equals".equals( name ) ) {
+                return proxy == args[0];
+            }
+            if ( "toString".equals( name ) ) {
+                return "StartStopSensitiveUniProtService";
+            }
+            throw new UnsupportedOperationException( name );
+        }
+
+        private QueryResult emptyResult() {
+            return ( QueryResult ) Proxy.newProxyInstance( getClass().getClassLoader(),
+                                                           new Class[]{QueryResult.class},
+                                                           new InvocationHandler() {
+                public Object invoke( Object proxy, Method method, Object[] args ) throws Throwable {
+                    String name = method.getName();
+                    if ( "hasNext".equals( name ) ) {
+                        return false;
+                    }
+                    if ( "getNumberOfHits".equals( name ) ) {
+                        return 0L;
+                    }
+                    throw new UnsupportedOperationException( name );
+                }
+            } );
+        }
+    }
+
+    @Test
+    public void retrieve_parallelWorkersShareQueryService() {
+        StartStopSensitiveHandler handler = new StartStopSensitiveHandler();
+        UniProtService queryService = ( UniProtService ) Proxy.newProxyInstance( getClass().getClassLoader(),
+                                                                                new Class[]{UniProtService.class},
+                                                                                handler );
+
+        ParallelUniprotService service =
+                new ParallelUniprotService( new SimpleUniprotRemoteService( queryService, null ), 4, 4 );
+        service.setBatchSize( 5 );
+
+        List<String> acs = new ArrayList<String>();
+        for ( int i = 0; i < 100; i++ ) {
+            acs.add( "P" + ( 10000 + i ) );
+        }
+
+        service.retrieve( acs );
+        service.close();
+
+        assertTrue( handler.queries.get() > 0 );
+        assertEquals( 0, handler.queriesWhileStopped.get() );
+        assertFalse( handler.started );
+    }
+
+    @Test
+    public void retrieve_startedByCaller() {
+        StartStopSensitiveHandler handler = new StartStopSensitiveHandler();
+        UniProtService queryService = ( UniProtService ) Proxy.newProxyInstance( getClass().getClassLoader(),
+                                                                                new Class[]{UniProtService.class},
+                                                                                handler );
+
+        SimpleUniprotRemoteService service = new SimpleUniprotRemoteService( queryService, null );
+        service.start();
+        service.retrieve( "P12345" );
+
+        // a single call must not stop the service the caller started
+        assertTrue( handler.started );
+
+        service.close();
+        assertFalse( handler.started );
+    }
+}
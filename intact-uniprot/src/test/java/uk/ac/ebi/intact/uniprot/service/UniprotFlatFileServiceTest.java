@@ -0,0 +1,136 @@
+package uk.ac.ebi.intact.uniprot.service;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import uk.ac.ebi.intact.uniprot.data.MockUniProtEntries;
+import uk.ac.ebi.intact.uniprot.model.UniprotProtein;
+import uk.ac.ebi.intact.uniprot.service.flatFile.UniprotEntryParser;
+import uk.ac.ebi.intact.uniprot.service.flatFile.UniprotFlatFileEntry;
+import uk.ac.ebi.kraken.interfaces.uniprot.UniProtEntry;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.Assert.*;
+
+/**
+ * UniprotFlatFileService Tester.
+ *
+ * @version $Id$
+ * @since 2.1.35
+ */
+public class UniprotFlatFileServiceTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Parses the entries of the file into the mock entries having the same UniProt ID.
+     */
+    private static final UniprotEntryParser MOCK_PARSER = new UniprotEntryParser() {
+        public UniProtEntry parse( UniprotFlatFileEntry entry ) {
+            if ( "CDC42_CANFA".equals( entry.getId() ) ) {
+                return MockUniProtEntries.build_P60952();
+            }
+            if ( "FAU_DROME".equals( entry.getId() ) ) {
+                return MockUniProtEntries.build_Q9VGX3();
+            }
+            throw new IllegalArgumentException( "Unexpected entry: " + entry.getId() );
+        }
+    };
+
+    private static File writeFlatFile( File file ) throws IOException {
+        OutputStream output = new FileOutputStream( file );
+        if ( file.getName().endsWith( ".gz" ) ) {
+            output = new GZIPOutputStream( output );
+        }
+        Writer writer = new OutputStreamWriter( output, "UTF-8" );
+        try {
+            writer.write( "ID   CDC42_CANFA             Reviewed;         191 AA.\n" );
+            writer.write( "AC   P60952; P21181; P25763;\n" );
+            writer.write( "DE   RecName: Full=Cell division control protein 42 homolog;\n" );
+            writer.write( "OX   NCBI_TaxID=9615;\n" );
+            writer.write( "FT   CHAIN           1..188\n" );
+            writer.write( "FT                   /note=\"Cell division control protein 42 homolog\"\n" );
+            writer.write( "FT                   /id=\"PRO_0000198543\"\n" );
+            writer.write( "SQ   SEQUENCE   191 AA;\n" );
+            writer.write( "     MQTIKCVVVG\n" );
+            writer.write( "//\n" );
+            writer.write( "ID   FAU_DROME               Reviewed;         476 AA.\n" );
+            writer.write( "AC   Q9VGX3; Q95S18; Q9VGX1; Q9VGX2; Q9Y0F9;\n" );
+            writer.write( "DE   RecName: Full=Protein anoxia up-regulated;\n" );
+            writer.write( "OX   NCBI_TaxID=7227;\n" );
+            writer.write( "SQ   SEQUENCE   476 AA;\n" );
+            writer.write( "     MNFLWKGRRF\n" );
+            writer.write( "//\n" );
+        } finally {
+            writer.close();
+        }
+        return file;
+    }
+
+    private static List<String> primaryAcs( Collection<UniprotProtein> proteins ) {
+        List<String> acs = new ArrayList<String>();
+        for ( UniprotProtein protein : proteins ) {
+            acs.add( protein.getPrimaryAc() );
+        }
+        return acs;
+    }
+
+    @Test
+    public void retrieve() throws Exception {
+        UniprotFlatFileService service =
+                new UniprotFlatFileService( writeFlatFile( folder.newFile( "uniprot.dat" ) ), MOCK_PARSER );
+
+        assertEquals( "[P60952]", primaryAcs( service.retrieve( "P60952" ) ).toString() );
+        assertEquals( "[P60952]", primaryAcs( service.retrieve( "p21181" ) ).toString() );
+        assertEquals( "[Q9VGX3]", primaryAcs( service.retrieve( "FAU_DROME" ) ).toString() );
+        assertTrue( service.getErrors().isEmpty() );
+
+        assertTrue( service.retrieve( "P12345" ).isEmpty() );
+        assertTrue( service.getErrors().containsKey( "P12345" ) );
+
+        // the index is built next to the file
+        assertTrue( new File( folder.getRoot(), "uniprot.dat" + UniprotFlatFileService.INDEX_SUFFIX ).isFile() );
+    }
+
+    @Test
+    public void getUniProtEntry_featureChain() throws Exception {
+        UniprotFlatFileService service =
+                new UniprotFlatFileService( writeFlatFile( folder.newFile( "uniprot.dat" ) ), MOCK_PARSER );
+
+        // with or without master protein
+        Iterator<UniProtEntry> entries = service.getUniProtEntry( "P60952-PRO_0000198543" );
+        assertEquals( "P60952", entries.next().getPrimaryUniProtAccession().getValue() );
+        assertFalse( entries.hasNext() );
+
+        entries = service.getUniProtEntry( "PRO_0000198543" );
+        assertEquals( "P60952", entries.next().getPrimaryUniProtAccession().getValue() );
+        assertFalse( entries.hasNext() );
+
+        assertFalse( service.getUniProtEntry( "PRO_0000000001" ).hasNext() );
+    }
+
+    @Test
+    public void retrieve_gzippedFile() throws Exception {
+        UniprotFlatFileService service =
+                new UniprotFlatFileService( writeFlatFile( folder.newFile( "uniprot.dat.gz" ) ), MOCK_PARSER );
+
+        // reported instead of thrown
+        assertTrue( service.retrieve( "P60952" ).isEmpty() );
+        assertTrue( service.getErrors().containsKey( "P60952" ) );
+
+        // can still be iterated over
+        List<UniprotProtein> proteins = new ArrayList<UniprotProtein>();
+        PrefetchingIterator<UniprotProtein> iterator = service.iterate( false );
+        while ( iterator.hasNext() ) {
+            proteins.add( iterator.next() );
+        }
+        assertEquals( "[P60952, Q9VGX3]", primaryAcs( proteins ).toString() );
+    }
+}
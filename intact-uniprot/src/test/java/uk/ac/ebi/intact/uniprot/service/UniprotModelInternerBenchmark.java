@@ -0,0 +1,57 @@
+package uk.ac.ebi.intact.uniprot.service;
+
+import uk.ac.ebi.intact.uniprot.data.MockUniProtEntries;
+import uk.ac.ebi.intact.uniprot.model.UniprotProtein;
+import uk.ac.ebi.intact.uniprot.service.codec.BinaryUniprotProteinCodec;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Measures the heap kept alive by a large set of cached proteins, decoded with and without a UniprotModelInterner
+ * as the CachedUniprotService and PersistentUniprotService do.
+ *
+ * Not a unit test: run its main method by hand, eg. with <code>mvn exec:java -Dexec.classpathScope=test</code>.
+ *
+ * @version $Id$
+ * @since 2.1.35
+ */
+public class UniprotModelInternerBenchmark {
+
+    private static final int PROTEINS = 50000;
+
+    public static void main( String[] args ) throws Exception {
+        UniprotRemoteService service = new UniprotRemoteService();
+
+        List<UniprotProtein> proteins = new ArrayList<UniprotProtein>();
+        proteins.add( service.buildUniprotProtein( MockUniProtEntries.build_P60952(), true ) );
+        proteins.add( service.buildUniprotProtein( MockUniProtEntries.build_Q9VGX3(), true ) );
+        byte[] bytes = new BinaryUniprotProteinCodec( null ).encode( proteins );
+
+        run( "without interner", new BinaryUniprotProteinCodec( null ), bytes );
+        run( "with interner", new BinaryUniprotProteinCodec( new UniprotModelInterner() ), bytes );
+    }
+
+    private static void run( String name, BinaryUniprotProteinCodec codec, byte[] bytes ) throws Exception {
+        long before = usedHeap();
+
+        List<Collection<UniprotProtein>> cached = new ArrayList<Collection<UniprotProtein>>( PROTEINS / 2 );
+        for ( int i = 0; i < PROTEINS / 2; i++ ) {
+            cached.add( codec.decode( bytes ) );
+        }
+
+        long after = usedHeap();
+        System.out.println( name + ": " + ( after - before ) / ( 1024 * 1024 ) + " MB for " + PROTEINS + " proteins, "
+                            + ( after - before ) / PROTEINS + " bytes/protein (" + cached.size() + ")" );
+    }
+
+    private static long usedHeap() throws InterruptedException {
+        Runtime runtime = Runtime.getRuntime();
+        for ( int i = 0; i < 3; i++ ) {
+            System.gc();
+            Thread.sleep( 100 );
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
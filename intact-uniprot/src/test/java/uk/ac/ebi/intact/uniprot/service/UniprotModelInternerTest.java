@@ -0,0 +1,68 @@
+package uk.ac.ebi.intact.uniprot.service;
+
+import org.junit.Test;
+import uk.ac.ebi.intact.uniprot.model.Organism;
+
+import static org.junit.Assert.*;
+
+/**
+ * UniprotModelInterner Tester.
+ *
+ * @version $Id$
+ * @since 2.1.35
+ */
+public class UniprotModelInternerTest {
+
+    @Test
+    public void intern_string() throws Exception {
+        UniprotModelInterner interner = new UniprotModelInterner();
+
+        String go = new String( "GO" );
+        assertSame( go, interner.intern( go ) );
+        assertSame( go, interner.intern( new String( "GO" ) ) );
+        assertNull( interner.intern( ( String ) null ) );
+        assertEquals( 1, interner.getStringCount() );
+    }
+
+    @Test
+    public void intern_organism() throws Exception {
+        UniprotModelInterner interner = new UniprotModelInterner();
+
+        Organism human = new Organism( 9606, "Homo sapiens" );
+        assertNull( interner.getOrganism( 9606 ) );
+        assertSame( human, interner.intern( human ) );
+        assertSame( human, interner.intern( new Organism( 9606, "Homo sapiens" ) ) );
+        assertSame( human, interner.getOrganism( 9606 ) );
+        assertEquals( 1, interner.getOrganismCount() );
+    }
+
+    @Test
+    public void intern_organismRenamed() throws Exception {
+        UniprotModelInterner interner = new UniprotModelInterner();
+
+        Organism human = new Organism( 9606, "Homo sapiens" );
+        interner.intern( human );
+
+        // the first name met does not hide a newer one
+        Organism renamed = new Organism( 9606, "Homo sapiens sapiens" );
+        assertSame( renamed, interner.intern( renamed ) );
+        assertSame( renamed, interner.getOrganism( 9606 ) );
+        assertSame( renamed, interner.intern( new Organism( 9606, "Homo sapiens sapiens" ) ) );
+        assertEquals( 1, interner.getOrganismCount() );
+    }
+
+    @Test
+    public void intern_full() throws Exception {
+        UniprotModelInterner interner = new UniprotModelInterner( 1, 1 );
+
+        interner.intern( "GO" );
+        String interPro = new String( "InterPro" );
+        assertSame( interPro, interner.intern( interPro ) );
+        assertNotSame( interPro, interner.intern( new String( "InterPro" ) ) );
+        assertEquals( 1, interner.getStringCount() );
+
+        interner.clear();
+        assertEquals( 0, interner.getStringCount() );
+        assertSame( interPro, interner.intern( interPro ) );
+    }
+}
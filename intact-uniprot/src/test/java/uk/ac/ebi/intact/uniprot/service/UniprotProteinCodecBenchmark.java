@@ -0,0 +1,63 @@
+package uk.ac.ebi.intact.uniprot.service;
+
+import uk.ac.ebi.intact.uniprot.data.MockUniProtEntries;
+import uk.ac.ebi.intact.uniprot.model.UniprotProtein;
+import uk.ac.ebi.intact.uniprot.service.codec.BinaryUniprotProteinCodec;
+import uk.ac.ebi.intact.uniprot.service.codec.JavaSerializationCodec;
+import uk.ac.ebi.intact.uniprot.service.codec.UniprotProteinCodec;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Compares the size and the encoding/decoding time of the UniprotProteinCodecs on the mock UniProt entries.
+ *
+ * Not a unit test: run its main method by hand, eg. with <code>mvn exec:java -Dexec.classpathScope=test</code>.
+ *
+ * @version $Id$
+ * @since 2.1.35
+ */
+public class UniprotProteinCodecBenchmark {
+
+    private static final int WARMUP_ITERATIONS = 20000;
+
+    private static final int ITERATIONS = 100000;
+
+    public static void main( String[] args ) throws Exception {
+        UniprotRemoteService service = new UniprotRemoteService();
+
+        List<UniprotProtein> proteins = new ArrayList<UniprotProtein>();
+        proteins.add( service.buildUniprotProtein( MockUniProtEntries.build_P60952(), true ) );
+        proteins.add( service.buildUniprotProtein( MockUniProtEntries.build_Q9VGX3(), true ) );
+
+        run( new JavaSerializationCodec(), proteins );
+        run( new BinaryUniprotProteinCodec(), proteins );
+    }
+
+    private static void run( UniprotProteinCodec codec, Collection<UniprotProtein> proteins ) throws Exception {
+        byte[] bytes = codec.encode( proteins );
+
+        long sink = 0;
+        for ( int i = 0; i < WARMUP_ITERATIONS; i++ ) {
+            sink += codec.encode( proteins ).length;
+            sink += codec.decode( bytes ).size();
+        }
+
+        long start = System.nanoTime();
+        for ( int i = 0; i < ITERATIONS; i++ ) {
+            sink += codec.encode( proteins ).length;
+        }
+        long encodeTime = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for ( int i = 0; i < ITERATIONS; i++ ) {
+            sink += codec.decode( bytes ).size();
+        }
+        long decodeTime = System.nanoTime() - start;
+
+        System.out.println( codec.getClass().getSimpleName() + ": " + bytes.length + " bytes, encode "
+                            + ( encodeTime / ITERATIONS ) + " ns/op, decode " + ( decodeTime / ITERATIONS )
+                            + " ns/op (" + sink + ")" );
+    }
+}
@@ -0,0 +1,65 @@
+package uk.ac.ebi.intact.uniprot.service;
+
+import uk.ac.ebi.intact.uniprot.data.MockUniProtEntries;
+import uk.ac.ebi.kraken.interfaces.uniprot.UniProtEntry;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * Measures the conversion of the mock UniProt entries into UniprotProteins: entries per second and bytes allocated
+ * per entry.
+ *
+ * Not a unit test: run its main method by hand, eg. with <code>mvn exec:java -Dexec.classpathScope=test</code>. The
+ * allocated bytes are only reported on JVMs providing per thread allocation counters (eg. HotSpot).
+ *
+ * @version $Id$
+ * @since 2.1.35
+ */
+public class UniprotProteinConversionBenchmark {
+
+    private static final int WARMUP_ITERATIONS = 20000;
+
+    private static final int ITERATIONS = 100000;
+
+    public static void main( String[] args ) throws Exception {
+        SimpleUniprotRemoteService service = new SimpleUniprotRemoteService();
+
+        // the mock entries have no external isoform, the conversion does not reach UniProt
+        UniProtEntry[] entries = new UniProtEntry[]{MockUniProtEntries.build_P60952(), MockUniProtEntries.build_Q9VGX3()};
+
+        run( service, entries, false );
+        run( service, entries, true );
+    }
+
+    private static void run( SimpleUniprotRemoteService service, UniProtEntry[] entries, boolean spliceVariants ) {
+        long sink = 0;
+        for ( int i = 0; i < WARMUP_ITERATIONS; i++ ) {
+            sink += service.buildUniprotProtein( entries[i % entries.length], spliceVariants ).getSequenceLength();
+        }
+
+        long allocatedBefore = allocatedBytes();
+        long start = System.nanoTime();
+        for ( int i = 0; i < ITERATIONS; i++ ) {
+            sink += service.buildUniprotProtein( entries[i % entries.length], spliceVariants ).getSequenceLength();
+        }
+        long time = System.nanoTime() - start;
+        long allocated = allocatedBytes() - allocatedBefore;
+
+        System.out.println( "buildUniprotProtein(spliceVariants=" + spliceVariants + "): "
+                            + ( ITERATIONS * 1000000000L / time ) + " entries/s, "
+                            + ( allocatedBefore < 0 ? "n/a" : String.valueOf( allocated / ITERATIONS ) )
+                            + " bytes/entry (" + sink + ")" );
+    }
+
+    private static long allocatedBytes() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if ( bean instanceof com.sun.management.ThreadMXBean ) {
+            com.sun.management.ThreadMXBean hotspotBean = ( com.sun.management.ThreadMXBean ) bean;
+            if ( hotspotBean.isThreadAllocatedMemorySupported() ) {
+                return hotspotBean.getThreadAllocatedBytes( Thread.currentThread().getId() );
+            }
+        }
+        return -1;
+    }
+}
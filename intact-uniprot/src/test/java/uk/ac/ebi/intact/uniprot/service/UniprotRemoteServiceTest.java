@@ -9,6 +9,7 @@ import uk.ac.ebi.intact.uniprot.data.MockUniProtEntries;
 import uk.ac.ebi.intact.uniprot.model.*;
 import uk.ac.ebi.intact.uniprot.service.referenceFilter.CrossReferenceFilter;
 import uk.ac.ebi.kraken.interfaces.uniprot.UniProtEntry;
+import uk.ac.ebi.uniprot.dataservice.client.uniprot.UniProtQueryBuilder;
 
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
@@ -470,6 +471,67 @@ public class UniprotRemoteServiceTest {
                 "AISDKCEHRAFEPASTAVQPYQDQEYQPIYYVAESFEDAKDKFRRWVSTMSRPFEVRFNP" +
                 "HTERVEVLDSVDKLETLVHQMNTEILHLTNAISKLRRPF", chain.getSequence() );
     }
+
+    @Test
+    public void retrieveInBatch() throws UniprotServiceException {
+        SimpleUniprotRemoteService uniprot = new SimpleUniprotRemoteService();
+        uniprot.setBatchSize( 2 );
+
+        Map<String, Collection<UniprotProtein>> proteins =
+                uniprot.retrieve( Arrays.asList( "P06493", "CDK1_HUMAN", "P18459", "Q13535-1", "XXXXXX" ) );
+
+        assertEquals( 5, proteins.size() );
+        assertEquals( "P06493", proteins.get( "P06493" ).iterator().next().getPrimaryAc() );
+        assertEquals( "P06493", proteins.get( "CDK1_HUMAN" ).iterator().next().getPrimaryAc() );
+        assertEquals( "P18459", proteins.get( "P18459" ).iterator().next().getPrimaryAc() );
+        assertEquals( "ATR_HUMAN", proteins.get( "Q13535-1" ).iterator().next().getId() );
+
+        assertTrue( proteins.get( "XXXXXX" ).isEmpty() );
+        assertTrue( uniprot.getErrors().containsKey( "XXXXXX" ) );
+    }
+
+    @Test
+    public void retrieveAnyInBatch() throws UniprotServiceException {
+        SimpleUniprotRemoteService uniprot = new SimpleUniprotRemoteService();
+
+        Map<String, Collection<UniprotProteinLike>> proteins =
+                uniprot.retrieveAny( Arrays.asList( "Q13535", "Q13535-1", "P97887-PRO_0000025599", "XXXXXX" ) );
+
+        assertEquals( 4, proteins.size() );
+        assertEquals( "Q13535", proteins.get( "Q13535" ).iterator().next().getPrimaryAc() );
+
+        Set<String> spliceVariantAcs = new HashSet<String>();
+        for ( UniprotProteinLike protein : proteins.get( "Q13535-1" ) ) {
+            spliceVariantAcs.add( protein.getPrimaryAc() );
+        }
+        assertEquals( new HashSet<String>( Arrays.asList( "Q13535", "Q13535-1" ) ), spliceVariantAcs );
+
+        UniprotProteinLike chain = null;
+        for ( UniprotProteinLike protein : proteins.get( "P97887-PRO_0000025599" ) ) {
+            if ( protein instanceof UniprotFeatureChain ) {
+                chain = protein;
+            }
+        }
+        assertNotNull( chain );
+        assertEquals( "P97887", ( ( UniprotFeatureChain ) chain ).getMasterProtein().getPrimaryAc() );
+
+        assertTrue( proteins.get( "XXXXXX" ).isEmpty() );
+    }
+
+    @Test
+    public void iterate() throws UniprotServiceException {
+        SimpleUniprotRemoteService uniprot = new SimpleUniprotRemoteService();
+
+        PrefetchingIterator<UniprotProtein> proteins =
+                uniprot.iterate( UniProtQueryBuilder.accession( "P06493" ).or( UniProtQueryBuilder.accession( "P18459" ) ), true );
+
+        Set<String> primaryAcs = new HashSet<String>();
+        while ( proteins.hasNext() ) {
+            primaryAcs.add( proteins.next().getPrimaryAc() );
+        }
+
+        assertEquals( new HashSet<String>( Arrays.asList( "P06493", "P18459" ) ), primaryAcs );
+    }
     
 //TODO: Needs to be checked!! 
 //    @Test
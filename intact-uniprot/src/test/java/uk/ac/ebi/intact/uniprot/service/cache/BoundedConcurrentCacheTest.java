@@ -0,0 +1,106 @@
+package uk.ac.ebi.intact.uniprot.service.cache;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * BoundedConcurrentCache Tester.
+ *
+ * @version $Id$
+ * @since 2.1.35
+ */
+public class BoundedConcurrentCacheTest {
+
+    @Test
+    public void get_put() throws Exception {
+        BoundedConcurrentCache<String, String> cache = new BoundedConcurrentCache<String, String>( 10 );
+
+        assertNull( cache.get( "P12345" ) );
+        cache.put( "P12345", "protein" );
+        assertEquals( "protein", cache.get( "P12345" ) );
+
+        assertEquals( 1, cache.size() );
+        assertEquals( 1, cache.getHitCount() );
+        assertEquals( 1, cache.getMissCount() );
+
+        assertEquals( "protein", cache.remove( "P12345" ) );
+        assertNull( cache.get( "P12345" ) );
+    }
+
+    @Test
+    public void put_evictsLeastRecentlyUsed() throws Exception {
+        BoundedConcurrentCache<String, String> cache = new BoundedConcurrentCache<String, String>( 2, false, 1 );
+
+        cache.put( "A", "a" );
+        cache.put( "B", "b" );
+        cache.get( "A" );
+        cache.put( "C", "c" );
+
+        assertEquals( 2, cache.size() );
+        assertEquals( "a", cache.get( "A" ) );
+        assertNull( cache.get( "B" ) );
+        assertEquals( "c", cache.get( "C" ) );
+        assertEquals( 1, cache.getEvictionCount() );
+    }
+
+    @Test
+    public void put_neverExceedsMaxSize() throws Exception {
+        BoundedConcurrentCache<Integer, String> cache = new BoundedConcurrentCache<Integer, String>( 100 );
+
+        for ( int i = 0; i < 1000; i++ ) {
+            cache.put( i, String.valueOf( i ) );
+        }
+
+        assertTrue( cache.size() <= 100 );
+        assertEquals( 1000 - cache.size(), cache.getEvictionCount() );
+    }
+
+    @Test
+    public void softValues() throws Exception {
+        BoundedConcurrentCache<String, String> cache = new BoundedConcurrentCache<String, String>( 10, true );
+        assertTrue( cache.isSoftValues() );
+
+        String value = new String( "protein" );
+        cache.put( "P12345", value );
+        assertSame( value, cache.get( "P12345" ) );
+    }
+
+    @Test
+    public void concurrentAccess() throws Exception {
+        final BoundedConcurrentCache<Integer, Integer> cache = new BoundedConcurrentCache<Integer, Integer>( 50 );
+
+        ExecutorService executor = Executors.newFixedThreadPool( 8 );
+        List<Future<?>> futures = new ArrayList<Future<?>>();
+        for ( int t = 0; t < 8; t++ ) {
+            final int offset = t * 1000;
+            futures.add( executor.submit( new Runnable() {
+                public void run() {
+                    for ( int i = 0; i < 1000; i++ ) {
+                        cache.put( offset + i, i );
+                        Integer value = cache.get( offset + i / 2 );
+                        if ( value != null ) {
+                            assertEquals( Integer.valueOf( i / 2 ), value );
+                        }
+                    }
+                }
+            } ) );
+        }
+        for ( Future<?> future : futures ) {
+            future.get( 30, TimeUnit.SECONDS );
+        }
+        executor.shutdown();
+
+        assertTrue( cache.size() <= 50 );
+        assertEquals( 8000, cache.getHitCount() + cache.getMissCount() );
+    }
+
+    @Test( expected = IllegalArgumentException.class )
+    public void constructor_noCapacity() throws Exception {
+        new BoundedConcurrentCache<String, String>( 0 );
+    }
+}
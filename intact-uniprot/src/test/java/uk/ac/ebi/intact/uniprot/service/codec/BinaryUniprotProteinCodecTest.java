@@ -0,0 +1,164 @@
+package uk.ac.ebi.intact.uniprot.service.codec;
+
+import org.junit.Test;
+import uk.ac.ebi.intact.uniprot.model.*;
+import uk.ac.ebi.intact.uniprot.service.UniprotModelInterner;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * BinaryUniprotProteinCodec Tester.
+ *
+ * @version $Id$
+ * @since 2.1.35
+ */
+public class BinaryUniprotProteinCodecTest {
+
+    private UniprotProtein buildProtein() {
+        Organism human = new Organism( 9606, "Homo sapiens" );
+        human.setCommonName( "Human" );
+        human.getParents().add( "Eukaryota" );
+        human.getParents().add( "Metazoa" );
+
+        UniprotProtein protein = new UniprotProtein( "CDC2_HUMAN", "P06493", human, "Cell division control protein 2 homolog" );
+        protein.getSecondaryAcs().add( "P04551" );
+        protein.getGenes().add( "CDK1" );
+        protein.getSynomyms().add( "CDC2" );
+        protein.getOrfs().add( "ORF1" );
+        protein.getKeywords().add( "ATP-binding" );
+        protein.getKeywords().add( "Cell cycle" );
+        protein.getDiseases().add( "Some disease" );
+        protein.getFunctions().add( "Plays a key role in the control of the eukaryotic cell cycle." );
+        protein.getCrossReferences().add( new UniprotXref( "GO:0005524", "GO", "F:ATP binding" ) );
+        protein.getCrossReferences().add( new UniprotXref( "GO:0007049", "GO", "P:cell cycle" ) );
+        protein.getCrossReferences().add( new UniprotXref( "IPR000719", "InterPro" ) );
+        protein.setCrc64( "A5D5C5E2A0C0B8B4" );
+        protein.setSequence( "MEDYTKIEKIGEGTYGVVYK" );
+        protein.setSequenceLength( 20 );
+        protein.setReleaseVersion( "126" );
+        protein.setLastAnnotationUpdate( new Date( 1000000000000L ) );
+        protein.setLastSequenceUpdate( new Date( 900000000000L ) );
+        protein.setSource( UniprotProteinType.SWISSPROT );
+
+        UniprotSpliceVariant spliceVariant = new UniprotSpliceVariant( "P06493-2", human, "MEDYTKIEK" );
+        spliceVariant.getSecondaryAcs().add( "P06493-3" );
+        spliceVariant.getSynomyms().add( "2" );
+        spliceVariant.setNote( "Lacks exon 5" );
+        spliceVariant.setStart( 1 );
+        spliceVariant.setEnd( 9 );
+        spliceVariant.setMasterProtein( protein );
+        protein.getSpliceVariants().add( spliceVariant );
+
+        UniprotFeatureChain featureChain = new UniprotFeatureChain( "PRO_0000085724", human, "DYTKIEK" );
+        featureChain.setDescription( "Mature chain" );
+        featureChain.setStart( 3 );
+        featureChain.setEnd( -1 );
+        featureChain.setMasterProtein( protein );
+        protein.getFeatureChains().add( featureChain );
+
+        return protein;
+    }
+
+    @Test
+    public void encode_decode() throws Exception {
+        UniprotProteinCodec codec = new BinaryUniprotProteinCodec( new UniprotModelInterner() );
+        UniprotProtein original = buildProtein();
+
+        Collection<UniprotProtein> proteins = codec.decode( codec.encode( Collections.singletonList( original ) ) );
+        assertEquals( 1, proteins.size() );
+        UniprotProtein protein = proteins.iterator().next();
+
+        assertEquals( "CDC2_HUMAN", protein.getId() );
+        assertEquals( "P06493", protein.getPrimaryAc() );
+        assertEquals( original.getSecondaryAcs(), protein.getSecondaryAcs() );
+        assertEquals( original.getDescription(), protein.getDescription() );
+        assertEquals( 9606, protein.getOrganism().getTaxid() );
+        assertEquals( "Homo sapiens", protein.getOrganism().getName() );
+        assertEquals( "Human", protein.getOrganism().getCommonName() );
+        assertEquals( original.getOrganism().getParents(), protein.getOrganism().getParents() );
+        assertEquals( new ArrayList<String>( original.getGenes() ), new ArrayList<String>( protein.getGenes() ) );
+        assertEquals( new ArrayList<String>( original.getSynomyms() ), new ArrayList<String>( protein.getSynomyms() ) );
+        assertEquals( new ArrayList<String>( original.getOrfs() ), new ArrayList<String>( protein.getOrfs() ) );
+        assertEquals( new ArrayList<String>( original.getKeywords() ), new ArrayList<String>( protein.getKeywords() ) );
+        assertEquals( new ArrayList<String>( original.getDiseases() ), new ArrayList<String>( protein.getDiseases() ) );
+        assertEquals( new ArrayList<String>( original.getFunctions() ), new ArrayList<String>( protein.getFunctions() ) );
+        assertEquals( new ArrayList<UniprotXref>( original.getCrossReferences() ), new ArrayList<UniprotXref>( protein.getCrossReferences() ) );
+        assertEquals( "A5D5C5E2A0C0B8B4", protein.getCrc64() );
+        assertEquals( "MEDYTKIEKIGEGTYGVVYK", protein.getSequence() );
+        assertEquals( 20, protein.getSequenceLength() );
+        assertEquals( "126", protein.getReleaseVersion() );
+        assertEquals( original.getLastAnnotationUpdate(), protein.getLastAnnotationUpdate() );
+        assertEquals( original.getLastSequenceUpdate(), protein.getLastSequenceUpdate() );
+        assertEquals( UniprotProteinType.SWISSPROT, protein.getSource() );
+
+        assertEquals( 1, protein.getSpliceVariants().size() );
+        UniprotSpliceVariant spliceVariant = protein.getSpliceVariants().iterator().next();
+        assertEquals( "P06493-2", spliceVariant.getPrimaryAc() );
+        assertEquals( "MEDYTKIEK", spliceVariant.getSequence() );
+        assertEquals( Arrays.asList( "P06493-3" ), spliceVariant.getSecondaryAcs() );
+        assertEquals( Arrays.asList( "2" ), new ArrayList<String>( spliceVariant.getSynomyms() ) );
+        assertEquals( "Lacks exon 5", spliceVariant.getNote() );
+        assertEquals( Integer.valueOf( 1 ), spliceVariant.getStart() );
+        assertEquals( Integer.valueOf( 9 ), spliceVariant.getEnd() );
+        assertSame( protein, spliceVariant.getMasterProtein() );
+        assertSame( protein.getOrganism(), spliceVariant.getOrganism() );
+
+        assertEquals( 1, protein.getFeatureChains().size() );
+        UniprotFeatureChain featureChain = protein.getFeatureChains().iterator().next();
+        assertEquals( "PRO_0000085724", featureChain.getPrimaryAc() );
+        assertEquals( "DYTKIEK", featureChain.getSequence() );
+        assertEquals( "Mature chain", featureChain.getDescription() );
+        assertEquals( Integer.valueOf( 3 ), featureChain.getStart() );
+        assertEquals( Integer.valueOf( -1 ), featureChain.getEnd() );
+        assertSame( protein, featureChain.getMasterProtein() );
+    }
+
+    @Test
+    public void encode_smallerThanJavaSerialization() throws Exception {
+        List<UniprotProtein> proteins = Arrays.asList( buildProtein(), buildProtein() );
+
+        byte[] binary = new BinaryUniprotProteinCodec().encode( proteins );
+        byte[] serialized = new JavaSerializationCodec().encode( proteins );
+
+        assertTrue( binary.length < serialized.length );
+        assertEquals( 2, new BinaryUniprotProteinCodec().decode( binary ).size() );
+    }
+
+    @Test
+    public void decode_nullValues() throws Exception {
+        UniprotProteinCodec codec = new BinaryUniprotProteinCodec( new UniprotModelInterner() );
+        UniprotProtein original = new UniprotProtein( "ABC_HUMAN", "P12345", new Organism( 9606 ), null );
+
+        UniprotProtein protein = codec.decode( codec.encode( Collections.singletonList( original ) ) ).iterator().next();
+
+        assertEquals( "P12345", protein.getPrimaryAc() );
+        assertNull( protein.getDescription() );
+        assertNull( protein.getOrganism().getName() );
+        assertNull( protein.getSequence() );
+        assertNull( protein.getLastAnnotationUpdate() );
+        assertNull( protein.getSource() );
+        assertTrue( protein.getCrossReferences().isEmpty() );
+    }
+
+    @Test
+    public void decode_sharesValuesAcrossBlocks() throws Exception {
+        UniprotProteinCodec codec = new BinaryUniprotProteinCodec( new UniprotModelInterner() );
+        byte[] bytes = codec.encode( Collections.singletonList( buildProtein() ) );
+
+        UniprotProtein first = codec.decode( bytes ).iterator().next();
+        UniprotProtein second = codec.decode( bytes ).iterator().next();
+
+        assertNotSame( first, second );
+        assertSame( first.getOrganism(), second.getOrganism() );
+        assertSame( first.getKeywords().iterator().next(), second.getKeywords().iterator().next() );
+        assertSame( first.getCrossReferences().iterator().next().getDatabase(),
+                    second.getCrossReferences().iterator().next().getDatabase() );
+    }
+
+    @Test( expected = java.io.IOException.class )
+    public void decode_unknownVersion() throws Exception {
+        new BinaryUniprotProteinCodec().decode( new byte[]{ 42, 0 } );
+    }
+}
@@ -0,0 +1,58 @@
+package uk.ac.ebi.intact.uniprot.service.crossRefAdapter;
+
+import uk.ac.ebi.intact.uniprot.data.MockUniProtEntries;
+import uk.ac.ebi.kraken.interfaces.uniprot.DatabaseCrossReference;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Measures the cross references converted per second by the ReflectionCrossReferenceBuilder, on the cross references
+ * of the mock UniProt entries, with a builder created per entry (as it used to be) and with a shared one.
+ *
+ * Not a unit test: run its main method by hand, eg. with <code>mvn exec:java -Dexec.classpathScope=test</code>.
+ *
+ * @version $Id$
+ * @since 2.1.35
+ */
+public class CrossReferenceBuilderBenchmark {
+
+    private static final int WARMUP_ITERATIONS = 20000;
+
+    private static final int ITERATIONS = 200000;
+
+    public static void main( String[] args ) throws Exception {
+        List<DatabaseCrossReference> xrefs = new ArrayList<DatabaseCrossReference>();
+        xrefs.addAll( MockUniProtEntries.build_P60952().getDatabaseCrossReferences() );
+        xrefs.addAll( MockUniProtEntries.build_Q9VGX3().getDatabaseCrossReferences() );
+
+        run( "builder per entry", xrefs, false );
+        run( "shared builder", xrefs, true );
+    }
+
+    private static void run( String name, List<DatabaseCrossReference> xrefs, boolean shared ) {
+        ReflectionCrossReferenceBuilder sharedBuilder = new ReflectionCrossReferenceBuilder();
+
+        long sink = 0;
+        for ( int i = 0; i < WARMUP_ITERATIONS; i++ ) {
+            sink += convert( shared ? sharedBuilder : new ReflectionCrossReferenceBuilder(), xrefs );
+        }
+
+        long start = System.nanoTime();
+        for ( int i = 0; i < ITERATIONS; i++ ) {
+            sink += convert( shared ? sharedBuilder : new ReflectionCrossReferenceBuilder(), xrefs );
+        }
+        long time = System.nanoTime() - start;
+
+        System.out.println( name + ": " + ( ( long ) ITERATIONS * xrefs.size() * 1000000000L / time )
+                            + " xrefs/s (" + sink + ")" );
+    }
+
+    private static int convert( ReflectionCrossReferenceBuilder builder, List<DatabaseCrossReference> xrefs ) {
+        int count = 0;
+        for ( DatabaseCrossReference xref : xrefs ) {
+            count += builder.build( xref ).size();
+        }
+        return count;
+    }
+}
@@ -0,0 +1,98 @@
+package uk.ac.ebi.intact.uniprot.service.crossRefAdapter;
+
+import org.junit.Test;
+import uk.ac.ebi.kraken.interfaces.uniprot.DatabaseCrossReference;
+import uk.ac.ebi.kraken.interfaces.uniprot.DatabaseType;
+import uk.ac.ebi.kraken.model.factories.DefaultXRefFactory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * ReflectionCrossReferenceBuilder Tester.
+ *
+ * @version $Id$
+ * @since 2.1.35
+ */
+public class ReflectionCrossReferenceBuilderTest {
+
+    private static DatabaseCrossReference buildXref( DatabaseType database, String id ) {
+        DefaultXRefFactory factory = DefaultXRefFactory.getInstance();
+
+        DatabaseCrossReference xref = factory.buildDatabaseCrossReference( database );
+        xref.setPrimaryId( factory.buildXDBAttribute( id ) );
+
+        return xref;
+    }
+
+    private static List<String> ids( Collection<UniprotCrossReference> xrefs ) {
+        List<String> ids = new ArrayList<String>();
+        for ( UniprotCrossReference xref : xrefs ) {
+            ids.add( xref.getAccessionNumber() );
+        }
+        return ids;
+    }
+
+    @Test
+    public void build_primaryIdByDefault() throws Exception {
+        ReflectionCrossReferenceBuilder builder = new ReflectionCrossReferenceBuilder();
+
+        Collection<UniprotCrossReference> xrefs = builder.build( buildXref( DatabaseType.INTERPRO, "IPR000719" ) );
+
+        assertEquals( 1, xrefs.size() );
+        UniprotCrossReference xref = xrefs.iterator().next();
+        assertEquals( "IPR000719", xref.getAccessionNumber() );
+        assertEquals( DatabaseType.INTERPRO.getName(), xref.getDatabase() );
+        assertNull( xref.getDescription() );
+    }
+
+    @Test
+    public void build_ensemblExtraIds() throws Exception {
+        DefaultXRefFactory factory = DefaultXRefFactory.getInstance();
+        DatabaseCrossReference ensembl = buildXref( DatabaseType.ENSEMBL, "ENST00000373993" );
+        ensembl.setDescription( factory.buildXDBAttribute( "ENSP00000363105" ) );
+        ensembl.setThird( factory.buildXDBAttribute( "ENSG00000102054" ) );
+        ensembl.setFourth( factory.buildXDBAttribute( " " ) );
+
+        Collection<UniprotCrossReference> xrefs = new ReflectionCrossReferenceBuilder().build( ensembl );
+
+        assertEquals( 3, xrefs.size() );
+        List<String> expected = new ArrayList<String>();
+        Collections.addAll( expected, "ENST00000373993", "ENSP00000363105", "ENSG00000102054" );
+        assertEquals( expected, ids( xrefs ) );
+        for ( UniprotCrossReference xref : xrefs ) {
+            assertEquals( DatabaseType.ENSEMBL.getName(), xref.getDatabase() );
+        }
+    }
+
+    @Test
+    public void register_overridesExtractor() throws Exception {
+        ReflectionCrossReferenceBuilder builder = new ReflectionCrossReferenceBuilder();
+        DefaultXRefFactory factory = DefaultXRefFactory.getInstance();
+        DatabaseCrossReference ensembl = buildXref( DatabaseType.ENSEMBL, "ENST00000373993" );
+        ensembl.setDescription( factory.buildXDBAttribute( "ENSP00000363105" ) );
+
+        // resolved before the registration
+        assertEquals( 2, builder.build( ensembl ).size() );
+
+        builder.register( "ENSEMBL", ReflectionCrossReferenceBuilder.PRIMARY_ID_EXTRACTOR );
+        assertEquals( Collections.singletonList( "ENST00000373993" ), ids( builder.build( ensembl ) ) );
+
+        builder.register( "interpro", new CrossReferenceExtractor() {
+            public Collection<UniprotCrossReference> extract( DatabaseCrossReference crossRef, String db ) {
+                return Collections.singletonList( new UniprotCrossReference( crossRef.getPrimaryId().toString(), db, "custom" ) );
+            }
+        } );
+        Collection<UniprotCrossReference> xrefs = builder.build( buildXref( DatabaseType.INTERPRO, "IPR000719" ) );
+        assertEquals( "custom", xrefs.iterator().next().getDescription() );
+    }
+
+    @Test( expected = IllegalArgumentException.class )
+    public void register_nullExtractor() throws Exception {
+        new ReflectionCrossReferenceBuilder().register( "Ensembl", null );
+    }
+}
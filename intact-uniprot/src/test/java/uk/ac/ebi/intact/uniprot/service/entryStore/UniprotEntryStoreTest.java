@@ -0,0 +1,164 @@
+package uk.ac.ebi.intact.uniprot.service.entryStore;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import uk.ac.ebi.intact.uniprot.model.Organism;
+import uk.ac.ebi.intact.uniprot.model.UniprotProtein;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+/**
+ * UniprotEntryStore Tester.
+ *
+ * @version $Id$
+ * @since 2.1.35
+ */
+public class UniprotEntryStoreTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static UniprotProtein newProtein( String ac ) {
+        UniprotProtein protein = new UniprotProtein( ac + "_HUMAN", ac, new Organism( 9606, "human" ), "protein " + ac );
+        protein.setSequence( "MAAAK" );
+        return protein;
+    }
+
+    /**
+     * Stores P11111, P22222 and P33333 and closes the store.
+     */
+    private File newStore() throws Exception {
+        File directory = folder.newFolder( "store" );
+        UniprotEntryStore store = new UniprotEntryStore( directory, "2016_09" );
+        for ( String ac : new String[]{"P11111", "P22222", "P33333"} ) {
+            store.put( ac, Collections.singletonList( newProtein( ac ) ) );
+        }
+        store.close();
+        return directory;
+    }
+
+    /**
+     * @return the offset of the record storing the given AC.
+     */
+    private static long recordOffset( File dataFile, String ac ) throws Exception {
+        String content = new String( readFully( dataFile ), "ISO-8859-1" );
+        // record length and checksum, record type and length of the AC
+        return content.indexOf( ac ) - 8 - 1 - 2;
+    }
+
+    private static byte[] readFully( File file ) throws Exception {
+        RandomAccessFile data = new RandomAccessFile( file, "r" );
+        try {
+            byte[] bytes = new byte[( int ) data.length()];
+            data.readFully( bytes );
+            return bytes;
+        } finally {
+            data.close();
+        }
+    }
+
+    private static void overwrite( File file, long position, byte[] bytes ) throws Exception {
+        RandomAccessFile data = new RandomAccessFile( file, "rw" );
+        try {
+            data.seek( position );
+            data.write( bytes );
+        } finally {
+            data.close();
+        }
+    }
+
+    @Test
+    public void get_afterRestart() throws Exception {
+        File directory = newStore();
+
+        UniprotEntryStore store = new UniprotEntryStore( directory, "2016_09" );
+        assertEquals( 3, store.size() );
+        Collection<UniprotProtein> proteins = store.get( "P22222_HUMAN" );
+        assertEquals( "P22222", proteins.iterator().next().getPrimaryAc() );
+        assertEquals( "MAAAK", proteins.iterator().next().getSequence() );
+        store.close();
+    }
+
+    @Test
+    public void get_damagedContentIsSkipped() throws Exception {
+        File directory = newStore();
+        File dataFile = new File( directory, UniprotEntryStore.DATA_FILE_NAME );
+        overwrite( dataFile, recordOffset( dataFile, "P22222" ) + 12, "X".getBytes( "ISO-8859-1" ) );
+
+        UniprotEntryStore store = new UniprotEntryStore( directory, "2016_09" );
+        assertEquals( 2, store.size() );
+        assertNull( store.get( "P22222" ) );
+        assertNotNull( store.get( "P33333" ) );
+        store.close();
+    }
+
+    @Test
+    public void get_damagedLengthIsSkipped() throws Exception {
+        File directory = newStore();
+        File dataFile = new File( directory, UniprotEntryStore.DATA_FILE_NAME );
+        overwrite( dataFile, recordOffset( dataFile, "P22222" ), new byte[]{0x7F, 0, 0, 0} );
+
+        UniprotEntryStore store = new UniprotEntryStore( directory, "2016_09" );
+        assertEquals( 2, store.size() );
+        assertNotNull( store.get( "P11111" ) );
+        assertNull( store.get( "P22222" ) );
+        assertNotNull( store.get( "P33333" ) );
+
+        // appending after the damaged record keeps the store readable
+        store.put( "P44444", Collections.singletonList( newProtein( "P44444" ) ) );
+        store.close();
+
+        store = new UniprotEntryStore( directory, "2016_09" );
+        assertEquals( 3, store.size() );
+        assertNotNull( store.get( "P44444" ) );
+        store.close();
+    }
+
+    @Test
+    public void get_aliasOfDamagedEntryIsMiss() throws Exception {
+        File directory = folder.newFolder( "store" );
+        UniprotEntryStore store = new UniprotEntryStore( directory, "2016_09" );
+        store.put( "Q99999", Collections.singletonList( newProtein( "P11111" ) ) );
+        store.put( "Q88888", Arrays.asList( newProtein( "P22222" ), newProtein( "P33333" ) ) );
+        store.close();
+
+        File dataFile = new File( directory, UniprotEntryStore.DATA_FILE_NAME );
+        overwrite( dataFile, recordOffset( dataFile, "P11111" ) + 12, "X".getBytes( "ISO-8859-1" ) );
+        overwrite( dataFile, recordOffset( dataFile, "P33333" ) + 12, "X".getBytes( "ISO-8859-1" ) );
+
+        store = new UniprotEntryStore( directory, "2016_09" );
+        assertEquals( 1, store.size() );
+        assertNull( store.get( "Q99999" ) );
+        assertNull( store.get( "Q88888" ) );
+        assertNotNull( store.get( "P22222" ) );
+
+        // looked up again
+        store.put( "Q99999", Collections.singletonList( newProtein( "P11111" ) ) );
+        assertEquals( "P11111", store.get( "Q99999" ).iterator().next().getPrimaryAc() );
+        store.close();
+    }
+
+    @Test
+    public void clear_hidesPreviousRecords() throws Exception {
+        File directory = newStore();
+
+        UniprotEntryStore store = new UniprotEntryStore( directory, "2016_09" );
+        store.get( "P11111" );
+        store.clear();
+        store.put( "P44444", Collections.singletonList( newProtein( "P44444" ) ) );
+        store.close();
+
+        store = new UniprotEntryStore( directory, "2016_09" );
+        assertEquals( 1, store.size() );
+        assertNull( store.get( "P11111" ) );
+        assertNotNull( store.get( "P44444" ) );
+        store.close();
+    }
+}
@@ -0,0 +1,119 @@
+package uk.ac.ebi.intact.uniprot.service.flatFile;
+
+import java.io.File;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Measures the reading of a UniProtKB flat file: entries per second read sequentially and split across threads,
+ * index build time and lookups per second.
+ *
+ * Not a unit test: run its main method by hand, eg. with <code>mvn exec:java -Dexec.classpathScope=test
+ * -Dexec.args="uniprot_sprot.dat 4"</code>. Without a file, a synthetic one of 200000 entries is used. The parsing
+ * and conversion of the entries are not measured here: they depend on the UniprotEntryParser plugged in.
+ *
+ * @version $Id$
+ * @since 2.1.35
+ */
+public class UniprotFlatFileBenchmark {
+
+    private static final int SYNTHETIC_ENTRIES = 200000;
+
+    private static final int LOOKUPS = 100000;
+
+    public static void main( String[] args ) throws Exception {
+        File file;
+        if ( args.length > 0 ) {
+            file = new File( args[0] );
+        } else {
+            file = File.createTempFile( "uniprot", ".dat" );
+            file.deleteOnExit();
+            UniprotFlatFileReaderTest.writeFlatFile( file, SYNTHETIC_ENTRIES );
+        }
+        int threads = args.length > 1 ? Integer.parseInt( args[1] ) : Runtime.getRuntime().availableProcessors();
+
+        // warm up and sequential read
+        read( file, 1 );
+        read( file, 1 );
+        read( file, threads );
+
+        File indexFile = File.createTempFile( "uniprot", ".idx" );
+        indexFile.deleteOnExit();
+        long start = System.nanoTime();
+        UniprotFlatFileIndex index = UniprotFlatFileIndex.build( file, indexFile );
+        System.out.println( "index: " + index.getRecordCount() + " identifiers in "
+                            + ( ( System.nanoTime() - start ) / 1000000 ) + "ms" );
+
+        lookup( file, index );
+    }
+
+    private static void read( final File file, int threads ) throws Exception {
+        final long[] offsets = UniprotFlatFileReader.split( file, threads );
+        ExecutorService executor = Executors.newFixedThreadPool( threads );
+
+        long start = System.nanoTime();
+        List<Future<Long>> counts = new ArrayList<Future<Long>>( threads );
+        for ( int i = 0; i < threads; i++ ) {
+            final int range = i;
+            counts.add( executor.submit( new Callable<Long>() {
+                public Long call() throws Exception {
+                    long count = 0;
+                    UniprotFlatFileReader reader = new UniprotFlatFileReader( file, offsets[range], offsets[range + 1] );
+                    try {
+                        while ( reader.hasNext() ) {
+                            reader.next();
+                            count++;
+                        }
+                    } finally {
+                        reader.close();
+                    }
+                    return count;
+                }
+            } ) );
+        }
+        long count = 0;
+        for ( Future<Long> future : counts ) {
+            count += future.get();
+        }
+        long time = System.nanoTime() - start;
+        executor.shutdown();
+
+        System.out.println( "read with " + threads + " thread(s): " + ( count * 1000000000L / time ) + " entries/s ("
+                            + count + " entries, " + ( file.length() * 1000L / time ) + " MB/s)" );
+    }
+
+    private static void lookup( File file, UniprotFlatFileIndex index ) throws Exception {
+        // the ACs of the file, in a random order
+        List<String> acs = new ArrayList<String>();
+        UniprotFlatFileReader reader = new UniprotFlatFileReader( file );
+        try {
+            while ( reader.hasNext() && acs.size() < LOOKUPS ) {
+                acs.add( reader.next().getAccessions().get( 0 ) );
+            }
+        } finally {
+            reader.close();
+        }
+        java.util.Collections.shuffle( acs, new Random( 42 ) );
+
+        long sink = 0;
+        long start = System.nanoTime();
+        for ( String ac : acs ) {
+            for ( long offset : index.getOffsets( ac ) ) {
+                UniprotFlatFileReader entryReader = new UniprotFlatFileReader( file, offset, offset + 1 );
+                try {
+                    sink += entryReader.next().getText().length();
+                } finally {
+                    entryReader.close();
+                }
+            }
+        }
+        long time = System.nanoTime() - start;
+
+        System.out.println( "lookup and read: " + ( acs.size() * 1000000000L / time ) + " entries/s (" + sink + ")" );
+    }
+}
@@ -0,0 +1,83 @@
+package uk.ac.ebi.intact.uniprot.service.flatFile;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+/**
+ * UniprotFlatFileIndex Tester.
+ *
+ * @version $Id$
+ * @since 2.1.35
+ */
+public class UniprotFlatFileIndexTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static String readId( File file, long offset ) throws Exception {
+        UniprotFlatFileReader reader = new UniprotFlatFileReader( file, offset, offset + 1 );
+        try {
+            return reader.next().getId();
+        } finally {
+            reader.close();
+        }
+    }
+
+    @Test
+    public void getOffsets() throws Exception {
+        File file = UniprotFlatFileReaderTest.writeFlatFile( folder.newFile( "uniprot.dat" ), 20 );
+        UniprotFlatFileIndex index = UniprotFlatFileIndex.build( file, new File( folder.getRoot(), "uniprot.dat.idx" ) );
+
+        // one ID and one AC per entry, plus a secondary AC and a feature chain id
+        assertEquals( 42, index.getRecordCount() );
+
+        long[] offsets = index.getOffsets( "P00007" );
+        assertEquals( 1, offsets.length );
+        assertEquals( "PROT7_HUMAN", readId( file, offsets[0] ) );
+
+        assertEquals( Arrays.toString( offsets ), Arrays.toString( index.getOffsets( "prot7_human" ) ) );
+        assertEquals( Arrays.toString( index.getOffsets( "P00002" ) ), Arrays.toString( index.getOffsets( "Q00001" ) ) );
+        assertEquals( Arrays.toString( index.getOffsets( "P00003" ) ), Arrays.toString( index.getOffsets( "PRO_0000000003" ) ) );
+        assertEquals( 0, index.getOffsets( "P00021" ).length );
+        assertEquals( 0, index.getOffsets( "" ).length );
+        assertEquals( 0, index.getOffsets( "A_VERY_LONG_IDENTIFIER" ).length );
+
+        // all the entries are found
+        for ( int i = 1; i <= 20; i++ ) {
+            assertEquals( "PROT" + i + "_HUMAN", readId( file, index.getOffsets( String.format( "P%05d", i ) )[0] ) );
+        }
+    }
+
+    @Test
+    public void build_severalRuns() throws Exception {
+        File file = UniprotFlatFileReaderTest.writeFlatFile( folder.newFile( "uniprot.dat" ), 20 );
+        UniprotFlatFileIndex index = UniprotFlatFileIndex.build( file, new File( folder.getRoot(), "uniprot.dat.idx" ), 3 );
+
+        assertEquals( 42, index.getRecordCount() );
+        for ( int i = 1; i <= 20; i++ ) {
+            assertEquals( "PROT" + i + "_HUMAN", readId( file, index.getOffsets( "PROT" + i + "_HUMAN" )[0] ) );
+        }
+        assertEquals( Arrays.toString( index.getOffsets( "P00002" ) ), Arrays.toString( index.getOffsets( "Q00001" ) ) );
+    }
+
+    @Test
+    public void isUpToDate() throws Exception {
+        File file = UniprotFlatFileReaderTest.writeFlatFile( folder.newFile( "uniprot.dat" ), 5 );
+        File indexFile = new File( folder.getRoot(), "uniprot.dat.idx" );
+        UniprotFlatFileIndex.build( file, indexFile );
+
+        // reopened from disk
+        UniprotFlatFileIndex index = new UniprotFlatFileIndex( indexFile );
+        assertTrue( index.isUpToDate( file ) );
+        assertEquals( "PROT5_HUMAN", readId( file, index.getOffsets( "P00005" )[0] ) );
+
+        UniprotFlatFileReaderTest.writeFlatFile( file, 6 );
+        assertFalse( index.isUpToDate( file ) );
+    }
+}
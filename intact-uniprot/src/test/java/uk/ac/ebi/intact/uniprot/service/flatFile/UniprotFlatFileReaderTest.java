@@ -0,0 +1,138 @@
+package uk.ac.ebi.intact.uniprot.service.flatFile;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.Assert.*;
+
+/**
+ * UniprotFlatFileReader Tester.
+ *
+ * @version $Id$
+ * @since 2.1.35
+ */
+public class UniprotFlatFileReaderTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Writes a flat file of the given number of entries, named P00001, P00002... (ID PROTn_HUMAN), P00002 having
+     * Q00001 as secondary AC.
+     */
+    static File writeFlatFile( File file, int count ) throws IOException {
+        OutputStream output = new FileOutputStream( file );
+        if ( file.getName().endsWith( ".gz" ) ) {
+            output = new GZIPOutputStream( output );
+        }
+        Writer writer = new OutputStreamWriter( output, "UTF-8" );
+        try {
+            for ( int i = 1; i <= count; i++ ) {
+                writer.write( "ID   PROT" + i + "_HUMAN             Reviewed;         " + ( 10 * i ) + " AA.\n" );
+                writer.write( "AC   " + String.format( "P%05d", i ) + ( i == 2 ? "; Q00001;" : ";" ) + "\n" );
+                writer.write( "DE   RecName: Full=Protein " + i + ";\n" );
+                writer.write( "OX   NCBI_TaxID=9606;\n" );
+                if ( i == 3 ) {
+                    writer.write( "FT   CHAIN           1..30\n" );
+                    writer.write( "FT                   /note=\"Protein 3\"\n" );
+                    writer.write( "FT                   /id=\"PRO_0000000003\"\n" );
+                }
+                writer.write( "SQ   SEQUENCE   " + ( 10 * i ) + " AA;\n" );
+                for ( int j = 0; j <= i % 10; j++ ) {
+                    writer.write( "     MQTIKCVVVG\n" );
+                }
+                writer.write( "//\n" );
+            }
+        } finally {
+            writer.close();
+        }
+        return file;
+    }
+
+    private static List<String> readIds( UniprotFlatFileReader reader ) throws IOException {
+        List<String> ids = new ArrayList<String>();
+        try {
+            while ( reader.hasNext() ) {
+                ids.add( reader.next().getId() );
+            }
+        } finally {
+            reader.close();
+        }
+        return ids;
+    }
+
+    @Test
+    public void read() throws Exception {
+        File file = writeFlatFile( folder.newFile( "uniprot.dat" ), 3 );
+
+        UniprotFlatFileReader reader = new UniprotFlatFileReader( file );
+        UniprotFlatFileEntry entry = reader.next();
+        assertEquals( 0, entry.getOffset() );
+        assertEquals( "PROT1_HUMAN", entry.getId() );
+        assertEquals( Arrays.asList( "P00001" ), entry.getAccessions() );
+        assertTrue( entry.getText().startsWith( "ID   PROT1_HUMAN" ) );
+        assertTrue( entry.getText().endsWith( "     MQTIKCVVVG\n//\n" ) );
+
+        entry = reader.next();
+        assertEquals( "PROT2_HUMAN", entry.getId() );
+        assertEquals( Arrays.asList( "P00002", "Q00001" ), entry.getAccessions() );
+
+        // the offset is where the entry starts in the file
+        RandomAccessFile randomAccessFile = new RandomAccessFile( file, "r" );
+        randomAccessFile.seek( entry.getOffset() );
+        assertEquals( "ID   PROT2_HUMAN             Reviewed;         20 AA.", randomAccessFile.readLine() );
+        randomAccessFile.close();
+
+        assertEquals( "PROT3_HUMAN", reader.next().getId() );
+        assertFalse( reader.hasNext() );
+        reader.close();
+    }
+
+    @Test
+    public void read_gzipped() throws Exception {
+        File file = writeFlatFile( folder.newFile( "uniprot.dat.gz" ), 3 );
+
+        assertEquals( Arrays.asList( "PROT1_HUMAN", "PROT2_HUMAN", "PROT3_HUMAN" ), readIds( new UniprotFlatFileReader( file ) ) );
+    }
+
+    @Test
+    public void read_truncated() throws Exception {
+        File file = folder.newFile( "uniprot.dat" );
+        Writer writer = new FileWriter( file );
+        writer.write( "ID   PROT1_HUMAN             Reviewed;         10 AA.\nAC   P00001;\n" );
+        writer.close();
+
+        try {
+            readIds( new UniprotFlatFileReader( file ) );
+            fail();
+        } catch ( UncheckedIOException e ) {
+            // ok
+        }
+    }
+
+    @Test
+    public void split_readsEachEntryOnce() throws Exception {
+        File file = writeFlatFile( folder.newFile( "uniprot.dat" ), 50 );
+        List<String> allIds = readIds( new UniprotFlatFileReader( file ) );
+        assertEquals( 50, allIds.size() );
+
+        for ( int count : new int[]{ 1, 2, 3, 7, 50, 500 } ) {
+            long[] offsets = UniprotFlatFileReader.split( file, count );
+            assertEquals( count + 1, offsets.length );
+            assertEquals( file.length(), offsets[count] );
+
+            List<String> ids = new ArrayList<String>();
+            for ( int i = 0; i < count; i++ ) {
+                ids.addAll( readIds( new UniprotFlatFileReader( file, offsets[i], offsets[i + 1] ) ) );
+            }
+            assertEquals( "split in " + count, allIds, ids );
+        }
+    }
+}
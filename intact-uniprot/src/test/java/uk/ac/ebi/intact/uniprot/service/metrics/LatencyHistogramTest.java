@@ -0,0 +1,64 @@
+package uk.ac.ebi.intact.uniprot.service.metrics;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * LatencyHistogram Tester.
+ *
+ * @version $Id$
+ * @since 2.1.35
+ */
+public class LatencyHistogramTest {
+
+    @Test
+    public void percentiles_smallValuesAreExact() throws Exception {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for ( int i = 1; i <= 20; i++ ) {
+            histogram.record( i );
+        }
+
+        assertEquals( 20, histogram.getCount() );
+        assertEquals( 10, histogram.getValueAtPercentile( 50 ) );
+        assertEquals( 20, histogram.getValueAtPercentile( 100 ) );
+        assertEquals( 1, histogram.getValueAtPercentile( 0 ) );
+        assertEquals( 10.5, histogram.getMean(), 0.001 );
+        assertEquals( 20, histogram.getMax() );
+    }
+
+    @Test
+    public void percentiles_withinPrecision() throws Exception {
+        LatencyHistogram histogram = new LatencyHistogram();
+        Random random = new Random( 42 );
+        long[] values = new long[100000];
+        for ( int i = 0; i < values.length; i++ ) {
+            values[i] = 1000 + random.nextInt( 100000000 );
+            histogram.record( values[i] );
+        }
+        java.util.Arrays.sort( values );
+
+        for ( double percentile : new double[]{ 50, 99, 99.9 } ) {
+            long expected = values[( int ) Math.ceil( percentile / 100 * values.length ) - 1];
+            long actual = histogram.getValueAtPercentile( percentile );
+            assertTrue( percentile + ": " + actual + " vs " + expected, actual >= expected );
+            assertTrue( percentile + ": " + actual + " vs " + expected, actual <= expected * 1.07 );
+        }
+    }
+
+    @Test
+    public void record_largeValues() throws Exception {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record( Long.MAX_VALUE );
+        histogram.record( -5 );
+
+        assertEquals( Long.MAX_VALUE, histogram.getValueAtPercentile( 100 ) );
+        assertEquals( 0, histogram.getValueAtPercentile( 50 ) );
+
+        histogram.reset();
+        assertEquals( 0, histogram.getCount() );
+        assertEquals( 0, histogram.getValueAtPercentile( 99 ) );
+    }
+}
@@ -0,0 +1,222 @@
+package uk.ac.ebi.intact.uniprot.service.remote;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+/**
+ * RemoteCallExecutor Tester.
+ *
+ * @version $Id$
+ * @since 2.1.35
+ */
+public class RemoteCallExecutorTest {
+
+    /**
+     * Stub of a remote service failing a given number of times before answering.
+     */
+    private static class FlakyCall implements Callable<String> {
+
+        private final AtomicInteger calls = new AtomicInteger();
+
+        private final int failures;
+
+        private FlakyCall( int failures ) {
+            this.failures = failures;
+        }
+
+        public String call() throws Exception {
+            if ( calls.incrementAndGet() <= failures ) {
+                throw new IOException( "Connection reset" );
+            }
+            return "P12345";
+        }
+    }
+
+    private static RemoteCallExecutor newExecutor( CircuitBreaker circuitBreaker ) {
+        RemoteCallExecutor executor = new RemoteCallExecutor( circuitBreaker, null );
+        executor.setBackoffMillis( 1, 5 );
+        return executor;
+    }
+
+    @Test
+    public void execute_retriesTransientFailures() throws Exception {
+        RemoteCallExecutor executor = newExecutor( new CircuitBreaker() );
+        FlakyCall call = new FlakyCall( 2 );
+
+        assertEquals( "P12345", executor.execute( "retrieve P12345", call ) );
+        assertEquals( 3, call.calls.get() );
+        assertEquals( CircuitBreaker.State.CLOSED, executor.getCircuitBreaker().getState() );
+    }
+
+    @Test
+    public void execute_givesUpAfterMaxAttempts() throws Exception {
+        RemoteCallExecutor executor = newExecutor( new CircuitBreaker() );
+        executor.setMaxAttempts( 3 );
+        FlakyCall call = new FlakyCall( 10 );
+
+        try {
+            executor.execute( "retrieve P12345", call );
+            fail();
+        } catch ( RemoteCallException e ) {
+            assertTrue( e.getCause() instanceof IOException );
+        }
+        assertEquals( 3, call.calls.get() );
+    }
+
+    @Test
+    public void execute_doesNotRetryInvalidArguments() throws Exception {
+        RemoteCallExecutor executor = newExecutor( new CircuitBreaker() );
+        final AtomicInteger calls = new AtomicInteger();
+
+        try {
+            executor.execute( "retrieve P12345", new Callable<String>() {
+                public String call() {
+                    calls.incrementAndGet();
+                    throw new IllegalArgumentException( "Invalid query" );
+                }
+            } );
+            fail();
+        } catch ( RemoteCallException e ) {
+            assertTrue( e.getCause() instanceof IllegalArgumentException );
+        }
+        assertEquals( 1, calls.get() );
+    }
+
+    @Test
+    public void execute_abandonsCallsPastTheirDeadline() throws Exception {
+        RemoteCallExecutor executor = newExecutor( new CircuitBreaker() );
+        executor.setDeadlineMillis( 100 );
+
+        long start = System.nanoTime();
+        try {
+            executor.execute( "retrieve P12345", new Callable<String>() {
+                public String call() throws Exception {
+                    Thread.sleep( 10000 );
+                    return "P12345";
+                }
+            } );
+            fail();
+        } catch ( RemoteCallException e ) {
+            // ok
+        }
+        assertTrue( TimeUnit.NANOSECONDS.toMillis( System.nanoTime() - start ) < 5000 );
+    }
+
+    @Test
+    public void execute_circuitOpensAfterConsecutiveFailures() throws Exception {
+        RemoteCallExecutor executor = newExecutor( new CircuitBreaker( 2, 60000 ) );
+        executor.setMaxAttempts( 1 );
+        FlakyCall call = new FlakyCall( 10 );
+
+        for ( int i = 0; i < 3; i++ ) {
+            try {
+                executor.execute( "retrieve P12345", call );
+                fail();
+            } catch ( RemoteCallException e ) {
+                // ok
+            }
+        }
+
+        // the third call was refused without reaching the service
+        assertEquals( 2, call.calls.get() );
+        assertEquals( CircuitBreaker.State.OPEN, executor.getCircuitBreaker().getState() );
+    }
+
+    @Test
+    public void circuitBreaker_closesAfterSuccessfulTrial() throws Exception {
+        CircuitBreaker circuitBreaker = new CircuitBreaker( 1, 0 );
+        circuitBreaker.recordFailure();
+        assertEquals( CircuitBreaker.State.OPEN, circuitBreaker.getState() );
+
+        assertTrue( circuitBreaker.allowRequest() );
+        assertEquals( CircuitBreaker.State.HALF_OPEN, circuitBreaker.getState() );
+        assertFalse( circuitBreaker.allowRequest() );
+
+        circuitBreaker.recordSuccess();
+        assertEquals( CircuitBreaker.State.CLOSED, circuitBreaker.getState() );
+        assertTrue( circuitBreaker.allowRequest() );
+    }
+
+    @Test
+    public void circuitBreaker_interruptedTrialIsReleased() throws Exception {
+        final RemoteCallExecutor executor = newExecutor( new CircuitBreaker( 1, 0 ) );
+        executor.getCircuitBreaker().recordFailure();
+
+        final CountDownLatch started = new CountDownLatch( 1 );
+        final AtomicReference<Throwable> thrown = new AtomicReference<Throwable>();
+        Thread caller = new Thread( new Runnable() {
+            public void run() {
+                try {
+                    executor.execute( "retrieve P12345", new Callable<String>() {
+                        public String call() throws Exception {
+                            started.countDown();
+                            Thread.sleep( 10000 );
+                            return "P12345";
+                        }
+                    } );
+                } catch ( Throwable t ) {
+                    thrown.set( t );
+                }
+            }
+        } );
+        caller.start();
+
+        assertTrue( started.await( 10, TimeUnit.SECONDS ) );
+        assertEquals( CircuitBreaker.State.HALF_OPEN, executor.getCircuitBreaker().getState() );
+        caller.interrupt();
+        caller.join( 10000 );
+
+        assertTrue( thrown.get() instanceof RemoteCallException );
+
+        // the trial was given back, the next call makes it
+        assertEquals( CircuitBreaker.State.OPEN, executor.getCircuitBreaker().getState() );
+        assertEquals( "P12345", executor.execute( "retrieve P12345", new FlakyCall( 0 ) ) );
+        assertEquals( CircuitBreaker.State.CLOSED, executor.getCircuitBreaker().getState() );
+    }
+
+    @Test
+    public void circuitBreaker_trialWithoutRatePermitIsReleased() throws Exception {
+        TokenBucketRateLimiter rateLimiter = new TokenBucketRateLimiter( 1, 1 );
+        assertTrue( rateLimiter.tryAcquire( 0, TimeUnit.SECONDS ) );
+        RemoteCallExecutor executor = new RemoteCallExecutor( new CircuitBreaker( 1, 0 ), rateLimiter );
+        executor.setDeadlineMillis( 10 );
+        executor.getCircuitBreaker().recordFailure();
+
+        try {
+            executor.execute( "retrieve P12345", new FlakyCall( 0 ) );
+            fail();
+        } catch ( RemoteCallException e ) {
+            // ok
+        }
+
+        assertEquals( CircuitBreaker.State.OPEN, executor.getCircuitBreaker().getState() );
+        assertTrue( executor.getCircuitBreaker().allowRequest() );
+    }
+
+    @Test
+    public void rateLimiter_limitsTheRate() throws Exception {
+        TokenBucketRateLimiter rateLimiter = new TokenBucketRateLimiter( 100, 5 );
+
+        long start = System.nanoTime();
+        for ( int i = 0; i < 25; i++ ) {
+            assertTrue( rateLimiter.tryAcquire( 1, TimeUnit.SECONDS ) );
+        }
+        long millis = TimeUnit.NANOSECONDS.toMillis( System.nanoTime() - start );
+
+        // 5 at once, then 20 at 100 per second
+        assertTrue( "took " + millis + "ms", millis >= 150 );
+
+        // no token within the timeout
+        TokenBucketRateLimiter slowRateLimiter = new TokenBucketRateLimiter( 1, 1 );
+        assertTrue( slowRateLimiter.tryAcquire( 0, TimeUnit.SECONDS ) );
+        assertFalse( slowRateLimiter.tryAcquire( 10, TimeUnit.MILLISECONDS ) );
+    }
+}